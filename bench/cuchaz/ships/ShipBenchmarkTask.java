@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.EntityHanging;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.util.Vec3;
+
+import org.apache.commons.codec.binary.Base64InputStream;
+import org.apache.commons.codec.binary.Base64OutputStream;
+
+import cuchaz.modsShared.blocks.BlockMap;
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.BoundingBoxInt;
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.config.BlockProperties;
+import cuchaz.ships.persistence.BlockStoragePersistence;
+import cuchaz.ships.persistence.ShipWorldPersistence;
+
+public class ShipBenchmarkTask implements Callable<Object>
+{
+	// the benchmarked code, which runs inside the Minecraft classloader (see ShipBenchmarks)
+	// NOTE: everything that isn't being measured gets built up front
+	
+	public static enum Op
+	{
+		Geometry,
+		Displacement,
+		RangeQuery,
+		Broadphase,
+		SegmentQuery,
+		Encode,
+		Decode,
+		EncodeWithStreams,
+		DecodeWithStreams,
+		EncodeShipWorld;
+	}
+	
+	private static final int NumQueries = 100;
+	
+	private Op m_op;
+	private String m_encodedShip;
+	private BlocksStorage m_blocks;
+	private BlockSet m_coords;
+	private BlockSet m_watertightBlocks;
+	private ShipGeometry m_geometry;
+	private ShipBroadphase m_broadphase;
+	private CoordsBuffer m_worldBlocks;
+	private CoordsBuffer m_otherShipBlocks;
+	private AxisAlignedBB[] m_boxes;
+	private Vec3[] m_rayStarts;
+	private Vec3[] m_rayStops;
+	private CoordsBuffer m_out;
+	private ShipWorld m_shipWorld;
+	
+	public ShipBenchmarkTask( String op, String shipName )
+	{
+		m_op = Op.valueOf( op );
+		m_encodedShip = getEncodedShip( shipName );
+		m_blocks = BlockStoragePersistence.readAnyVersion( m_encodedShip );
+		m_coords = new BlockSet( m_blocks.coords() );
+		m_geometry = m_blocks.getGeometry();
+		m_broadphase = m_geometry.getBroadphase();
+		m_out = new CoordsBuffer();
+		m_shipWorld = new ShipWorld( new TestWorld(), m_blocks, new BlockMap<TileEntity>(), new BlockMap<EntityHanging>(), 0 );
+		
+		m_watertightBlocks = new BlockSet();
+		for( Coords coords : m_blocks.coords() )
+		{
+			if( BlockProperties.isWatertight( Block.blocksList[m_blocks.getBlockId( coords )] ) )
+			{
+				m_watertightBlocks.add( coords );
+			}
+		}
+		
+		// put a line of world blocks under the hull, like the ship is about to run aground
+		BoundingBoxInt shipBox = m_blocks.getBoundingBox();
+		m_worldBlocks = new CoordsBuffer();
+		for( int x=shipBox.minX - 1; x<=shipBox.maxX + 1; x++ )
+		{
+			m_worldBlocks.add( x, shipBox.minY - 1, ( shipBox.minZ + shipBox.maxZ )/2 );
+		}
+		
+		// and a copy of the ship right next to it
+		m_otherShipBlocks = new CoordsBuffer();
+		for( Coords coords : m_blocks.coords() )
+		{
+			m_otherShipBlocks.add( coords.x, coords.y, coords.z );
+		}
+		
+		// use the same queries every run so the results can be compared
+		Random rand = new Random( 12345 );
+		m_boxes = new AxisAlignedBB[NumQueries];
+		m_rayStarts = new Vec3[NumQueries];
+		m_rayStops = new Vec3[NumQueries];
+		for( int i=0; i<NumQueries; i++ )
+		{
+			// boxes about the size of an entity
+			double x = getRandom( rand, shipBox.minX, shipBox.maxX + 1 );
+			double y = getRandom( rand, shipBox.minY, shipBox.maxY + 1 );
+			double z = getRandom( rand, shipBox.minZ, shipBox.maxZ + 1 );
+			m_boxes[i] = AxisAlignedBB.getBoundingBox( x - 0.3, y, z - 0.3, x + 0.3, y + 1.8, z + 0.3 );
+			
+			// rays about as long as a player's reach, aimed into the ship
+			m_rayStarts[i] = Vec3.createVectorHelper( x, y, z );
+			Vec3 dir = Vec3.createVectorHelper( rand.nextGaussian(), rand.nextGaussian(), rand.nextGaussian() ).normalize();
+			m_rayStops[i] = m_rayStarts[i].addVector( dir.xCoord*5, dir.yCoord*5, dir.zCoord*5 );
+		}
+	}
+	
+	@Override
+	public Object call( )
+	throws Exception
+	{
+		switch( m_op )
+		{
+			case Geometry:
+				return new ShipGeometry( m_coords );
+			
+			case Displacement:
+				return new ShipDisplacement( m_watertightBlocks );
+			
+			case RangeQuery:
+				for( int i=0; i<NumQueries; i++ )
+				{
+					m_out.clear();
+					m_geometry.rangeQuery( m_out, m_boxes[i] );
+				}
+				return m_out;
+			
+			case Broadphase:
+				// the part of moveShip that doesn't need a world
+				m_broadphase.findCandidates( m_worldBlocks, 0, 64, 0, 30, 0, 0, 0, 0.1, -0.1, 0.1, 1 );
+				m_broadphase.findCandidates( m_geometry.getIndex(), m_otherShipBlocks, 0, 64, 0, 30, 0, 0, 0, 3, 64, 2, 60, 0, 0, 0, 0.1, 0, 0.1, 1 );
+				return m_broadphase;
+			
+			case SegmentQuery:
+				// the part of HitList that doesn't need a world
+				for( int i=0; i<NumQueries; i++ )
+				{
+					m_out.clear();
+					m_geometry.segmentQuery( m_out, m_rayStarts[i], m_rayStops[i] );
+				}
+				return m_out;
+			
+			case Encode:
+				return BlockStoragePersistence.writeNewestVersionToString( m_blocks );
+			
+			case Decode:
+				return BlockStoragePersistence.readAnyVersion( m_encodedShip );
+			
+			case EncodeWithStreams:
+				// the way BlockStoragePersistence used to do it, to compare against the codec
+				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream( new GZIPOutputStream( new Base64OutputStream( buffer ) ) );
+				BlockStoragePersistence.writeNewestVersion( m_blocks, out );
+				out.close();
+				return new String( buffer.toByteArray(), "UTF-8" );
+			
+			case DecodeWithStreams:
+				DataInputStream in = new DataInputStream( new GZIPInputStream( new Base64InputStream( new ByteArrayInputStream( m_encodedShip.getBytes( "UTF-8" ) ) ) ) );
+				BlocksStorage blocks = BlockStoragePersistence.readAnyVersion( in );
+				in.close();
+				return blocks;
+			
+			case EncodeShipWorld:
+				// the same path as saving the ship and sending it to clients
+				return ShipWorldPersistence.writeNewestVersion( m_shipWorld, true );
+		}
+		throw new Error( "Unknown op: " + m_op );
+	}
+	
+	private static String getEncodedShip( String shipName )
+	{
+		if( shipName.equals( "BigShip" ) )
+		{
+			return TestShipLag.BigShip;
+		}
+		else if( shipName.equals( "ShipA" ) )
+		{
+			return TestDisplacementComponents.ShipA;
+		}
+		else if( shipName.equals( "ShipB" ) )
+		{
+			return TestDisplacementComponents.ShipB;
+		}
+		throw new IllegalArgumentException( "Unknown ship: " + shipName );
+	}
+	
+	private static double getRandom( Random rand, double min, double max )
+	{
+		return min + rand.nextDouble()*( max - min );
+	}
+}
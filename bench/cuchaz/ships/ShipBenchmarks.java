@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.io.File;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import net.minecraft.launchwrapper.LaunchClassLoader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 2 )
+public class ShipBenchmarks
+{
+	// run with: ant bench
+	// NOTE: Minecraft code only works in the LaunchClassLoader (see MinecraftRunner), so the benchmarked code
+	// lives in ShipBenchmarkTask, and we only talk to it through Callable, which both classloaders share
+	
+	@Param( { "BigShip", "ShipA", "ShipB" } )
+	public String ship;
+	
+	private Callable<Object> m_geometry;
+	private Callable<Object> m_displacement;
+	private Callable<Object> m_rangeQuery;
+	private Callable<Object> m_broadphase;
+	private Callable<Object> m_segmentQuery;
+	private Callable<Object> m_encode;
+	private Callable<Object> m_decode;
+	private Callable<Object> m_encodeWithStreams;
+	private Callable<Object> m_decodeWithStreams;
+	private Callable<Object> m_encodeShipWorld;
+	
+	private static LaunchClassLoader m_classLoader;
+	
+	static
+	{
+		m_classLoader = null;
+	}
+	
+	@Setup
+	public void setup( )
+	throws Exception
+	{
+		m_geometry = getTask( ShipBenchmarkTask.Op.Geometry, ship );
+		m_displacement = getTask( ShipBenchmarkTask.Op.Displacement, ship );
+		m_rangeQuery = getTask( ShipBenchmarkTask.Op.RangeQuery, ship );
+		m_broadphase = getTask( ShipBenchmarkTask.Op.Broadphase, ship );
+		m_segmentQuery = getTask( ShipBenchmarkTask.Op.SegmentQuery, ship );
+		m_encode = getTask( ShipBenchmarkTask.Op.Encode, ship );
+		m_decode = getTask( ShipBenchmarkTask.Op.Decode, ship );
+		m_encodeWithStreams = getTask( ShipBenchmarkTask.Op.EncodeWithStreams, ship );
+		m_decodeWithStreams = getTask( ShipBenchmarkTask.Op.DecodeWithStreams, ship );
+		m_encodeShipWorld = getTask( ShipBenchmarkTask.Op.EncodeShipWorld, ship );
+	}
+	
+	@Benchmark
+	public Object geometry( )
+	throws Exception
+	{
+		return m_geometry.call();
+	}
+	
+	@Benchmark
+	public Object displacement( )
+	throws Exception
+	{
+		return m_displacement.call();
+	}
+	
+	@Benchmark
+	public Object rangeQuery( )
+	throws Exception
+	{
+		return m_rangeQuery.call();
+	}
+	
+	@Benchmark
+	public Object broadphase( )
+	throws Exception
+	{
+		return m_broadphase.call();
+	}
+	
+	@Benchmark
+	public Object segmentQuery( )
+	throws Exception
+	{
+		return m_segmentQuery.call();
+	}
+	
+	@Benchmark
+	public Object encode( )
+	throws Exception
+	{
+		return m_encode.call();
+	}
+	
+	@Benchmark
+	public Object decode( )
+	throws Exception
+	{
+		return m_decode.call();
+	}
+	
+	@Benchmark
+	public Object encodeWithStreams( )
+	throws Exception
+	{
+		return m_encodeWithStreams.call();
+	}
+	
+	@Benchmark
+	public Object decodeWithStreams( )
+	throws Exception
+	{
+		return m_decodeWithStreams.call();
+	}
+	
+	@Benchmark
+	public Object encodeShipWorld( )
+	throws Exception
+	{
+		return m_encodeShipWorld.call();
+	}
+	
+	@SuppressWarnings( "unchecked" )
+	private static Callable<Object> getTask( ShipBenchmarkTask.Op op, String shipName )
+	throws Exception
+	{
+		return (Callable<Object>)getClassLoader()
+			.loadClass( ShipBenchmarkTask.class.getName() )
+			.getConstructor( String.class, String.class )
+			.newInstance( op.name(), shipName );
+	}
+	
+	private static synchronized LaunchClassLoader getClassLoader( )
+	throws Exception
+	{
+		if( m_classLoader == null )
+		{
+			m_classLoader = new LaunchClassLoader( new URL[] {} );
+			for( String path : System.getProperty( "java.class.path" ).split( File.pathSeparator ) )
+			{
+				m_classLoader.addURL( new File( path ).toURI().toURL() );
+			}
+			
+			// init Minecraft and the mod inside the classloader
+			Class.forName( MinecraftRunner.class.getName(), true, m_classLoader );
+		}
+		return m_classLoader;
+	}
+}
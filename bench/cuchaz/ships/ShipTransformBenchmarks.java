@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 2 )
+public class ShipTransformBenchmarks
+{
+	// run with: ant bench
+	// NOTE: these only use doubles, so they don't need the LaunchClassLoader like ShipBenchmarks does
+	
+	private static final int NumPoints = 1000;
+	
+	private ShipTransform m_transform;
+	private double[] m_points;
+	private double[] m_buf;
+	
+	@Setup
+	public void setup( )
+	{
+		Random rand = new Random( 12345 );
+		m_transform = new ShipTransform( 100.5, 64.25, -200.75, 37.5f, 3, 1, -4 );
+		m_points = new double[NumPoints*3];
+		for( int i=0; i<m_points.length; i++ )
+		{
+			m_points[i] = rand.nextDouble()*100;
+		}
+		m_buf = new double[m_points.length];
+	}
+	
+	@Benchmark
+	public double[] perCallTrig( )
+	{
+		// what EntityShip did before the transform snapshot: trig on every conversion
+		System.arraycopy( m_points, 0, m_buf, 0, m_points.length );
+		for( int i=0; i<m_buf.length; i+=3 )
+		{
+			double yawRad = Math.toRadians( m_transform.getYaw() );
+			double cos = Math.cos( yawRad );
+			double sin = Math.sin( yawRad );
+			double x = m_buf[i] - m_transform.getX();
+			double z = m_buf[i + 2] - m_transform.getZ();
+			m_buf[i] = m_transform.shipToBlocksX( x*cos - z*sin );
+			m_buf[i + 1] = m_transform.shipToBlocksY( m_buf[i + 1] - m_transform.getY() );
+			m_buf[i + 2] = m_transform.shipToBlocksZ( x*sin + z*cos );
+		}
+		return m_buf;
+	}
+	
+	@Benchmark
+	public double[] cachedPerPoint( )
+	{
+		System.arraycopy( m_points, 0, m_buf, 0, m_points.length );
+		for( int i=0; i<m_buf.length; i+=3 )
+		{
+			double x = m_buf[i];
+			double z = m_buf[i + 2];
+			m_buf[i] = m_transform.shipToBlocksX( m_transform.worldToShipX( x, z ) );
+			m_buf[i + 1] = m_transform.shipToBlocksY( m_transform.worldToShipY( m_buf[i + 1] ) );
+			m_buf[i + 2] = m_transform.shipToBlocksZ( m_transform.worldToShipZ( x, z ) );
+		}
+		return m_buf;
+	}
+	
+	@Benchmark
+	public double[] cachedBatch( )
+	{
+		System.arraycopy( m_points, 0, m_buf, 0, m_points.length );
+		m_transform.worldToBlocks( m_buf, 0, NumPoints );
+		return m_buf;
+	}
+}
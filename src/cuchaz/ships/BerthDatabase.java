@@ -0,0 +1,449 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import cuchaz.modsShared.Util;
+import cuchaz.ships.PlayerRespawner.BerthCoords;
+
+public class BerthDatabase
+{
+	// the saved berth for each player, indexed by ship and by chunk so launches and docks only look at the berths they move
+	// the snapshot file has every berth, and each change gets appended to the journal file instead of rewriting the snapshot
+	// once the journal gets big enough, we write a new snapshot and start a new journal
+	// NOTE: journal records are whole berths, so replaying a journal over a snapshot that already has its changes is harmless
+	
+	private static final String SnapshotName = "berths.dat";
+	private static final String JournalName = "berths.journal";
+	private static final int MinCompactRecords = 64;
+	
+	private File m_dir;
+	private Map<String,BerthCoords> m_berths;
+	private Map<UUID,Set<String>> m_shipIndex;
+	private Map<Long,Set<String>> m_chunkIndex;
+	private List<String> m_changedUsernames;
+	private int m_numJournalRecords;
+	
+	public BerthDatabase( File dir )
+	{
+		m_dir = dir;
+		m_berths = new TreeMap<String,BerthCoords>();
+		m_shipIndex = new HashMap<UUID,Set<String>>();
+		m_chunkIndex = new HashMap<Long,Set<String>>();
+		m_changedUsernames = new ArrayList<String>();
+		m_numJournalRecords = 0;
+	}
+	
+	public int size( )
+	{
+		return m_berths.size();
+	}
+	
+	public int getNumJournalRecords( )
+	{
+		return m_numJournalRecords;
+	}
+	
+	public BerthCoords get( String username )
+	{
+		return m_berths.get( username );
+	}
+	
+	public void put( String username, BerthCoords coords )
+	{
+		unindex( username );
+		m_berths.put( username, coords );
+		index( username, coords );
+		m_changedUsernames.add( username );
+	}
+	
+	public void moveToShip( String username, UUID shipUuid, int x, int y, int z )
+	{
+		BerthCoords coords = m_berths.get( username );
+		unindex( username );
+		coords.moveToShip( shipUuid, x, y, z );
+		index( username, coords );
+		m_changedUsernames.add( username );
+	}
+	
+	public void moveToWorld( String username, int x, int y, int z )
+	{
+		BerthCoords coords = m_berths.get( username );
+		unindex( username );
+		coords.moveToWorld( x, y, z );
+		index( username, coords );
+		m_changedUsernames.add( username );
+	}
+	
+	public List<String> getUsernamesOnShip( UUID shipUuid )
+	{
+		// NOTE: return a copy, so callers can move the berths while they look at them
+		List<String> usernames = new ArrayList<String>();
+		Set<String> index = m_shipIndex.get( shipUuid );
+		if( index != null )
+		{
+			usernames.addAll( index );
+		}
+		return usernames;
+	}
+	
+	public List<String> getUsernamesInChunks( int dimensionId, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ )
+	{
+		List<String> usernames = new ArrayList<String>();
+		for( int chunkX=minChunkX; chunkX<=maxChunkX; chunkX++ )
+		{
+			for( int chunkZ=minChunkZ; chunkZ<=maxChunkZ; chunkZ++ )
+			{
+				Set<String> index = m_chunkIndex.get( getChunkKey( dimensionId, chunkX, chunkZ ) );
+				if( index != null )
+				{
+					usernames.addAll( index );
+				}
+			}
+		}
+		return usernames;
+	}
+	
+	private void index( String username, BerthCoords coords )
+	{
+		if( coords.shipUuid != null )
+		{
+			getIndexSet( m_shipIndex, coords.shipUuid ).add( username );
+		}
+		else
+		{
+			getIndexSet( m_chunkIndex, getChunkKey( coords ) ).add( username );
+		}
+	}
+	
+	private void unindex( String username )
+	{
+		BerthCoords coords = m_berths.get( username );
+		if( coords == null )
+		{
+			return;
+		}
+		if( coords.shipUuid != null )
+		{
+			removeFromIndex( m_shipIndex, coords.shipUuid, username );
+		}
+		else
+		{
+			removeFromIndex( m_chunkIndex, getChunkKey( coords ), username );
+		}
+	}
+	
+	private static <T> Set<String> getIndexSet( Map<T,Set<String>> index, T key )
+	{
+		Set<String> usernames = index.get( key );
+		if( usernames == null )
+		{
+			usernames = new TreeSet<String>();
+			index.put( key, usernames );
+		}
+		return usernames;
+	}
+	
+	private static <T> void removeFromIndex( Map<T,Set<String>> index, T key, String username )
+	{
+		Set<String> usernames = index.get( key );
+		if( usernames != null )
+		{
+			usernames.remove( username );
+			if( usernames.isEmpty() )
+			{
+				index.remove( key );
+			}
+		}
+	}
+	
+	private static long getChunkKey( BerthCoords coords )
+	{
+		return getChunkKey( coords.dimensionId, coords.x >> 4, coords.z >> 4 );
+	}
+	
+	private static long getChunkKey( int dimensionId, int chunkX, int chunkZ )
+	{
+		// chunk coords only need 22 bits, so give each one 24 and give the dimension the rest
+		return ( (long)dimensionId << 48 ) ^ ( ( chunkX & 0xffffffL ) << 24 ) ^ ( chunkZ & 0xffffffL );
+	}
+	
+	public void load( )
+	{
+		m_berths.clear();
+		m_shipIndex.clear();
+		m_chunkIndex.clear();
+		m_changedUsernames.clear();
+		m_numJournalRecords = 0;
+		
+		// read the snapshot first
+		File snapshotFile = getSnapshotFile();
+		File tempFile = getTempSnapshotFile();
+		boolean isSnapshotRecovered = false;
+		if( snapshotFile.exists() )
+		{
+			try
+			{
+				readSnapshot( snapshotFile );
+			}
+			catch( IOException ex )
+			{
+				Ships.logger.error( ex, "Unable to load berths! Player spawn points on ships were not loaded!" );
+			}
+		}
+		else if( tempFile.exists() )
+		{
+			// the server died in compact() after deleting the old snapshot, but before renaming the new one
+			// NOTE: the old snapshot only gets deleted once the new one is all written, but check that it's whole anyway
+			try
+			{
+				readSnapshot( tempFile );
+				Ships.logger.warning( "Berth snapshot is missing. Using the new snapshot from an unfinished compaction." );
+				isSnapshotRecovered = true;
+			}
+			catch( IOException ex )
+			{
+				// the journal still has everything the temp snapshot would have had
+				Ships.logger.warning( ex, "Unable to read berth snapshot from an unfinished compaction. Ignoring it." );
+				m_berths.clear();
+				m_shipIndex.clear();
+				m_chunkIndex.clear();
+			}
+		}
+		
+		// then replay the journal
+		boolean isJournalDamaged = false;
+		File journalFile = getJournalFile();
+		if( journalFile.exists() )
+		{
+			BufferedInputStream buf = null;
+			try
+			{
+				buf = new BufferedInputStream( new FileInputStream( journalFile ) );
+				DataInputStream in = new DataInputStream( buf );
+				while( true )
+				{
+					// stop at the end of the last whole record
+					buf.mark( 1 );
+					if( buf.read() < 0 )
+					{
+						break;
+					}
+					buf.reset();
+					
+					readRecord( in );
+					m_numJournalRecords++;
+				}
+			}
+			catch( EOFException ex )
+			{
+				// the server died in the middle of an append, so we lose that one change
+				Ships.logger.warning( "Berth journal ends with a partial record. Ignoring it." );
+				isJournalDamaged = true;
+			}
+			catch( IOException ex )
+			{
+				Ships.logger.error( ex, "Unable to load berth journal! Some player spawn points on ships were not loaded!" );
+				isJournalDamaged = true;
+			}
+			finally
+			{
+				Util.closeSilently( buf );
+			}
+		}
+		
+		// nothing we just read needs to be written again
+		m_changedUsernames.clear();
+		
+		if( isJournalDamaged || isSnapshotRecovered )
+		{
+			// don't append after the damaged part of the journal, or we won't be able to read the new records either
+			// and if we had to use the temp snapshot, finish the compaction that got interrupted
+			compact();
+		}
+	}
+	
+	public void save( )
+	{
+		if( m_changedUsernames.isEmpty() )
+		{
+			return;
+		}
+		
+		// if the journal is getting big compared to the snapshot, start over with a new snapshot
+		if( m_numJournalRecords + m_changedUsernames.size() > Math.max( MinCompactRecords, m_berths.size()*2 ) )
+		{
+			compact();
+			return;
+		}
+		
+		DataOutputStream out = null;
+		try
+		{
+			out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( getJournalFile(), true ) ) );
+			for( String username : m_changedUsernames )
+			{
+				writeRecord( out, username, m_berths.get( username ) );
+				m_numJournalRecords++;
+			}
+			m_changedUsernames.clear();
+		}
+		catch( IOException ex )
+		{
+			Ships.logger.error( ex, "Unable to save berths! Player spawn points on ships were not saved!" );
+		}
+		finally
+		{
+			Util.closeSilently( out );
+		}
+	}
+	
+	public void compact( )
+	{
+		// write the new snapshot next to the old one, so a crash can't leave us with half a snapshot
+		File snapshotFile = getSnapshotFile();
+		File tempFile = getTempSnapshotFile();
+		DataOutputStream out = null;
+		try
+		{
+			out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tempFile ) ) );
+			out.writeInt( m_berths.size() );
+			for( Map.Entry<String,BerthCoords> entry : m_berths.entrySet() )
+			{
+				writeRecord( out, entry.getKey(), entry.getValue() );
+			}
+			out.close();
+			out = null;
+			
+			// NOTE: renameTo() won't replace files on some platforms
+			if( snapshotFile.exists() && !snapshotFile.delete() )
+			{
+				throw new IOException( "Unable to delete old berth snapshot: " + snapshotFile );
+			}
+			if( !tempFile.renameTo( snapshotFile ) )
+			{
+				throw new IOException( "Unable to rename berth snapshot: " + tempFile );
+			}
+			
+			// the snapshot has everything now, so we don't need the journal
+			File journalFile = getJournalFile();
+			if( journalFile.exists() && !journalFile.delete() )
+			{
+				throw new IOException( "Unable to delete berth journal: " + journalFile );
+			}
+			m_numJournalRecords = 0;
+			m_changedUsernames.clear();
+		}
+		catch( IOException ex )
+		{
+			Ships.logger.error( ex, "Unable to save berths! Player spawn points on ships were not saved!" );
+		}
+		finally
+		{
+			Util.closeSilently( out );
+		}
+	}
+	
+	private File getSnapshotFile( )
+	{
+		return new File( m_dir, SnapshotName );
+	}
+	
+	private File getTempSnapshotFile( )
+	{
+		return new File( m_dir, SnapshotName + ".tmp" );
+	}
+	
+	private File getJournalFile( )
+	{
+		return new File( m_dir, JournalName );
+	}
+	
+	private void readSnapshot( File file )
+	throws IOException
+	{
+		DataInputStream in = null;
+		try
+		{
+			in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+			int numRecords = in.readInt();
+			for( int i=0; i<numRecords; i++ )
+			{
+				readRecord( in );
+			}
+			
+			// a whole snapshot ends right after the last record
+			if( in.read() >= 0 )
+			{
+				throw new IOException( "Berth snapshot has extra data after the last record: " + file );
+			}
+		}
+		finally
+		{
+			Util.closeSilently( in );
+		}
+	}
+	
+	private void readRecord( DataInputStream in )
+	throws IOException
+	{
+		String username = in.readUTF();
+		BerthCoords coords = new BerthCoords();
+		coords.dimensionId = in.readInt();
+		boolean hasShipId = in.readBoolean();
+		if( hasShipId )
+		{
+			// read in big endian order
+			coords.shipUuid = new UUID( in.readLong(), in.readLong() );
+		}
+		coords.x = in.readInt();
+		coords.y = in.readInt();
+		coords.z = in.readInt();
+		
+		unindex( username );
+		m_berths.put( username, coords );
+		index( username, coords );
+	}
+	
+	private void writeRecord( DataOutputStream out, String username, BerthCoords coords )
+	throws IOException
+	{
+		out.writeUTF( username );
+		out.writeInt( coords.dimensionId );
+		out.writeBoolean( coords.shipUuid != null );
+		if( coords.shipUuid != null )
+		{
+			// write in big-endian order
+			out.writeLong( coords.shipUuid.getMostSignificantBits() );
+			out.writeLong( coords.shipUuid.getLeastSignificantBits() );
+		}
+		out.writeInt( coords.x );
+		out.writeInt( coords.y );
+		out.writeInt( coords.z );
+	}
+}
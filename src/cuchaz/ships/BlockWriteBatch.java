@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.minecraft.world.World;
+import cuchaz.modsShared.blocks.BlockUtils;
+import cuchaz.modsShared.blocks.BlockUtils.UpdateRules;
+
+public class BlockWriteBatch
+{
+	// queues up block changes, then applies them one chunk section at a time
+	// NOTE: the server already folds all the changes to one chunk in a tick into a single multi-block packet,
+	// so keeping each section's writes together keeps those packets small and the chunk lookups hot
+	
+	private static class SectionWrites
+	{
+		public CoordsBuffer coords;
+		public int[] blocks;
+		
+		public SectionWrites( )
+		{
+			coords = new CoordsBuffer( 16 );
+			blocks = new int[16];
+		}
+		
+		public void add( int x, int y, int z, int packed )
+		{
+			if( coords.size() == blocks.length )
+			{
+				blocks = Arrays.copyOf( blocks, blocks.length*2 );
+			}
+			blocks[coords.size()] = packed;
+			coords.add( x, y, z );
+		}
+	}
+	
+	private TreeMap<Long,SectionWrites> m_sections;
+	private int m_size;
+	
+	public BlockWriteBatch( )
+	{
+		m_sections = new TreeMap<Long,SectionWrites>();
+		m_size = 0;
+	}
+	
+	public int size( )
+	{
+		return m_size;
+	}
+	
+	public boolean isEmpty( )
+	{
+		return m_size == 0;
+	}
+	
+	public int getNumSections( )
+	{
+		return m_sections.size();
+	}
+	
+	public void add( int x, int y, int z, int blockId, int blockMeta )
+	{
+		Long key = getSectionKey( x >> 4, y >> 4, z >> 4 );
+		SectionWrites section = m_sections.get( key );
+		if( section == null )
+		{
+			section = new SectionWrites();
+			m_sections.put( key, section );
+		}
+		section.add( x, y, z, ( blockId & 0xfff ) | ( ( blockMeta & 0xf ) << 16 ) );
+		m_size++;
+	}
+	
+	public void apply( World world, UpdateRules updateRules )
+	{
+		for( Map.Entry<Long,SectionWrites> entry : m_sections.entrySet() )
+		{
+			SectionWrites section = entry.getValue();
+			for( int i=0; i<section.coords.size(); i++ )
+			{
+				int packed = section.blocks[i];
+				BlockUtils.changeBlockWithoutNotifyingIt(
+					world, section.coords.getX( i ), section.coords.getY( i ), section.coords.getZ( i ),
+					packed & 0xfff, ( packed >> 16 ) & 0xf, updateRules
+				);
+			}
+		}
+		clear();
+	}
+	
+	public void clear( )
+	{
+		m_sections.clear();
+		m_size = 0;
+	}
+	
+	private static long getSectionKey( int sectionX, int sectionY, int sectionZ )
+	{
+		// NOTE: sort by chunk first, then by section within the chunk
+		return ( (long)sectionX << 36 ) | ( ( sectionZ & 0xfffffffL ) << 8 ) | ( sectionY & 0xff );
+	}
+}
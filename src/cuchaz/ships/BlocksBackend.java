@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.Coords;
+
+public interface BlocksBackend
+{
+	public void clear( );
+	public int getNumBlocks( );
+	public BlockSet coords( );
+	public boolean hasBlock( Coords coords );
+	public int getBlockId( Coords coords );
+	public int getBlockMeta( Coords coords );
+	
+	// returns true if the block might be new, false if an existing block was just updated
+	public boolean setBlock( Coords coords, int id, int meta );
+}
@@ -14,7 +14,6 @@ import java.util.Map;
 
 import net.minecraft.block.Block;
 import net.minecraft.world.World;
-import cuchaz.modsShared.blocks.BlockMap;
 import cuchaz.modsShared.blocks.BlockSet;
 import cuchaz.modsShared.blocks.BoundingBoxInt;
 import cuchaz.modsShared.blocks.Coords;
@@ -24,15 +23,20 @@ public class BlocksStorage
 {
 	private static final Coords Origin = new Coords( 0, 0, 0 );
 	
-	private BlockMap<BlockStorage> m_blocks;
-	private final BlockStorage m_airBlockStorage;
+	private BlocksBackend m_blocks;
+	private BlockSet m_coords;
 	private ShipGeometry m_geometry;
 	private ShipDisplacement m_displacement;
 	
 	public BlocksStorage( )
 	{
-		m_blocks = new BlockMap<BlockStorage>();
-		m_airBlockStorage = new BlockStorage();
+		this( new PackedBlocksBackend() );
+	}
+	
+	public BlocksStorage( BlocksBackend backend )
+	{
+		m_blocks = backend;
+		m_coords = null;
 		m_geometry = null;
 		m_displacement = null;
 	}
@@ -40,6 +44,7 @@ public class BlocksStorage
 	public void clear( )
 	{
 		m_blocks.clear();
+		m_coords = null;
 		m_geometry = null;
 		m_displacement = null;
 	}
@@ -49,25 +54,25 @@ public class BlocksStorage
 		clear();
 		
 		// copy the blocks into storage
+		BlockStorage storage = new BlockStorage();
+		Coords relativeCoords = new Coords( 0, 0, 0 );
 		for( Coords worldCoords : blocks )
 		{
-			BlockStorage storage = new BlockStorage();
 			storage.readFromWorld( world, worldCoords );
 			
 			// make all the blocks relative to the origin block
-			Coords relativeCoords = new Coords( worldCoords.x - originCoords.x, worldCoords.y - originCoords.y, worldCoords.z - originCoords.z );
-			m_blocks.put( relativeCoords, storage );
+			relativeCoords.set( worldCoords.x - originCoords.x, worldCoords.y - originCoords.y, worldCoords.z - originCoords.z );
+			m_blocks.setBlock( relativeCoords, storage.id, storage.meta );
 		}
 	}
 	
 	public void writeToWorld( World world, Map<Coords,Coords> correspondence )
 	{
 		// copy the blocks to the world
-		for( Map.Entry<Coords,BlockStorage> entry : m_blocks.entrySet() )
+		for( Coords coordsShip : coords() )
 		{
-			Coords coordsShip = entry.getKey();
 			Coords coordsWorld = correspondence.get( coordsShip );
-			BlockStorage storage = entry.getValue();
+			BlockStorage storage = getBlock( coordsShip );
 			storage.writeToWorld( world, coordsWorld );
 		}
 	}
@@ -75,12 +80,9 @@ public class BlocksStorage
 	public String dumpBlocks( )
 	{
 		StringBuilder buf = new StringBuilder();
-		for( Map.Entry<Coords,BlockStorage> entry : m_blocks.entrySet() )
+		for( Coords coords : coords() )
 		{
-			Coords coords = entry.getKey();
-			BlockStorage storage = entry.getValue();
-			
-			buf.append( String.format( "%3d,%3d,%3d %4d %4d\n", coords.x, coords.y, coords.z, storage.id, storage.meta ) );
+			buf.append( String.format( "%3d,%3d,%3d %4d %4d\n", coords.x, coords.y, coords.z, getBlockId( coords ), getBlockMeta( coords ) ) );
 		}
 		return buf.toString();
 	}
@@ -89,7 +91,8 @@ public class BlocksStorage
 	{
 		if( m_geometry == null )
 		{
-			m_geometry = new ShipGeometry( new BlockSet( m_blocks.keySet() ) );
+			// NOTE: the geometry shares the coords set, so there's only ever one copy of it
+			m_geometry = new ShipGeometry( coords() );
 		}
 		return m_geometry;
 	}
@@ -99,9 +102,9 @@ public class BlocksStorage
 		if( m_displacement == null )
 		{
 			BlockSet watertightBlocks = new BlockSet();
-			for( Coords coords : m_blocks.keySet() )
+			for( Coords coords : coords() )
 			{
-				Block block = Block.blocksList[getBlock( coords ).id];
+				Block block = Block.blocksList[getBlockId( coords )];
 				if( BlockProperties.isWatertight( block ) )
 				{
 					watertightBlocks.add( coords );
@@ -114,27 +117,50 @@ public class BlocksStorage
 	
 	public int getNumBlocks( )
 	{
-		return m_blocks.size();
+		return m_blocks.getNumBlocks();
 	}
 	
 	public BlockSet coords( )
 	{
-		return m_blocks.blockSet();
+		// NOTE: the backend builds a new set every time, so hang on to it until the block set changes
+		if( m_coords == null )
+		{
+			m_coords = m_blocks.coords();
+		}
+		return m_coords;
 	}
 	
 	public BlockStorage getBlock( Coords coords )
 	{
-		BlockStorage storage = m_blocks.get( coords );
-		if( storage == null )
-		{
-			storage = m_airBlockStorage;
-		}
-		return storage;
+		// NOTE: this is a copy, so use setBlock() to change blocks
+		return new BlockStorage( getBlockId( coords ), getBlockMeta( coords ) );
+	}
+	
+	public int getBlockId( Coords coords )
+	{
+		return m_blocks.getBlockId( coords );
+	}
+	
+	public int getBlockMeta( Coords coords )
+	{
+		return m_blocks.getBlockMeta( coords );
 	}
 	
 	public void setBlock( Coords coords, BlockStorage val )
 	{
-		m_blocks.put( coords, val );
+		setBlock( coords, val.id, val.meta );
+	}
+	
+	public void setBlock( Coords coords, int id, int meta )
+	{
+		// NOTE: don't look up the block first, that would make the backend sort after every block while loading
+		if( m_blocks.setBlock( coords, id, meta ) )
+		{
+			// the block set changed, so the cached coords and geometry are no good anymore
+			m_coords = null;
+			m_geometry = null;
+			m_displacement = null;
+		}
 	}
 	
 	public BoundingBoxInt getBoundingBox( )
@@ -149,11 +175,11 @@ public class BlocksStorage
 	
 	public BlockStorage getShipBlock( )
 	{
-		BlockStorage block = m_blocks.get( Origin );
-		if( block == null )
+		if( !m_blocks.hasBlock( Origin ) )
 		{
 			throw new ShipConfigurationException( "Ship does not have a ship block!" );
 		}
+		BlockStorage block = getBlock( Origin );
 		if( block.id != Ships.m_blockShip.blockID )
 		{
 			throw new ShipConfigurationException( "Ship origin block is not a ship block!" );
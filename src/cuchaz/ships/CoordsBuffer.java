@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.util.Arrays;
+
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.Coords;
+
+public class CoordsBuffer
+{
+	// NOTE: coords are stored interleaved as x,y,z triples so query results don't need a Coords object per block
+	
+	private int[] m_coords;
+	private int m_size;
+	
+	public CoordsBuffer( )
+	{
+		this( 64 );
+	}
+	
+	public CoordsBuffer( int capacity )
+	{
+		m_coords = new int[Math.max( capacity, 1 )*3];
+		m_size = 0;
+	}
+	
+	public int size( )
+	{
+		return m_size;
+	}
+	
+	public boolean isEmpty( )
+	{
+		return m_size == 0;
+	}
+	
+	public void clear( )
+	{
+		m_size = 0;
+	}
+	
+	public void truncate( int size )
+	{
+		if( size < 0 || size > m_size )
+		{
+			throw new IndexOutOfBoundsException( "Size " + size + " is out of range [0," + m_size + "]" );
+		}
+		m_size = size;
+	}
+	
+	public void add( int x, int y, int z )
+	{
+		ensureCapacity( m_size + 1 );
+		int i = m_size*3;
+		m_coords[i + 0] = x;
+		m_coords[i + 1] = y;
+		m_coords[i + 2] = z;
+		m_size++;
+	}
+	
+	public void add( Coords coords )
+	{
+		add( coords.x, coords.y, coords.z );
+	}
+	
+	public void set( int index, int x, int y, int z )
+	{
+		int i = index*3;
+		m_coords[i + 0] = x;
+		m_coords[i + 1] = y;
+		m_coords[i + 2] = z;
+	}
+	
+	public int getX( int index )
+	{
+		return m_coords[index*3 + 0];
+	}
+	
+	public int getY( int index )
+	{
+		return m_coords[index*3 + 1];
+	}
+	
+	public int getZ( int index )
+	{
+		return m_coords[index*3 + 2];
+	}
+	
+	public Coords get( Coords out, int index )
+	{
+		int i = index*3;
+		out.set( m_coords[i + 0], m_coords[i + 1], m_coords[i + 2] );
+		return out;
+	}
+	
+	public BlockSet toBlockSet( )
+	{
+		BlockSet blocks = new BlockSet();
+		addTo( blocks );
+		return blocks;
+	}
+	
+	public void addTo( BlockSet blocks )
+	{
+		for( int i=0; i<m_size; i++ )
+		{
+			blocks.add( new Coords( getX( i ), getY( i ), getZ( i ) ) );
+		}
+	}
+	
+	private void ensureCapacity( int size )
+	{
+		if( size*3 > m_coords.length )
+		{
+			m_coords = Arrays.copyOf( m_coords, Math.max( size, m_size*2 )*3 );
+		}
+	}
+	
+	@Override
+	public String toString( )
+	{
+		StringBuilder buf = new StringBuilder();
+		buf.append( "[" );
+		for( int i=0; i<m_size; i++ )
+		{
+			if( i > 0 )
+			{
+				buf.append( "," );
+			}
+			buf.append( String.format( "(%d,%d,%d)", getX( i ), getY( i ), getZ( i ) ) );
+		}
+		buf.append( "]" );
+		return buf.toString();
+	}
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import cuchaz.modsShared.blocks.BlockMap;
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.Coords;
+
+public class DisplacementFootprint
+{
+	// tracks the world blocks covered by the bounding boxes of a set of ship blocks
+	// each ship block remembers its covered range, and each world block counts how many ship blocks cover it,
+	// so when the ship moves, only the ship blocks whose range changed need any work
+	
+	private BlockMap<int[]> m_ranges;
+	private BlockMap<Integer> m_counts;
+	private Coords m_lookup;
+	
+	public DisplacementFootprint( )
+	{
+		m_ranges = new BlockMap<int[]>();
+		m_counts = new BlockMap<Integer>();
+		m_lookup = new Coords( 0, 0, 0 );
+	}
+	
+	public int getNumShipBlocks( )
+	{
+		return m_ranges.size();
+	}
+	
+	public Set<Coords> worldBlocks( )
+	{
+		return m_counts.keySet();
+	}
+	
+	public boolean contains( Coords coords )
+	{
+		return m_counts.containsKey( coords );
+	}
+	
+	public void clear( )
+	{
+		m_ranges.clear();
+		m_counts.clear();
+	}
+	
+	public void set( Coords shipCoords, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, BlockSet entering, BlockSet leaving )
+	{
+		int[] range = m_ranges.get( shipCoords );
+		if( range == null )
+		{
+			range = new int[] { minX, minY, minZ, maxX, maxY, maxZ };
+			m_ranges.put( new Coords( shipCoords ), range );
+			addRange( range, 1, entering, leaving );
+			return;
+		}
+		
+		if( range[0] == minX && range[1] == minY && range[2] == minZ && range[3] == maxX && range[4] == maxY && range[5] == maxZ )
+		{
+			// this block didn't cover anything new
+			return;
+		}
+		
+		// NOTE: add the new range before removing the old one, so the overlap never drops out of the footprint
+		int[] newRange = new int[] { minX, minY, minZ, maxX, maxY, maxZ };
+		addRange( newRange, 1, entering, leaving );
+		addRange( range, -1, entering, leaving );
+		System.arraycopy( newRange, 0, range, 0, 6 );
+	}
+	
+	public void retainAll( Set<Coords> shipBlocks, BlockSet entering, BlockSet leaving )
+	{
+		Iterator<Map.Entry<Coords,int[]>> iter = m_ranges.entrySet().iterator();
+		while( iter.hasNext() )
+		{
+			Map.Entry<Coords,int[]> entry = iter.next();
+			if( !shipBlocks.contains( entry.getKey() ) )
+			{
+				addRange( entry.getValue(), -1, entering, leaving );
+				iter.remove();
+			}
+		}
+	}
+	
+	private void addRange( int[] range, int delta, BlockSet entering, BlockSet leaving )
+	{
+		for( int x=range[0]; x<=range[3]; x++ )
+		{
+			for( int y=range[1]; y<=range[4]; y++ )
+			{
+				for( int z=range[2]; z<=range[5]; z++ )
+				{
+					m_lookup.set( x, y, z );
+					Integer count = m_counts.get( m_lookup );
+					if( count == null )
+					{
+						// the world block entered the footprint
+						// unless it just left in this same update, in which case it never really left
+						Coords coords = new Coords( x, y, z );
+						m_counts.put( coords, delta );
+						if( !leaving.remove( coords ) )
+						{
+							entering.add( coords );
+						}
+					}
+					else if( count + delta == 0 )
+					{
+						// the world block left the footprint
+						m_counts.remove( m_lookup );
+						Coords coords = new Coords( x, y, z );
+						if( !entering.remove( coords ) )
+						{
+							leaving.add( coords );
+						}
+					}
+					else
+					{
+						m_counts.put( m_lookup, count + delta );
+					}
+				}
+			}
+		}
+	}
+}
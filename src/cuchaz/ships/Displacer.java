@@ -21,9 +21,10 @@ import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import net.minecraft.block.Block;
+import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.util.MathHelper;
 import cuchaz.modsShared.blocks.BlockMap;
 import cuchaz.modsShared.blocks.BlockSet;
-import cuchaz.modsShared.blocks.BlockUtils;
 import cuchaz.modsShared.blocks.BlockUtils.UpdateRules;
 import cuchaz.modsShared.blocks.Coords;
 
@@ -32,43 +33,95 @@ public abstract class Displacer
 	protected EntityShip m_ship;
 	protected Block m_block;
 	private BlockMap<Integer> m_displacedBlocks;
-	protected BlockSet m_shouldBeDisplaced;
+	private DisplacementFootprint m_footprint;
+	private BlockSet m_entering;
+	private BlockSet m_leaving;
+	private BlockWriteBatch m_writes;
+	private boolean m_checkAllDisplacedBlocks;
 	
 	protected Displacer( EntityShip ship, Block block )
 	{
 		m_ship = ship;
 		m_block = block;
 		m_displacedBlocks = new BlockMap<Integer>();
-		m_shouldBeDisplaced = new BlockSet();
+		m_footprint = new DisplacementFootprint();
+		m_entering = new BlockSet();
+		m_leaving = new BlockSet();
+		m_writes = new BlockWriteBatch();
+		m_checkAllDisplacedBlocks = false;
 	}
 	
-	protected void updateDisplacement( )
+	protected abstract boolean shouldDisplace( int blockId );
+	
+	protected void updateDisplacement( BlockSet shipBlocks, double epsilon )
 	{
-		// are there any blocks that are displaced, but shouldn't be?
-		Iterator<Map.Entry<Coords,Integer>> iter = m_displacedBlocks.entrySet().iterator();
-		while( iter.hasNext() )
+		// move the footprint of the ship blocks, but only the ship blocks that covered new world blocks
+		AxisAlignedBB box = AxisAlignedBB.getBoundingBox( 0, 0, 0, 0, 0, 0 );
+		for( Coords coords : shipBlocks )
+		{
+			m_ship.getCollider().getBlockWorldBoundingBox( box, coords );
+			
+			// NOTE: these are the same world blocks BlockUtils.worldRangeQuery() would find in the expanded box
+			m_footprint.set( coords,
+				MathHelper.floor_double( box.minX - epsilon ),
+				MathHelper.floor_double( box.minY - epsilon ),
+				MathHelper.floor_double( box.minZ - epsilon ),
+				MathHelper.floor_double( box.maxX + epsilon ),
+				MathHelper.floor_double( box.maxY + epsilon ),
+				MathHelper.floor_double( box.maxZ + epsilon ),
+				m_entering, m_leaving
+			);
+		}
+		m_footprint.retainAll( shipBlocks, m_entering, m_leaving );
+		
+		// restore the displaced blocks that left the footprint
+		for( Coords coords : m_leaving )
+		{
+			Integer packed = m_displacedBlocks.remove( coords );
+			if( packed != null )
+			{
+				restoreBlock( coords, packed );
+			}
+		}
+		if( m_checkAllDisplacedBlocks )
 		{
-			Map.Entry<Coords,Integer> entry = iter.next();
-			Coords coords = entry.getKey();
-			if( !m_shouldBeDisplaced.contains( coords ) )
+			// we don't know where these displaced blocks came from, so check all of them
+			Iterator<Map.Entry<Coords,Integer>> iter = m_displacedBlocks.entrySet().iterator();
+			while( iter.hasNext() )
 			{
-				restoreBlock( coords, entry.getValue() );
-				iter.remove();
+				Map.Entry<Coords,Integer> entry = iter.next();
+				if( !m_footprint.contains( entry.getKey() ) )
+				{
+					restoreBlock( entry.getKey(), entry.getValue() );
+					iter.remove();
+				}
 			}
+			m_checkAllDisplacedBlocks = false;
 		}
+		m_entering.clear();
+		m_leaving.clear();
 		
-		// make sure that all the blocks that should be displaced are actually displaced
-		for( Coords coords : m_shouldBeDisplaced )
+		// the world can change under the footprint too, so check every world block in it
+		for( Coords coords : m_footprint.worldBlocks() )
 		{
 			int blockId = m_ship.worldObj.getBlockId( coords.x, coords.y, coords.z );
-			int blockMeta = m_ship.worldObj.getBlockMetadata( coords.x, coords.y, coords.z );
-			if( blockId != m_block.blockID )
+			if( !shouldDisplace( blockId ) )
+			{
+				// this block is displaced, but shouldn't be
+				Integer packed = m_displacedBlocks.remove( coords );
+				if( packed != null )
+				{
+					restoreBlock( coords, packed );
+				}
+			}
+			else if( blockId != m_block.blockID )
 			{
 				// displace the block
-				BlockUtils.changeBlockWithoutNotifyingIt( m_ship.worldObj, coords.x, coords.y, coords.z, m_block.blockID, 0, UpdateRules.UpdateClients );
+				int blockMeta = m_ship.worldObj.getBlockMetadata( coords.x, coords.y, coords.z );
+				m_writes.add( coords.x, coords.y, coords.z, m_block.blockID, 0 );
 				
 				// remember that we displaced it
-				m_displacedBlocks.put( coords, pack( blockId, blockMeta ) );
+				m_displacedBlocks.put( new Coords( coords ), pack( blockId, blockMeta ) );
 			}
 			else
 			{
@@ -76,10 +129,13 @@ public abstract class Displacer
 				// make sure we remember it, but don't erase the displaced block info
 				if( !m_displacedBlocks.containsKey( coords ) )
 				{
-					m_displacedBlocks.put( coords, pack( blockId, blockMeta ) );
+					int blockMeta = m_ship.worldObj.getBlockMetadata( coords.x, coords.y, coords.z );
+					m_displacedBlocks.put( new Coords( coords ), pack( blockId, blockMeta ) );
 				}
 			}
 		}
+		
+		m_writes.apply( m_ship.worldObj, UpdateRules.UpdateClients );
 	}
 	
 	public void restore( )
@@ -88,7 +144,9 @@ public abstract class Displacer
 		{
 			restoreBlock( entry.getKey(), entry.getValue() );
 		}
+		m_writes.apply( m_ship.worldObj, UpdateRules.UpdateClients );
 		m_displacedBlocks.clear();
+		m_footprint.clear();
 	}
 	
 	public byte[] write( )
@@ -131,6 +189,7 @@ public abstract class Displacer
 			{
 				m_displacedBlocks.put( new Coords( in.readInt(), in.readInt(), in.readInt() ), in.readInt() );
 			}
+			m_checkAllDisplacedBlocks = true;
 			
 			in.close();
 		}
@@ -144,9 +203,7 @@ public abstract class Displacer
 	{
 		if( m_ship.worldObj.getBlockId( coords.x, coords.y, coords.z ) == m_block.blockID )
 		{
-			int blockId = unpackId( packed );
-			int blockMeta = unpackMeta( packed );
-			BlockUtils.changeBlockWithoutNotifyingIt( m_ship.worldObj, coords.x, coords.y, coords.z, blockId, blockMeta, UpdateRules.UpdateClients );
+			m_writes.add( coords.x, coords.y, coords.z, unpackId( packed ), unpackMeta( packed ) );
 		}
 	}
 	
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import net.minecraft.block.Block;
+import net.minecraft.world.World;
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.Coords;
+
+public class DisplayTickIndex
+{
+	// keeps track of the ship blocks that do anything on a random display tick (eg torches, furnaces, portals)
+	// vanilla picks 1000 random blocks near the player every tick, but most of them are air or stone
+	// instead, we give each indexed block the same odds it would have had with vanilla's sampling
+	
+	private static final int Range = 16;
+	private static final int NumTries = 1000;
+	private static final String[] MethodNames = { "randomDisplayTick", "func_71862_a" };
+	private static Map<Class<?>,Boolean> m_overrides;
+	
+	static
+	{
+		m_overrides = new HashMap<Class<?>,Boolean>();
+	}
+	
+	private ShipWorld m_shipWorld;
+	private BlockSet m_blocks;
+	private Random m_random;
+	
+	public DisplayTickIndex( ShipWorld shipWorld, long seed )
+	{
+		m_shipWorld = shipWorld;
+		m_blocks = new BlockSet();
+		m_random = new Random( seed );
+		
+		for( Coords coords : shipWorld.coords() )
+		{
+			if( hasRandomDisplayTick( shipWorld.getBlockId( coords ) ) )
+			{
+				m_blocks.add( coords );
+			}
+		}
+	}
+	
+	public int getNumBlocks( )
+	{
+		return m_blocks.size();
+	}
+	
+	public boolean contains( Coords coords )
+	{
+		return m_blocks.contains( coords );
+	}
+	
+	public void onBlockChanged( Coords coords, int newBlockId )
+	{
+		if( hasRandomDisplayTick( newBlockId ) )
+		{
+			if( !m_blocks.contains( coords ) )
+			{
+				// NOTE: callers can pass in lookup coords, so don't keep a reference to them
+				m_blocks.add( new Coords( coords ) );
+			}
+		}
+		else
+		{
+			m_blocks.remove( coords );
+		}
+	}
+	
+	@SideOnly( Side.CLIENT )
+	public void update( int playerX, int playerY, int playerZ )
+	{
+		for( Coords coords : m_blocks )
+		{
+			int numTicks = getNumTicks( coords.x - playerX, coords.y - playerY, coords.z - playerZ );
+			if( numTicks == 0 )
+			{
+				continue;
+			}
+			Block block = Block.blocksList[m_shipWorld.getBlockId( coords )];
+			for( int i=0; i<numTicks; i++ )
+			{
+				block.randomDisplayTick( m_shipWorld, coords.x, coords.y, coords.z, m_random );
+			}
+		}
+	}
+	
+	public static double getExpectedTicks( int dx, int dy, int dz )
+	{
+		// vanilla picks each axis offset as rand(16) - rand(16), so the odds for one try fall off linearly with distance
+		return NumTries*getAxisChance( dx )*getAxisChance( dy )*getAxisChance( dz );
+	}
+	
+	private static double getAxisChance( int d )
+	{
+		d = Math.abs( d );
+		if( d >= Range )
+		{
+			return 0;
+		}
+		return (double)( Range - d )/( Range*Range );
+	}
+	
+	private int getNumTicks( int dx, int dy, int dz )
+	{
+		double expected = getExpectedTicks( dx, dy, dz );
+		if( expected <= 0 )
+		{
+			return 0;
+		}
+		
+		// with so many tries and such small odds, the number of hits is Poisson-distributed
+		double limit = Math.exp( -expected );
+		double p = m_random.nextDouble();
+		int numTicks = 0;
+		while( p > limit )
+		{
+			numTicks++;
+			p *= m_random.nextDouble();
+		}
+		return numTicks;
+	}
+	
+	public static boolean hasRandomDisplayTick( int blockId )
+	{
+		Block block = Block.blocksList[blockId];
+		if( block == null )
+		{
+			return false;
+		}
+		Boolean hasOverride = m_overrides.get( block.getClass() );
+		if( hasOverride == null )
+		{
+			hasOverride = overridesRandomDisplayTick( block.getClass() );
+			m_overrides.put( block.getClass(), hasOverride );
+		}
+		return hasOverride;
+	}
+	
+	private static boolean overridesRandomDisplayTick( Class<?> c )
+	{
+		// NOTE: method names are obfuscated outside the dev environment, so check both names
+		for( ; c != null && c != Block.class; c = c.getSuperclass() )
+		{
+			for( String methodName : MethodNames )
+			{
+				try
+				{
+					c.getDeclaredMethod( methodName, World.class, int.class, int.class, int.class, Random.class );
+					return true;
+				}
+				catch( NoSuchMethodException ex )
+				{
+					// keep looking
+				}
+				catch( SecurityException ex )
+				{
+					// we can't tell, so assume it does
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
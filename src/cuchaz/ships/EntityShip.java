@@ -10,6 +10,7 @@
  ******************************************************************************/
 package cuchaz.ships;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -70,6 +71,7 @@ public class EntityShip extends Entity
 	private double m_shipBlockX;
 	private double m_shipBlockY;
 	private double m_shipBlockZ;
+	private ShipTransform m_transform;
 	private int m_pilotActions;
 	private int m_oldPilotActions;
 	private BlockSide m_sideShipForward;
@@ -85,6 +87,7 @@ public class EntityShip extends Entity
 	private RainDisplacer m_rainDisplacer;
 	private DelayTimer m_throttleKillDelay;
 	private Map<Integer,Entity> m_ridersLastTick;
+	private List<Entity> m_riders;
 	
 	public EntityShip( World world )
 	{
@@ -103,6 +106,7 @@ public class EntityShip extends Entity
 		m_shipBlockX = 0;
 		m_shipBlockY = 0;
 		m_shipBlockZ = 0;
+		m_transform = null;
 		m_pilotActions = 0;
 		m_oldPilotActions = 0;
 		m_sideShipForward = null;
@@ -118,6 +122,7 @@ public class EntityShip extends Entity
 		m_rainDisplacer = new RainDisplacer( this );
 		m_throttleKillDelay = null;
 		m_ridersLastTick = new TreeMap<Integer,Entity>();
+		m_riders = new ArrayList<Entity>();
 	}
 	
 	@Override
@@ -127,6 +132,21 @@ public class EntityShip extends Entity
 	}
 	
 	public void setShipWorld( ShipWorld shipWorld )
+	{
+		setShipWorld( shipWorld, (ShipPhysics)null );
+	}
+	
+	public void setShipWorld( ShipWorld shipWorld, ShipBuoyancy buoyancy )
+	{
+		setShipWorld( shipWorld, null, buoyancy );
+	}
+	
+	public void setShipWorld( ShipWorld shipWorld, ShipPhysics physics )
+	{
+		setShipWorld( shipWorld, physics, null );
+	}
+	
+	private void setShipWorld( ShipWorld shipWorld, ShipPhysics physics, ShipBuoyancy buoyancy )
 	{
 		// if the blocks are invalid, just kill the ship
 		if( !shipWorld.isValid() )
@@ -144,7 +164,14 @@ public class EntityShip extends Entity
 		
 		m_shipWorld = shipWorld;
 		shipWorld.setShip( this );
-		m_physics = new ShipPhysics( m_shipWorld.getBlocksStorage() );
+		
+		// use the physics from the launcher if we have it, since it's expensive to build
+		// NOTE: the physics has to be built from the ship world's blocks storage
+		if( physics == null )
+		{
+			physics = new ShipPhysics( m_shipWorld.getBlocksStorage(), buoyancy );
+		}
+		m_physics = physics;
 		m_propulsion = new Propulsion( m_shipWorld.getBlocksStorage() );
 		
 		// get the ship center of mass so we can convert between ship/block spaces
@@ -154,6 +181,7 @@ public class EntityShip extends Entity
 		m_shipBlockZ = -centerOfMass.zCoord;
 		
 		m_collider.computeShipBoundingBox( boundingBox, posX, posY, posZ, rotationYaw );
+		ShipRegistry.onShipMoved( this );
 		
 		// LOGGING
 		Ships.logger.info( String.format(
@@ -168,6 +196,7 @@ public class EntityShip extends Entity
 	public void setDead( )
 	{
 		super.setDead();
+		ShipRegistry.onShipRemoved( this );
 		
 		// LOGGING
 		Ships.logger.info( "EntityShip %d died!", entityId );
@@ -221,6 +250,11 @@ public class EntityShip extends Entity
 		return m_shipWorld;
 	}
 	
+	public ShipPhysics getPhysics( )
+	{
+		return m_physics;
+	}
+	
 	public Propulsion getPropulsion( )
 	{
 		return m_propulsion;
@@ -272,6 +306,7 @@ public class EntityShip extends Entity
         if( m_collider != null )
         {
         	m_collider.computeShipBoundingBox( boundingBox, posX, posY, posZ, rotationYaw );
+        	ShipRegistry.onShipMoved( this );
         }
 	}
 	
@@ -362,7 +397,8 @@ public class EntityShip extends Entity
 		final double Epsilon = 1e-3;
 		if( Math.abs( dx ) >= Epsilon || Math.abs( dy ) >= Epsilon || Math.abs( dz ) >= Epsilon || Math.abs( dYaw ) >= Epsilon )
 		{
-			List<Entity> riders = m_collider.getRiders();
+			List<Entity> riders = m_riders;
+			m_collider.getRiders( riders );
 			
 			// save the old values
 			prevPosX = posX;
@@ -477,98 +513,80 @@ public class EntityShip extends Entity
 		return true;
 	}
 	
+	public ShipTransform getTransform( )
+	{
+		// NOTE: lots of code (including Minecraft) changes the position and yaw directly, so check for changes every time
+		if( m_transform == null || !m_transform.matches( posX, posY, posZ, rotationYaw, m_shipBlockX, m_shipBlockY, m_shipBlockZ ) )
+		{
+			m_transform = new ShipTransform( posX, posY, posZ, rotationYaw, m_shipBlockX, m_shipBlockY, m_shipBlockZ );
+		}
+		return m_transform;
+	}
+	
+	public ShipTransform getTransform( ShipTransform out )
+	{
+		// same as getTransform(), but updates the caller's own scratch transform instead of making a new snapshot
+		// NOTE: for code that runs every tick and can't allocate, like the collider
+		if( !out.matches( posX, posY, posZ, rotationYaw, m_shipBlockX, m_shipBlockY, m_shipBlockZ ) )
+		{
+			out.set( posX, posY, posZ, rotationYaw, m_shipBlockX, m_shipBlockY, m_shipBlockZ );
+		}
+		return out;
+	}
+	
 	public void worldToShip( Vec3 v )
 	{
-		double x = worldToShipX( v.xCoord, v.zCoord );
-		double y = worldToShipY( v.yCoord );
-		double z = worldToShipZ( v.xCoord, v.zCoord );
-		
-		v.xCoord = x;
-		v.yCoord = y;
-		v.zCoord = z;
+		getTransform().worldToShip( v );
 	}
 	
 	public void worldToShipDirection( Vec3 v )
 	{
-		// just apply the rotation
-		double yawRad = Math.toRadians( rotationYaw );
-		double cos = Math.cos( yawRad );
-		double sin = Math.sin( yawRad );
-		double x = v.xCoord*cos - v.zCoord*sin;
-		double z = v.xCoord*sin + v.zCoord*cos;
-		
-		v.xCoord = x;
-		v.zCoord = z;
+		getTransform().worldToShipDirection( v );
 	}
 	
 	public double worldToShipX( double x, double z )
 	{
-		double yawRad = Math.toRadians( rotationYaw );
-		double cos = Math.cos( yawRad );
-		double sin = Math.sin( yawRad );
-		return ( x - posX )*cos - ( z - posZ )*sin;
+		return getTransform().worldToShipX( x, z );
 	}
 	
 	public double worldToShipY( double y )
 	{
-		return y - posY;
+		return getTransform().worldToShipY( y );
 	}
 	
 	public double worldToShipZ( double x, double z )
 	{
-		double yawRad = Math.toRadians( rotationYaw );
-		double cos = Math.cos( yawRad );
-		double sin = Math.sin( yawRad );
-		return ( x - posX )*sin + ( z - posZ )*cos;
+		return getTransform().worldToShipZ( x, z );
 	}
 	
 	public void shipToWorld( Vec3 v )
 	{
-		double x = shipToWorldX( v.xCoord, v.zCoord );
-		double y = shipToWorldY( v.yCoord );
-		double z = shipToWorldZ( v.xCoord, v.zCoord );
-		
-		v.xCoord = x;
-		v.yCoord = y;
-		v.zCoord = z;
+		getTransform().shipToWorld( v );
 	}
 	
 	public void shipToWorldDirection( Vec3 v )
 	{
-		// just apply the rotation
-		double yawRad = Math.toRadians( rotationYaw );
-		double cos = Math.cos( yawRad );
-		double sin = Math.sin( yawRad );
-		double x = v.xCoord*cos + v.zCoord*sin;
-		double z = -v.xCoord*sin + v.zCoord*cos;
-		
-		v.xCoord = x;
-		v.zCoord = z;
+		getTransform().shipToWorldDirection( v );
 	}
 	
 	public double shipToWorldX( double x, double z )
 	{
-		double yawRad = Math.toRadians( rotationYaw );
-		double cos = Math.cos( yawRad );
-		double sin = Math.sin( yawRad );
-		return x*cos + z*sin + posX;
+		return getTransform().shipToWorldX( x, z );
 	}
 	
 	public double shipToWorldY( double y )
 	{
-		return y + posY;
+		return getTransform().shipToWorldY( y );
 	}
 	
 	public double shipToWorldZ( double x, double z )
 	{
-		double yawRad = Math.toRadians( rotationYaw );
-		double cos = Math.cos( yawRad );
-		double sin = Math.sin( yawRad );
-		return -x*sin + z*cos + posZ;
+		return getTransform().shipToWorldZ( x, z );
 	}
 	
 	public void shipToBlocks( Vec3 v )
 	{
+		// NOTE: blocks space is just ship space shifted by the ship block, so this doesn't depend on the pose
 		v.xCoord = shipToBlocksX( v.xCoord );
 		v.yCoord = shipToBlocksY( v.yCoord );
 		v.zCoord = shipToBlocksZ( v.zCoord );
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import cuchaz.modsShared.blocks.BlockMap;
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.Coords;
+
+public class MapBlocksBackend implements BlocksBackend
+{
+	// the original storage: one Coords and one BlockStorage object per block
+	// it's simple, but it costs a lot of memory for big ships
+	
+	private BlockMap<BlockStorage> m_blocks;
+	
+	public MapBlocksBackend( )
+	{
+		m_blocks = new BlockMap<BlockStorage>();
+	}
+	
+	@Override
+	public void clear( )
+	{
+		m_blocks.clear();
+	}
+	
+	@Override
+	public int getNumBlocks( )
+	{
+		return m_blocks.size();
+	}
+	
+	@Override
+	public BlockSet coords( )
+	{
+		return m_blocks.blockSet();
+	}
+	
+	@Override
+	public boolean hasBlock( Coords coords )
+	{
+		return m_blocks.containsKey( coords );
+	}
+	
+	@Override
+	public int getBlockId( Coords coords )
+	{
+		BlockStorage storage = m_blocks.get( coords );
+		return storage != null ? storage.id : 0;
+	}
+	
+	@Override
+	public int getBlockMeta( Coords coords )
+	{
+		BlockStorage storage = m_blocks.get( coords );
+		return storage != null ? storage.meta : 0;
+	}
+	
+	@Override
+	public boolean setBlock( Coords coords, int id, int meta )
+	{
+		BlockStorage storage = m_blocks.get( coords );
+		if( storage == null )
+		{
+			// NOTE: callers can pass in lookup coords, so don't keep a reference to them
+			m_blocks.put( new Coords( coords ), new BlockStorage( id, meta ) );
+			return true;
+		}
+		storage.id = id;
+		storage.meta = meta;
+		return false;
+	}
+}
@@ -0,0 +1,282 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.util.Arrays;
+
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.Coords;
+
+public class PackedBlocksBackend implements BlocksBackend
+{
+	// stores each block in one long: the coords go in the high 48 bits, and the id/meta go in the low 16 bits
+	// entries are sorted by coords (x, then y, then z), so lookups are a binary search
+	// NOTE: coords are packed as shorts and id/meta as 12/4 bits, just like BlockStoragePersistence V2
+	// NOTE: loading a ship is a bulk load: out-of-order blocks just get appended, and get sorted once on the next read
+	
+	private static final int IdBits = 12;
+	private static final int MetaBits = 4;
+	private static final int ValueBits = IdBits + MetaBits;
+	private static final int CoordBias = 0x8000;
+	
+	private long[] m_entries;
+	private int m_size;
+	private int m_numSorted;
+	
+	public PackedBlocksBackend( )
+	{
+		m_entries = new long[16];
+		m_size = 0;
+		m_numSorted = 0;
+	}
+	
+	@Override
+	public void clear( )
+	{
+		m_size = 0;
+		m_numSorted = 0;
+	}
+	
+	@Override
+	public int getNumBlocks( )
+	{
+		ensureSorted();
+		return m_size;
+	}
+	
+	@Override
+	public BlockSet coords( )
+	{
+		// NOTE: this builds a new set every time, so callers should hang on to it instead of the backend
+		ensureSorted();
+		BlockSet coords = new BlockSet();
+		for( int i=0; i<m_size; i++ )
+		{
+			long key = m_entries[i] >>> ValueBits;
+			coords.add( new Coords( getX( key ), getY( key ), getZ( key ) ) );
+		}
+		return coords;
+	}
+	
+	@Override
+	public boolean hasBlock( Coords coords )
+	{
+		return find( coords ) >= 0;
+	}
+	
+	@Override
+	public int getBlockId( Coords coords )
+	{
+		int i = find( coords );
+		return i >= 0 ? (int)( m_entries[i] & ( ( 1 << IdBits ) - 1 ) ) : 0;
+	}
+	
+	@Override
+	public int getBlockMeta( Coords coords )
+	{
+		int i = find( coords );
+		return i >= 0 ? (int)( ( m_entries[i] >> IdBits ) & ( ( 1 << MetaBits ) - 1 ) ) : 0;
+	}
+	
+	@Override
+	public boolean setBlock( Coords coords, int id, int meta )
+	{
+		long key = getKey( coords );
+		long entry = ( key << ValueBits )
+			| ( id & ( ( 1 << IdBits ) - 1 ) )
+			| ( ( meta & ( ( 1 << MetaBits ) - 1 ) ) << IdBits );
+		
+		if( m_numSorted == m_size )
+		{
+			// blocks usually get added in order, so just append them
+			if( m_size == 0 || key > m_entries[m_size - 1] >>> ValueBits )
+			{
+				append( entry );
+				m_numSorted = m_size;
+				return true;
+			}
+			
+			// or update an existing block
+			int i = search( key );
+			if( i >= 0 )
+			{
+				m_entries[i] = entry;
+				return false;
+			}
+		}
+		
+		// otherwise, sort it out on the next read
+		// NOTE: searching the unsorted tail would make bulk loads quadratic, so just assume the block is new
+		append( entry );
+		return true;
+	}
+	
+	private int find( Coords coords )
+	{
+		if( !isInRange( coords.x ) || !isInRange( coords.y ) || !isInRange( coords.z ) )
+		{
+			return -1;
+		}
+		ensureSorted();
+		return search( getKey( coords ) );
+	}
+	
+	private int search( long key )
+	{
+		int lo = 0;
+		int hi = m_numSorted - 1;
+		while( lo <= hi )
+		{
+			int mid = ( lo + hi ) >>> 1;
+			long midKey = m_entries[mid] >>> ValueBits;
+			if( midKey < key )
+			{
+				lo = mid + 1;
+			}
+			else if( midKey > key )
+			{
+				hi = mid - 1;
+			}
+			else
+			{
+				return mid;
+			}
+		}
+		return -1;
+	}
+	
+	private void append( long entry )
+	{
+		if( m_size == m_entries.length )
+		{
+			m_entries = Arrays.copyOf( m_entries, m_entries.length*2 );
+		}
+		m_entries[m_size++] = entry;
+	}
+	
+	private void ensureSorted( )
+	{
+		if( m_numSorted == m_size )
+		{
+			return;
+		}
+		
+		// only the unsorted tail needs sorting, then it can be merged into the sorted head
+		long[] tail = Arrays.copyOfRange( m_entries, m_numSorted, m_size );
+		sortByKey( tail );
+		
+		// merge from the back, so we don't need another copy of the head
+		// NOTE: on ties, the tail entry was set later, so it goes after the head entry
+		int i = m_numSorted - 1;
+		int j = tail.length - 1;
+		int k = m_size - 1;
+		while( j >= 0 )
+		{
+			if( i >= 0 && m_entries[i] >>> ValueBits > tail[j] >>> ValueBits )
+			{
+				m_entries[k--] = m_entries[i--];
+			}
+			else
+			{
+				m_entries[k--] = tail[j--];
+			}
+		}
+		
+		// if the same block got set more than once, the last one wins
+		int size = 0;
+		for( i=0; i<m_size; i++ )
+		{
+			if( i + 1 < m_size && m_entries[i] >>> ValueBits == m_entries[i + 1] >>> ValueBits )
+			{
+				continue;
+			}
+			m_entries[size++] = m_entries[i];
+		}
+		m_size = size;
+		m_numSorted = size;
+	}
+	
+	private static void sortByKey( long[] entries )
+	{
+		// NOTE: this is a bottom-up merge sort, since we need a stable sort to keep the last block at each coords
+		int size = entries.length;
+		long[] src = entries;
+		long[] dest = new long[size];
+		for( int width=1; width<size; width*=2 )
+		{
+			for( int lo=0; lo<size; lo+=width*2 )
+			{
+				int mid = Math.min( lo + width, size );
+				int hi = Math.min( lo + width*2, size );
+				int i = lo;
+				int j = mid;
+				int k = lo;
+				while( i < mid && j < hi )
+				{
+					if( src[j] >>> ValueBits < src[i] >>> ValueBits )
+					{
+						dest[k++] = src[j++];
+					}
+					else
+					{
+						dest[k++] = src[i++];
+					}
+				}
+				while( i < mid )
+				{
+					dest[k++] = src[i++];
+				}
+				while( j < hi )
+				{
+					dest[k++] = src[j++];
+				}
+			}
+			long[] temp = src;
+			src = dest;
+			dest = temp;
+		}
+		if( src != entries )
+		{
+			System.arraycopy( src, 0, entries, 0, size );
+		}
+	}
+	
+	private static long getKey( Coords coords )
+	{
+		if( !isInRange( coords.x ) || !isInRange( coords.y ) || !isInRange( coords.z ) )
+		{
+			throw new IllegalArgumentException( String.format( "Block coords (%d,%d,%d) are too far from the ship block!", coords.x, coords.y, coords.z ) );
+		}
+		
+		// NOTE: bias the coords so they're all positive, then the keys sort the same way as the coords
+		return ( (long)( coords.x + CoordBias ) << 32 ) | ( (long)( coords.y + CoordBias ) << 16 ) | ( coords.z + CoordBias );
+	}
+	
+	private static int getX( long key )
+	{
+		return (int)( ( key >>> 32 ) & 0xffff ) - CoordBias;
+	}
+	
+	private static int getY( long key )
+	{
+		return (int)( ( key >>> 16 ) & 0xffff ) - CoordBias;
+	}
+	
+	private static int getZ( long key )
+	{
+		return (int)( key & 0xffff ) - CoordBias;
+	}
+	
+	private static boolean isInRange( int val )
+	{
+		return val >= Short.MIN_VALUE && val <= Short.MAX_VALUE;
+	}
+}
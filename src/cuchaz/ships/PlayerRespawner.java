@@ -10,12 +10,6 @@
  ******************************************************************************/
 package cuchaz.ships;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -37,8 +31,8 @@ import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import net.minecraftforge.common.DimensionManager;
 import cuchaz.modsShared.Environment;
-import cuchaz.modsShared.Util;
 import cuchaz.modsShared.blocks.BlockMap;
+import cuchaz.modsShared.blocks.BoundingBoxInt;
 import cuchaz.modsShared.blocks.Coords;
 import cuchaz.ships.blocks.BlockBerth;
 import cuchaz.ships.gui.GuiString;
@@ -46,7 +40,7 @@ import cuchaz.ships.packets.PacketPlayerSleepInBerth;
 
 public class PlayerRespawner
 {
-	private static class BerthCoords
+	static class BerthCoords
 	{
 		int dimensionId;
 		UUID shipUuid;
@@ -127,9 +121,9 @@ public class PlayerRespawner
 			return ShipLocator.getShip( realWorld, this.shipUuid );
 		}
 
-		public void moveToShip( ShipWorld shipWorld, int x, int y, int z )
+		public void moveToShip( UUID shipUuid, int x, int y, int z )
 		{
-			this.shipUuid = shipWorld.getShip().getPersistentID();
+			this.shipUuid = shipUuid;
 			this.x = x;
 			this.y = y;
 			this.z = z;
@@ -146,16 +140,16 @@ public class PlayerRespawner
 	
 	private static Integer m_serverInstanceId;
 	private static Map<Integer,BerthCoords> m_sleepingBerths;
-	private static Map<String,BerthCoords> m_playerSavedBerths;
+	private static BerthDatabase m_playerSavedBerths;
 	
 	static
 	{
 		m_serverInstanceId = null;
 		m_sleepingBerths = new TreeMap<Integer,BerthCoords>();
-		m_playerSavedBerths = new TreeMap<String,BerthCoords>();
+		m_playerSavedBerths = null;
 	}
 	
-	private static Map<String,BerthCoords> getSavedBerths( WorldServer worldServer )
+	private static BerthDatabase getSavedBerths( WorldServer worldServer )
 	{
 		checkServerInstance( worldServer );
 		return m_playerSavedBerths;
@@ -166,9 +160,10 @@ public class PlayerRespawner
 		int currentServerInstanceId = System.identityHashCode( worldServer.getMinecraftServer() );
 		if( m_serverInstanceId == null || m_serverInstanceId != currentServerInstanceId )
 		{
+			m_serverInstanceId = currentServerInstanceId;
 			m_sleepingBerths.clear();
-			m_playerSavedBerths.clear();
-			loadBerths();
+			m_playerSavedBerths = new BerthDatabase( DimensionManager.getCurrentSaveRootDirectory() );
+			m_playerSavedBerths.load();
 		}
 	}
 
@@ -356,8 +351,9 @@ public class PlayerRespawner
 		}
 		
 		// save the berth coords
-		getSavedBerths( worldServer ).put( player.username, coords );
-		saveBerths();
+		BerthDatabase berths = getSavedBerths( worldServer );
+		berths.put( player.username, coords );
+		berths.save();
 		
 		// remove old spawn location
 		player.setSpawnChunk( null, false );
@@ -419,37 +415,36 @@ public class PlayerRespawner
 	{
 		// this is only called on the server
 		assert( Environment.isServer() );
-		Map<String,BerthCoords> berths = getSavedBerths( worldServer );
+		BerthDatabase berths = getSavedBerths( worldServer );
+		
+		// only look at the berths in the chunks under the ship
+		BoundingBoxInt box = shipWorld.getBoundingBox();
+		List<String> usernames = berths.getUsernamesInChunks(
+			worldServer.provider.dimensionId,
+			( shipBlock.x + box.minX ) >> 4, ( shipBlock.z + box.minZ ) >> 4,
+			( shipBlock.x + box.maxX ) >> 4, ( shipBlock.z + box.maxZ ) >> 4
+		);
 		
 		boolean changed = false;
-		for( Coords coords : shipWorld.coords() )
+		for( String username : usernames )
 		{
-			// is this block a berth head?
-			int blockId = shipWorld.getBlockId( coords );
-			if( blockId == Ships.m_blockBerth.blockID && BlockBerth.isBlockHeadOfBed( shipWorld.getBlockMetadata( coords ) ) )
+			// get the ship coords where the berth is now
+			BerthCoords berth = berths.get( username );
+			int x = berth.x - shipBlock.x;
+			int y = berth.y - shipBlock.y;
+			int z = berth.z - shipBlock.z;
+			
+			// did a berth head just launch into the ship here?
+			if( isBerthHead( shipWorld, x, y, z ) )
 			{
-				// this berth just launched into a ship
-				
-				// get the world coords where the berth used to be
-				int worldX = shipBlock.x + coords.x;
-				int worldY = shipBlock.y + coords.y;
-				int worldZ = shipBlock.z + coords.z;
-				
-				// update any spawn points
-				for( BerthCoords berth : berths.values() )
-				{
-					if( berth.equals( worldServer, worldX, worldY, worldZ ) )
-					{
-						berth.moveToShip( shipWorld, coords.x, coords.y, coords.z );
-						changed = true;
-					}
-				}
+				berths.moveToShip( username, shipWorld.getShip().getPersistentID(), x, y, z );
+				changed = true;
 			}
 		}
 		
 		if( changed )
 		{
-			saveBerths();
+			berths.save();
 		}
 	}
 	
@@ -457,117 +452,31 @@ public class PlayerRespawner
 	{
 		// this is only called on the server
 		assert( Environment.isServer() );
-		Map<String,BerthCoords> berths = getSavedBerths( worldServer );
+		BerthDatabase berths = getSavedBerths( worldServer );
 		
+		// only look at the berths on this ship
 		boolean changed = false;
-		for( Coords coords : shipWorld.coords() )
+		for( String username : berths.getUsernamesOnShip( shipWorld.getShip().getPersistentID() ) )
 		{
-			// is this block a berth head?
-			int blockId = shipWorld.getBlockId( coords );
-			if( blockId == Ships.m_blockBerth.blockID && BlockBerth.isBlockHeadOfBed( shipWorld.getBlockMetadata( coords ) ) )
+			BerthCoords berth = berths.get( username );
+			
+			// did this berth just dock to the world?
+			if( isBerthHead( shipWorld, berth.x, berth.y, berth.z ) )
 			{
-				// this berth just docked to the world
-				
-				// update any spawn points
-				for( BerthCoords berth : berths.values() )
-				{
-					if( berth.equals( shipWorld, coords.x, coords.y, coords.z ) )
-					{
-						Coords worldCoords = correspondence.get( coords );
-						berth.moveToWorld( worldCoords.x, worldCoords.y, worldCoords.z );
-						changed = true;
-					}
-				}
+				Coords worldCoords = correspondence.get( new Coords( berth.x, berth.y, berth.z ) );
+				berths.moveToWorld( username, worldCoords.x, worldCoords.y, worldCoords.z );
+				changed = true;
 			}
 		}
 		
 		if( changed )
 		{
-			saveBerths();
-		}
-	}
-	
-	private static File getSaveFile( )
-	{
-		return new File( DimensionManager.getCurrentSaveRootDirectory(), "berths.dat" );
-	}
-	
-	private static void saveBerths( )
-	{
-		File file = getSaveFile();
-		
-		DataOutputStream out = null;
-		try
-		{
-			out = new DataOutputStream( new FileOutputStream( file ) );
-			out.writeInt( m_playerSavedBerths.size() );
-			for( Map.Entry<String,BerthCoords> entry : m_playerSavedBerths.entrySet() )
-			{
-				String username = entry.getKey();
-				BerthCoords coords = entry.getValue();
-				
-				out.writeUTF( username );
-				out.writeInt( coords.dimensionId );
-				out.writeBoolean( coords.shipUuid != null );
-				if( coords.shipUuid != null )
-				{
-					// write in big-endian order
-					out.writeLong( coords.shipUuid.getMostSignificantBits() );
-					out.writeLong( coords.shipUuid.getLeastSignificantBits() );
-				}
-				out.writeInt( coords.x );
-				out.writeInt( coords.y );
-				out.writeInt( coords.z );
-			}
-		}
-		catch( IOException ex )
-		{
-			Ships.logger.error( ex, "Unable to save berths! Player spawn points on ships were not saved!" );
-		}
-		finally
-		{
-			Util.closeSilently( out );
+			berths.save();
 		}
 	}
 	
-	private static void loadBerths( )
+	private static boolean isBerthHead( ShipWorld shipWorld, int x, int y, int z )
 	{
-		File file = getSaveFile();
-		if( !file.exists() )
-		{
-			return;
-		}
-		
-		DataInputStream in = null;
-		try
-		{
-			in = new DataInputStream( new FileInputStream( file ) );
-			int numRecords = in.readInt();
-			for( int i=0; i<numRecords; i++ )
-			{
-				String username = in.readUTF();
-				BerthCoords coords = new BerthCoords();
-				coords.dimensionId = in.readInt();
-				boolean hasShipId = in.readBoolean();
-				if( hasShipId )
-				{
-					// read in big endian order
-					coords.shipUuid = new UUID( in.readLong(), in.readLong() );
-				}
-				coords.x = in.readInt();
-				coords.y = in.readInt();
-				coords.z = in.readInt();
-				
-				m_playerSavedBerths.put( username, coords );
-			}
-		}
-		catch( IOException ex )
-		{
-			Ships.logger.error( ex, "Unable to load berths! Player spawn points on ships were not loaded!" );
-		}
-		finally
-		{
-			Util.closeSilently( in );
-		}
+		return shipWorld.getBlockId( x, y, z ) == Ships.m_blockBerth.blockID && BlockBerth.isBlockHeadOfBed( shipWorld.getBlockMetadata( x, y, z ) );
 	}
-}
\ No newline at end of file
+}
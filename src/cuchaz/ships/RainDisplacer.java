@@ -10,12 +10,9 @@
  ******************************************************************************/
 package cuchaz.ships;
 
-import java.util.Iterator;
-
 import net.minecraft.block.Block;
 import cuchaz.modsShared.blocks.BlockSet;
 import cuchaz.modsShared.blocks.BlockSide;
-import cuchaz.modsShared.blocks.Coords;
 
 public class RainDisplacer extends Displacer
 {
@@ -28,21 +25,13 @@ public class RainDisplacer extends Displacer
 	{
 		// use the top envelope of the ship
 		BlockSet topEnvelope = m_ship.getShipWorld().getGeometry().getEnvelopes().getEnvelope( BlockSide.Top ).toBlockSet();
-		m_shouldBeDisplaced.clear();
-		m_ship.getCollider().getIntersectingWorldBlocks( m_shouldBeDisplaced, topEnvelope, -0.5, true );
-		
-		// filter out blocks that aren't air
-		Iterator<Coords> iter = m_shouldBeDisplaced.iterator();
-		while( iter.hasNext() )
-		{
-			Coords coords = iter.next();
-			int blockId = m_ship.worldObj.getBlockId( coords.x, coords.y, coords.z );
-			if( Block.blocksList[blockId] != null && blockId != m_block.blockID )
-			{
-				iter.remove();
-			}
-		}
-		
-		updateDisplacement();
+		updateDisplacement( topEnvelope, -0.5 );
+	}
+	
+	@Override
+	protected boolean shouldDisplace( int blockId )
+	{
+		// only displace air
+		return Block.blocksList[blockId] == null || blockId == m_block.blockID;
 	}
 }
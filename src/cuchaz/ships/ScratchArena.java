@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.util.Vec3;
+import cuchaz.modsShared.blocks.Coords;
+
+public class ScratchArena
+{
+	// a per-thread pool of mutable boxes, vectors, coords, and lists for code that runs for every block or entity every tick
+	// objects are handed out in stack order, so every push() has to be matched by a pop(), like this:
+	//
+	// ScratchArena arena = ScratchArena.get();
+	// arena.push();
+	// try
+	// {
+	//     AxisAlignedBB box = arena.box();
+	//     ...
+	// }
+	// finally
+	// {
+	//     arena.pop();
+	// }
+	//
+	// NOTE: anything handed out by the arena is only valid until the matching pop(), so never keep references to it
+	
+	private static final ThreadLocal<ScratchArena> Arenas = new ThreadLocal<ScratchArena>( )
+	{
+		@Override
+		protected ScratchArena initialValue( )
+		{
+			return new ScratchArena();
+		}
+	};
+	
+	private static final int NumPools = 5;
+	private static final int Boxes = 0;
+	private static final int Vectors = 1;
+	private static final int CoordsPool = 2;
+	private static final int Buffers = 3;
+	private static final int Lists = 4;
+	
+	private List<AxisAlignedBB> m_boxes;
+	private List<Vec3> m_vectors;
+	private List<Coords> m_coords;
+	private List<CoordsBuffer> m_buffers;
+	private List<List<Object>> m_lists;
+	private int[] m_used;
+	private int[] m_frames;
+	private int m_numFrames;
+	
+	public static ScratchArena get( )
+	{
+		return Arenas.get();
+	}
+	
+	private ScratchArena( )
+	{
+		m_boxes = new ArrayList<AxisAlignedBB>();
+		m_vectors = new ArrayList<Vec3>();
+		m_coords = new ArrayList<Coords>();
+		m_buffers = new ArrayList<CoordsBuffer>();
+		m_lists = new ArrayList<List<Object>>();
+		m_used = new int[NumPools];
+		m_frames = new int[NumPools*8];
+		m_numFrames = 0;
+	}
+	
+	public void push( )
+	{
+		if( ( m_numFrames + 1 )*NumPools > m_frames.length )
+		{
+			m_frames = Arrays.copyOf( m_frames, m_frames.length*2 );
+		}
+		System.arraycopy( m_used, 0, m_frames, m_numFrames*NumPools, NumPools );
+		m_numFrames++;
+	}
+	
+	public void pop( )
+	{
+		if( m_numFrames <= 0 )
+		{
+			throw new IllegalStateException( "Scratch arena pop() without a matching push()!" );
+		}
+		m_numFrames--;
+		
+		// don't hang on to references to entities and such
+		for( int i=m_frames[m_numFrames*NumPools + Lists]; i<m_used[Lists]; i++ )
+		{
+			m_lists.get( i ).clear();
+		}
+		
+		System.arraycopy( m_frames, m_numFrames*NumPools, m_used, 0, NumPools );
+	}
+	
+	public int getNumFrames( )
+	{
+		return m_numFrames;
+	}
+	
+	public AxisAlignedBB box( )
+	{
+		checkFrame();
+		if( m_used[Boxes] == m_boxes.size() )
+		{
+			m_boxes.add( AxisAlignedBB.getBoundingBox( 0, 0, 0, 0, 0, 0 ) );
+		}
+		return m_boxes.get( m_used[Boxes]++ );
+	}
+	
+	public AxisAlignedBB box( double minX, double minY, double minZ, double maxX, double maxY, double maxZ )
+	{
+		return box().setBounds( minX, minY, minZ, maxX, maxY, maxZ );
+	}
+	
+	public AxisAlignedBB box( AxisAlignedBB other )
+	{
+		AxisAlignedBB box = box();
+		box.setBB( other );
+		return box;
+	}
+	
+	public Vec3 vec( double x, double y, double z )
+	{
+		checkFrame();
+		if( m_used[Vectors] == m_vectors.size() )
+		{
+			m_vectors.add( Vec3.createVectorHelper( 0, 0, 0 ) );
+		}
+		Vec3 v = m_vectors.get( m_used[Vectors]++ );
+		v.xCoord = x;
+		v.yCoord = y;
+		v.zCoord = z;
+		return v;
+	}
+	
+	public Coords coords( )
+	{
+		checkFrame();
+		if( m_used[CoordsPool] == m_coords.size() )
+		{
+			m_coords.add( new Coords() );
+		}
+		return m_coords.get( m_used[CoordsPool]++ );
+	}
+	
+	public CoordsBuffer buffer( )
+	{
+		checkFrame();
+		if( m_used[Buffers] == m_buffers.size() )
+		{
+			m_buffers.add( new CoordsBuffer() );
+		}
+		CoordsBuffer buffer = m_buffers.get( m_used[Buffers]++ );
+		buffer.clear();
+		return buffer;
+	}
+	
+	@SuppressWarnings( "unchecked" )
+	public <T> List<T> list( )
+	{
+		checkFrame();
+		if( m_used[Lists] == m_lists.size() )
+		{
+			m_lists.add( new ArrayList<Object>() );
+		}
+		List<Object> list = m_lists.get( m_used[Lists]++ );
+		list.clear();
+		return (List<T>)list;
+	}
+	
+	private void checkFrame( )
+	{
+		if( m_numFrames <= 0 )
+		{
+			throw new IllegalStateException( "Scratch arena used without a push()!" );
+		}
+	}
+}
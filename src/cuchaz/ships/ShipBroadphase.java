@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.util.Arrays;
+
+import net.minecraft.util.MathHelper;
+import cuchaz.modsShared.blocks.BoundingBoxInt;
+import cuchaz.modsShared.blocks.Coords;
+
+public class ShipBroadphase
+{
+	// finds the ship blocks that could possibly run into a given set of world blocks during a move
+	// every other ship block is guaranteed not to touch any of the world blocks, so the collider can skip it
+	// usually, that's every block in the interior of the ship
+	
+	// the world bounding box of a rotated block reaches out at most sqrt(2)/2 from the block center
+	private static final double MaxBlockHalfSize = 0.71;
+	
+	// leave some room for roundoff error, including MathHelper's table-based trig functions
+	private static final double Slop = 0.01;
+	
+	private ShipGeometryIndex m_index;
+	private BoundingBoxInt m_box;
+	private boolean[] m_isCandidate;
+	private int m_numCandidates;
+	
+	public ShipBroadphase( ShipGeometry geometry )
+	{
+		m_index = geometry.getIndex();
+		m_box = geometry.getEnvelopes().getBoundingBox();
+		m_isCandidate = new boolean[m_index.getNumBlocks()];
+		m_numCandidates = 0;
+	}
+	
+	public int getNumBlocks( )
+	{
+		return m_index.getNumBlocks();
+	}
+	
+	public int getNumCandidates( )
+	{
+		return m_numCandidates;
+	}
+	
+	public boolean isCandidate( int index )
+	{
+		return m_isCandidate[index];
+	}
+	
+	public Coords getBlock( Coords out, int index )
+	{
+		return m_index.getBlock( out, index );
+	}
+	
+	public int findCandidates( EntityShip ship, CoordsBuffer worldBlocks, double dx, double dy, double dz, float dYaw )
+	{
+		return findCandidates(
+			worldBlocks,
+			ship.posX, ship.posY, ship.posZ, ship.rotationYaw,
+			ship.blocksToShipX( 0 ), ship.blocksToShipY( 0 ), ship.blocksToShipZ( 0 ),
+			dx, dy, dz, dYaw
+		);
+	}
+	
+	public int findCandidates( CoordsBuffer worldBlocks, double shipX, double shipY, double shipZ, float shipYaw,
+		double shipBlockX, double shipBlockY, double shipBlockZ, double dx, double dy, double dz, float dYaw )
+	{
+		Arrays.fill( m_isCandidate, false );
+		m_numCandidates = 0;
+		if( worldBlocks.isEmpty() || m_isCandidate.length == 0 )
+		{
+			return 0;
+		}
+		
+		// how far can any block center move? translation, plus the arc swept by the farthest block
+		double radius = getRadius( shipBlockX, shipBlockZ );
+		double dist = Math.sqrt( dx*dx + dz*dz ) + radius*Math.abs( Math.toRadians( dYaw ) );
+		
+		// a ship block can only reach a world block if its center is within this distance of the world block
+		double marginXZ = MaxBlockHalfSize + dist + Slop*( 1 + radius );
+		double marginY = 0.5 + Math.abs( dy ) + Slop;
+		
+		// the (rotated) square around the world block has a larger axis-aligned extent in blocks space
+		double yawRad = Math.toRadians( shipYaw );
+		double cos = Math.cos( yawRad );
+		double sin = Math.sin( yawRad );
+		double extentXZ = ( 0.5 + marginXZ )*( Math.abs( cos ) + Math.abs( sin ) );
+		double extentY = 0.5 + marginY;
+		
+		for( int i=0; i<worldBlocks.size(); i++ )
+		{
+			// transform the world block center into blocks space
+			double x = worldBlocks.getX( i ) + 0.5 - shipX;
+			double y = worldBlocks.getY( i ) + 0.5 - shipY;
+			double z = worldBlocks.getZ( i ) + 0.5 - shipZ;
+			double blockX = x*cos - z*sin - shipBlockX;
+			double blockY = y - shipBlockY;
+			double blockZ = x*sin + z*cos - shipBlockZ;
+			
+			// mark the ship blocks whose centers (at +0.5) are in range
+			m_numCandidates += m_index.markBoxQuery(
+				m_isCandidate,
+				MathHelper.floor_double( blockX - extentXZ - 0.5 ),
+				MathHelper.floor_double( blockY - extentY - 0.5 ),
+				MathHelper.floor_double( blockZ - extentXZ - 0.5 ),
+				MathHelper.floor_double( blockX + extentXZ - 0.5 ),
+				MathHelper.floor_double( blockY + extentY - 0.5 ),
+				MathHelper.floor_double( blockZ + extentXZ - 0.5 )
+			);
+		}
+		return m_numCandidates;
+	}
+	
+	public int findCandidates( EntityShip ship, EntityShip otherShip, CoordsBuffer otherBlocks, double dx, double dy, double dz, float dYaw )
+	{
+		return findCandidates(
+			otherShip.getShipWorld().getGeometry().getIndex(), otherBlocks,
+			ship.posX, ship.posY, ship.posZ, ship.rotationYaw,
+			ship.blocksToShipX( 0 ), ship.blocksToShipY( 0 ), ship.blocksToShipZ( 0 ),
+			otherShip.posX, otherShip.posY, otherShip.posZ, otherShip.rotationYaw,
+			otherShip.blocksToShipX( 0 ), otherShip.blocksToShipY( 0 ), otherShip.blocksToShipZ( 0 ),
+			dx, dy, dz, dYaw
+		);
+	}
+	
+	public int findCandidates( ShipGeometryIndex otherIndex, CoordsBuffer otherBlocks,
+		double shipX, double shipY, double shipZ, float shipYaw,
+		double shipBlockX, double shipBlockY, double shipBlockZ,
+		double otherX, double otherY, double otherZ, float otherYaw,
+		double otherBlockX, double otherBlockY, double otherBlockZ,
+		double dx, double dy, double dz, float dYaw )
+	{
+		// finds the ship blocks that could possibly run into blocks of another ship during a move
+		// all the work happens in the other ship's blocks space, since that's where the collider checks ship blocks
+		Arrays.fill( m_isCandidate, false );
+		m_numCandidates = 0;
+		otherBlocks.clear();
+		if( m_isCandidate.length == 0 || otherIndex.getNumBlocks() == 0 )
+		{
+			return 0;
+		}
+		
+		double yawRad = Math.toRadians( shipYaw );
+		double nextYawRad = Math.toRadians( shipYaw + dYaw );
+		double otherYawRad = Math.toRadians( otherYaw );
+		double otherCos = Math.cos( otherYawRad );
+		double otherSin = Math.sin( otherYawRad );
+		
+		// coarse pass: rotate the corners of our hull (at the current and next poses) into the other ship's blocks space
+		double minX = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double minZ = Double.POSITIVE_INFINITY;
+		double maxZ = Double.NEGATIVE_INFINITY;
+		for( int i=0; i<8; i++ )
+		{
+			boolean isNext = i >= 4;
+			double shipCornerX = ( ( i & 1 ) == 0 ? m_box.minX : m_box.maxX + 1 ) + shipBlockX;
+			double shipCornerZ = ( ( i & 2 ) == 0 ? m_box.minZ : m_box.maxZ + 1 ) + shipBlockZ;
+			double cos = Math.cos( isNext ? nextYawRad : yawRad );
+			double sin = Math.sin( isNext ? nextYawRad : yawRad );
+			double worldX = shipCornerX*cos + shipCornerZ*sin + shipX + ( isNext ? dx : 0 );
+			double worldZ = -shipCornerX*sin + shipCornerZ*cos + shipZ + ( isNext ? dz : 0 );
+			double x = ( worldX - otherX )*otherCos - ( worldZ - otherZ )*otherSin - otherBlockX;
+			double z = ( worldX - otherX )*otherSin + ( worldZ - otherZ )*otherCos - otherBlockZ;
+			minX = Math.min( minX, x );
+			maxX = Math.max( maxX, x );
+			minZ = Math.min( minZ, z );
+			maxZ = Math.max( maxZ, z );
+		}
+		double offsetY = shipY + shipBlockY - otherY - otherBlockY;
+		double minY = m_box.minY + offsetY + Math.min( 0, dy );
+		double maxY = m_box.maxY + 1 + offsetY + Math.max( 0, dy );
+		
+		// then get the other ship's blocks in the overlap
+		// NOTE: pad by one block, since the trajectory query does too
+		otherIndex.boxQuery(
+			otherBlocks,
+			MathHelper.floor_double( minX - 1 - Slop ),
+			MathHelper.floor_double( minY - 1 - Slop ),
+			MathHelper.floor_double( minZ - 1 - Slop ),
+			MathHelper.floor_double( maxX + 1 + Slop ),
+			MathHelper.floor_double( maxY + 1 + Slop ),
+			MathHelper.floor_double( maxZ + 1 + Slop )
+		);
+		if( otherBlocks.isEmpty() )
+		{
+			return 0;
+		}
+		
+		// get the tight bounds of the blocks we found
+		int otherMinX = Integer.MAX_VALUE;
+		int otherMinY = Integer.MAX_VALUE;
+		int otherMinZ = Integer.MAX_VALUE;
+		int otherMaxX = Integer.MIN_VALUE;
+		int otherMaxY = Integer.MIN_VALUE;
+		int otherMaxZ = Integer.MIN_VALUE;
+		for( int i=0; i<otherBlocks.size(); i++ )
+		{
+			otherMinX = Math.min( otherMinX, otherBlocks.getX( i ) );
+			otherMinY = Math.min( otherMinY, otherBlocks.getY( i ) );
+			otherMinZ = Math.min( otherMinZ, otherBlocks.getZ( i ) );
+			otherMaxX = Math.max( otherMaxX, otherBlocks.getX( i ) );
+			otherMaxY = Math.max( otherMaxY, otherBlocks.getY( i ) );
+			otherMaxZ = Math.max( otherMaxZ, otherBlocks.getZ( i ) );
+		}
+		
+		// exact pass: a ship block can only reach those blocks if its center is close enough to them
+		double radius = getRadius( shipBlockX, shipBlockZ );
+		double dist = Math.sqrt( dx*dx + dz*dz ) + radius*Math.abs( Math.toRadians( dYaw ) );
+		double marginXZ = 1 + MaxBlockHalfSize + dist + Slop*( 1 + radius );
+		double marginY = 1 + 0.5 + Math.abs( dy ) + Slop;
+		
+		// transform that region back into our blocks space
+		double cos = Math.cos( yawRad );
+		double sin = Math.sin( yawRad );
+		minX = Double.POSITIVE_INFINITY;
+		maxX = Double.NEGATIVE_INFINITY;
+		minZ = Double.POSITIVE_INFINITY;
+		maxZ = Double.NEGATIVE_INFINITY;
+		for( int i=0; i<4; i++ )
+		{
+			double otherCornerX = ( ( i & 1 ) == 0 ? otherMinX - marginXZ : otherMaxX + 1 + marginXZ ) + otherBlockX;
+			double otherCornerZ = ( ( i & 2 ) == 0 ? otherMinZ - marginXZ : otherMaxZ + 1 + marginXZ ) + otherBlockZ;
+			double worldX = otherCornerX*otherCos + otherCornerZ*otherSin + otherX;
+			double worldZ = -otherCornerX*otherSin + otherCornerZ*otherCos + otherZ;
+			double x = ( worldX - shipX )*cos - ( worldZ - shipZ )*sin - shipBlockX;
+			double z = ( worldX - shipX )*sin + ( worldZ - shipZ )*cos - shipBlockZ;
+			minX = Math.min( minX, x );
+			maxX = Math.max( maxX, x );
+			minZ = Math.min( minZ, z );
+			maxZ = Math.max( maxZ, z );
+		}
+		minY = otherMinY - marginY - offsetY;
+		maxY = otherMaxY + 1 + marginY - offsetY;
+		
+		// mark the ship blocks whose centers (at +0.5) are in range
+		m_numCandidates = m_index.markBoxQuery(
+			m_isCandidate,
+			MathHelper.floor_double( minX - 0.5 ),
+			MathHelper.floor_double( minY - 0.5 ),
+			MathHelper.floor_double( minZ - 0.5 ),
+			MathHelper.floor_double( maxX - 0.5 ),
+			MathHelper.floor_double( maxY - 0.5 ),
+			MathHelper.floor_double( maxZ - 0.5 )
+		);
+		return m_numCandidates;
+	}
+	
+	private double getRadius( double shipBlockX, double shipBlockZ )
+	{
+		// get the farthest distance in xz from the ship origin to any block center
+		double x = Math.max(
+			Math.abs( m_box.minX + 0.5 + shipBlockX ),
+			Math.abs( m_box.maxX + 0.5 + shipBlockX )
+		);
+		double z = Math.max(
+			Math.abs( m_box.minZ + 0.5 + shipBlockZ ),
+			Math.abs( m_box.maxZ + 0.5 + shipBlockZ )
+		);
+		return Math.sqrt( x*x + z*z );
+	}
+}
@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.minecraft.block.Block;
+import net.minecraft.util.MathHelper;
+import net.minecraft.util.Vec3;
+import cuchaz.modsShared.blocks.BlockSide;
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.config.BlockProperties;
+
+public class ShipBuoyancy
+{
+	// how much water the ship displaces (and where) at each water height, including the trapped air
+	// building this needs the full ShipDisplacement, so it gets saved with the ship instead of being rebuilt on every load
+	
+	private static class Layer
+	{
+		public double displacement;
+		public double x;
+		public double y;
+		public double z;
+		
+		public void add( Coords coords, double displacement )
+		{
+			this.displacement += displacement;
+			x += displacement*( coords.x + 0.5 );
+			y += displacement*( coords.y + 0.5 );
+			z += displacement*( coords.z + 0.5 );
+		}
+		
+		public void write( DataOutputStream out )
+		throws IOException
+		{
+			out.writeDouble( displacement );
+			out.writeDouble( x );
+			out.writeDouble( y );
+			out.writeDouble( z );
+		}
+		
+		public void read( DataInputStream in )
+		throws IOException
+		{
+			displacement = in.readDouble();
+			x = in.readDouble();
+			y = in.readDouble();
+			z = in.readDouble();
+		}
+	}
+	
+	private static final Layer EmptyLayer = new Layer();
+	
+	// NOTE: bump this when the layers change, so tables saved in the old layout don't validate
+	private static final int TableVersion = 2;
+	
+	private long m_hash;
+	private int m_minY;
+	private Layer[] m_surface;
+	private Layer[] m_underwater;
+	private Integer m_sinkWaterHeight;
+	
+	private ShipBuoyancy( )
+	{
+		// for read()
+	}
+	
+	public ShipBuoyancy( BlocksStorage blocks )
+	{
+		m_hash = computeHash( blocks );
+		
+		ShipDisplacement displacement = blocks.getDisplacement();
+		m_minY = displacement.getMinY();
+		int numLayers = displacement.getMaxY() + 2 - m_minY;
+		m_surface = new Layer[numLayers];
+		m_underwater = new Layer[numLayers];
+		for( int i=0; i<numLayers; i++ )
+		{
+			int y = m_minY + i;
+			m_surface[i] = new Layer();
+			for( Coords coords : displacement.getSurfaceBlocks( y ) )
+			{
+				m_surface[i].add( coords, getDisplacement( blocks, coords ) );
+			}
+			m_underwater[i] = new Layer();
+			for( Coords coords : displacement.getUnderwaterBlocks( y ) )
+			{
+				m_underwater[i].add( coords, getDisplacement( blocks, coords ) );
+			}
+		}
+		m_sinkWaterHeight = displacement.getLastFillY();
+	}
+	
+	public boolean isValid( BlocksStorage blocks )
+	{
+		// NOTE: the block count isn't enough, blocks can be swapped or the block properties config can change
+		return m_hash == computeHash( blocks );
+	}
+	
+	public int getMaxY( )
+	{
+		return m_minY + m_surface.length - 2;
+	}
+	
+	public double getSurfaceDisplacement( int y )
+	{
+		return getLayer( m_surface, y ).displacement;
+	}
+	
+	public double getUnderwaterDisplacement( int y )
+	{
+		return getLayer( m_underwater, y ).displacement;
+	}
+	
+	public Integer getSinkWaterHeight( )
+	{
+		return m_sinkWaterHeight;
+	}
+	
+	public double getDisplacedVolume( double waterHeight )
+	{
+		// get the surface block level
+		int surfaceLevel = MathHelper.floor_double( waterHeight );
+		double surfaceFraction = getBlockFractionSubmerged( surfaceLevel, waterHeight );
+		return getUnderwaterDisplacement( surfaceLevel ) + getSurfaceDisplacement( surfaceLevel )*surfaceFraction;
+	}
+	
+	public Vec3 getCenterOfBuoyancy( double waterHeight )
+	{
+		// the displacement-weighted centroid of everything underwater, in blocks space
+		int surfaceLevel = MathHelper.floor_double( waterHeight );
+		double surfaceFraction = getBlockFractionSubmerged( surfaceLevel, waterHeight );
+		Layer surface = getLayer( m_surface, surfaceLevel );
+		Layer underwater = getLayer( m_underwater, surfaceLevel );
+		double volume = underwater.displacement + surface.displacement*surfaceFraction;
+		if( volume <= 0 )
+		{
+			return null;
+		}
+		return Vec3.createVectorHelper(
+			( underwater.x + surface.x*surfaceFraction )/volume,
+			( underwater.y + surface.y*surfaceFraction )/volume,
+			( underwater.z + surface.z*surfaceFraction )/volume
+		);
+	}
+	
+	public byte[] write( )
+	{
+		try
+		{
+			ByteArrayOutputStream buf = new ByteArrayOutputStream();
+			GZIPOutputStream zipOut = new GZIPOutputStream( buf );
+			DataOutputStream out = new DataOutputStream( zipOut );
+			
+			out.writeLong( m_hash );
+			out.writeInt( m_minY );
+			out.writeInt( m_surface.length );
+			for( int i=0; i<m_surface.length; i++ )
+			{
+				m_surface[i].write( out );
+				m_underwater[i].write( out );
+			}
+			out.writeBoolean( m_sinkWaterHeight != null );
+			if( m_sinkWaterHeight != null )
+			{
+				out.writeInt( m_sinkWaterHeight );
+			}
+			
+			zipOut.finish();
+			out.close();
+			return buf.toByteArray();
+		}
+		catch( IOException ex )
+		{
+			throw new Error( ex );
+		}
+	}
+	
+	public static ShipBuoyancy read( byte[] data )
+	throws IOException
+	{
+		DataInputStream in = new DataInputStream( new GZIPInputStream( new ByteArrayInputStream( data ) ) );
+		try
+		{
+			ShipBuoyancy buoyancy = new ShipBuoyancy();
+			buoyancy.m_hash = in.readLong();
+			buoyancy.m_minY = in.readInt();
+			int numLayers = in.readInt();
+			if( numLayers < 0 || numLayers > data.length )
+			{
+				throw new IOException( "Invalid number of buoyancy layers: " + numLayers );
+			}
+			buoyancy.m_surface = new Layer[numLayers];
+			buoyancy.m_underwater = new Layer[numLayers];
+			for( int i=0; i<numLayers; i++ )
+			{
+				buoyancy.m_surface[i] = new Layer();
+				buoyancy.m_surface[i].read( in );
+				buoyancy.m_underwater[i] = new Layer();
+				buoyancy.m_underwater[i].read( in );
+			}
+			buoyancy.m_sinkWaterHeight = null;
+			if( in.readBoolean() )
+			{
+				buoyancy.m_sinkWaterHeight = in.readInt();
+			}
+			return buoyancy;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	private Layer getLayer( Layer[] layers, int y )
+	{
+		if( layers.length == 0 )
+		{
+			return EmptyLayer;
+		}
+		
+		// if y is too big, clamp it. ie when the ship is underwater, we get the max displacement
+		int i = Math.min( y, m_minY + layers.length - 1 ) - m_minY;
+		if( i < 0 )
+		{
+			return EmptyLayer;
+		}
+		return layers[i];
+	}
+	
+	private static long computeHash( BlocksStorage blocks )
+	{
+		// hash every block along with the properties the table was built from
+		// the coords and displacements cover the centers of buoyancy too, and the table version covers the layout
+		// NOTE: add up the block hashes, so the iteration order doesn't matter
+		long hash = blocks.getNumBlocks()*31L + TableVersion;
+		for( Coords coords : blocks.coords() )
+		{
+			Block block = Block.blocksList[blocks.getBlockId( coords )];
+			long blockHash = coords.x;
+			blockHash = blockHash*31 + coords.y;
+			blockHash = blockHash*31 + coords.z;
+			blockHash = blockHash*31 + blocks.getBlockId( coords );
+			blockHash = blockHash*31 + blocks.getBlockMeta( coords );
+			blockHash = blockHash*31 + ( BlockProperties.isWatertight( block ) ? 1 : 0 );
+			blockHash = blockHash*31 + Double.doubleToLongBits( BlockProperties.getDisplacement( block ) );
+			hash += mix( blockHash );
+		}
+		return hash;
+	}
+	
+	private static long mix( long hash )
+	{
+		// scramble the bits so the sum doesn't cancel out for nearby blocks
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+	
+	private static double getDisplacement( BlocksStorage blocks, Coords coords )
+	{
+		return BlockProperties.getDisplacement( Block.blocksList[blocks.getBlockId( coords )] );
+	}
+	
+	private static double getBlockFractionSubmerged( int y, double waterHeight )
+	{
+		// can use any NSEW side
+		return BlockSide.North.getFractionSubmerged( y, waterHeight );
+	}
+}
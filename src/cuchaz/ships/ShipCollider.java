@@ -11,7 +11,6 @@
 package cuchaz.ships;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import net.minecraft.block.Block;
@@ -24,45 +23,107 @@ import net.minecraft.util.AxisAlignedBB;
 import net.minecraft.util.MathHelper;
 import net.minecraft.util.MovingObjectPosition;
 import net.minecraft.util.Vec3;
+import net.minecraft.world.World;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
 import cuchaz.modsShared.Environment;
 import cuchaz.modsShared.blocks.BlockSet;
-import cuchaz.modsShared.blocks.BlockSide;
 import cuchaz.modsShared.blocks.BlockUtils;
 import cuchaz.modsShared.blocks.Coords;
-import cuchaz.modsShared.math.BoxCorner;
 import cuchaz.modsShared.math.RotatedBB;
 import cuchaz.ships.render.ShipDebugRenderInfo;
 
 public class ShipCollider
 {
-	private static class PossibleCollision
+	private static class CollisionResult
 	{
-		public Coords coords;
-		public AxisAlignedBB box;
-		
-		public PossibleCollision( Coords coords, AxisAlignedBB box )
-		{
-			this.coords = coords;
-			this.box = box;
-		}
+		public double scaling;
+		public int numCollidingBoxes;
 	}
 	
-	private static class CollisionResult
+	private static class ShipPair
 	{
+		// remembers the collision result against another ship until either ship moves or changes
+		// NOTE: blocks can change their collision boxes without changing the geometry (e.g. doors), so check the change counts too
+		public EntityShip ship;
+		public boolean isUsed;
 		public double scaling;
 		public int numCollidingBoxes;
+		
+		private ShipGeometry m_geometry;
+		private ShipGeometry m_otherGeometry;
+		private int m_numChanges;
+		private int m_otherNumChanges;
+		private double[] m_pose;
+		
+		public ShipPair( EntityShip ship )
+		{
+			this.ship = ship;
+			isUsed = false;
+			scaling = 1;
+			numCollidingBoxes = 0;
+			
+			m_geometry = null;
+			m_otherGeometry = null;
+			m_numChanges = 0;
+			m_otherNumChanges = 0;
+			m_pose = new double[12];
+		}
+		
+		public boolean matches( EntityShip self, double dx, double dy, double dz, float dYaw )
+		{
+			return m_geometry == self.getShipWorld().getGeometry()
+				&& m_otherGeometry == ship.getShipWorld().getGeometry()
+				&& m_numChanges == self.getShipWorld().getNumChanges()
+				&& m_otherNumChanges == ship.getShipWorld().getNumChanges()
+				&& m_pose[0] == self.posX && m_pose[1] == self.posY && m_pose[2] == self.posZ && m_pose[3] == self.rotationYaw
+				&& m_pose[4] == ship.posX && m_pose[5] == ship.posY && m_pose[6] == ship.posZ && m_pose[7] == ship.rotationYaw
+				&& m_pose[8] == dx && m_pose[9] == dy && m_pose[10] == dz && m_pose[11] == dYaw;
+		}
+		
+		public void save( EntityShip self, double dx, double dy, double dz, float dYaw )
+		{
+			m_geometry = self.getShipWorld().getGeometry();
+			m_otherGeometry = ship.getShipWorld().getGeometry();
+			m_numChanges = self.getShipWorld().getNumChanges();
+			m_otherNumChanges = ship.getShipWorld().getNumChanges();
+			m_pose[0] = self.posX;
+			m_pose[1] = self.posY;
+			m_pose[2] = self.posZ;
+			m_pose[3] = self.rotationYaw;
+			m_pose[4] = ship.posX;
+			m_pose[5] = ship.posY;
+			m_pose[6] = ship.posZ;
+			m_pose[7] = ship.rotationYaw;
+			m_pose[8] = dx;
+			m_pose[9] = dy;
+			m_pose[10] = dz;
+			m_pose[11] = dYaw;
+		}
 	}
 	
 	
 	private EntityShip m_ship;
+	private CoordsBuffer m_solidWorldBlocks;
+	private CollisionResult m_collisionResult;
+	private List<AxisAlignedBB> m_collisionBoxes;
+	private List<ShipPair> m_shipPairs;
+	private ShipTransform m_transform;
+	private ShipTransform m_otherTransform;
+	private ShipTransform m_nextTransform;
 	@SideOnly( Side.CLIENT )
 	private ShipDebugRenderInfo m_debugRenderInfo;
 	
 	public ShipCollider( EntityShip ship )
 	{
 		m_ship = ship;
+		m_solidWorldBlocks = new CoordsBuffer();
+		m_collisionResult = new CollisionResult();
+		m_collisionBoxes = new ArrayList<AxisAlignedBB>();
+		m_shipPairs = new ArrayList<ShipPair>();
+		m_transform = new ShipTransform( 0, 0, 0, 0, 0, 0, 0 );
+		m_otherTransform = new ShipTransform( 0, 0, 0, 0, 0, 0, 0 );
+		m_nextTransform = new ShipTransform( 0, 0, 0, 0, 0, 0, 0 );
 		
 		if( Environment.isClient() )
 		{
@@ -92,24 +153,31 @@ public class ShipCollider
 		box.maxY = y + m_ship.blocksToShipY( blocks.getBoundingBox().maxY + 1 );
 		box.maxZ = z + m_ship.blocksToShipZ( blocks.getBoundingBox().maxZ + 1 );
 		
-		// now rotate by the yaw
-		// UNDONE: optimize out the new
-		RotatedBB rotatedBox = new RotatedBB( box.copy(), yaw, x, z );
+		// now rotate the corners by the yaw around the ship origin, the same way shipToWorld() does
+		double yawRad = Math.toRadians( yaw );
+		double cos = Math.cos( yawRad );
+		double sin = Math.sin( yawRad );
+		double minX = box.minX - x;
+		double maxX = box.maxX - x;
+		double minZ = box.minZ - z;
+		double maxZ = box.maxZ - z;
 		
 		// compute the new xz bounds
-		box.minX = Integer.MAX_VALUE;
-		box.maxX = Integer.MIN_VALUE;
-		box.minZ = Integer.MAX_VALUE;
-		box.maxZ = Integer.MIN_VALUE;
-		Vec3 p = Vec3.createVectorHelper( 0, 0, 0 );
-		for( BoxCorner corner : BlockSide.Top.getCorners() )
-		{
-			rotatedBox.getCorner( p, corner );
+		box.minX = Double.POSITIVE_INFINITY;
+		box.maxX = Double.NEGATIVE_INFINITY;
+		box.minZ = Double.POSITIVE_INFINITY;
+		box.maxZ = Double.NEGATIVE_INFINITY;
+		for( int i=0; i<4; i++ )
+		{
+			double cornerX = ( i & 1 ) == 0 ? minX : maxX;
+			double cornerZ = ( i & 2 ) == 0 ? minZ : maxZ;
+			double worldX = cornerX*cos + cornerZ*sin + x;
+			double worldZ = -cornerX*sin + cornerZ*cos + z;
 			
-			box.minX = Math.min( box.minX, p.xCoord );
-			box.maxX = Math.max( box.maxX, p.xCoord );
-			box.minZ = Math.min( box.minZ, p.zCoord );
-			box.maxZ = Math.max( box.maxZ, p.zCoord );
+			box.minX = Math.min( box.minX, worldX );
+			box.maxX = Math.max( box.maxX, worldX );
+			box.minZ = Math.min( box.minZ, worldZ );
+			box.maxZ = Math.max( box.maxZ, worldZ );
 		}
 	}
 	
@@ -127,9 +195,23 @@ public class ShipCollider
 			return;
 		}
 		
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
+		{
+			onNearbyEntityMoved( arena, oldX, oldY, oldZ, oldYSize, entity );
+		}
+		finally
+		{
+			arena.pop();
+		}
+	}
+	
+	private void onNearbyEntityMoved( ScratchArena arena, double oldX, double oldY, double oldZ, double oldYSize, Entity entity )
+	{
 		// get a box for the entity's original positions
-		AxisAlignedBB oldEntityBox = AxisAlignedBB.getBoundingBox( 0, 0, 0, 0, 0, 0 );
-		getEntityBoxInBlockSpace( oldEntityBox, entity, Vec3.createVectorHelper( oldX, oldY, oldZ ) );
+		AxisAlignedBB oldEntityBox = arena.box();
+		getEntityBoxInBlockSpace( oldEntityBox, entity, oldX, oldY, oldZ );
 		
 		// to make collisions for standing on blocks more robust, if the old box is JUST beneath the top of a block, pop it up.
 		final double Epsilon = 1e-1;
@@ -141,7 +223,7 @@ public class ShipCollider
 		}
 		
 		// get a box for the entity's current position
-		AxisAlignedBB newEntityBox = AxisAlignedBB.getBoundingBox( 0, 0, 0, 0, 0, 0 );
+		AxisAlignedBB newEntityBox = arena.box();
 		getEntityBoxInBlockSpace( newEntityBox, entity );
 		
 		// adjust the old box for the old ySize
@@ -151,7 +233,11 @@ public class ShipCollider
 		
 		if( Environment.isClient() && ShipDebugRenderInfo.isDebugRenderingOn() && entity instanceof EntityLivingBase )
 		{
-			m_debugRenderInfo.setQueryBox( entity, oldEntityBox );
+			// NOTE: the debug renderer keeps the box, so give it a copy instead of the arena's box
+			m_debugRenderInfo.setQueryBox( entity, AxisAlignedBB.getBoundingBox(
+				oldEntityBox.minX, oldEntityBox.minY, oldEntityBox.minZ,
+				oldEntityBox.maxX, oldEntityBox.maxY, oldEntityBox.maxZ
+			) );
 		}
 		
 		// get the deltas in blocks coordinates
@@ -173,15 +259,17 @@ public class ShipCollider
 			
 			// reduce the movement delta to ensure player is always standing on a ship block
 			final double StepSize = 0.05;
-			while( dx != 0 && m_ship.getShipWorld().getGeometry().rangeQuery( oldEntityBox.getOffsetBoundingBox( dx + bufferX, -1.0, 0.0 ) ).isEmpty() )
+			ShipGeometry geometry = m_ship.getShipWorld().getGeometry();
+			AxisAlignedBB queryBox = arena.box();
+			while( dx != 0 && !geometry.hasBlocksInRange( offset( queryBox, oldEntityBox, dx + bufferX, -1.0, 0.0 ) ) )
             {
 				dx = stepTowardsZero( dx, StepSize );
             }
-			while( dz != 0 && m_ship.getShipWorld().getGeometry().rangeQuery( oldEntityBox.getOffsetBoundingBox( 0.0, -1.0, dz + bufferZ ) ).isEmpty() )
+			while( dz != 0 && !geometry.hasBlocksInRange( offset( queryBox, oldEntityBox, 0.0, -1.0, dz + bufferZ ) ) )
             {
 				dz = stepTowardsZero( dz, StepSize );
             }
-			while( dx != 0 && dz != 0 && m_ship.getShipWorld().getGeometry().rangeQuery( oldEntityBox.getOffsetBoundingBox( dx + bufferX, -1.0, dz + bufferZ ) ).isEmpty() )
+			while( dx != 0 && dz != 0 && !geometry.hasBlocksInRange( offset( queryBox, oldEntityBox, dx + bufferX, -1.0, dz + bufferZ ) ) )
             {
 				dx = stepTowardsZero( dx, StepSize );
 				dz = stepTowardsZero( dz, StepSize );
@@ -194,13 +282,16 @@ public class ShipCollider
 			newEntityBox.maxZ = oldEntityBox.maxZ + dz;
 		}
 		
-		List<PossibleCollision> possibleCollisions = trajectoryQuery( oldEntityBox, newEntityBox );
+		List<AxisAlignedBB> possibleCollisions = arena.list();
+		CoordsBuffer possibleCollisionCoords = arena.buffer();
+		trajectoryQuery( arena, possibleCollisions, possibleCollisionCoords, oldEntityBox, newEntityBox );
 		
 		if( Environment.isClient() && ShipDebugRenderInfo.isDebugRenderingOn() && entity instanceof EntityLivingBase )
 		{
-			for( PossibleCollision collision : possibleCollisions )
+			for( int i=0; i<possibleCollisionCoords.size(); i++ )
 			{
-				m_debugRenderInfo.addCollidedCoord( collision.coords );
+				// NOTE: the debug renderer keeps the coords, so don't give it the arena's coords
+				m_debugRenderInfo.addCollidedCoord( possibleCollisionCoords.get( new Coords(), i ) );
 			}
 		}
 		
@@ -215,23 +306,23 @@ public class ShipCollider
 		// y first, then x, then z
 		// different orders should give different collisions,
 		// but for a small enough d vector, the difference should be un-noticeable
-		for( PossibleCollision collision : possibleCollisions )
+		for( int i=0; i<possibleCollisions.size(); i++ )
 		{
-			dy = collision.box.calculateYOffset( oldEntityBox, dy );
+			dy = possibleCollisions.get( i ).calculateYOffset( oldEntityBox, dy );
 		}
 		dy = applyBackoff( dy, originalDy );
 		oldEntityBox.offset( 0, dy, 0 );
 		
-		for( PossibleCollision collision : possibleCollisions )
+		for( int i=0; i<possibleCollisions.size(); i++ )
 		{
-			dx = collision.box.calculateXOffset( oldEntityBox, dx );
+			dx = possibleCollisions.get( i ).calculateXOffset( oldEntityBox, dx );
 		}
 		dx = applyBackoff( dx, originalDx );
 		oldEntityBox.offset( dx, 0, 0 );
 		
-		for( PossibleCollision collision : possibleCollisions )
+		for( int i=0; i<possibleCollisions.size(); i++ )
 		{
-			dz = collision.box.calculateZOffset( oldEntityBox, dz );
+			dz = possibleCollisions.get( i ).calculateZOffset( oldEntityBox, dz );
 		}
 		dz = applyBackoff( dz, originalDz );
 		oldEntityBox.offset( 0, 0, dz );
@@ -245,7 +336,9 @@ public class ShipCollider
 			// pop up the target over the step height
 			newEntityBox.minY = oldEntityBox.minY + entity.stepHeight + EpsilonStairs;
 			newEntityBox.maxY = oldEntityBox.maxY + entity.stepHeight + EpsilonStairs;
-			possibleCollisions = trajectoryQuery( oldEntityBox, newEntityBox );
+			possibleCollisions.clear();
+			possibleCollisionCoords.clear();
+			trajectoryQuery( arena, possibleCollisions, possibleCollisionCoords, oldEntityBox, newEntityBox );
 			
 			// what's the rest of the distance to the target?
 			double originalStairsDx = newEntityBox.minX - oldEntityBox.minX;
@@ -256,26 +349,26 @@ public class ShipCollider
 			double stairsDy = originalStairsDy;
 			double stairsDz = originalStairsDz;
 			
-			AxisAlignedBB tempBox = oldEntityBox.copy();
+			AxisAlignedBB tempBox = arena.box( oldEntityBox );
 			if( !possibleCollisions.isEmpty() )
 			{
-				for( PossibleCollision collision : possibleCollisions )
+				for( int i=0; i<possibleCollisions.size(); i++ )
 				{
-					stairsDy = collision.box.calculateYOffset( tempBox, stairsDy );
+					stairsDy = possibleCollisions.get( i ).calculateYOffset( tempBox, stairsDy );
 				}
 				stairsDy = applyBackoff( stairsDy, originalDy );
 				tempBox.offset( 0, stairsDy, 0 );
 				
-				for( PossibleCollision collision : possibleCollisions )
+				for( int i=0; i<possibleCollisions.size(); i++ )
 				{
-					stairsDx = collision.box.calculateXOffset( tempBox, stairsDx );
+					stairsDx = possibleCollisions.get( i ).calculateXOffset( tempBox, stairsDx );
 				}
 				stairsDx = applyBackoff( stairsDx, originalDx );
 				tempBox.offset( stairsDx, 0, 0 );
 				
-				for( PossibleCollision collision : possibleCollisions )
+				for( int i=0; i<possibleCollisions.size(); i++ )
 				{
-					stairsDz = collision.box.calculateZOffset( tempBox, stairsDz );
+					stairsDz = possibleCollisions.get( i ).calculateZOffset( tempBox, stairsDz );
 				}
 				stairsDz = applyBackoff( stairsDz, originalDz );
 				tempBox.offset( 0, 0, stairsDz );
@@ -297,13 +390,12 @@ public class ShipCollider
 		}
 		
 		// translate back into world coordinates
-		Vec3 newPos = Vec3.createVectorHelper(
+		Vec3 newPos = arena.vec(
 			( oldEntityBox.minX + oldEntityBox.maxX )/2,
 			oldEntityBox.minY,
 			( oldEntityBox.minZ + oldEntityBox.maxZ )/2
 		);
-		m_ship.blocksToShip( newPos );
-		m_ship.shipToWorld( newPos );
+		getTransform().blocksToWorld( newPos );
 		
 		// update the entity properties
 		entity.setPosition( newPos.xCoord, newPos.yCoord + entity.yOffset - entity.ySize, newPos.zCoord );
@@ -371,20 +463,39 @@ public class ShipCollider
 	
 	public AxisAlignedBB getBlockBoundingBox( AxisAlignedBB box, Coords coords, EntityShip ship )
 	{
+		return getBlockBoundingBox( box, coords, getTransform(), ship );
+	}
+	
+	public AxisAlignedBB getBlockBoundingBox( AxisAlignedBB box, Coords coords, ShipTransform transform, EntityShip ship )
+	{
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
+		{
+			return getBlockBoundingBox( arena, box, coords, transform, ship );
+		}
+		finally
+		{
+			arena.pop();
+		}
+	}
+	
+	private AxisAlignedBB getBlockBoundingBox( ScratchArena arena, AxisAlignedBB box, Coords coords, ShipTransform transform, EntityShip ship )
+	{
+		// NOTE: the transform can be for a pose the ship isn't at yet, so don't read the pose from the ship
+		
 		// transform the block center into world space
-		Vec3 p = Vec3.createVectorHelper( coords.x + 0.5, coords.y + 0.5, coords.z + 0.5 );
-		m_ship.blocksToShip( p );
-		m_ship.shipToWorld( p );
+		Vec3 p = arena.vec( coords.x + 0.5, coords.y + 0.5, coords.z + 0.5 );
+		transform.blocksToWorld( p );
 		
 		if( ship != null )
 		{
 			// and then into ship space
-			ship.worldToShip( p );
-			ship.shipToBlocks( p );
+			ship.getTransform( m_otherTransform ).worldToBlocks( p );
 		}
 	
 		// compute the halfwidth of the bounding box
-		float yawRad = (float)Math.toRadians( m_ship.rotationYaw );
+		float yawRad = (float)Math.toRadians( transform.getYaw() );
 		if( ship != null )
 		{
 			yawRad -= (float)Math.toRadians( ship.rotationYaw );
@@ -402,77 +513,119 @@ public class ShipCollider
 		);
 	}
 	
-	public AxisAlignedBB getBlockWorldBoundingBox( AxisAlignedBB box, Coords coords, double shipX, double shipY, double shipZ, float shipYaw )
-	{
-		return getBlockBoundingBox( box, coords, shipX, shipY, shipZ, shipYaw, null );
-	}
-	
-	public AxisAlignedBB getBlockBoundingBox( AxisAlignedBB box, Coords coords, double shipX, double shipY, double shipZ, float shipYaw, EntityShip ship )
+	public void moveShip( double dx, double dy, double dz, float dYaw )
 	{
-		// temporarily place the ship at the new position
-		double oldX = m_ship.posX;
-		double oldY = m_ship.posY;
-		double oldZ = m_ship.posZ;
-		float oldYaw = m_ship.rotationYaw;
-		
-		// temporarily move the ship to the new location
-		m_ship.posX = shipX;
-		m_ship.posY = shipY;
-		m_ship.posZ = shipZ;
-		m_ship.rotationYaw = shipYaw;
-		
-		AxisAlignedBB blockWorldBox = getBlockBoundingBox( box, coords, ship );
-		
-		// restore the ship before anyone notices =P
-		m_ship.posX = oldX;
-		m_ship.posY = oldY;
-		m_ship.posZ = oldZ;
-		m_ship.rotationYaw = oldYaw;
-		
-		return blockWorldBox;
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
+		{
+			moveShip( arena, dx, dy, dz, dYaw );
+		}
+		finally
+		{
+			arena.pop();
+		}
 	}
 	
-	public void moveShip( double dx, double dy, double dz, float dYaw )
+	private void moveShip( ScratchArena arena, double dx, double dy, double dz, float dYaw )
 	{
 		// compute the scaling of the delta (between 0 and 1) that avoids collisions
 		double scaling = 1.0;
 		int numCollidingBoxes = 0;
-		CollisionResult collisionResult = new CollisionResult();
-		for( Coords coords : m_ship.getShipWorld().coords() )
+		CollisionResult collisionResult = m_collisionResult;
+		ShipBroadphase broadphase = m_ship.getShipWorld().getGeometry().getBroadphase();
+		Coords coords = arena.coords();
+		
+		// where would the ship move to?
+		// NOTE: build the transform once for the whole query instead of once per block
+		ShipTransform transform = getTransform();
+		ShipTransform nextTransform = m_nextTransform.set(
+			m_ship.posX + dx, m_ship.posY + dy, m_ship.posZ + dz, m_ship.rotationYaw + dYaw,
+			m_ship.blocksToShipX( 0 ), m_ship.blocksToShipY( 0 ), m_ship.blocksToShipZ( 0 )
+		);
+		
+		// NOTE: the scaling only scales the translation, so if the ship isn't translating, there's nothing to avoid
+		if( dx != 0 || dy != 0 || dz != 0 )
 		{
-			checkBlockCollision( collisionResult, coords, dx, dy, dz, dYaw );
-			if( collisionResult.scaling < 1.0 )
+			// broadphase: find the solid world blocks anywhere in the space swept by the ship hull,
+			// then only check the ship blocks that could actually reach one of them
+			AxisAlignedBB hullBox = arena.box();
+			AxisAlignedBB nextHullBox = arena.box();
+			computeShipBoundingBox( hullBox, m_ship.posX, m_ship.posY, m_ship.posZ, m_ship.rotationYaw );
+			computeShipBoundingBox( nextHullBox, m_ship.posX + dx, m_ship.posY + dy, m_ship.posZ + dz, m_ship.rotationYaw + dYaw );
+			union( hullBox, hullBox, nextHullBox );
+			grow( hullBox, 1, 1, 1 );
+			
+			m_solidWorldBlocks.clear();
+			getSolidWorldBlocks( m_solidWorldBlocks, hullBox );
+			broadphase.findCandidates( m_ship, m_solidWorldBlocks, dx, dy, dz, dYaw );
+			
+			for( int i=0; i<broadphase.getNumBlocks() && broadphase.getNumCandidates() > 0; i++ )
 			{
-				scaling = Math.min( scaling, collisionResult.scaling );
-				numCollidingBoxes += collisionResult.numCollidingBoxes;
+				if( !broadphase.isCandidate( i ) )
+				{
+					continue;
+				}
+				
+				checkBlockCollision( arena, collisionResult, broadphase.getBlock( coords, i ), transform, nextTransform, dx, dy, dz );
+				if( collisionResult.scaling < 1.0 )
+				{
+					scaling = Math.min( scaling, collisionResult.scaling );
+					numCollidingBoxes += collisionResult.numCollidingBoxes;
+				}
 			}
 		}
 		
 		// look for collisions with other ships
-		AxisAlignedBB nextShipBox = AxisAlignedBB.getBoundingBox( 0, 0, 0, 0, 0, 0 );
-		computeShipBoundingBox( nextShipBox, dx, dy, dz, dYaw );
-		AxisAlignedBB queryBox = m_ship.boundingBox.func_111270_a( nextShipBox );
-		@SuppressWarnings( "unchecked" )
-		List<EntityShip> ships = (List<EntityShip>)m_ship.worldObj.getEntitiesWithinAABB( EntityShip.class, queryBox );
-		for( EntityShip ship : ships )
-		{
-			if( ship == m_ship )
-			{
-				// skip self
-				continue;
-			}
-			
-			// handle inter-ship collisions
-			for( Coords coords : m_ship.getShipWorld().coords() )
+		for( int i=0; i<m_shipPairs.size(); i++ )
+		{
+			m_shipPairs.get( i ).isUsed = false;
+		}
+		if( dx != 0 || dy != 0 || dz != 0 )
+		{
+			AxisAlignedBB nextShipBox = arena.box();
+			computeShipBoundingBox( nextShipBox, m_ship.posX + dx, m_ship.posY + dy, m_ship.posZ + dz, m_ship.rotationYaw + dYaw );
+			AxisAlignedBB queryBox = union( arena.box(), m_ship.boundingBox, nextShipBox );
+			List<EntityShip> ships = arena.list();
+			ShipRegistry.get( m_ship.worldObj ).findShipsInBox( ships, queryBox );
+			CoordsBuffer otherBlocks = arena.buffer();
+			for( int i=0; i<ships.size(); i++ )
 			{
-				checkShipCollision( collisionResult, coords, dx, dy, dz, dYaw, ship );
-				if( collisionResult.scaling < 1.0 )
+				EntityShip ship = ships.get( i );
+				if( ship == m_ship || ship.getShipWorld() == null )
 				{
-					scaling = Math.min( scaling, collisionResult.scaling );
-					numCollidingBoxes += collisionResult.numCollidingBoxes;
+					// skip self, and ships that haven't loaded yet
+					continue;
+				}
+				
+				// if neither ship moved since last time, we already know the answer
+				ShipPair pair = getShipPair( ship );
+				if( !pair.matches( m_ship, dx, dy, dz, dYaw ) )
+				{
+					checkShipPair( arena, pair, otherBlocks, transform, nextTransform, dx, dy, dz, dYaw );
 				}
+				if( pair.scaling < 1.0 )
+				{
+					scaling = Math.min( scaling, pair.scaling );
+					numCollidingBoxes += pair.numCollidingBoxes;
+				}
+			}
+		}
+		
+		// forget about ships we're not near anymore
+		int numPairs = 0;
+		for( int i=0; i<m_shipPairs.size(); i++ )
+		{
+			ShipPair pair = m_shipPairs.get( i );
+			if( pair.isUsed )
+			{
+				m_shipPairs.set( numPairs++, pair );
 			}
 		}
+		while( m_shipPairs.size() > numPairs )
+		{
+			m_shipPairs.remove( m_shipPairs.size() - 1 );
+		}
 		
 		// avoid the collision
 		dx *= scaling;
@@ -495,10 +648,11 @@ public class ShipCollider
 		);
 		
 		// we just moved the ship. Push any colliding entities out of the way
-		@SuppressWarnings( "unchecked" )
-		List<Entity> entities = (List<Entity>)m_ship.worldObj.getEntitiesWithinAABB( Entity.class, m_ship.boundingBox );
-		for( Entity entity : entities )
+		List<Entity> entities = arena.list();
+		getEntitiesWithinAABB( entities, Entity.class, m_ship.boundingBox );
+		for( int i=0; i<entities.size(); i++ )
 		{
+			Entity entity = entities.get( i );
 			if( entity instanceof EntityShip )
 			{
 				// don't push ships here
@@ -518,23 +672,57 @@ public class ShipCollider
 	
 	public List<Entity> getRiders( )
 	{
-		// get all nearby entities
-		AxisAlignedBB checkBox = m_ship.boundingBox.expand( 1, 1, 1 );
-		@SuppressWarnings( "unchecked" )
-		List<Entity> entities = m_ship.worldObj.getEntitiesWithinAABB( Entity.class, checkBox );
-		
-		// remove any entities from the list not close enough to be considered riding
-		// also remove entities that are floating or moving upwards (e.g. jumping)
-		Iterator<Entity> iter = entities.iterator();
-		while( iter.hasNext() )
+		List<Entity> riders = new ArrayList<Entity>();
+		getRiders( riders );
+		return riders;
+	}
+	
+	public void getRiders( List<Entity> out )
+	{
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
 		{
-			Entity entity = iter.next();
-			if( entity instanceof EntityShip || !isEntityAboard( entity ) )
+			// get all nearby entities
+			out.clear();
+			getEntitiesWithinAABB( out, Entity.class, grow( arena.box( m_ship.boundingBox ), 1, 1, 1 ) );
+			
+			// remove any entities from the list not close enough to be considered riding
+			// also remove entities that are floating or moving upwards (e.g. jumping)
+			int numRiders = 0;
+			for( int i=0; i<out.size(); i++ )
+			{
+				Entity entity = out.get( i );
+				if( !( entity instanceof EntityShip ) && isEntityAboard( entity ) )
+				{
+					out.set( numRiders++, entity );
+				}
+			}
+			while( out.size() > numRiders )
 			{
-				iter.remove();
+				out.remove( out.size() - 1 );
 			}
 		}
-		return entities;
+		finally
+		{
+			arena.pop();
+		}
+	}
+	
+	public void getNearbyEntities( List<Entity> out )
+	{
+		// get everything close enough to touch the ship, riders included
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
+		{
+			out.clear();
+			getEntitiesWithinAABB( out, Entity.class, grow( arena.box( m_ship.boundingBox ), 1, 1, 1 ) );
+		}
+		finally
+		{
+			arena.pop();
+		}
 	}
 	
 	public boolean isEntityAboard( Entity entity )
@@ -548,83 +736,161 @@ public class ShipCollider
 	
 	public boolean isEntityStandingOnBlock( Entity entity )
 	{
-		// get the bounding box of the entity in block space
-		AxisAlignedBB checkBox = AxisAlignedBB.getBoundingBox( 0, 0, 0, 0, 0, 0 );
-		getEntityBoxInBlockSpace( checkBox, entity );
-		
-		// change the box so it only occupies space JUST UNDER the entity
-		checkBox.maxY = checkBox.minY;
-		checkBox.minY -= 0.1;
-		
-		// get the list of nearby boxes that could be colliding
-		List<AxisAlignedBB> nearbyBoxes = new ArrayList<AxisAlignedBB>();
-		for( Coords coords : m_ship.getShipWorld().getGeometry().rangeQuery( checkBox.expand( 0, 1, 0 ) ) )
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
+		{
+			// get the bounding box of the entity in block space
+			AxisAlignedBB checkBox = arena.box();
+			getEntityBoxInBlockSpace( checkBox, entity );
+			
+			// change the box so it only occupies space JUST UNDER the entity
+			checkBox.maxY = checkBox.minY;
+			checkBox.minY -= 0.1;
+			
+			// get the list of nearby boxes that could be colliding
+			CoordsBuffer nearbyBlocks = arena.buffer();
+			m_ship.getShipWorld().getGeometry().rangeQuery( nearbyBlocks, grow( arena.box( checkBox ), 0, 1, 0 ) );
+			List<AxisAlignedBB> nearbyBoxes = arena.list();
+			Coords coords = arena.coords();
+			for( int i=0; i<nearbyBlocks.size() && nearbyBoxes.isEmpty(); i++ )
+			{
+				getCollisionBoxesInBlockSpace( nearbyBoxes, nearbyBlocks.get( coords, i ), checkBox );
+			}
+			return !nearbyBoxes.isEmpty();
+		}
+		finally
 		{
-			getCollisionBoxesInBlockSpace( nearbyBoxes, coords, checkBox );
+			arena.pop();
 		}
-		return !nearbyBoxes.isEmpty();
 	}
 	
 	public boolean isEntityOnLadder( EntityLivingBase entity )
 	{
-		ShipWorld shipWorld = m_ship.getShipWorld();
-		AxisAlignedBB entityBox = AxisAlignedBB.getBoundingBox( 0, 0, 0, 0, 0, 0 );
-		getEntityBoxInBlockSpace( entityBox, entity );
-		for( Coords coords : shipWorld.getGeometry().rangeQuery( entityBox ) )
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
 		{
-			Block block = Block.blocksList[shipWorld.getBlockId( coords )];
-			if( block != null && block.isLadder( shipWorld, coords.x, coords.y, coords.z, entity ) )
+			ShipWorld shipWorld = m_ship.getShipWorld();
+			AxisAlignedBB entityBox = arena.box();
+			getEntityBoxInBlockSpace( entityBox, entity );
+			CoordsBuffer nearbyBlocks = arena.buffer();
+			shipWorld.getGeometry().rangeQuery( nearbyBlocks, entityBox );
+			for( int i=0; i<nearbyBlocks.size(); i++ )
 			{
-				return true;
+				int x = nearbyBlocks.getX( i );
+				int y = nearbyBlocks.getY( i );
+				int z = nearbyBlocks.getZ( i );
+				Block block = Block.blocksList[shipWorld.getBlockId( x, y, z )];
+				if( block != null && block.isLadder( shipWorld, x, y, z, entity ) )
+				{
+					return true;
+				}
 			}
+			return false;
+		}
+		finally
+		{
+			arena.pop();
 		}
-		return false;
 	}
 	
 	public boolean isColliding( AxisAlignedBB box )
 	{
-		// UNDONE: can optimize this by converting box into ship coords and doing a range query
-		
-		for( Coords coords : m_ship.getShipWorld().coords() )
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
 		{
-			AxisAlignedBB shipBlockBox = AxisAlignedBB.getBoundingBox( 0, 0, 0, 0, 0, 0 );
-			getBlockWorldBoundingBox( shipBlockBox, coords );
+			// convert the box into blocks space and get its axis-aligned bounds there
+			// NOTE: the ship only rotates around y, so just the four xz corners need rotating
+			ShipTransform transform = getTransform();
+			Vec3 p = arena.vec( 0, 0, 0 );
+			double minX = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double minZ = Double.POSITIVE_INFINITY;
+			double maxZ = Double.NEGATIVE_INFINITY;
+			for( int i=0; i<4; i++ )
+			{
+				p.xCoord = ( i & 1 ) == 0 ? box.minX : box.maxX;
+				p.yCoord = box.minY;
+				p.zCoord = ( i & 2 ) == 0 ? box.minZ : box.maxZ;
+				transform.worldToBlocks( p );
+				minX = Math.min( minX, p.xCoord );
+				maxX = Math.max( maxX, p.xCoord );
+				minZ = Math.min( minZ, p.zCoord );
+				maxZ = Math.max( maxZ, p.zCoord );
+			}
+			double minY = transform.shipToBlocksY( transform.worldToShipY( box.minY ) );
+			double maxY = transform.shipToBlocksY( transform.worldToShipY( box.maxY ) );
 			
-			if( shipBlockBox.intersectsWith( box ) )
+			// the world bounding box of a rotated block can reach up to one block away from its center in blocks space,
+			// so pad the query in x and z to be sure we get every candidate block
+			CoordsBuffer candidates = arena.buffer();
+			m_ship.getShipWorld().getGeometry().getIndex().boxQuery(
+				candidates,
+				MathHelper.floor_double( minX ) - 2,
+				MathHelper.floor_double( minY ),
+				MathHelper.floor_double( minZ ) - 2,
+				MathHelper.floor_double( maxX ) + 1,
+				MathHelper.floor_double( maxY ),
+				MathHelper.floor_double( maxZ ) + 1
+			);
+			
+			// then do the exact check on the candidates
+			Coords coords = arena.coords();
+			AxisAlignedBB shipBlockBox = arena.box();
+			for( int i=0; i<candidates.size(); i++ )
 			{
-				return true;
+				getBlockBoundingBox( shipBlockBox, candidates.get( coords, i ), transform, null );
+				if( shipBlockBox.intersectsWith( box ) )
+				{
+					return true;
+				}
 			}
+			return false;
+		}
+		finally
+		{
+			arena.pop();
 		}
-		return false;
 	}
 	
-	public List<MovingObjectPosition> lineSegmentQuery( final Vec3 from, Vec3 to )
+	public List<MovingObjectPosition> lineSegmentQuery( Vec3 from, Vec3 to )
 	{
-		// do a range query using the bounding box of the line segment
-		AxisAlignedBB box = AxisAlignedBB.getBoundingBox(
-			Math.min( from.xCoord, to.xCoord ),
-			Math.min( from.yCoord, to.yCoord ),
-			Math.min( from.zCoord, to.zCoord ),
-			Math.max( from.xCoord, to.xCoord ),
-			Math.max( from.yCoord, to.yCoord ),
-			Math.max( from.zCoord, to.zCoord )
-		);
-		BlockSet nearbyBlocks = m_ship.getShipWorld().getGeometry().rangeQuery( box );
-		
-		// sort the boxes by their line/box intersection distance to the "from" point
-		// throw out boxes that don't actually intersect the line segment
 		List<MovingObjectPosition> intersections = new ArrayList<MovingObjectPosition>();
-		for( Coords coords : nearbyBlocks )
+		lineSegmentQuery( intersections, from, to );
+		return intersections;
+	}
+	
+	public void lineSegmentQuery( List<MovingObjectPosition> out, Vec3 from, Vec3 to )
+	{
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
 		{
-			// get the intersection point with the line segment
-			Block block = Block.blocksList[m_ship.getShipWorld().getBlockId( coords )];
-			MovingObjectPosition intersection = block.collisionRayTrace( m_ship.getShipWorld(), coords.x, coords.y, coords.z, from, to );
-			if( intersection != null )
+			// get the blocks whose cubes actually touch the line segment
+			CoordsBuffer nearbyBlocks = arena.buffer();
+			m_ship.getShipWorld().getGeometry().segmentQuery( nearbyBlocks, from, to );
+			
+			// throw out boxes that don't actually intersect the line segment
+			Coords coords = arena.coords();
+			for( int i=0; i<nearbyBlocks.size(); i++ )
 			{
-				intersections.add( intersection );
+				nearbyBlocks.get( coords, i );
+				
+				// get the intersection point with the line segment
+				Block block = Block.blocksList[m_ship.getShipWorld().getBlockId( coords )];
+				MovingObjectPosition intersection = block.collisionRayTrace( m_ship.getShipWorld(), coords.x, coords.y, coords.z, from, to );
+				if( intersection != null )
+				{
+					out.add( intersection );
+				}
 			}
 		}
-		return intersections;
+		finally
+		{
+			arena.pop();
+		}
 	}
 	
 	public double getDistanceSqToEntity( Entity entity )
@@ -635,8 +901,7 @@ public class ShipCollider
 		
 		// get the point of the entity in blocks space
 		Vec3 p = Vec3.createVectorHelper( entity.posX, entity.posY, entity.posZ );
-		m_ship.worldToShip( p );
-		m_ship.shipToBlocks( p );
+		getTransform().worldToBlocks( p );
 		
 		double minDistSq = Double.POSITIVE_INFINITY;
 		for( Coords coords : m_ship.getShipWorld().coords() )
@@ -657,107 +922,223 @@ public class ShipCollider
 	
 	public void getIntersectingWorldBlocks( BlockSet worldBlocks, BlockSet shipBlocks, double epsilon, boolean includeAir )
 	{
-		// find the world blocks that intersect the trapped air blocks
-		AxisAlignedBB box = AxisAlignedBB.getBoundingBox( 0, 0, 0, 0, 0, 0 );
-		for( Coords coords : shipBlocks )
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
 		{
-			getBlockWorldBoundingBox( box, coords );
+			// find the world blocks that intersect the trapped air blocks
+			AxisAlignedBB box = arena.box();
+			for( Coords coords : shipBlocks )
+			{
+				getBlockWorldBoundingBox( box, coords );
+				
+				// grow the bounding box just a bit so we get more robust collisions
+				grow( box, epsilon, epsilon, epsilon );
+				
+				// query for all the world blocks that intersect it
+				BlockUtils.worldRangeQuery( worldBlocks, m_ship.worldObj, box, includeAir );
+			}
+		}
+		finally
+		{
+			arena.pop();
+		}
+	}
+	
+	private void getSolidWorldBlocks( CoordsBuffer out, AxisAlignedBB box )
+	{
+		// collect the world blocks that have any collision boxes inside the query box
+		// NOTE: blocks that don't collide with the whole box can't collide with any part of it either
+		int minX = MathHelper.floor_double( box.minX );
+		int minY = MathHelper.floor_double( box.minY );
+		int minZ = MathHelper.floor_double( box.minZ );
+		int maxX = MathHelper.floor_double( box.maxX );
+		int maxY = MathHelper.floor_double( box.maxY );
+		int maxZ = MathHelper.floor_double( box.maxZ );
+		for( int x=minX; x<=maxX; x++ )
+		{
+			for( int y=minY; y<=maxY; y++ )
+			{
+				for( int z=minZ; z<=maxZ; z++ )
+				{
+					Block block = Block.blocksList[m_ship.worldObj.getBlockId( x, y, z )];
+					if( block == null )
+					{
+						continue;
+					}
+					
+					m_collisionBoxes.clear();
+					block.addCollisionBoxesToList( m_ship.worldObj, x, y, z, box, m_collisionBoxes, null );
+					if( !m_collisionBoxes.isEmpty() )
+					{
+						out.add( x, y, z );
+					}
+				}
+			}
+		}
+	}
+	
+	private void checkBlockCollision( ScratchArena arena, CollisionResult result, Coords coords, ShipTransform transform, ShipTransform nextTransform, double dx, double dy, double dz )
+	{
+		// NOTE: called once per ship block, so give the scratch space back after each block
+		arena.push();
+		try
+		{
+			// get the current world bounding box for the ship block
+			AxisAlignedBB shipBlockBox = arena.box();
+			getBlockBoundingBox( arena, shipBlockBox, coords, transform, null );
 			
-			// grow the bounding box just a bit so we get more robust collisions
-			box = box.expand( epsilon, epsilon, epsilon );
+			// where would the ship block move to?
+			AxisAlignedBB nextShipBlockBox = arena.box();
+			getBlockBoundingBox( arena, nextShipBlockBox, coords, nextTransform, null );
 			
-			// query for all the world blocks that intersect it
-			BlockUtils.worldRangeQuery( worldBlocks, m_ship.worldObj, box, includeAir );
-		}
-	}
-	
-	private void checkBlockCollision( CollisionResult result, Coords coords, double dx, double dy, double dz, float dYaw )
-	{
-		// get the current world bounding box for the ship block
-		AxisAlignedBB shipBlockBox = AxisAlignedBB.getBoundingBox( 0, 0, 0, 0, 0, 0 );
-		getBlockWorldBoundingBox( shipBlockBox, coords );
-		
-		// where would the ship block move to?
-		double nextX = m_ship.posX + dx;
-		double nextY = m_ship.posY + dy;
-		double nextZ = m_ship.posZ + dz;
-		float nextYaw = m_ship.rotationYaw + dYaw;
-		AxisAlignedBB nextShipBlockBox = AxisAlignedBB.getBoundingBox( 0, 0, 0, 0, 0, 0 );
- 		getBlockWorldBoundingBox( nextShipBlockBox, coords, nextX, nextY, nextZ, nextYaw );
- 		
- 		// func_111270_a returns the bounding box of both boxes
- 		AxisAlignedBB combinedBlockBox = shipBlockBox.func_111270_a( nextShipBlockBox );
- 		
- 		// do a range query to get colliding world blocks
- 		BlockSet nearbyWorldBlocks = new BlockSet();
-		BlockUtils.worldRangeQuery( nearbyWorldBlocks, m_ship.worldObj, combinedBlockBox );
-        
-        // get the scaling that avoids the collision
-        result.scaling = 1;
-        List<AxisAlignedBB> worldBlockBoxes = new ArrayList<AxisAlignedBB>();
-        for( Coords worldCoords : nearbyWorldBlocks )
-		{
-        	// get the block collision boxes
-        	Block worldBlock = Block.blocksList[m_ship.worldObj.getBlockId( worldCoords.x, worldCoords.y, worldCoords.z )];
-        	worldBlockBoxes.clear();
-        	worldBlock.addCollisionBoxesToList(
-        		m_ship.worldObj,
-        		worldCoords.x, worldCoords.y, worldCoords.z,
-        		combinedBlockBox,
-        		worldBlockBoxes,
-        		null
-        	);
-        	
-        	// determine the scaling for this block
-        	double blockScaling = 1;
-        	for( AxisAlignedBB worldBlockBox : worldBlockBoxes )
-        	{
-        		blockScaling = Math.min( blockScaling, getScalingToAvoidCollision( shipBlockBox, dx, dy, dz, worldBlockBox ) );
-        	}
-        	
-        	// did this block impede us? and should we break it?
-        	if( blockScaling < 1 && worldBlock instanceof BlockFlower )
-        	{
-        		m_ship.worldObj.destroyBlock( worldCoords.x, worldCoords.y, worldCoords.z, false );
-        	}
-        	else
-        	{
-        		result.scaling = Math.min( result.scaling, blockScaling );
-        	}
-		}
-        result.numCollidingBoxes = nearbyWorldBlocks.size();
-	}
-	
-	private void checkShipCollision( CollisionResult result, Coords coords, double dx, double dy, double dz, float dYaw, EntityShip ship )
-	{
-		// NOTE: all inter-ship collision calculations take place in the other ship's coordinate system
-		
-		// get the current bounding box for the ship block
-		AxisAlignedBB shipBlockBox = AxisAlignedBB.getBoundingBox( 0, 0, 0, 0, 0, 0 );
-		getBlockBoundingBox( shipBlockBox, coords, ship );
-		
-		// where would the ship block move to?
-		double nextX = m_ship.posX + dx;
-		double nextY = m_ship.posY + dy;
-		double nextZ = m_ship.posZ + dz;
-		float nextYaw = m_ship.rotationYaw + dYaw;
-		AxisAlignedBB nextShipBlockBox = AxisAlignedBB.getBoundingBox( 0, 0, 0, 0, 0, 0 );
- 		getBlockBoundingBox( nextShipBlockBox, coords, nextX, nextY, nextZ, nextYaw, ship );
- 		
- 		// get the collisions with the other ship
- 		List<PossibleCollision> possibleCollisions = trajectoryQuery( shipBlockBox, nextShipBlockBox );
-        
-        // get the scaling that avoids the collisions
-        result.scaling = 1;
-        result.numCollidingBoxes = 0;
-        for( PossibleCollision possibleCollision : possibleCollisions )
+			AxisAlignedBB combinedBlockBox = union( arena.box(), shipBlockBox, nextShipBlockBox );
+			
+			// check all the (non-air) world blocks in range
+			result.scaling = 1;
+			result.numCollidingBoxes = 0;
+			List<AxisAlignedBB> worldBlockBoxes = arena.list();
+			int minX = MathHelper.floor_double( combinedBlockBox.minX );
+			int minY = MathHelper.floor_double( combinedBlockBox.minY );
+			int minZ = MathHelper.floor_double( combinedBlockBox.minZ );
+			int maxX = MathHelper.floor_double( combinedBlockBox.maxX );
+			int maxY = MathHelper.floor_double( combinedBlockBox.maxY );
+			int maxZ = MathHelper.floor_double( combinedBlockBox.maxZ );
+			for( int x=minX; x<=maxX; x++ )
+			{
+				for( int y=minY; y<=maxY; y++ )
+				{
+					for( int z=minZ; z<=maxZ; z++ )
+					{
+						if( m_ship.worldObj.isAirBlock( x, y, z ) )
+						{
+							continue;
+						}
+						result.numCollidingBoxes++;
+						
+						// get the block collision boxes
+						Block worldBlock = Block.blocksList[m_ship.worldObj.getBlockId( x, y, z )];
+						worldBlockBoxes.clear();
+						worldBlock.addCollisionBoxesToList( m_ship.worldObj, x, y, z, combinedBlockBox, worldBlockBoxes, null );
+						
+						// determine the scaling for this block
+						double blockScaling = 1;
+						for( int i=0; i<worldBlockBoxes.size(); i++ )
+						{
+							blockScaling = Math.min( blockScaling, getScalingToAvoidCollision( shipBlockBox, dx, dy, dz, worldBlockBoxes.get( i ) ) );
+						}
+						
+						// did this block impede us? and should we break it?
+						if( blockScaling < 1 && worldBlock instanceof BlockFlower )
+						{
+							m_ship.worldObj.destroyBlock( x, y, z, false );
+						}
+						else
+						{
+							result.scaling = Math.min( result.scaling, blockScaling );
+						}
+					}
+				}
+			}
+		}
+		finally
+		{
+			arena.pop();
+		}
+	}
+	
+	private ShipPair getShipPair( EntityShip ship )
+	{
+		for( int i=0; i<m_shipPairs.size(); i++ )
 		{
-        	double scaling = getScalingToAvoidCollision( shipBlockBox, dx, dy, dz, possibleCollision.box );
-       		result.scaling = Math.min( result.scaling, scaling );
-       		if( scaling < 1 )
-       		{
-       			result.numCollidingBoxes++;
-       		}
+			ShipPair pair = m_shipPairs.get( i );
+			if( pair.ship == ship )
+			{
+				pair.isUsed = true;
+				return pair;
+			}
+		}
+		ShipPair pair = new ShipPair( ship );
+		pair.isUsed = true;
+		m_shipPairs.add( pair );
+		return pair;
+	}
+	
+	private void checkShipPair( ScratchArena arena, ShipPair pair, CoordsBuffer otherBlocks, ShipTransform transform, ShipTransform nextTransform, double dx, double dy, double dz, float dYaw )
+	{
+		pair.save( m_ship, dx, dy, dz, dYaw );
+		pair.scaling = 1;
+		pair.numCollidingBoxes = 0;
+		
+		// coarse pass: only the ship blocks near the blocks of the other ship in the overlap of the hulls can collide
+		ShipBroadphase broadphase = m_ship.getShipWorld().getGeometry().getBroadphase();
+		if( broadphase.findCandidates( m_ship, pair.ship, otherBlocks, dx, dy, dz, dYaw ) <= 0 )
+		{
+			return;
+		}
+		
+		// exact pass: check just those blocks against the other ship
+		Coords coords = arena.coords();
+		CollisionResult collisionResult = m_collisionResult;
+		for( int i=0; i<broadphase.getNumBlocks(); i++ )
+		{
+			if( !broadphase.isCandidate( i ) )
+			{
+				continue;
+			}
+			
+			checkShipCollision( arena, collisionResult, broadphase.getBlock( coords, i ), transform, nextTransform, dx, dy, dz, pair.ship );
+			if( collisionResult.scaling < 1.0 )
+			{
+				pair.scaling = Math.min( pair.scaling, collisionResult.scaling );
+				pair.numCollidingBoxes += collisionResult.numCollidingBoxes;
+			}
+		}
+	}
+	
+	private void checkShipCollision( ScratchArena arena, CollisionResult result, Coords coords, ShipTransform transform, ShipTransform nextTransform, double dx, double dy, double dz, EntityShip ship )
+	{
+		// NOTE: called once per ship block, so give the scratch space back after each block
+		arena.push();
+		try
+		{
+			// NOTE: all inter-ship collision calculations take place in the other ship's coordinate system
+			
+			// get the current bounding box for the ship block
+			AxisAlignedBB shipBlockBox = arena.box();
+			getBlockBoundingBox( arena, shipBlockBox, coords, transform, ship );
+			
+			// where would the ship block move to?
+			AxisAlignedBB nextShipBlockBox = arena.box();
+			getBlockBoundingBox( arena, nextShipBlockBox, coords, nextTransform, ship );
+			
+			// get the collisions with the other ship's blocks
+			List<AxisAlignedBB> possibleCollisions = arena.list();
+			ship.getCollider().trajectoryQuery( arena, possibleCollisions, null, shipBlockBox, nextShipBlockBox );
+			
+			// rotate the delta into the other ship's coordinate system too
+			double yawRad = Math.toRadians( ship.rotationYaw );
+			double cos = Math.cos( yawRad );
+			double sin = Math.sin( yawRad );
+			double shipDx = dx*cos - dz*sin;
+			double shipDz = dx*sin + dz*cos;
+			
+			// get the scaling that avoids the collisions
+			result.scaling = 1;
+			result.numCollidingBoxes = 0;
+			for( int i=0; i<possibleCollisions.size(); i++ )
+			{
+				double scaling = getScalingToAvoidCollision( shipBlockBox, shipDx, dy, shipDz, possibleCollisions.get( i ) );
+				result.scaling = Math.min( result.scaling, scaling );
+				if( scaling < 1 )
+				{
+					result.numCollidingBoxes++;
+				}
+			}
+		}
+		finally
+		{
+			arena.pop();
 		}
 	}
 	
@@ -828,49 +1209,103 @@ public class ShipCollider
 		return d;
 	}
 	
-	private List<PossibleCollision> trajectoryQuery( AxisAlignedBB oldBox, AxisAlignedBB newBox )
+	private void trajectoryQuery( ScratchArena arena, List<AxisAlignedBB> outBoxes, CoordsBuffer outCoords, AxisAlignedBB oldBox, AxisAlignedBB newBox )
 	{
 		// get a bounding box containing the entire entity trajectory
-		AxisAlignedBB trajectoryBox = oldBox.func_111270_a( newBox );
+		AxisAlignedBB trajectoryBox = union( arena.box(), oldBox, newBox );
 		
 		// collect the boxes for the blocks in the trajectory box
-		List<AxisAlignedBB> boxes = new ArrayList<AxisAlignedBB>();
-		List<PossibleCollision> collisions = new ArrayList<PossibleCollision>();
 		if( m_ship != null && m_ship.getShipWorld() != null && m_ship.getShipWorld().getGeometry() != null )
 		// NOTE: if one of these things is null, the ship probably hasn't loaded yet, so there shouldn't be any collisions
 		{
-			for( Coords coords : m_ship.getShipWorld().getGeometry().rangeQuery( trajectoryBox.expand( 1, 1, 1 ) ) )
+			CoordsBuffer nearbyBlocks = arena.buffer();
+			m_ship.getShipWorld().getGeometry().rangeQuery( nearbyBlocks, grow( arena.box( trajectoryBox ), 1, 1, 1 ) );
 			// NOTE: expand trajectoryBox by 1 so we pick up boxes whose collision boxes are outside their bounding boxes
+			
+			Coords coords = arena.coords();
+			for( int i=0; i<nearbyBlocks.size(); i++ )
 			{
-				boxes.clear();
-				getCollisionBoxesInBlockSpace( boxes, coords, trajectoryBox );
-				for( AxisAlignedBB box : boxes )
+				int numBoxes = outBoxes.size();
+				getCollisionBoxesInBlockSpace( outBoxes, nearbyBlocks.get( coords, i ), trajectoryBox );
+				for( int j=numBoxes; outCoords != null && j<outBoxes.size(); j++ )
 				{
-					collisions.add( new PossibleCollision( coords, box ) );
+					outCoords.add( coords );
 				}
 			}
 		}
-		return collisions;
 	}
 	
 	private void getEntityBoxInBlockSpace( AxisAlignedBB box, Entity entity )
 	{
-		getEntityBoxInBlockSpace( box, entity, Vec3.createVectorHelper( entity.posX, entity.posY, entity.posZ ) );
+		getEntityBoxInBlockSpace( box, entity, entity.posX, entity.posY, entity.posZ );
 	}
 	
-	private void getEntityBoxInBlockSpace( AxisAlignedBB box, Entity entity, Vec3 pos )
+	private void getEntityBoxInBlockSpace( AxisAlignedBB box, Entity entity, double x, double y, double z )
 	{
-		// copy the vector since we need to modify it
-		pos = Vec3.createVectorHelper( pos.xCoord, pos.yCoord, pos.zCoord );
-		
 		// transform to block coords
-		m_ship.worldToShip( pos );
-		m_ship.shipToBlocks( pos );
+		ShipTransform transform = getTransform();
+		double blockX = transform.shipToBlocksX( transform.worldToShipX( x, z ) );
+		double blockY = transform.shipToBlocksY( transform.worldToShipY( y ) );
+		double blockZ = transform.shipToBlocksZ( transform.worldToShipZ( x, z ) );
 		
 		// set the box here
 		box.setBB( entity.boundingBox );
 		box.offset( -entity.posX, -entity.posY, -entity.posZ );
-		box.offset( pos.xCoord, pos.yCoord, pos.zCoord );
+		box.offset( blockX, blockY, blockZ );
+	}
+	
+	private <T extends Entity> void getEntitiesWithinAABB( List<T> out, Class<T> type, AxisAlignedBB box )
+	{
+		// same as World.getEntitiesWithinAABB(), but fills our list instead of allocating a new one
+		int minChunkX = MathHelper.floor_double( ( box.minX - World.MAX_ENTITY_RADIUS )/16.0 );
+		int maxChunkX = MathHelper.floor_double( ( box.maxX + World.MAX_ENTITY_RADIUS )/16.0 );
+		int minChunkZ = MathHelper.floor_double( ( box.minZ - World.MAX_ENTITY_RADIUS )/16.0 );
+		int maxChunkZ = MathHelper.floor_double( ( box.maxZ + World.MAX_ENTITY_RADIUS )/16.0 );
+		for( int chunkX=minChunkX; chunkX<=maxChunkX; chunkX++ )
+		{
+			for( int chunkZ=minChunkZ; chunkZ<=maxChunkZ; chunkZ++ )
+			{
+				if( m_ship.worldObj.getChunkProvider().chunkExists( chunkX, chunkZ ) )
+				{
+					m_ship.worldObj.getChunkFromChunkCoords( chunkX, chunkZ ).getEntitiesOfTypeWithinAAAB( type, box, out, null );
+				}
+			}
+		}
+	}
+	
+	private static AxisAlignedBB union( AxisAlignedBB out, AxisAlignedBB a, AxisAlignedBB b )
+	{
+		// same as func_111270_a(), but without allocating a new box
+		return out.setBounds(
+			Math.min( a.minX, b.minX ), Math.min( a.minY, b.minY ), Math.min( a.minZ, b.minZ ),
+			Math.max( a.maxX, b.maxX ), Math.max( a.maxY, b.maxY ), Math.max( a.maxZ, b.maxZ )
+		);
+	}
+	
+	private static AxisAlignedBB grow( AxisAlignedBB box, double x, double y, double z )
+	{
+		// same as expand(), but modifies the box instead of making a new one
+		return box.setBounds(
+			box.minX - x, box.minY - y, box.minZ - z,
+			box.maxX + x, box.maxY + y, box.maxZ + z
+		);
+	}
+	
+	private static AxisAlignedBB offset( AxisAlignedBB out, AxisAlignedBB box, double x, double y, double z )
+	{
+		// same as getOffsetBoundingBox(), but without allocating a new box
+		return out.setBounds(
+			box.minX + x, box.minY + y, box.minZ + z,
+			box.maxX + x, box.maxY + y, box.maxZ + z
+		);
+	}
+	
+	private ShipTransform getTransform( )
+	{
+		// the collider runs every tick and the ship moves every tick, so keep our own scratch copy of the pose
+		// instead of making EntityShip build a new snapshot each time
+		// NOTE: this changes when the ship moves, so don't hand it out
+		return m_ship.getTransform( m_transform );
 	}
 	
 	private double stepTowardsZero( double val, double epsilon )
@@ -12,8 +12,6 @@ package cuchaz.ships;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 import net.minecraft.util.MathHelper;
 import cuchaz.modsShared.blocks.BlockSet;
@@ -32,30 +30,133 @@ public class ShipDisplacement
 		boolean isTrapped;
 	}
 	
-	private static class DisplacementEntry
+	private static class LayeredBlockSet
 	{
-		public int numFillableBlocks;
-		public BlockSet trappedAir;
-		public BlockSet surfaceBlocks;
-		public BlockSet underwaterBlocks;
+		// a set of blocks that changes a little at each y, stored as the changes from one y to the next
+		// the full set for a y only gets built when someone asks for it
+		// NOTE: the last set built is a cache. It works as long as the client/server are single-threaded
 		
-		public DisplacementEntry( )
+		private BlockSet[] m_added;
+		private BlockSet[] m_removed;
+		private int m_numLayers;
+		private BlockSet m_view;
+		private int m_viewIndex;
+		
+		public LayeredBlockSet( int numLayers )
+		{
+			m_added = new BlockSet[numLayers];
+			m_removed = new BlockSet[numLayers];
+			m_numLayers = 0;
+			m_view = EmptySet;
+			m_viewIndex = -1;
+		}
+		
+		public void addLayer( BlockSet blocks )
+		{
+			// just save the differences from the last layer
+			BlockSet added = new BlockSet();
+			for( Coords coords : blocks )
+			{
+				if( !m_view.contains( coords ) )
+				{
+					added.add( coords );
+				}
+			}
+			BlockSet removed = new BlockSet();
+			for( Coords coords : m_view )
+			{
+				if( !blocks.contains( coords ) )
+				{
+					removed.add( coords );
+				}
+			}
+			m_added[m_numLayers] = added.isEmpty() ? null : added;
+			m_removed[m_numLayers] = removed.isEmpty() ? null : removed;
+			m_view = blocks;
+			m_viewIndex = m_numLayers;
+			m_numLayers++;
+		}
+		
+		public BlockSet get( int index )
 		{
-			numFillableBlocks = 0;
-			trappedAir = new BlockSet();
-			surfaceBlocks = new BlockSet();
-			underwaterBlocks = new BlockSet();
+			if( index < 0 )
+			{
+				return EmptySet;
+			}
+			if( index == m_viewIndex )
+			{
+				return m_view;
+			}
+			
+			// NOTE: don't change the old view, someone could still be using it
+			BlockSet view;
+			int viewIndex;
+			if( index > m_viewIndex || m_viewIndex - index > index + 1 )
+			{
+				// walking up from the current view (or from nothing) is shorter
+				if( index > m_viewIndex )
+				{
+					view = new BlockSet( m_view );
+					viewIndex = m_viewIndex;
+				}
+				else
+				{
+					view = new BlockSet();
+					viewIndex = -1;
+				}
+				while( viewIndex < index )
+				{
+					viewIndex++;
+					removeAll( view, m_removed[viewIndex] );
+					addAll( view, m_added[viewIndex] );
+				}
+			}
+			else
+			{
+				// walk down from the current view
+				view = new BlockSet( m_view );
+				viewIndex = m_viewIndex;
+				while( viewIndex > index )
+				{
+					removeAll( view, m_added[viewIndex] );
+					addAll( view, m_removed[viewIndex] );
+					viewIndex--;
+				}
+			}
+			m_view = view;
+			m_viewIndex = viewIndex;
+			return m_view;
+		}
+		
+		private static void addAll( BlockSet blocks, BlockSet delta )
+		{
+			if( delta != null )
+			{
+				blocks.addAll( delta );
+			}
+		}
+		
+		private static void removeAll( BlockSet blocks, BlockSet delta )
+		{
+			if( delta != null )
+			{
+				blocks.removeAll( delta );
+			}
 		}
 	}
 	
 	public static final Neighbors BoundaryNeighbors = Neighbors.Edges;
 	public static final Neighbors VoidBlockNeighbors = Neighbors.Faces;
-	private static final DisplacementEntry EmptyEntry = new DisplacementEntry();
+	private static final BlockSet EmptySet = new BlockSet();
 	
 	private BlockSet m_blocks;
 	private List<BlockSet> m_outerBoundaries;
 	private List<BlockSet> m_holes;
-	private TreeMap<Integer,DisplacementEntry> m_displacement;
+	private int m_minY;
+	private int[] m_numFillableBlocks;
+	private LayeredBlockSet m_trappedAir;
+	private LayeredBlockSet m_surfaceBlocks;
+	private LayeredBlockSet m_underwaterBlocks;
 	
 	public ShipDisplacement( BlockSet blocks )
 	{
@@ -94,7 +195,7 @@ public class ShipDisplacement
 	
 	public BlockSet getTrappedAir( int y )
 	{
-		return get( y ).trappedAir;
+		return m_trappedAir.get( getLayerIndex( y ) );
 	}
 	
 	public BlockSet getTrappedAirFromWaterHeight( int waterHeightInBlockSpace )
@@ -114,47 +215,43 @@ public class ShipDisplacement
 	
 	public BlockSet getSurfaceBlocks( int y )
 	{
-		return get( y ).surfaceBlocks;
+		return m_surfaceBlocks.get( getLayerIndex( y ) );
 	}
 	
 	public BlockSet getUnderwaterBlocks( int y )
 	{
-		return get( y ).underwaterBlocks;
+		return m_underwaterBlocks.get( getLayerIndex( y ) );
 	}
 	
 	public int getNumFillableBlocks( int y )
 	{
-		return get( y ).numFillableBlocks;
+		int index = getLayerIndex( y );
+		return index >= 0 ? m_numFillableBlocks[index] : 0;
 	}
 	
 	public Integer getLastFillY( )
 	{
-		for( Map.Entry<Integer,DisplacementEntry> entry : m_displacement.descendingMap().entrySet() )
+		for( int i=m_numFillableBlocks.length - 1; i>=0; i-- )
 		{
-			if( entry.getValue().numFillableBlocks > 0 )
+			if( m_numFillableBlocks[i] > 0 )
 			{
-				return entry.getKey() + 1; // + 1 to get to the top of the block
+				return m_minY + i + 1; // + 1 to get to the top of the block
 			}
 		}
 		return null;
 	}
 	
-	private DisplacementEntry get( int y )
+	private int getLayerIndex( int y )
 	{
-		if( m_displacement.isEmpty() )
+		if( m_numFillableBlocks.length == 0 )
 		{
-			return EmptyEntry;
+			return -1;
 		}
 		
 		// if y is too big, clamp it. ie when the ship is underwater, we get the max trapped air
-		y = Math.min( y, m_displacement.lastKey() );
+		y = Math.min( y, m_minY + m_numFillableBlocks.length - 1 );
 		
-		DisplacementEntry entry = m_displacement.get( y );
-		if( entry == null )
-		{
-			entry = EmptyEntry;
-		}
-		return entry;
+		return y - m_minY;
 	}
 	
 	private void computeBoundaryAndHoles( )
@@ -185,39 +282,54 @@ public class ShipDisplacement
 		int minY = getMinY();
 		int maxY = getMaxY();
 		
-		m_displacement = new TreeMap<Integer,DisplacementEntry>();
+		// NOTE: the sets for each y are mostly the same as the sets for the y below
+		// so build them one y at a time, and only keep the differences
+		int numLayers = Math.max( 0, maxY + 2 - minY );
+		m_minY = minY;
+		m_numFillableBlocks = new int[numLayers];
+		m_trappedAir = new LayeredBlockSet( numLayers );
+		m_surfaceBlocks = new LayeredBlockSet( numLayers );
+		m_underwaterBlocks = new LayeredBlockSet( numLayers );
 		
-		// pass 1: compute the displacement of ship blocks
 		BlockSetHeightIndex shipIndex = new BlockSetHeightIndex( m_blocks );
+		BlockSet shipUnderwaterBlocks = new BlockSet();
+		
+		BlockSetHeightIndex boundaryIndex = new BlockSetHeightIndex();
+		for( BlockSet blocks : m_outerBoundaries )
+		{
+			boundaryIndex.add( blocks );
+		}
+		List<ClassifiedSegment> boundarySegments = new ArrayList<ClassifiedSegment>();
+		
+		BlockSetHeightIndex holeIndex = new BlockSetHeightIndex();
+		for( BlockSet hole : m_holes )
+		{
+			holeIndex.add( hole );
+		}
+		BlockSet holeBlocks = new BlockSet();
+		BlockSet holeUnderwaterBlocks = new BlockSet();
+		
 		for( int y=minY; y<=maxY+1; y++ )
 		{
-			// build the displacement entry
-			DisplacementEntry entry = new DisplacementEntry();
-			m_displacement.put( y, entry );
+			BlockSet trappedAir = new BlockSet();
+			BlockSet surfaceBlocks = new BlockSet();
+			BlockSet underwaterBlocks = new BlockSet();
 			
+			// part 1: compute the displacement of ship blocks
 			// separate surface blocks from underwater blocks
 			BlockSet yBlocks = shipIndex.get( y );
 			if( yBlocks != null )
 			{
-				entry.surfaceBlocks.addAll( yBlocks );
+				surfaceBlocks.addAll( yBlocks );
 			}
-			if( y > minY )
+			underwaterBlocks.addAll( shipUnderwaterBlocks );
+			if( yBlocks != null )
 			{
-				DisplacementEntry lowerEntry = m_displacement.get( y - 1 );
-				entry.underwaterBlocks.addAll( lowerEntry.surfaceBlocks );
-				entry.underwaterBlocks.addAll( lowerEntry.underwaterBlocks );
+				// update the underwater blocks for next time
+				shipUnderwaterBlocks.addAll( yBlocks );
 			}
-		}
-		
-		// pass 2: analyze the outer boundary for trapped air
-		BlockSetHeightIndex boundaryIndex = new BlockSetHeightIndex();
-		for( BlockSet blocks : m_outerBoundaries )
-		{
-			boundaryIndex.add( blocks );
-		}
-		List<ClassifiedSegment> boundarySegments = new ArrayList<ClassifiedSegment>();
-		for( int y=minY; y<=maxY+1; y++ )
-		{
+			
+			// part 2: analyze the outer boundary for trapped air
 			// get all the segments at y
 			BlockSet blocksAtY = boundaryIndex.get( y );
 			if( blocksAtY != null )
@@ -283,50 +395,41 @@ public class ShipDisplacement
 				// handle any filled blocks
 				if( numFilledBlocks > 0 )
 				{
-					m_displacement.get( y - 1 ).numFillableBlocks = numFilledBlocks;
+					m_numFillableBlocks[y - 1 - minY] = numFilledBlocks;
 				}
 			}
 			
 			// compute the trapped air so far
-			DisplacementEntry entry = m_displacement.get( y );
 			for( ClassifiedSegment segment : boundarySegments )
 			{
 				if( segment.isTrapped )
 				{
-					entry.trappedAir.addAll( segment.segment );
-					entry.surfaceBlocks.addAll( segment.surfaceBlocks );
-					entry.underwaterBlocks.addAll( segment.underwaterBlocks );
+					trappedAir.addAll( segment.segment );
+					surfaceBlocks.addAll( segment.surfaceBlocks );
+					underwaterBlocks.addAll( segment.underwaterBlocks );
 				}
 			}
-		}
-		
-		// pass 3: analyze the holes
-		BlockSetHeightIndex holeIndex = new BlockSetHeightIndex();
-		for( BlockSet hole : m_holes )
-		{
-			holeIndex.add( hole );
-		}
-		BlockSet holeBlocks = new BlockSet();
-		BlockSet underwaterBlocks = new BlockSet();
-		for( int y=minY; y<=maxY+1; y++ )
-		{
-			DisplacementEntry entry = m_displacement.get( y );
 			
+			// part 3: analyze the holes
 			// add the blocks for this y
 			BlockSet layer = holeIndex.get( y );
 			if( layer != null )
 			{
 				holeBlocks.addAll( layer );
-				entry.surfaceBlocks.addAll( layer );
+				surfaceBlocks.addAll( layer );
 			}
-			entry.underwaterBlocks.addAll( underwaterBlocks );
-			entry.trappedAir.addAll( holeBlocks );
+			underwaterBlocks.addAll( holeUnderwaterBlocks );
+			trappedAir.addAll( holeBlocks );
 			
 			if( layer != null )
 			{
 				// update the underwater blocks for next time
-				underwaterBlocks.addAll( layer );
-			}			
+				holeUnderwaterBlocks.addAll( layer );
+			}
+			
+			m_trappedAir.addLayer( trappedAir );
+			m_surfaceBlocks.addLayer( surfaceBlocks );
+			m_underwaterBlocks.addLayer( underwaterBlocks );
 		}
 	}
 	
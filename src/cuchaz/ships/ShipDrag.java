@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import net.minecraft.util.Vec3;
+import cuchaz.modsShared.blocks.BlockSide;
+import cuchaz.modsShared.blocks.BoundingBoxInt;
+import cuchaz.modsShared.blocks.Coords;
+
+public class ShipDrag
+{
+	// drag only depends on which side of the ship is leading and how much of that side is underwater
+	// so compute the viscosity once for each side at a bunch of water heights, and interpolate between them
+	// NOTE: the xz sides fill up linearly so interpolating them is exact, but the top/bottom sides get smoothed out a bit
+	
+	public static final double AirViscosity = 0.1;
+	public static final double WaterViscosity = 3.0;
+	public static final double AngularViscosityScale = 0.06;
+	public static final int StepsPerBlock = 16;
+	
+	private ShipGeometry m_geometry;
+	private int m_minY;
+	private int m_maxY;
+	private double m_minWaterHeight;
+	private double[][] m_linearViscosity;
+	private double[] m_angularViscosity;
+	
+	public ShipDrag( ShipGeometry geometry, Vec3 centerOfMass )
+	{
+		m_geometry = geometry;
+		BoundingBoxInt box = geometry.getEnvelopes().getBoundingBox();
+		m_minY = box.minY;
+		m_maxY = box.maxY;
+		
+		// below the bottom of the ship, everything is in the air. Above the top, everything is underwater
+		// so those heights are all the table needs
+		m_minWaterHeight = m_minY - 1;
+		int numSteps = ( m_maxY - m_minY + 3 )*StepsPerBlock + 1;
+		
+		m_linearViscosity = new double[BlockSide.values().length][];
+		for( BlockSide side : BlockSide.values() )
+		{
+			m_linearViscosity[side.ordinal()] = buildTable( side, getYHistogram( side, null ), numSteps );
+		}
+		
+		// angular drag comes from the north side turning around x and the east side turning around z
+		double[] north = buildTable( BlockSide.North, getYHistogram( BlockSide.North, (int)centerOfMass.xCoord ), numSteps );
+		double[] east = buildTable( BlockSide.East, getYHistogram( BlockSide.East, (int)centerOfMass.zCoord ), numSteps );
+		m_angularViscosity = new double[numSteps];
+		for( int i=0; i<numSteps; i++ )
+		{
+			m_angularViscosity[i] = ( north[i] + east[i] )*AngularViscosityScale;
+		}
+	}
+	
+	public ShipGeometry getGeometry( )
+	{
+		return m_geometry;
+	}
+	
+	public double getLinearViscosity( BlockSide side, double waterHeight )
+	{
+		return lookup( m_linearViscosity[side.ordinal()], waterHeight );
+	}
+	
+	public double getAngularViscosity( double waterHeight )
+	{
+		return lookup( m_angularViscosity, waterHeight );
+	}
+	
+	private double[] getYHistogram( BlockSide side, Integer centerCoord )
+	{
+		// sum up the envelope blocks at each y, weighted by distance to the center if we're turning
+		double[] weights = new double[m_maxY - m_minY + 1];
+		for( Coords coords : m_geometry.getEnvelopes().getEnvelope( side ).toBlockSet() )
+		{
+			double weight = 1;
+			if( centerCoord != null )
+			{
+				weight = Math.abs( side.getU( coords.x, coords.y, coords.z ) - centerCoord );
+			}
+			weights[coords.y - m_minY] += weight;
+		}
+		return weights;
+	}
+	
+	private double[] buildTable( BlockSide side, double[] weights, int numSteps )
+	{
+		double[] table = new double[numSteps];
+		for( int i=0; i<numSteps; i++ )
+		{
+			double waterHeight = m_minWaterHeight + (double)i/StepsPerBlock;
+			double viscosity = 0;
+			for( int y=m_minY; y<=m_maxY; y++ )
+			{
+				double fractionSubmerged = side.getFractionSubmerged( y, waterHeight );
+				viscosity += ( fractionSubmerged*WaterViscosity + ( 1 - fractionSubmerged )*AirViscosity )*weights[y - m_minY];
+			}
+			table[i] = viscosity;
+		}
+		return table;
+	}
+	
+	private double lookup( double[] table, double waterHeight )
+	{
+		double step = ( waterHeight - m_minWaterHeight )*StepsPerBlock;
+		if( step <= 0 )
+		{
+			return table[0];
+		}
+		else if( step >= table.length - 1 )
+		{
+			return table[table.length - 1];
+		}
+		int i = (int)step;
+		double t = step - i;
+		return table[i]*( 1 - t ) + table[i + 1]*t;
+	}
+}
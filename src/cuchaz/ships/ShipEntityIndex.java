@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.minecraft.command.IEntitySelector;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.AxisAlignedBB;
+import cuchaz.modsShared.blocks.BlockMap;
+import cuchaz.modsShared.blocks.Coords;
+
+public class ShipEntityIndex
+{
+	// answers entity queries for the ship world (eg hoppers, pressure plates) in blocks space
+	// the entities are the ones on or near the ship, and they get sorted into a grid of cells
+	// so queries only have to look at the entities in the cells they touch
+	
+	private static final int CellSize = 4;
+	
+	private List<Entity> m_entities;
+	private double[] m_boxes;
+	private BlockMap<List<Integer>> m_cells;
+	private int[] m_queryIds;
+	private int m_queryId;
+	private double[] m_corners;
+	private Coords m_lookupCoords;
+	
+	public ShipEntityIndex( )
+	{
+		m_entities = new ArrayList<Entity>();
+		m_boxes = new double[6*16];
+		m_cells = new BlockMap<List<Integer>>();
+		m_queryIds = new int[16];
+		m_queryId = 0;
+		m_corners = new double[3*4];
+		m_lookupCoords = new Coords( 0, 0, 0 );
+	}
+	
+	public int getNumEntities( )
+	{
+		return m_entities.size();
+	}
+	
+	public void update( List<Entity> entities, ShipTransform transform )
+	{
+		m_entities.clear();
+		m_cells.clear();
+		if( m_boxes.length < entities.size()*6 )
+		{
+			m_boxes = new double[entities.size()*6*2];
+			m_queryIds = new int[entities.size()*2];
+		}
+		Arrays.fill( m_queryIds, 0 );
+		m_queryId = 0;
+		
+		for( Entity entity : entities )
+		{
+			if( entity instanceof EntityShip || entity.isDead )
+			{
+				continue;
+			}
+			int index = m_entities.size();
+			m_entities.add( entity );
+			
+			// the ship only rotates around y, so the box just needs its four xz corners rotated into blocks space
+			AxisAlignedBB box = entity.boundingBox;
+			for( int i=0; i<4; i++ )
+			{
+				m_corners[i*3 + 0] = ( i & 1 ) == 0 ? box.minX : box.maxX;
+				m_corners[i*3 + 1] = box.minY;
+				m_corners[i*3 + 2] = ( i & 2 ) == 0 ? box.minZ : box.maxZ;
+			}
+			transform.worldToBlocks( m_corners, 0, 4 );
+			int offset = index*6;
+			m_boxes[offset + 0] = Double.POSITIVE_INFINITY;
+			m_boxes[offset + 2] = Double.POSITIVE_INFINITY;
+			m_boxes[offset + 3] = Double.NEGATIVE_INFINITY;
+			m_boxes[offset + 5] = Double.NEGATIVE_INFINITY;
+			for( int i=0; i<4; i++ )
+			{
+				m_boxes[offset + 0] = Math.min( m_boxes[offset + 0], m_corners[i*3 + 0] );
+				m_boxes[offset + 2] = Math.min( m_boxes[offset + 2], m_corners[i*3 + 2] );
+				m_boxes[offset + 3] = Math.max( m_boxes[offset + 3], m_corners[i*3 + 0] );
+				m_boxes[offset + 5] = Math.max( m_boxes[offset + 5], m_corners[i*3 + 2] );
+			}
+			m_boxes[offset + 1] = m_corners[1];
+			m_boxes[offset + 4] = m_corners[1] + box.maxY - box.minY;
+			
+			// add the entity to every cell its box touches
+			int minCellX = getCell( m_boxes[offset + 0] );
+			int minCellY = getCell( m_boxes[offset + 1] );
+			int minCellZ = getCell( m_boxes[offset + 2] );
+			int maxCellX = getCell( m_boxes[offset + 3] );
+			int maxCellY = getCell( m_boxes[offset + 4] );
+			int maxCellZ = getCell( m_boxes[offset + 5] );
+			for( int x=minCellX; x<=maxCellX; x++ )
+			{
+				for( int y=minCellY; y<=maxCellY; y++ )
+				{
+					for( int z=minCellZ; z<=maxCellZ; z++ )
+					{
+						m_lookupCoords.set( x, y, z );
+						List<Integer> cell = m_cells.get( m_lookupCoords );
+						if( cell == null )
+						{
+							cell = new ArrayList<Integer>();
+							m_cells.put( new Coords( x, y, z ), cell );
+						}
+						cell.add( index );
+					}
+				}
+			}
+		}
+	}
+	
+	@SuppressWarnings( "unchecked" )
+	public <T> void getEntities( List<T> out, Class<?> type, AxisAlignedBB box, Entity excludedEntity, IEntitySelector selector )
+	{
+		// NOTE: an entity can be in more than one cell, so keep track of which ones we've already checked
+		m_queryId++;
+		
+		int minCellX = getCell( box.minX );
+		int minCellY = getCell( box.minY );
+		int minCellZ = getCell( box.minZ );
+		int maxCellX = getCell( box.maxX );
+		int maxCellY = getCell( box.maxY );
+		int maxCellZ = getCell( box.maxZ );
+		for( int x=minCellX; x<=maxCellX; x++ )
+		{
+			for( int y=minCellY; y<=maxCellY; y++ )
+			{
+				for( int z=minCellZ; z<=maxCellZ; z++ )
+				{
+					m_lookupCoords.set( x, y, z );
+					List<Integer> cell = m_cells.get( m_lookupCoords );
+					if( cell == null )
+					{
+						continue;
+					}
+					for( int index : cell )
+					{
+						if( m_queryIds[index] == m_queryId )
+						{
+							continue;
+						}
+						m_queryIds[index] = m_queryId;
+						
+						Entity entity = m_entities.get( index );
+						if( entity != excludedEntity
+							&& type.isInstance( entity )
+							&& intersects( index, box )
+							&& ( selector == null || selector.isEntityApplicable( entity ) ) )
+						{
+							out.add( (T)entity );
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	private boolean intersects( int index, AxisAlignedBB box )
+	{
+		// same test as AxisAlignedBB.intersectsWith()
+		int offset = index*6;
+		return m_boxes[offset + 3] > box.minX && m_boxes[offset + 0] < box.maxX
+			&& m_boxes[offset + 4] > box.minY && m_boxes[offset + 1] < box.maxY
+			&& m_boxes[offset + 5] > box.minZ && m_boxes[offset + 2] < box.maxZ;
+	}
+	
+	private static int getCell( double val )
+	{
+		return (int)Math.floor( val/CellSize );
+	}
+}
@@ -15,7 +15,6 @@ import net.minecraft.util.MathHelper;
 import net.minecraft.util.Vec3;
 import cuchaz.modsShared.blocks.BlockSet;
 import cuchaz.modsShared.blocks.BlockSide;
-import cuchaz.modsShared.blocks.Coords;
 import cuchaz.modsShared.blocks.Envelopes;
 import cuchaz.modsShared.math.BoxCorner;
 import cuchaz.modsShared.math.RotatedBB;
@@ -24,12 +23,16 @@ public class ShipGeometry
 {
 	private BlockSet m_blocks;
 	private Envelopes m_envelopes;
+	private ShipGeometryIndex m_index;
+	private ShipBroadphase m_broadphase;
 	
 	public ShipGeometry( BlockSet blocks )
 	{
 		m_blocks = blocks;
 		
 		m_envelopes = new Envelopes( m_blocks );
+		m_index = new ShipGeometryIndex( m_blocks );
+		m_broadphase = null;
 	}
 	
 	public BlockSet getBlocks( )
@@ -42,107 +45,185 @@ public class ShipGeometry
 		return m_envelopes;
 	}
 	
+	public ShipGeometryIndex getIndex( )
+	{
+		return m_index;
+	}
+	
+	public ShipBroadphase getBroadphase( )
+	{
+		// lazy instantiation
+		if( m_broadphase == null )
+		{
+			m_broadphase = new ShipBroadphase( this );
+		}
+		return m_broadphase;
+	}
+	
 	public BlockSet rangeQuery( RotatedBB box )
+	{
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
+		{
+			CoordsBuffer buffer = arena.buffer();
+			rangeQuery( buffer, box );
+			return buffer.toBlockSet();
+		}
+		finally
+		{
+			arena.pop();
+		}
+	}
+	
+	public void rangeQuery( CoordsBuffer out, RotatedBB box )
 	{
 		// get the bounds in y
 		int minY = MathHelper.floor_double( box.getMinY() );
 		int maxY = MathHelper.floor_double( box.getMaxY() );
 		
-		BlockSet blocks = new BlockSet();
-		for( int y=minY; y<=maxY; y++ )
-		{
-			// add up the blocks from the xz range query
-			blocks.addAll( xzRangeQuery( y, box ) );
-		}
-		return blocks;
+		rotatedRangeQuery( out, minY, maxY, box );
 	}
 	
 	public BlockSet xzRangeQuery( int y, RotatedBB box )
 	{
-		// UNDONE: we can probably optimize this using a better algorithm
-		
-		Vec3 p = Vec3.createVectorHelper( 0, 0, 0 );
-		
-		// get the bounds in x and z
-		int minX = Integer.MAX_VALUE;
-		int maxX = Integer.MIN_VALUE;
-		int minZ = Integer.MAX_VALUE;
-		int maxZ = Integer.MIN_VALUE;
-		for( BoxCorner corner : BlockSide.Top.getCorners() )
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
 		{
-			box.getCorner( p, corner );
-			int x = MathHelper.floor_double( p.xCoord );
-			int z = MathHelper.floor_double( p.zCoord );
-			
-			minX = Math.min( minX, x );
-			maxX = Math.max( maxX, x );
-			minZ = Math.min( minZ, z );
-			maxZ = Math.max( maxZ, z );
+			CoordsBuffer buffer = arena.buffer();
+			rotatedRangeQuery( buffer, y, y, box );
+			return buffer.toBlockSet();
 		}
-		
-		// search over the blocks in the range
-		Coords coords = new Coords();
-		BlockSet blocks = new BlockSet();
-		for( int x=minX; x<=maxX; x++ )
+		finally
 		{
-			for( int z=minZ; z<=maxZ; z++ )
+			arena.pop();
+		}
+	}
+	
+	private void rotatedRangeQuery( CoordsBuffer out, int minY, int maxY, RotatedBB box )
+	{
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
+		{
+			Vec3 p = arena.vec( 0, 0, 0 );
+			
+			// get the bounds in x and z
+			int minX = Integer.MAX_VALUE;
+			int maxX = Integer.MIN_VALUE;
+			int minZ = Integer.MAX_VALUE;
+			int maxZ = Integer.MIN_VALUE;
+			for( BoxCorner corner : BlockSide.Top.getCorners() )
 			{
-				coords.set( x, y, z );
-				
-				// is there even a block here?
-				if( m_blocks.contains( coords ) )
-				{
-					continue;
-				}
-				
-				if( blockIntersectsBoxXZ( x, z, box ) )
+				box.getCorner( p, corner );
+				int x = MathHelper.floor_double( p.xCoord );
+				int z = MathHelper.floor_double( p.zCoord );
+			
+				minX = Math.min( minX, x );
+				maxX = Math.max( maxX, x );
+				minZ = Math.min( minZ, z );
+				maxZ = Math.max( maxZ, z );
+			}
+			
+			// get the blocks in the axis-aligned bounds from the index
+			int start = out.size();
+			m_index.boxQuery( out, minX, minY, minZ, maxX, maxY, maxZ );
+			
+			// then throw out the blocks that aren't actually in the rotated box
+			int end = start;
+			for( int i=start; i<out.size(); i++ )
+			{
+				int x = out.getX( i );
+				int z = out.getZ( i );
+				if( blockIntersectsBoxXZ( x, z, box, p ) )
 				{
-					blocks.add( new Coords( coords ) );
+					out.set( end++, x, out.getY( i ), z );
 				}
 			}
+			out.truncate( end );
+		}
+		finally
+		{
+			arena.pop();
 		}
-		return blocks;
 	}
 	
 	public BlockSet rangeQuery( AxisAlignedBB box )
 	{
-		// get the block coordinate bounds for y
-		int minY = MathHelper.floor_double( box.minY );
-		int maxY = MathHelper.floor_double( box.maxY );
-		
-		BlockSet blocks = new BlockSet();
-		for( int y=minY; y<=maxY; y++ )
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
 		{
-			blocks.addAll( rangeQuery( box, y ) );
+			CoordsBuffer buffer = arena.buffer();
+			rangeQuery( buffer, box );
+			return buffer.toBlockSet();
 		}
-		return blocks;
+		finally
+		{
+			arena.pop();
+		}
+	}
+	
+	public void rangeQuery( CoordsBuffer out, AxisAlignedBB box )
+	{
+		// get the block coordinate bounds
+		m_index.boxQuery(
+			out,
+			MathHelper.floor_double( box.minX ),
+			MathHelper.floor_double( box.minY ),
+			MathHelper.floor_double( box.minZ ),
+			MathHelper.floor_double( box.maxX ),
+			MathHelper.floor_double( box.maxY ),
+			MathHelper.floor_double( box.maxZ )
+		);
 	}
 	
 	public BlockSet rangeQuery( AxisAlignedBB box, int y )
 	{
-		// get the block coordinate bounds for x and z
-		int minX = MathHelper.floor_double( box.minX );
-		int minZ = MathHelper.floor_double( box.minZ );
-		int maxX = MathHelper.floor_double( box.maxX );
-		int maxZ = MathHelper.floor_double( box.maxZ );
-		
-		Coords coords = new Coords();
-		BlockSet blocks = new BlockSet();
-		for( int x=minX; x<=maxX; x++ )
+		ScratchArena arena = ScratchArena.get();
+		arena.push();
+		try
 		{
-			for( int z=minZ; z<=maxZ; z++ )
-			{
-				coords.set( x, y, z );
-				if( m_blocks.contains( coords ) )
-				{
-					blocks.add( new Coords( coords ) );
-				}
-			}
+			CoordsBuffer buffer = arena.buffer();
+			m_index.boxQuery(
+				buffer,
+				MathHelper.floor_double( box.minX ),
+				y,
+				MathHelper.floor_double( box.minZ ),
+				MathHelper.floor_double( box.maxX ),
+				y,
+				MathHelper.floor_double( box.maxZ )
+			);
+			return buffer.toBlockSet();
+		}
+		finally
+		{
+			arena.pop();
 		}
-		return blocks;
 	}
 	
-	private boolean blockIntersectsBoxXZ( int x, int z, RotatedBB box )
+	public boolean hasBlocksInRange( AxisAlignedBB box )
+	{
+		// same as checking the range query for emptiness, but without collecting the blocks
+		return m_index.boxIntersects(
+			MathHelper.floor_double( box.minX ),
+			MathHelper.floor_double( box.minY ),
+			MathHelper.floor_double( box.minZ ),
+			MathHelper.floor_double( box.maxX ),
+			MathHelper.floor_double( box.maxY ),
+			MathHelper.floor_double( box.maxZ )
+		);
+	}
+	
+	public void segmentQuery( CoordsBuffer out, Vec3 from, Vec3 to )
+	{
+		// grow the blocks just a bit so segments that end exactly on a block face still pick up the block
+		final double Epsilon = 1e-6;
+		m_index.segmentQuery( out, from.xCoord, from.yCoord, from.zCoord, to.xCoord, to.yCoord, to.zCoord, Epsilon );
+	}
+	
+	private boolean blockIntersectsBoxXZ( int x, int z, RotatedBB box, Vec3 p )
 	{
 		// return true if any xz corner of the block is in the rotated box
 		double y = ( box.getMinY() + box.getMaxY() )/2;
@@ -150,12 +231,11 @@ public class ShipGeometry
 			|| box.containsPoint( x + 0, y, z + 1 )
 			|| box.containsPoint( x + 1, y, z + 0 )
 			|| box.containsPoint( x + 1, y, z + 1 )
-			|| anyCornerIsInBlockXZ( box, x, z );
+			|| anyCornerIsInBlockXZ( box, x, z, p );
 	}
 	
-	private boolean anyCornerIsInBlockXZ( RotatedBB box, int x, int z )
+	private boolean anyCornerIsInBlockXZ( RotatedBB box, int x, int z, Vec3 p )
 	{
-		Vec3 p = Vec3.createVectorHelper( 0, 0, 0 );
 		for( BoxCorner corner : BlockSide.Top.getCorners() )
 		{
 			box.getCorner( p, corner );
@@ -0,0 +1,489 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.Coords;
+
+public class ShipGeometryIndex
+{
+	// this is a bounding volume hierarchy over the ship blocks
+	// the tree is built once by splitting the blocks at the median of the longest axis,
+	// and then flattened into arrays so queries don't have to touch any objects
+	
+	private static final int LeafSize = 8;
+	private static final int MaxDepth = 64;
+	
+	private static final int MinX = 0;
+	private static final int MinY = 1;
+	private static final int MinZ = 2;
+	private static final int MaxX = 3;
+	private static final int MaxY = 4;
+	private static final int MaxZ = 5;
+	
+	// the client and the integrated server can both query the same ship, so each thread gets its own traversal stack
+	private static final ThreadLocal<int[]> Stacks = new ThreadLocal<int[]>( )
+	{
+		@Override
+		protected int[] initialValue( )
+		{
+			return new int[MaxDepth];
+		}
+	};
+	
+	private int m_numBlocks;
+	private int[] m_coords;
+	private int m_numNodes;
+	private int[] m_nodeBounds;
+	private int[] m_nodeStart;
+	private int[] m_nodeEnd;
+	private int[] m_nodeRight;
+	
+	
+	public ShipGeometryIndex( BlockSet blocks )
+	{
+		// copy the blocks into a flat array
+		m_numBlocks = blocks.size();
+		m_coords = new int[m_numBlocks*3];
+		int i = 0;
+		for( Coords coords : blocks )
+		{
+			m_coords[i++] = coords.x;
+			m_coords[i++] = coords.y;
+			m_coords[i++] = coords.z;
+		}
+		
+		// allocate the nodes
+		int numNodes = m_numBlocks > 0 ? countNodes( m_numBlocks ) : 0;
+		m_nodeBounds = new int[numNodes*6];
+		m_nodeStart = new int[numNodes];
+		m_nodeEnd = new int[numNodes];
+		m_nodeRight = new int[numNodes];
+		
+		// build the tree
+		m_numNodes = 0;
+		if( m_numBlocks > 0 )
+		{
+			build( 0, m_numBlocks );
+		}
+		assert( m_numNodes == numNodes );
+	}
+	
+	public int getNumBlocks( )
+	{
+		return m_numBlocks;
+	}
+	
+	public int getNumNodes( )
+	{
+		return m_numNodes;
+	}
+	
+	public void boxQuery( CoordsBuffer out, int minX, int minY, int minZ, int maxX, int maxY, int maxZ )
+	{
+		// NOTE: the bounds are inclusive
+		if( m_numNodes == 0 )
+		{
+			return;
+		}
+		
+		int[] stack = Stacks.get();
+		int stackSize = 0;
+		stack[stackSize++] = 0;
+		while( stackSize > 0 )
+		{
+			int node = stack[--stackSize];
+			int b = node*6;
+			
+			// prune nodes outside the query box
+			if( m_nodeBounds[b + MinX] > maxX || m_nodeBounds[b + MaxX] < minX
+				|| m_nodeBounds[b + MinY] > maxY || m_nodeBounds[b + MaxY] < minY
+				|| m_nodeBounds[b + MinZ] > maxZ || m_nodeBounds[b + MaxZ] < minZ )
+			{
+				continue;
+			}
+			
+			// if the node is entirely inside the query box, take all its blocks without looking at them
+			if( m_nodeBounds[b + MinX] >= minX && m_nodeBounds[b + MaxX] <= maxX
+				&& m_nodeBounds[b + MinY] >= minY && m_nodeBounds[b + MaxY] <= maxY
+				&& m_nodeBounds[b + MinZ] >= minZ && m_nodeBounds[b + MaxZ] <= maxZ )
+			{
+				for( int i=m_nodeStart[node]; i<m_nodeEnd[node]; i++ )
+				{
+					out.add( m_coords[i*3 + 0], m_coords[i*3 + 1], m_coords[i*3 + 2] );
+				}
+				continue;
+			}
+			
+			if( m_nodeRight[node] < 0 )
+			{
+				// leaf node, check the blocks one by one
+				for( int i=m_nodeStart[node]; i<m_nodeEnd[node]; i++ )
+				{
+					int x = m_coords[i*3 + 0];
+					int y = m_coords[i*3 + 1];
+					int z = m_coords[i*3 + 2];
+					if( x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ )
+					{
+						out.add( x, y, z );
+					}
+				}
+			}
+			else
+			{
+				// the left child is always stored right after its parent
+				stack[stackSize++] = m_nodeRight[node];
+				stack[stackSize++] = node + 1;
+			}
+		}
+	}
+	
+	public Coords getBlock( Coords out, int index )
+	{
+		// NOTE: blocks are indexed in tree order, not in the order of the original block set
+		out.set( m_coords[index*3 + 0], m_coords[index*3 + 1], m_coords[index*3 + 2] );
+		return out;
+	}
+	
+	public int markBoxQuery( boolean[] marks, int minX, int minY, int minZ, int maxX, int maxY, int maxZ )
+	{
+		// same as the box query, but flags the block indices instead of collecting coords
+		// returns the number of blocks that weren't already marked
+		// NOTE: the bounds are inclusive
+		if( m_numNodes == 0 )
+		{
+			return 0;
+		}
+		
+		int numMarked = 0;
+		int[] stack = Stacks.get();
+		int stackSize = 0;
+		stack[stackSize++] = 0;
+		while( stackSize > 0 )
+		{
+			int node = stack[--stackSize];
+			int b = node*6;
+			
+			if( m_nodeBounds[b + MinX] > maxX || m_nodeBounds[b + MaxX] < minX
+				|| m_nodeBounds[b + MinY] > maxY || m_nodeBounds[b + MaxY] < minY
+				|| m_nodeBounds[b + MinZ] > maxZ || m_nodeBounds[b + MaxZ] < minZ )
+			{
+				continue;
+			}
+			
+			if( m_nodeRight[node] < 0 )
+			{
+				for( int i=m_nodeStart[node]; i<m_nodeEnd[node]; i++ )
+				{
+					int x = m_coords[i*3 + 0];
+					int y = m_coords[i*3 + 1];
+					int z = m_coords[i*3 + 2];
+					if( !marks[i] && x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ )
+					{
+						marks[i] = true;
+						numMarked++;
+					}
+				}
+			}
+			else
+			{
+				stack[stackSize++] = m_nodeRight[node];
+				stack[stackSize++] = node + 1;
+			}
+		}
+		return numMarked;
+	}
+	
+	public boolean boxIntersects( int minX, int minY, int minZ, int maxX, int maxY, int maxZ )
+	{
+		// NOTE: the bounds are inclusive
+		if( m_numNodes == 0 )
+		{
+			return false;
+		}
+		
+		int[] stack = Stacks.get();
+		int stackSize = 0;
+		stack[stackSize++] = 0;
+		while( stackSize > 0 )
+		{
+			int node = stack[--stackSize];
+			int b = node*6;
+			
+			if( m_nodeBounds[b + MinX] > maxX || m_nodeBounds[b + MaxX] < minX
+				|| m_nodeBounds[b + MinY] > maxY || m_nodeBounds[b + MaxY] < minY
+				|| m_nodeBounds[b + MinZ] > maxZ || m_nodeBounds[b + MaxZ] < minZ )
+			{
+				continue;
+			}
+			
+			if( m_nodeRight[node] < 0 )
+			{
+				for( int i=m_nodeStart[node]; i<m_nodeEnd[node]; i++ )
+				{
+					int x = m_coords[i*3 + 0];
+					int y = m_coords[i*3 + 1];
+					int z = m_coords[i*3 + 2];
+					if( x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ )
+					{
+						return true;
+					}
+				}
+			}
+			else
+			{
+				stack[stackSize++] = m_nodeRight[node];
+				stack[stackSize++] = node + 1;
+			}
+		}
+		return false;
+	}
+	
+	public void segmentQuery( CoordsBuffer out, double fromX, double fromY, double fromZ, double toX, double toY, double toZ, double epsilon )
+	{
+		// returns all the blocks whose unit cube (grown by epsilon) touches the line segment
+		if( m_numNodes == 0 )
+		{
+			return;
+		}
+		
+		double dx = toX - fromX;
+		double dy = toY - fromY;
+		double dz = toZ - fromZ;
+		
+		int[] stack = Stacks.get();
+		int stackSize = 0;
+		stack[stackSize++] = 0;
+		while( stackSize > 0 )
+		{
+			int node = stack[--stackSize];
+			int b = node*6;
+			
+			boolean isHit = segmentIntersectsBox(
+				fromX, fromY, fromZ, dx, dy, dz,
+				m_nodeBounds[b + MinX] - epsilon, m_nodeBounds[b + MinY] - epsilon, m_nodeBounds[b + MinZ] - epsilon,
+				m_nodeBounds[b + MaxX] + 1 + epsilon, m_nodeBounds[b + MaxY] + 1 + epsilon, m_nodeBounds[b + MaxZ] + 1 + epsilon
+			);
+			if( !isHit )
+			{
+				continue;
+			}
+			
+			if( m_nodeRight[node] < 0 )
+			{
+				for( int i=m_nodeStart[node]; i<m_nodeEnd[node]; i++ )
+				{
+					int x = m_coords[i*3 + 0];
+					int y = m_coords[i*3 + 1];
+					int z = m_coords[i*3 + 2];
+					isHit = segmentIntersectsBox(
+						fromX, fromY, fromZ, dx, dy, dz,
+						x - epsilon, y - epsilon, z - epsilon,
+						x + 1 + epsilon, y + 1 + epsilon, z + 1 + epsilon
+					);
+					if( isHit )
+					{
+						out.add( x, y, z );
+					}
+				}
+			}
+			else
+			{
+				stack[stackSize++] = m_nodeRight[node];
+				stack[stackSize++] = node + 1;
+			}
+		}
+	}
+	
+	private static boolean segmentIntersectsBox( double fromX, double fromY, double fromZ, double dx, double dy, double dz,
+		double minX, double minY, double minZ, double maxX, double maxY, double maxZ )
+	{
+		// slab test, parameterized over the segment in [0,1]
+		double tmin = 0;
+		double tmax = 1;
+		
+		// x
+		if( dx == 0 )
+		{
+			if( fromX < minX || fromX > maxX )
+			{
+				return false;
+			}
+		}
+		else
+		{
+			double t1 = ( minX - fromX )/dx;
+			double t2 = ( maxX - fromX )/dx;
+			tmin = Math.max( tmin, Math.min( t1, t2 ) );
+			tmax = Math.min( tmax, Math.max( t1, t2 ) );
+			if( tmin > tmax )
+			{
+				return false;
+			}
+		}
+		
+		// y
+		if( dy == 0 )
+		{
+			if( fromY < minY || fromY > maxY )
+			{
+				return false;
+			}
+		}
+		else
+		{
+			double t1 = ( minY - fromY )/dy;
+			double t2 = ( maxY - fromY )/dy;
+			tmin = Math.max( tmin, Math.min( t1, t2 ) );
+			tmax = Math.min( tmax, Math.max( t1, t2 ) );
+			if( tmin > tmax )
+			{
+				return false;
+			}
+		}
+		
+		// z
+		if( dz == 0 )
+		{
+			if( fromZ < minZ || fromZ > maxZ )
+			{
+				return false;
+			}
+		}
+		else
+		{
+			double t1 = ( minZ - fromZ )/dz;
+			double t2 = ( maxZ - fromZ )/dz;
+			tmin = Math.max( tmin, Math.min( t1, t2 ) );
+			tmax = Math.min( tmax, Math.max( t1, t2 ) );
+			if( tmin > tmax )
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private int build( int start, int end )
+	{
+		int node = m_numNodes++;
+		
+		// compute the bounds of the blocks
+		int b = node*6;
+		m_nodeBounds[b + MinX] = Integer.MAX_VALUE;
+		m_nodeBounds[b + MinY] = Integer.MAX_VALUE;
+		m_nodeBounds[b + MinZ] = Integer.MAX_VALUE;
+		m_nodeBounds[b + MaxX] = Integer.MIN_VALUE;
+		m_nodeBounds[b + MaxY] = Integer.MIN_VALUE;
+		m_nodeBounds[b + MaxZ] = Integer.MIN_VALUE;
+		for( int i=start; i<end; i++ )
+		{
+			for( int axis=0; axis<3; axis++ )
+			{
+				int val = m_coords[i*3 + axis];
+				m_nodeBounds[b + axis] = Math.min( m_nodeBounds[b + axis], val );
+				m_nodeBounds[b + 3 + axis] = Math.max( m_nodeBounds[b + 3 + axis], val );
+			}
+		}
+		m_nodeStart[node] = start;
+		m_nodeEnd[node] = end;
+		
+		if( end - start <= LeafSize )
+		{
+			m_nodeRight[node] = -1;
+			return node;
+		}
+		
+		// split along the longest axis
+		int axis = 0;
+		int bestSize = -1;
+		for( int i=0; i<3; i++ )
+		{
+			int size = m_nodeBounds[b + 3 + i] - m_nodeBounds[b + i];
+			if( size > bestSize )
+			{
+				bestSize = size;
+				axis = i;
+			}
+		}
+		int mid = start + ( end - start )/2;
+		select( start, end, mid, axis );
+		
+		// the left child goes right after this node, then the right child after the whole left subtree
+		build( start, mid );
+		m_nodeRight[node] = build( mid, end );
+		return node;
+	}
+	
+	private static int countNodes( int numBlocks )
+	{
+		if( numBlocks <= LeafSize )
+		{
+			return 1;
+		}
+		int half = numBlocks/2;
+		return 1 + countNodes( half ) + countNodes( numBlocks - half );
+	}
+	
+	private void select( int start, int end, int k, int axis )
+	{
+		// quickselect: partially sort [start,end) so the k-th block along the axis is in place,
+		// with all the smaller blocks before it, and all the larger blocks after it
+		int lo = start;
+		int hi = end - 1;
+		while( lo < hi )
+		{
+			int pivot = m_coords[( ( lo + hi ) >>> 1 )*3 + axis];
+			int i = lo;
+			int j = hi;
+			while( i <= j )
+			{
+				while( m_coords[i*3 + axis] < pivot )
+				{
+					i++;
+				}
+				while( m_coords[j*3 + axis] > pivot )
+				{
+					j--;
+				}
+				if( i <= j )
+				{
+					swap( i, j );
+					i++;
+					j--;
+				}
+			}
+			if( k <= j )
+			{
+				hi = j;
+			}
+			else if( k >= i )
+			{
+				lo = i;
+			}
+			else
+			{
+				return;
+			}
+		}
+	}
+	
+	private void swap( int i, int j )
+	{
+		for( int axis=0; axis<3; axis++ )
+		{
+			int temp = m_coords[i*3 + axis];
+			m_coords[i*3 + axis] = m_coords[j*3 + axis];
+			m_coords[j*3 + axis] = temp;
+		}
+	}
+}
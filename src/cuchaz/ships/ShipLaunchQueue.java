@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import net.minecraft.world.World;
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.ShipLauncher.LaunchFlag;
+
+public class ShipLaunchQueue
+{
+	// analyzing a big ship takes a while, so do it on a worker thread against a snapshot of the blocks
+	// then finish the launch on the main thread, but only if nobody changed the blocks in the meantime
+	
+	private static class PendingLaunch
+	{
+		public ShipLauncher launcher;
+		public Future<?> future;
+		
+		public PendingLaunch( ShipLauncher launcher, Future<?> future )
+		{
+			this.launcher = launcher;
+			this.future = future;
+		}
+	}
+	
+	private static ExecutorService m_executor;
+	private static List<PendingLaunch> m_pendingLaunches;
+	
+	static
+	{
+		m_executor = Executors.newFixedThreadPool( Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 ), new ThreadFactory( )
+		{
+			@Override
+			public Thread newThread( Runnable runnable )
+			{
+				// NOTE: don't keep the server from shutting down
+				Thread thread = new Thread( runnable, "Ship launch analysis" );
+				thread.setDaemon( true );
+				return thread;
+			}
+		} );
+		m_pendingLaunches = new ArrayList<PendingLaunch>();
+	}
+	
+	public static int getNumPendingLaunches( )
+	{
+		return m_pendingLaunches.size();
+	}
+	
+	public static boolean submit( final ShipLauncher launcher )
+	{
+		// is this ship already being launched?
+		for( PendingLaunch pendingLaunch : m_pendingLaunches )
+		{
+			if( pendingLaunch.launcher.getWorld() == launcher.getWorld() && pendingLaunch.launcher.getShipBlock().equals( launcher.getShipBlock() ) )
+			{
+				return false;
+			}
+		}
+		
+		Future<?> future = m_executor.submit( new Runnable( )
+		{
+			@Override
+			public void run( )
+			{
+				launcher.analyze();
+			}
+		} );
+		m_pendingLaunches.add( new PendingLaunch( launcher, future ) );
+		return true;
+	}
+	
+	public static void update( )
+	{
+		// NOTE: call this from the main thread
+		Iterator<PendingLaunch> iter = m_pendingLaunches.iterator();
+		while( iter.hasNext() )
+		{
+			PendingLaunch pendingLaunch = iter.next();
+			if( !pendingLaunch.future.isDone() )
+			{
+				continue;
+			}
+			iter.remove();
+			
+			ShipLauncher launcher = pendingLaunch.launcher;
+			Coords shipBlock = launcher.getShipBlock();
+			try
+			{
+				pendingLaunch.future.get();
+			}
+			catch( InterruptedException ex )
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch( ExecutionException ex )
+			{
+				Ships.logger.warning( ex.getCause(), "Unable to analyze ship at (%d,%d,%d)! Launch cancelled.", shipBlock.x, shipBlock.y, shipBlock.z );
+				continue;
+			}
+			
+			if( launcher.isStale() )
+			{
+				Ships.logger.warning( "Ship at (%d,%d,%d) changed while it was being launched! Launch cancelled.", shipBlock.x, shipBlock.y, shipBlock.z );
+			}
+			else if( launcher.isLaunchable() )
+			{
+				launcher.launch();
+			}
+			else
+			{
+				// debug info
+				Ships.logger.warning(
+					"Server can't launch ship at: (%d,%d,%d)",
+					shipBlock.x, shipBlock.y, shipBlock.z
+				);
+				for( LaunchFlag flag : LaunchFlag.values() )
+				{
+					Ships.logger.warning( "\t" + flag.name() + ": " + launcher.getLaunchFlag( flag ) );
+				}
+			}
+		}
+	}
+	
+	public static void onWorldUnloaded( World world )
+	{
+		// just forget about any launches in this world. the workers only touch the snapshots
+		Iterator<PendingLaunch> iter = m_pendingLaunches.iterator();
+		while( iter.hasNext() )
+		{
+			PendingLaunch pendingLaunch = iter.next();
+			if( pendingLaunch.launcher.getWorld() == world )
+			{
+				pendingLaunch.future.cancel( false );
+				iter.remove();
+			}
+		}
+	}
+}
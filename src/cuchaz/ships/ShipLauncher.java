@@ -17,6 +17,7 @@ import java.util.Map;
 import net.minecraft.block.Block;
 import net.minecraft.block.material.Material;
 import net.minecraft.entity.EntityHanging;
+import net.minecraft.network.packet.Packet250CustomPayload;
 import net.minecraft.util.Vec3;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
@@ -73,13 +74,20 @@ public class ShipLauncher
 	private ShipType m_shipType;
 	private BlockSet m_blocks; // NOTE: blocks are in world coordinates
 	private List<Boolean> m_launchFlags;
+	private BlocksStorage m_storage;
+	private BlockSet m_boundary; // NOTE: blocks are in world coordinates
 	private ShipWorld m_shipWorld;
 	private ShipPhysics m_shipPhysics;
 	private Double m_equilibriumWaterHeight;
 	private Integer m_sinkWaterHeight;
 	private int m_numBlocksChecked;
 	
-	public ShipLauncher( final World world, Coords shipBlock )
+	public ShipLauncher( World world, Coords shipBlock )
+	{
+		this( world, shipBlock, true );
+	}
+	
+	public ShipLauncher( World world, Coords shipBlock, boolean analyzeNow )
 	{
 		m_world = world;
 		m_shipBlock = shipBlock;
@@ -91,19 +99,15 @@ public class ShipLauncher
 		int numBlocksToCheck = getNumBlocksToCheck();
 		
 		// find all the blocks connected to the ship block
-		m_blocks = BlockUtils.searchForBlocks(
-			m_shipBlock.x, m_shipBlock.y, m_shipBlock.z,
-			numBlocksToCheck,
-			new BlockExplorer( )
-			{
-				@Override
-				public boolean shouldExploreBlock( Coords coords )
-				{
-					return !BlockProperties.isSeparator( Block.blocksList[world.getBlockId( coords.x, coords.y, coords.z )] );
-				}
-			},
-			ShipBlockNeighbors
-		);
+		m_blocks = searchForBlocks( numBlocksToCheck );
+		
+		m_storage = null;
+		m_boundary = null;
+		m_shipWorld = null;
+		m_shipPhysics = null;
+		m_equilibriumWaterHeight = null;
+		m_sinkWaterHeight = null;
+		m_launchFlags = null;
 		
 		if( m_blocks != null )
 		{
@@ -119,28 +123,131 @@ public class ShipLauncher
 				// also add the ship block
 				m_blocks.add( m_shipBlock );
 				
-				m_shipWorld = new ShipWorld( m_world, m_shipBlock, m_blocks );
-				m_shipPhysics = new ShipPhysics( m_shipWorld.getBlocksStorage() );
-				m_equilibriumWaterHeight = m_shipPhysics.getEquilibriumWaterHeight();
-				m_sinkWaterHeight = m_shipPhysics.getSinkWaterHeight();
+				// take a snapshot of the blocks, so the rest of the analysis doesn't need the world
+				m_storage = new BlocksStorage();
+				m_storage.readFromWorld( m_world, m_shipBlock, m_blocks );
 			}
 		}
 		else
 		{
 			// we found WAY too many blocks
-			m_shipWorld = null;
-			m_shipPhysics = null;
-			m_equilibriumWaterHeight = null;
-			m_sinkWaterHeight = null;
 			m_numBlocksChecked = numBlocksToCheck;
 		}
 		
+		if( analyzeNow )
+		{
+			analyze();
+		}
+	}
+	
+	public void analyze( )
+	{
+		// NOTE: this only reads the snapshot of the blocks, so it's safe to run on a worker thread
+		// as long as nothing else touches the launcher until it's done
+		if( m_storage != null )
+		{
+			m_shipPhysics = new ShipPhysics( m_storage );
+			m_equilibriumWaterHeight = m_shipPhysics.getEquilibriumWaterHeight();
+			m_sinkWaterHeight = m_shipPhysics.getSinkWaterHeight();
+			
+			// build the envelopes and the displacement now too, so the main thread doesn't have to
+			m_storage.getGeometry().getEnvelopes();
+			m_storage.getDisplacement();
+			
+			// same with the boundary, so checking for staleness is cheap
+			getBoundary();
+		}
+		
 		// compute the launch flags
-		m_launchFlags = new ArrayList<Boolean>();
+		List<Boolean> launchFlags = new ArrayList<Boolean>();
 		for( LaunchFlag flag : LaunchFlag.values() )
 		{
-			m_launchFlags.add( flag.computeValue( this ) );
+			launchFlags.add( flag.computeValue( this ) );
 		}
+		m_launchFlags = launchFlags;
+	}
+	
+	public boolean isAnalyzed( )
+	{
+		return m_launchFlags != null;
+	}
+	
+	public boolean isStale( )
+	{
+		// NOTE: call this from the main thread, since it reads the live world
+		if( m_storage == null )
+		{
+			return false;
+		}
+		
+		// did anyone change the blocks?
+		Coords worldCoords = new Coords( 0, 0, 0 );
+		for( Coords coords : m_storage.coords() )
+		{
+			worldCoords.set( coords.x + m_shipBlock.x, coords.y + m_shipBlock.y, coords.z + m_shipBlock.z );
+			if( m_world.getBlockId( worldCoords.x, worldCoords.y, worldCoords.z ) != m_storage.getBlockId( coords )
+				|| m_world.getBlockMetadata( worldCoords.x, worldCoords.y, worldCoords.z ) != m_storage.getBlockMeta( coords ) )
+			{
+				return true;
+			}
+		}
+		
+		// did anyone add blocks next to the ship?
+		// NOTE: the search only stopped at separators, so if the ship blocks didn't change and the blocks around them are
+		// still separators, searching again would find exactly the same blocks. No need to actually do the search again.
+		for( Coords coords : getBoundary() )
+		{
+			if( !BlockProperties.isSeparator( Block.blocksList[m_world.getBlockId( coords.x, coords.y, coords.z )] ) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private BlockSet getBoundary( )
+	{
+		// find the blocks next to the ship where the search stopped
+		if( m_boundary == null )
+		{
+			BlockSet boundary = new BlockSet();
+			Coords neighborCoords = new Coords( 0, 0, 0 );
+			for( Coords coords : m_blocks )
+			{
+				for( int i=0; i<ShipBlockNeighbors.getNumNeighbors(); i++ )
+				{
+					ShipBlockNeighbors.getNeighbor( neighborCoords, coords, i );
+					if( !m_blocks.contains( neighborCoords ) && !boundary.contains( neighborCoords ) )
+					{
+						boundary.add( new Coords( neighborCoords ) );
+					}
+				}
+			}
+			m_boundary = boundary;
+		}
+		return m_boundary;
+	}
+	
+	private BlockSet searchForBlocks( int numBlocksToCheck )
+	{
+		return BlockUtils.searchForBlocks(
+			m_shipBlock.x, m_shipBlock.y, m_shipBlock.z,
+			numBlocksToCheck,
+			new BlockExplorer( )
+			{
+				@Override
+				public boolean shouldExploreBlock( Coords coords )
+				{
+					return !BlockProperties.isSeparator( Block.blocksList[m_world.getBlockId( coords.x, coords.y, coords.z )] );
+				}
+			},
+			ShipBlockNeighbors
+		);
+	}
+	
+	public World getWorld( )
+	{
+		return m_world;
 	}
 	
 	public Coords getShipBlock( )
@@ -155,6 +262,11 @@ public class ShipLauncher
 	
 	public ShipWorld getShipWorld( )
 	{
+		// NOTE: this copies the tile entities out of the world, so only call it on the main thread
+		if( m_shipWorld == null && m_storage != null )
+		{
+			m_shipWorld = new ShipWorld( m_world, m_shipBlock, m_blocks, m_storage );
+		}
 		return m_shipWorld;
 	}
 	
@@ -226,22 +338,22 @@ public class ShipLauncher
 	
 	public BoundingBoxInt getShipBoundingBox( )
 	{
-		if( m_shipWorld == null )
+		if( m_storage == null )
 		{
 			return null;
 		}
 		
-		return m_shipWorld.getGeometry().getEnvelopes().getBoundingBox();
+		return m_storage.getGeometry().getEnvelopes().getBoundingBox();
 	}
 	
 	public BlockArray getShipEnvelope( BlockSide side )
 	{
-		if( m_shipWorld == null )
+		if( m_storage == null )
 		{
 			return null;
 		}
 		
-		return m_shipWorld.getGeometry().getEnvelopes().getEnvelope( side );
+		return m_storage.getGeometry().getEnvelopes().getEnvelope( side );
 	}
 	
 	public Double getEquilibriumWaterHeight( )
@@ -261,7 +373,7 @@ public class ShipLauncher
 		
 		// spawn the ship
 		EntityShip ship = new EntityShip( m_world );
-		initShip( ship, m_shipWorld, m_shipBlock );
+		initShip( ship, getShipWorld(), m_shipBlock, m_shipPhysics );
 		
 		if( !m_world.spawnEntityInWorld( ship ) )
 		{
@@ -270,17 +382,26 @@ public class ShipLauncher
 		}
 		
 		// update any berths
-		PlayerRespawner.onShipLaunch( (WorldServer)m_world, m_shipWorld, m_shipBlock );
+		PlayerRespawner.onShipLaunch( (WorldServer)m_world, getShipWorld(), m_shipBlock );
 		
 		// tell clients the ship launched
-		PacketDispatcher.sendPacketToAllPlayers( new PacketShipLaunched( ship, m_shipBlock ).getCustomPacket() );
+		for( Packet250CustomPayload customPacket : new PacketShipLaunched( ship, m_shipBlock ).getCustomPackets() )
+		{
+			PacketDispatcher.sendPacketToAllPlayers( customPacket );
+		}
 		
 		return ship;
 	}
 	
 	public static void initShip( EntityShip ship, ShipWorld shipWorld, Coords shipBlock )
 	{
-		Vec3 centerOfMass = new ShipPhysics( shipWorld.getBlocksStorage() ).getCenterOfMass();
+		initShip( ship, shipWorld, shipBlock, new ShipPhysics( shipWorld.getBlocksStorage() ) );
+	}
+	
+	public static void initShip( EntityShip ship, ShipWorld shipWorld, Coords shipBlock, ShipPhysics physics )
+	{
+		// NOTE: pass the physics along, so the ship doesn't have to build it again on the main thread
+		Vec3 centerOfMass = physics.getCenterOfMass();
 		
 		// set ship properties
 		ship.setPositionAndRotation(
@@ -289,7 +410,7 @@ public class ShipLauncher
 			shipBlock.z + centerOfMass.zCoord,
 			0, 0
 		);
-		ship.setShipWorld( shipWorld );
+		ship.setShipWorld( shipWorld, physics );
 		
 		removeShipFromWorld( ship.worldObj, shipWorld, shipBlock, UpdateRules.UpdateNoOne );
 	}
@@ -0,0 +1,390 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.util.Arrays;
+
+import net.minecraft.block.Block;
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.Coords;
+
+public class ShipLighting
+{
+	// light levels for the box around the ship, computed the same way vanilla lights chunks
+	// each cell is one byte: sky light in the high nibble, block light in the low nibble
+	// NOTE: the box has one extra layer of air on every side, since faces get their light from the block next door
+	
+	private static final int MaxLight = 15;
+	
+	private BlocksStorage m_storage;
+	private int m_minX;
+	private int m_minY;
+	private int m_minZ;
+	private int m_sizeX;
+	private int m_sizeY;
+	private int m_sizeZ;
+	private byte[] m_light;
+	private byte[] m_opacity;
+	private int[] m_neighbors;
+	private Coords m_lookupCoords;
+	
+	public ShipLighting( BlocksStorage storage )
+	{
+		m_storage = storage;
+		m_neighbors = new int[6];
+		m_lookupCoords = new Coords( 0, 0, 0 );
+		
+		// get the box around the ship
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int minZ = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		int maxZ = Integer.MIN_VALUE;
+		for( Coords coords : storage.coords() )
+		{
+			minX = Math.min( minX, coords.x );
+			minY = Math.min( minY, coords.y );
+			minZ = Math.min( minZ, coords.z );
+			maxX = Math.max( maxX, coords.x );
+			maxY = Math.max( maxY, coords.y );
+			maxZ = Math.max( maxZ, coords.z );
+		}
+		if( storage.getNumBlocks() == 0 )
+		{
+			minX = minY = minZ = 0;
+			maxX = maxY = maxZ = -1;
+		}
+		m_minX = minX - 1;
+		m_minY = minY - 1;
+		m_minZ = minZ - 1;
+		m_sizeX = maxX - minX + 3;
+		m_sizeY = maxY - minY + 3;
+		m_sizeZ = maxZ - minZ + 3;
+		
+		m_light = new byte[m_sizeX*m_sizeY*m_sizeZ];
+		computeAll();
+	}
+	
+	public int getSkyLight( int x, int y, int z )
+	{
+		int index = getIndex( x, y, z );
+		if( index < 0 )
+		{
+			// outside the box, there's nothing between us and the sky
+			return MaxLight;
+		}
+		return getSkyLight( index );
+	}
+	
+	public int getBlockLight( int x, int y, int z )
+	{
+		int index = getIndex( x, y, z );
+		if( index < 0 )
+		{
+			return 0;
+		}
+		return getBlockLight( index );
+	}
+	
+	public BlockSet onBlockChanged( int x, int y, int z, int oldBlockId, int newBlockId )
+	{
+		// NOTE: call this after the block is changed in the storage
+		// returns the blocks whose light changed, so the renderer can rebuild them
+		BlockSet changedBlocks = new BlockSet();
+		int index = getIndex( x, y, z );
+		if( index < 0 || getOpacity( oldBlockId ) != getOpacity( newBlockId ) )
+		{
+			// the shadows moved, so just start over
+			// NOTE: ships only allow block changes that keep the same opacity, so this shouldn't happen much
+			byte[] oldLight = m_light;
+			m_light = new byte[oldLight.length];
+			computeAll();
+			for( int i=0; i<m_light.length; i++ )
+			{
+				if( m_light[i] != oldLight[i] )
+				{
+					changedBlocks.add( getCoords( i ) );
+				}
+			}
+		}
+		else if( getEmission( oldBlockId ) != getEmission( newBlockId ) )
+		{
+			updateBlockLight( index, changedBlocks );
+		}
+		return changedBlocks;
+	}
+	
+	private void computeAll( )
+	{
+		// cache the opacities so we don't have to look up every neighbor in the storage
+		m_opacity = new byte[m_light.length];
+		for( Coords coords : m_storage.coords() )
+		{
+			m_opacity[getIndex( coords.x, coords.y, coords.z )] = (byte)Math.min( MaxLight, getOpacity( m_storage.getBlockId( coords ) ) );
+		}
+		
+		// sky light comes straight down each column until something blocks it
+		IntQueue queue = new IntQueue();
+		for( int x=0; x<m_sizeX; x++ )
+		{
+			for( int z=0; z<m_sizeZ; z++ )
+			{
+				int level = MaxLight;
+				for( int y=m_sizeY-1; y>=0 && level>0; y-- )
+				{
+					int index = ( x*m_sizeY + y )*m_sizeZ + z;
+					level = Math.max( 0, level - m_opacity[index] );
+					setSkyLight( index, level );
+					if( level > 1 )
+					{
+						queue.push( index );
+					}
+				}
+			}
+		}
+		
+		// then it spreads out sideways
+		while( !queue.isEmpty() )
+		{
+			int index = queue.pop();
+			int level = getSkyLight( index );
+			for( int neighbor : getNeighbors( index ) )
+			{
+				if( neighbor >= 0 )
+				{
+					int neighborLevel = level - Math.max( 1, getCachedOpacity( neighbor ) );
+					if( neighborLevel > getSkyLight( neighbor ) )
+					{
+						setSkyLight( neighbor, neighborLevel );
+						queue.push( neighbor );
+					}
+				}
+			}
+		}
+		
+		// block light starts at the light sources
+		for( Coords coords : m_storage.coords() )
+		{
+			int emission = getEmission( m_storage.getBlockId( coords ) );
+			if( emission > 0 )
+			{
+				int index = getIndex( coords.x, coords.y, coords.z );
+				setBlockLight( index, emission );
+				queue.push( index );
+			}
+		}
+		spreadBlockLight( queue, null );
+		
+		m_opacity = null;
+	}
+	
+	private void updateBlockLight( int index, BlockSet changedBlocks )
+	{
+		// first, take away all the light that could have come from this block
+		IntQueue removeQueue = new IntQueue();
+		IntQueue spreadQueue = new IntQueue();
+		removeQueue.push( index );
+		removeQueue.push( getBlockLight( index ) );
+		setBlockLight( index, 0 );
+		changedBlocks.add( getCoords( index ) );
+		while( !removeQueue.isEmpty() )
+		{
+			int removedIndex = removeQueue.pop();
+			int removedLevel = removeQueue.pop();
+			for( int neighbor : getNeighbors( removedIndex ) )
+			{
+				if( neighbor < 0 )
+				{
+					continue;
+				}
+				int neighborLevel = getBlockLight( neighbor );
+				if( neighborLevel == 0 )
+				{
+					continue;
+				}
+				if( neighborLevel < removedLevel )
+				{
+					// this light might have come from the removed block
+					setBlockLight( neighbor, 0 );
+					changedBlocks.add( getCoords( neighbor ) );
+					removeQueue.push( neighbor );
+					removeQueue.push( neighborLevel );
+				}
+				else
+				{
+					// this light came from somewhere else, so it can fill the gap back in
+					spreadQueue.push( neighbor );
+				}
+			}
+			
+			// light sources in the dark area light themselves back up
+			int emission = getEmission( getBlockId( removedIndex ) );
+			if( emission > 0 )
+			{
+				setBlockLight( removedIndex, emission );
+				spreadQueue.push( removedIndex );
+			}
+		}
+		
+		// then spread the light back out
+		spreadBlockLight( spreadQueue, changedBlocks );
+	}
+	
+	private void spreadBlockLight( IntQueue queue, BlockSet changedBlocks )
+	{
+		while( !queue.isEmpty() )
+		{
+			int index = queue.pop();
+			int level = getBlockLight( index );
+			for( int neighbor : getNeighbors( index ) )
+			{
+				if( neighbor >= 0 )
+				{
+					int neighborLevel = level - Math.max( 1, getCachedOpacity( neighbor ) );
+					if( neighborLevel > getBlockLight( neighbor ) )
+					{
+						setBlockLight( neighbor, neighborLevel );
+						queue.push( neighbor );
+						if( changedBlocks != null )
+						{
+							changedBlocks.add( getCoords( neighbor ) );
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	private int getIndex( int x, int y, int z )
+	{
+		x -= m_minX;
+		y -= m_minY;
+		z -= m_minZ;
+		if( x < 0 || x >= m_sizeX || y < 0 || y >= m_sizeY || z < 0 || z >= m_sizeZ )
+		{
+			return -1;
+		}
+		return ( x*m_sizeY + y )*m_sizeZ + z;
+	}
+	
+	private Coords getCoords( int index )
+	{
+		return new Coords(
+			index/( m_sizeY*m_sizeZ ) + m_minX,
+			( index/m_sizeZ )%m_sizeY + m_minY,
+			index%m_sizeZ + m_minZ
+		);
+	}
+	
+	private int[] getNeighbors( int index )
+	{
+		// NOTE: neighbors outside the box are -1
+		// the array gets reused, so don't hang on to it
+		int x = index/( m_sizeY*m_sizeZ );
+		int y = ( index/m_sizeZ )%m_sizeY;
+		int z = index%m_sizeZ;
+		m_neighbors[0] = x > 0 ? index - m_sizeY*m_sizeZ : -1;
+		m_neighbors[1] = x < m_sizeX - 1 ? index + m_sizeY*m_sizeZ : -1;
+		m_neighbors[2] = y > 0 ? index - m_sizeZ : -1;
+		m_neighbors[3] = y < m_sizeY - 1 ? index + m_sizeZ : -1;
+		m_neighbors[4] = z > 0 ? index - 1 : -1;
+		m_neighbors[5] = z < m_sizeZ - 1 ? index + 1 : -1;
+		return m_neighbors;
+	}
+	
+	private int getBlockId( int index )
+	{
+		Coords coords = getCoords( index );
+		m_lookupCoords.set( coords.x, coords.y, coords.z );
+		return m_storage.getBlockId( m_lookupCoords );
+	}
+	
+	private int getCachedOpacity( int index )
+	{
+		if( m_opacity != null )
+		{
+			return m_opacity[index];
+		}
+		return getOpacity( getBlockId( index ) );
+	}
+	
+	private int getSkyLight( int index )
+	{
+		return ( m_light[index] >> 4 ) & 0xf;
+	}
+	
+	private void setSkyLight( int index, int level )
+	{
+		m_light[index] = (byte)( ( level << 4 ) | ( m_light[index] & 0xf ) );
+	}
+	
+	private int getBlockLight( int index )
+	{
+		return m_light[index] & 0xf;
+	}
+	
+	private void setBlockLight( int index, int level )
+	{
+		m_light[index] = (byte)( ( m_light[index] & 0xf0 ) | level );
+	}
+	
+	private static int getOpacity( int blockId )
+	{
+		return Block.blocksList[blockId] != null ? Block.lightOpacity[blockId] : 0;
+	}
+	
+	private static int getEmission( int blockId )
+	{
+		return Block.blocksList[blockId] != null ? Block.lightValue[blockId] : 0;
+	}
+	
+	private static class IntQueue
+	{
+		private int[] m_data;
+		private int m_head;
+		private int m_size;
+		
+		public IntQueue( )
+		{
+			m_data = new int[64];
+			m_head = 0;
+			m_size = 0;
+		}
+		
+		public boolean isEmpty( )
+		{
+			return m_size == 0;
+		}
+		
+		public void push( int val )
+		{
+			if( m_size == m_data.length )
+			{
+				// unwrap the ring into a bigger array
+				int[] data = Arrays.copyOfRange( m_data, m_head, m_head + m_data.length*2 );
+				System.arraycopy( m_data, 0, data, m_data.length - m_head, m_head );
+				m_data = data;
+				m_head = 0;
+			}
+			m_data[( m_head + m_size ) % m_data.length] = val;
+			m_size++;
+		}
+		
+		public int pop( )
+		{
+			int val = m_data[m_head];
+			m_head = ( m_head + 1 ) % m_data.length;
+			m_size--;
+			return val;
+		}
+	}
+}
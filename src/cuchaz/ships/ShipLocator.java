@@ -10,7 +10,6 @@
  ******************************************************************************/
 package cuchaz.ships;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -26,51 +25,19 @@ public class ShipLocator
 {
 	public static List<EntityShip> getShips( World world )
 	{
-		List<EntityShip> ships = new ArrayList<EntityShip>();
-		for( Object entity : world.loadedEntityList )
-		{
-			if( entity instanceof EntityShip )
-			{
-				ships.add( (EntityShip)entity );
-			}
-		}
-		return ships;
+		return ShipRegistry.get( world ).getShips();
 	}
 	
 	public static EntityShip getShip( World world, int entityId )
 	{
-		return getShip( getShips( world ), entityId );
+		return ShipRegistry.get( world ).getShip( entityId );
 	}
 	
 	public static EntityShip getShip( World world, UUID uuid )
 	{
-		return getShip( getShips( world ), uuid );
-	}
-	
-	private static EntityShip getShip( List<EntityShip> ships, int entityId )
-	{
-		for( EntityShip ship : ships )
-		{
-			if( ship.entityId == entityId )
-			{
-				return ship;
-			}
-		}
-		return null;
+		return ShipRegistry.get( world ).getShip( uuid );
 	}
 	
-	private static EntityShip getShip( List<EntityShip> ships, UUID uuid )
-	{
-		for( EntityShip ship : ships )
-		{
-			if( ship.getPersistentID().equals( uuid ) )
-			{
-				return ship;
-			}
-		}
-		return null;
-	}
-
 	public static EntityShip getFromPlayerLook( EntityPlayer player )
 	{
 		// find out what entity the player is looking at
@@ -130,14 +97,7 @@ public class ShipLocator
 		// sadly, we can't use World.getEntitiesWithinAABB() because ship entities are too big.
 		// It will only return entities whose positions are within near the chunk of the query box.
 		// it doesn't do a global box-to-box test. =(
-		List<EntityShip> ships = new ArrayList<EntityShip>();
-		for( EntityShip ship : getShips( world ) )
-		{
-			if( ship.boundingBox.intersectsWith( box ) )
-			{
-				ships.add( ship );
-			}
-		}
-		return ships;
+		// so the ship registry keeps track of every chunk each ship touches instead
+		return ShipRegistry.get( world ).findShipsInBox( box );
 	}
 }
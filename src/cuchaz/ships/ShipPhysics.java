@@ -12,11 +12,8 @@ package cuchaz.ships;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 import net.minecraft.block.Block;
-import net.minecraft.util.MathHelper;
 import net.minecraft.util.Vec3;
 import cuchaz.modsShared.Util;
 import cuchaz.modsShared.blocks.BlockSide;
@@ -27,9 +24,6 @@ import cuchaz.ships.propulsion.Propulsion;
 public class ShipPhysics
 {
 	private static final double AccelerationGravity = Util.perSecond2ToPerTick2( 9.8 );
-	private static final double AirViscosity = 0.1;
-	private static final double WaterViscosity = 3.0;
-	private static final double AngularViscosityScale = 0.06;
 	private static final double BaseLinearDrag = Util.perSecondToPerTick( 0.01 );
 	private static final double BaseAngularDrag = Util.perSecondToPerTick( 1 );
 	private static final float AngularAccelerationFactor = 20.0f;
@@ -61,23 +55,30 @@ public class ShipPhysics
 		}
 	}
 	
-	private static class ScaledDisplacementEntry
-	{
-		double surfaceDisplacement;
-		double underwaterDisplacement;
-	}
-	
 	private BlocksStorage m_blocks;
 	private double m_shipMass;
 	private Vec3 m_centerOfMass;
 	private Double m_equilibriumWaterHeight;
 	private Integer m_sinkWaterHeight;
-	private Map<Integer,ScaledDisplacementEntry> m_displacement;
+	private ShipBuoyancy m_buoyancy;
+	private ShipDrag m_drag;
 	
 	public ShipPhysics( BlocksStorage blocks )
+	{
+		this( blocks, null );
+	}
+	
+	public ShipPhysics( BlocksStorage blocks, ShipBuoyancy buoyancy )
 	{
 		m_blocks = blocks;
 		
+		// use the saved buoyancy if we have it, since it's expensive to build
+		if( buoyancy == null || !buoyancy.isValid( blocks ) )
+		{
+			buoyancy = new ShipBuoyancy( blocks );
+		}
+		m_buoyancy = buoyancy;
+		
 		// compute the total mass
 		m_shipMass = 0.0;
 		for( Coords coords : m_blocks.coords() )
@@ -87,13 +88,13 @@ public class ShipPhysics
 		
 		// compute some extra stuff
 		m_centerOfMass = computeCenterOfMass();
-		m_displacement = new TreeMap<Integer,ScaledDisplacementEntry>();
+		m_drag = null;
 		m_equilibriumWaterHeight = computeEquilibriumWaterHeight();
-		m_sinkWaterHeight = m_blocks.getDisplacement().getLastFillY();
+		m_sinkWaterHeight = m_buoyancy.getSinkWaterHeight();
 		
 		// is the ship unsinkable?
-		ScaledDisplacementEntry lastDisplacement = getScaledDisplacement( m_blocks.getDisplacement().getMaxY() + 1 );
-		if( lastDisplacement.surfaceDisplacement + lastDisplacement.underwaterDisplacement > m_shipMass )
+		int lastY = m_buoyancy.getMaxY() + 1;
+		if( getSurfaceDisplacement( lastY ) + getUnderwaterDisplacement( lastY ) > m_shipMass )
 		{
 			m_sinkWaterHeight = null;
 		}
@@ -109,6 +110,16 @@ public class ShipPhysics
 		return m_centerOfMass;
 	}
 	
+	public ShipBuoyancy getBuoyancy( )
+	{
+		return m_buoyancy;
+	}
+	
+	public Vec3 getCenterOfBuoyancy( double waterHeight )
+	{
+		return m_buoyancy.getCenterOfBuoyancy( waterHeight );
+	}
+	
 	public double getNetUpAcceleration( double waterHeight )
 	{
 		// the net up force is the difference of the weight and the buoyancy
@@ -117,12 +128,7 @@ public class ShipPhysics
 	
 	public double getDisplacedWaterMass( double waterHeight )
 	{
-		// get the surface block level
-		int surfaceLevel = MathHelper.floor_double( waterHeight );
-		
-		// compute the mass of the displaced water
-		double surfaceFraction = getBlockFractionSubmerged( surfaceLevel, waterHeight );
-		return ( (double)getUnderwaterDisplacement( surfaceLevel ) + (double)getSurfaceDisplacement( surfaceLevel )*surfaceFraction )*getWaterBlockMass();
+		return m_buoyancy.getDisplacedVolume( waterHeight )*getWaterBlockMass();
 	}
 	
 	public Double getEquilibriumWaterHeight( )
@@ -148,8 +154,6 @@ public class ShipPhysics
 	
 	public double getLinearAccelerationDueToDrag( Vec3 velocity, double waterHeight )
 	{
-		// UNDONE: it may be more efficient to cache these computations
-		
 		// which side is the leading side?
 		BlockSide leadingSide = null;
 		double bestDot = Double.NEGATIVE_INFINITY;
@@ -164,16 +168,7 @@ public class ShipPhysics
 		}
 		assert( leadingSide != null );
 		
-		// compute the viscosity
-		double airSurfaceArea = 0;
-		double waterSurfaceArea = 0;
-		for( Coords coords : m_blocks.getGeometry().getEnvelopes().getEnvelope( leadingSide ).toBlockSet() )
-		{
-			double fractionSubmerged = leadingSide.getFractionSubmerged( coords.y, waterHeight );
-			waterSurfaceArea += fractionSubmerged;
-			airSurfaceArea += 1 - fractionSubmerged;
-		}
-		double linearViscosity = AirViscosity*airSurfaceArea + WaterViscosity*waterSurfaceArea;
+		double linearViscosity = getDrag().getLinearViscosity( leadingSide, waterHeight );
 		
 		// how fast are we going?
 		double speed = velocity.lengthVector();
@@ -189,10 +184,8 @@ public class ShipPhysics
 	
 	public float getAngularAccelerationDueToDrag( float motionYaw, double waterHeight )
 	{
-		// compute the viscosity in both directions
-		double angularViscosity = 0
-			+ getAngularViscosity( BlockSide.North, waterHeight, m_centerOfMass.xCoord )
-			+ getAngularViscosity( BlockSide.East, waterHeight, m_centerOfMass.zCoord );
+		// get the viscosity in both directions
+		double angularViscosity = getDrag().getAngularViscosity( waterHeight );
 		
 		return (float)( BaseAngularDrag + motionYaw*motionYaw*angularViscosity/m_shipMass );
 	}
@@ -312,39 +305,19 @@ public class ShipPhysics
 		for( Coords coords : m_blocks.coords() )
 		{
 			double mass = BlockProperties.getMass( getBlock( coords ) );
-			buf.append( String.format( "%3d,%3d,%3d %4d %4.1f\n", coords.x, coords.y, coords.z, m_blocks.getBlock( coords ).id, mass ) );
+			buf.append( String.format( "%3d,%3d,%3d %4d %4.1f\n", coords.x, coords.y, coords.z, m_blocks.getBlockId( coords ), mass ) );
 		}
 		return buf.toString();
 	}
 	
 	private double getUnderwaterDisplacement( int y )
 	{
-		return getScaledDisplacement( y ).underwaterDisplacement;
+		return m_buoyancy.getUnderwaterDisplacement( y );
 	}
 	
 	private double getSurfaceDisplacement( int y )
 	{
-		return getScaledDisplacement( y ).surfaceDisplacement;
-	}
-
-	private ScaledDisplacementEntry getScaledDisplacement( int y )
-	{
-		ScaledDisplacementEntry entry = m_displacement.get( y );
-		if( entry == null )
-		{
-			entry = new ScaledDisplacementEntry();
-			entry.surfaceDisplacement = 0;
-			for( Coords coords : m_blocks.getDisplacement().getSurfaceBlocks( y ) )
-			{
-				entry.surfaceDisplacement += BlockProperties.getDisplacement( getBlock( coords ) );
-			}
-			entry.underwaterDisplacement = 0;
-			for( Coords coords : m_blocks.getDisplacement().getUnderwaterBlocks( y ) )
-			{
-				entry.underwaterDisplacement += BlockProperties.getDisplacement( getBlock( coords ) );
-			}
-		}
-		return entry;
+		return m_buoyancy.getSurfaceDisplacement( y );
 	}
 	
 	private Double computeEquilibriumWaterHeight( )
@@ -392,28 +365,20 @@ public class ShipPhysics
 		return com;
 	}
 	
-	private double getBlockFractionSubmerged( int y, double waterHeight )
-	{
-		// can use any NSEW side
-		return BlockSide.North.getFractionSubmerged( y, waterHeight );
-	}
-	
-	private double getAngularViscosity( BlockSide side, double waterHeight, double center )
+	private ShipDrag getDrag( )
 	{
-		int centerCoord = (int)center;
-		double viscosity = 0;
-		for( Coords coords : m_blocks.getGeometry().getEnvelopes().getEnvelope( side ).toBlockSet() )
+		// the drag tables are only good for one set of blocks
+		ShipGeometry geometry = m_blocks.getGeometry();
+		if( m_drag == null || m_drag.getGeometry() != geometry )
 		{
-			double fractionSubmerged = side.getFractionSubmerged( coords.y, waterHeight );
-			double dist = Math.abs( side.getU( coords.x, coords.y, coords.z ) - centerCoord );
-			viscosity += ( fractionSubmerged*WaterViscosity + ( 1 - fractionSubmerged )*AirViscosity )*dist;
+			m_drag = new ShipDrag( geometry, m_centerOfMass );
 		}
-		return viscosity*AngularViscosityScale;
+		return m_drag;
 	}
 	
 	private Block getBlock( Coords coords )
 	{
-		return Block.blocksList[m_blocks.getBlock( coords ).id];
+		return Block.blocksList[m_blocks.getBlockId( coords )];
 	}
 	
 	private double getWaterBlockMass( )
@@ -0,0 +1,372 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.util.IntHashMap;
+import net.minecraft.util.LongHashMap;
+import net.minecraft.util.MathHelper;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+
+public class ShipRegistry
+{
+	// keeps track of the ships in a world, so we don't have to scan the loaded entity list to find them
+	// ships are indexed by entity id, by UUID, and by the chunk columns their bounding boxes touch
+	// NOTE: ships look themselves up every time they move, so the id and chunk indices use primitive keys to avoid boxing
+	
+	private static class Entry
+	{
+		public EntityShip ship;
+		public UUID uuid;
+		public int minChunkX;
+		public int minChunkZ;
+		public int maxChunkX;
+		public int maxChunkZ;
+		public int queryId;
+		
+		public Entry( EntityShip ship )
+		{
+			this.ship = ship;
+			uuid = ship.getPersistentID();
+			minChunkX = 0;
+			minChunkZ = 0;
+			maxChunkX = -1;
+			maxChunkZ = -1;
+			queryId = 0;
+		}
+	}
+	
+	private static Map<World,ShipRegistry> m_registries;
+	
+	static
+	{
+		// NOTE: use weak keys so we don't keep unloaded worlds around
+		m_registries = new WeakHashMap<World,ShipRegistry>();
+	}
+	
+	private List<Entry> m_entries;
+	private IntHashMap m_entriesById;
+	private Map<UUID,Entry> m_entriesByUuid;
+	private LongHashMap m_entriesByChunk;
+	private int m_queryId;
+	
+	public static ShipRegistry get( World world )
+	{
+		ShipRegistry registry = m_registries.get( world );
+		if( registry == null )
+		{
+			registry = new ShipRegistry();
+			m_registries.put( world, registry );
+		}
+		return registry;
+	}
+	
+	public static void onShipAdded( EntityShip ship )
+	{
+		if( ship.worldObj != null )
+		{
+			get( ship.worldObj ).add( ship );
+		}
+	}
+	
+	public static void onShipMoved( EntityShip ship )
+	{
+		// NOTE: ships move before they're added to the world too, so don't make new registries here
+		ShipRegistry registry = ship.worldObj != null ? m_registries.get( ship.worldObj ) : null;
+		if( registry != null )
+		{
+			registry.update( ship );
+		}
+	}
+	
+	public static void onShipRemoved( EntityShip ship )
+	{
+		ShipRegistry registry = ship.worldObj != null ? m_registries.get( ship.worldObj ) : null;
+		if( registry != null )
+		{
+			registry.remove( ship );
+		}
+	}
+	
+	public static void onChunkUnloaded( Chunk chunk )
+	{
+		// unloading a chunk removes its entities from the world without killing them
+		ShipRegistry registry = m_registries.get( chunk.worldObj );
+		if( registry == null )
+		{
+			return;
+		}
+		for( List<?> entities : chunk.entityLists )
+		{
+			for( Object entity : entities )
+			{
+				if( entity instanceof EntityShip )
+				{
+					registry.remove( (EntityShip)entity );
+				}
+			}
+		}
+	}
+	
+	public static void onWorldUnloaded( World world )
+	{
+		m_registries.remove( world );
+	}
+	
+	protected ShipRegistry( )
+	{
+		m_entries = new ArrayList<Entry>();
+		m_entriesById = new IntHashMap();
+		m_entriesByUuid = new HashMap<UUID,Entry>();
+		m_entriesByChunk = new LongHashMap();
+		m_queryId = 0;
+	}
+	
+	public int getNumShips( )
+	{
+		return m_entries.size();
+	}
+	
+	public void add( EntityShip ship )
+	{
+		// replace any old entry for this ship
+		remove( ship );
+		
+		Entry entry = new Entry( ship );
+		m_entries.add( entry );
+		m_entriesById.addKey( ship.entityId, entry );
+		m_entriesByUuid.put( entry.uuid, entry );
+		updateChunks( entry );
+	}
+	
+	public void update( EntityShip ship )
+	{
+		Entry entry = getEntry( ship.entityId );
+		if( entry == null || entry.ship != ship )
+		{
+			return;
+		}
+		
+		// the UUID can change if the ship was read from NBT after it was added
+		if( !entry.uuid.equals( ship.getPersistentID() ) )
+		{
+			m_entriesByUuid.remove( entry.uuid );
+			entry.uuid = ship.getPersistentID();
+			m_entriesByUuid.put( entry.uuid, entry );
+		}
+		
+		updateChunks( entry );
+	}
+	
+	public void remove( EntityShip ship )
+	{
+		Entry entry = (Entry)m_entriesById.lookup( ship.entityId );
+		if( entry == null || entry.ship != ship )
+		{
+			return;
+		}
+		m_entries.remove( entry );
+		m_entriesById.removeObject( ship.entityId );
+		if( m_entriesByUuid.get( entry.uuid ) == entry )
+		{
+			m_entriesByUuid.remove( entry.uuid );
+		}
+		removeFromChunks( entry );
+	}
+	
+	public List<EntityShip> getShips( )
+	{
+		List<EntityShip> ships = new ArrayList<EntityShip>( m_entries.size() );
+		for( Entry entry : m_entries )
+		{
+			if( !entry.ship.isDead )
+			{
+				ships.add( entry.ship );
+			}
+		}
+		return ships;
+	}
+	
+	public EntityShip getShip( int entityId )
+	{
+		Entry entry = getEntry( entityId );
+		return entry != null ? entry.ship : null;
+	}
+	
+	public EntityShip getShip( UUID uuid )
+	{
+		Entry entry = m_entriesByUuid.get( uuid );
+		if( entry == null || !isAlive( entry ) )
+		{
+			return null;
+		}
+		return entry.ship;
+	}
+	
+	public List<EntityShip> findShipsInBox( AxisAlignedBB box )
+	{
+		List<EntityShip> ships = new ArrayList<EntityShip>();
+		findShipsInBox( ships, box );
+		return ships;
+	}
+	
+	public void findShipsInBox( List<EntityShip> out, AxisAlignedBB box )
+	{
+		int minChunkX = MathHelper.floor_double( box.minX ) >> 4;
+		int minChunkZ = MathHelper.floor_double( box.minZ ) >> 4;
+		int maxChunkX = MathHelper.floor_double( box.maxX ) >> 4;
+		int maxChunkZ = MathHelper.floor_double( box.maxZ ) >> 4;
+		
+		// for really big boxes, it's faster to just check every ship
+		long numChunks = (long)( maxChunkX - minChunkX + 1 )*( maxChunkZ - minChunkZ + 1 );
+		if( numChunks > m_entries.size() )
+		{
+			for( int i=0; i<m_entries.size(); i++ )
+			{
+				Entry entry = m_entries.get( i );
+				if( !entry.ship.isDead && entry.ship.boundingBox.intersectsWith( box ) )
+				{
+					out.add( entry.ship );
+				}
+			}
+			return;
+		}
+		
+		// ships can be in more than one chunk, so only look at each ship once per query
+		m_queryId++;
+		for( int chunkX=minChunkX; chunkX<=maxChunkX; chunkX++ )
+		{
+			for( int chunkZ=minChunkZ; chunkZ<=maxChunkZ; chunkZ++ )
+			{
+				List<Entry> entries = getChunkEntries( getChunkKey( chunkX, chunkZ ) );
+				if( entries == null )
+				{
+					continue;
+				}
+				for( int i=0; i<entries.size(); i++ )
+				{
+					Entry entry = entries.get( i );
+					if( entry.queryId == m_queryId )
+					{
+						continue;
+					}
+					entry.queryId = m_queryId;
+					if( !entry.ship.isDead && entry.ship.boundingBox.intersectsWith( box ) )
+					{
+						out.add( entry.ship );
+					}
+				}
+			}
+		}
+	}
+	
+	private Entry getEntry( int entityId )
+	{
+		Entry entry = (Entry)m_entriesById.lookup( entityId );
+		if( entry == null || !isAlive( entry ) )
+		{
+			return null;
+		}
+		return entry;
+	}
+	
+	private boolean isAlive( Entry entry )
+	{
+		// dead ships should have been removed already, but just in case...
+		if( entry.ship.isDead )
+		{
+			remove( entry.ship );
+			return false;
+		}
+		return true;
+	}
+	
+	private void updateChunks( Entry entry )
+	{
+		AxisAlignedBB box = entry.ship.boundingBox;
+		int minChunkX = MathHelper.floor_double( box.minX ) >> 4;
+		int minChunkZ = MathHelper.floor_double( box.minZ ) >> 4;
+		int maxChunkX = MathHelper.floor_double( box.maxX ) >> 4;
+		int maxChunkZ = MathHelper.floor_double( box.maxZ ) >> 4;
+		
+		// most moves don't cross a chunk boundary
+		if( minChunkX == entry.minChunkX && minChunkZ == entry.minChunkZ && maxChunkX == entry.maxChunkX && maxChunkZ == entry.maxChunkZ )
+		{
+			return;
+		}
+		
+		removeFromChunks( entry );
+		entry.minChunkX = minChunkX;
+		entry.minChunkZ = minChunkZ;
+		entry.maxChunkX = maxChunkX;
+		entry.maxChunkZ = maxChunkZ;
+		for( int chunkX=minChunkX; chunkX<=maxChunkX; chunkX++ )
+		{
+			for( int chunkZ=minChunkZ; chunkZ<=maxChunkZ; chunkZ++ )
+			{
+				long key = getChunkKey( chunkX, chunkZ );
+				List<Entry> entries = getChunkEntries( key );
+				if( entries == null )
+				{
+					entries = new ArrayList<Entry>( 1 );
+					m_entriesByChunk.add( key, entries );
+				}
+				entries.add( entry );
+			}
+		}
+	}
+	
+	private void removeFromChunks( Entry entry )
+	{
+		for( int chunkX=entry.minChunkX; chunkX<=entry.maxChunkX; chunkX++ )
+		{
+			for( int chunkZ=entry.minChunkZ; chunkZ<=entry.maxChunkZ; chunkZ++ )
+			{
+				long key = getChunkKey( chunkX, chunkZ );
+				List<Entry> entries = getChunkEntries( key );
+				if( entries == null )
+				{
+					continue;
+				}
+				entries.remove( entry );
+				if( entries.isEmpty() )
+				{
+					m_entriesByChunk.remove( key );
+				}
+			}
+		}
+		
+		// an empty range means the entry isn't in any chunks
+		entry.minChunkX = 0;
+		entry.minChunkZ = 0;
+		entry.maxChunkX = -1;
+		entry.maxChunkZ = -1;
+	}
+	
+	@SuppressWarnings( "unchecked" )
+	private List<Entry> getChunkEntries( long key )
+	{
+		return (List<Entry>)m_entriesByChunk.getValueByKey( key );
+	}
+	
+	private static long getChunkKey( int chunkX, int chunkZ )
+	{
+		return ( (long)chunkX << 32 ) | ( chunkZ & 0xffffffffL );
+	}
+}
@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import net.minecraft.util.Vec3;
+
+public class ShipTransform
+{
+	// a snapshot of the ship's position and yaw, so the trig only happens once each time the ship moves
+	// NOTE: the transforms EntityShip hands out never change after they're built, so it's safe to hang on to those
+	
+	private double m_x;
+	private double m_y;
+	private double m_z;
+	private float m_yaw;
+	private double m_shipBlockX;
+	private double m_shipBlockY;
+	private double m_shipBlockZ;
+	private double m_cos;
+	private double m_sin;
+	
+	public ShipTransform( double x, double y, double z, float yaw, double shipBlockX, double shipBlockY, double shipBlockZ )
+	{
+		set( x, y, z, yaw, shipBlockX, shipBlockY, shipBlockZ );
+	}
+	
+	public ShipTransform set( double x, double y, double z, float yaw, double shipBlockX, double shipBlockY, double shipBlockZ )
+	{
+		// NOTE: only for scratch transforms nobody else has seen
+		m_x = x;
+		m_y = y;
+		m_z = z;
+		m_yaw = yaw;
+		m_shipBlockX = shipBlockX;
+		m_shipBlockY = shipBlockY;
+		m_shipBlockZ = shipBlockZ;
+		
+		double yawRad = Math.toRadians( yaw );
+		m_cos = Math.cos( yawRad );
+		m_sin = Math.sin( yawRad );
+		return this;
+	}
+	
+	public boolean matches( double x, double y, double z, float yaw, double shipBlockX, double shipBlockY, double shipBlockZ )
+	{
+		return m_x == x && m_y == y && m_z == z && m_yaw == yaw
+			&& m_shipBlockX == shipBlockX && m_shipBlockY == shipBlockY && m_shipBlockZ == shipBlockZ;
+	}
+	
+	public double getX( )
+	{
+		return m_x;
+	}
+	
+	public double getY( )
+	{
+		return m_y;
+	}
+	
+	public double getZ( )
+	{
+		return m_z;
+	}
+	
+	public float getYaw( )
+	{
+		return m_yaw;
+	}
+	
+	public double getCos( )
+	{
+		return m_cos;
+	}
+	
+	public double getSin( )
+	{
+		return m_sin;
+	}
+	
+	public void worldToShip( Vec3 v )
+	{
+		double x = worldToShipX( v.xCoord, v.zCoord );
+		double y = worldToShipY( v.yCoord );
+		double z = worldToShipZ( v.xCoord, v.zCoord );
+		
+		v.xCoord = x;
+		v.yCoord = y;
+		v.zCoord = z;
+	}
+	
+	public void worldToShipDirection( Vec3 v )
+	{
+		// just apply the rotation
+		double x = v.xCoord*m_cos - v.zCoord*m_sin;
+		double z = v.xCoord*m_sin + v.zCoord*m_cos;
+		
+		v.xCoord = x;
+		v.zCoord = z;
+	}
+	
+	public double worldToShipX( double x, double z )
+	{
+		return ( x - m_x )*m_cos - ( z - m_z )*m_sin;
+	}
+	
+	public double worldToShipY( double y )
+	{
+		return y - m_y;
+	}
+	
+	public double worldToShipZ( double x, double z )
+	{
+		return ( x - m_x )*m_sin + ( z - m_z )*m_cos;
+	}
+	
+	public void shipToWorld( Vec3 v )
+	{
+		double x = shipToWorldX( v.xCoord, v.zCoord );
+		double y = shipToWorldY( v.yCoord );
+		double z = shipToWorldZ( v.xCoord, v.zCoord );
+		
+		v.xCoord = x;
+		v.yCoord = y;
+		v.zCoord = z;
+	}
+	
+	public void shipToWorldDirection( Vec3 v )
+	{
+		// just apply the rotation
+		double x = v.xCoord*m_cos + v.zCoord*m_sin;
+		double z = -v.xCoord*m_sin + v.zCoord*m_cos;
+		
+		v.xCoord = x;
+		v.zCoord = z;
+	}
+	
+	public double shipToWorldX( double x, double z )
+	{
+		return x*m_cos + z*m_sin + m_x;
+	}
+	
+	public double shipToWorldY( double y )
+	{
+		return y + m_y;
+	}
+	
+	public double shipToWorldZ( double x, double z )
+	{
+		return -x*m_sin + z*m_cos + m_z;
+	}
+	
+	public void shipToBlocks( Vec3 v )
+	{
+		v.xCoord = shipToBlocksX( v.xCoord );
+		v.yCoord = shipToBlocksY( v.yCoord );
+		v.zCoord = shipToBlocksZ( v.zCoord );
+	}
+	
+	public double shipToBlocksX( double x )
+	{
+		return x - m_shipBlockX;
+	}
+	
+	public double shipToBlocksY( double y )
+	{
+		return y - m_shipBlockY;
+	}
+	
+	public double shipToBlocksZ( double z )
+	{
+		return z - m_shipBlockZ;
+	}
+	
+	public void blocksToShip( Vec3 v )
+	{
+		v.xCoord = blocksToShipX( v.xCoord );
+		v.yCoord = blocksToShipY( v.yCoord );
+		v.zCoord = blocksToShipZ( v.zCoord );
+	}
+	
+	public double blocksToShipX( double x )
+	{
+		return x + m_shipBlockX;
+	}
+	
+	public double blocksToShipY( double y )
+	{
+		return y + m_shipBlockY;
+	}
+	
+	public double blocksToShipZ( double z )
+	{
+		return z + m_shipBlockZ;
+	}
+	
+	public void worldToBlocks( Vec3 v )
+	{
+		worldToShip( v );
+		shipToBlocks( v );
+	}
+	
+	public void blocksToWorld( Vec3 v )
+	{
+		blocksToShip( v );
+		shipToWorld( v );
+	}
+	
+	public void worldToBlocks( double[] points, int offset, int numPoints )
+	{
+		// points are packed x,y,z,x,y,z,...
+		int end = offset + numPoints*3;
+		for( int i=offset; i<end; i+=3 )
+		{
+			double x = points[i];
+			double z = points[i + 2];
+			points[i] = shipToBlocksX( worldToShipX( x, z ) );
+			points[i + 1] = shipToBlocksY( worldToShipY( points[i + 1] ) );
+			points[i + 2] = shipToBlocksZ( worldToShipZ( x, z ) );
+		}
+	}
+	
+	public void blocksToWorld( double[] points, int offset, int numPoints )
+	{
+		// points are packed x,y,z,x,y,z,...
+		int end = offset + numPoints*3;
+		for( int i=offset; i<end; i+=3 )
+		{
+			double x = blocksToShipX( points[i] );
+			double z = blocksToShipZ( points[i + 2] );
+			points[i] = shipToWorldX( x, z );
+			points[i + 1] = shipToWorldY( blocksToShipY( points[i + 1] ) );
+			points[i + 2] = shipToWorldZ( x, z );
+		}
+	}
+}
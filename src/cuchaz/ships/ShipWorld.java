@@ -11,10 +11,8 @@
 package cuchaz.ships;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
 
 import net.minecraft.block.Block;
@@ -25,6 +23,7 @@ import net.minecraft.entity.EntityHanging;
 import net.minecraft.entity.EntityList;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.packet.Packet250CustomPayload;
 import net.minecraft.network.packet.Packet61DoorChange;
 import net.minecraft.network.packet.Packet62LevelSound;
 import net.minecraft.server.MinecraftServer;
@@ -32,6 +31,7 @@ import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.AxisAlignedBB;
 import net.minecraft.util.MathHelper;
 import net.minecraft.util.Vec3;
+import net.minecraft.world.EnumSkyBlock;
 import net.minecraft.world.World;
 import net.minecraft.world.biome.BiomeGenBase;
 import net.minecraftforge.common.ForgeDirection;
@@ -55,9 +55,17 @@ public class ShipWorld extends DetachedWorld
 	private EntityShip m_ship;
 	private BlocksStorage m_storage;
 	private BlockMap<TileEntity> m_tileEntities;
+	private BlockMap<TileEntityData> m_tileEntityData;
+	private TileEntityScheduler m_tileEntityScheduler;
+	private DisplayTickIndex m_displayTicks;
+	private ShipLighting m_lighting;
+	private ShipEntityIndex m_entityIndex;
+	private List<Entity> m_nearbyEntities;
+	private long m_entityIndexTime;
 	private BlockMap<EntityHanging> m_hangingEntities;
-	private BlockSet m_changedBlocks;
-	private boolean m_needsRenderUpdate;
+	private BlockMap<Integer> m_changedBlocks;
+	private BlockSet m_renderUpdates;
+	private int m_numChanges;
 	private int m_biomeId;
 	
 	public ShipWorld( World world )
@@ -68,12 +76,26 @@ public class ShipWorld extends DetachedWorld
 		m_ship = null;
 		m_storage = new BlocksStorage();
 		m_tileEntities = new BlockMap<TileEntity>();
+		m_tileEntityData = new BlockMap<TileEntityData>();
+		m_tileEntityScheduler = null;
+		m_displayTicks = null;
+		m_lighting = null;
+		m_entityIndex = null;
+		m_nearbyEntities = null;
+		m_entityIndexTime = -1;
 		m_hangingEntities = new BlockMap<EntityHanging>();
-		m_changedBlocks = new BlockSet();
+		m_changedBlocks = new BlockMap<Integer>();
+		m_renderUpdates = new BlockSet();
+		m_numChanges = 0;
 		m_biomeId = 0;
 	}
 	
 	public ShipWorld( World world, BlocksStorage storage, BlockMap<TileEntity> tileEntities, BlockMap<EntityHanging> hangingEntities, int biomeId )
+	{
+		this( world, storage, tileEntities, new BlockMap<TileEntityData>(), hangingEntities, biomeId );
+	}
+	
+	public ShipWorld( World world, BlocksStorage storage, BlockMap<TileEntity> tileEntities, BlockMap<TileEntityData> tileEntityData, BlockMap<EntityHanging> hangingEntities, int biomeId )
 	{
 		this( world );
 		
@@ -90,6 +112,19 @@ public class ShipWorld extends DetachedWorld
 			tileEntity.validate();
 		}
 		
+		// the tile entities that update need to be loaded now, the rest can wait until someone needs them
+		for( Map.Entry<Coords,TileEntityData> entry : tileEntityData.entrySet() )
+		{
+			if( entry.getValue().canWait() )
+			{
+				m_tileEntityData.put( entry.getKey(), entry.getValue() );
+			}
+			else
+			{
+				loadTileEntity( entry.getKey(), entry.getValue() );
+			}
+		}
+		
 		// init the hanging entities in the world
 		for( EntityHanging hangingEntity : m_hangingEntities.values() )
 		{
@@ -98,11 +133,23 @@ public class ShipWorld extends DetachedWorld
 	}
 	
 	public ShipWorld( World world, Coords originCoords, BlockSet blocks )
+	{
+		this( world, originCoords, blocks, null );
+	}
+	
+	public ShipWorld( World world, Coords originCoords, BlockSet blocks, BlocksStorage storage )
 	{
 		this( world );
 		
-		// copy the blocks
-		m_storage.readFromWorld( world, originCoords, blocks );
+		// copy the blocks, unless the caller already has a copy
+		if( storage != null )
+		{
+			m_storage = storage;
+		}
+		else
+		{
+			m_storage.readFromWorld( world, originCoords, blocks );
+		}
 		
 		// copy the tile entities
 		for( Coords worldCoords : blocks )
@@ -121,17 +168,23 @@ public class ShipWorld extends DetachedWorld
 				// copy the tile entity
 				NBTTagCompound nbt = new NBTTagCompound();
 				tileEntity.writeToNBT( nbt );
-				TileEntity tileEntityCopy = TileEntity.createAndLoadEntity( nbt );
-				
-				// initialize the tile entity
-				tileEntityCopy.setWorldObj( this );
-				tileEntityCopy.xCoord = relativeCoords.x;
-				tileEntityCopy.yCoord = relativeCoords.y;
-				tileEntityCopy.zCoord = relativeCoords.z;
-				tileEntityCopy.validate();
+				nbt.setInteger( "x", relativeCoords.x );
+				nbt.setInteger( "y", relativeCoords.y );
+				nbt.setInteger( "z", relativeCoords.z );
+				TileEntityData data = new TileEntityData( nbt );
 				
-				// save it to the ship world
-				m_tileEntities.put( relativeCoords, tileEntityCopy );
+				// save it to the ship world, but only load it if it needs to update
+				if( data.canWait() )
+				{
+					m_tileEntityData.put( relativeCoords, data );
+				}
+				else
+				{
+					TileEntity tileEntityCopy = TileEntity.createAndLoadEntity( nbt );
+					tileEntityCopy.setWorldObj( this );
+					tileEntityCopy.validate();
+					m_tileEntities.put( relativeCoords, tileEntityCopy );
+				}
 			}
 			catch( Exception ex )
 			{
@@ -215,14 +268,7 @@ public class ShipWorld extends DetachedWorld
 			{
 				NBTTagCompound nbt = new NBTTagCompound();
 				tileEntity.writeToNBT( nbt );
-				TileEntity tileEntityCopy = TileEntity.createAndLoadEntity( nbt );
-				tileEntityCopy.setWorldObj( world );
-				tileEntityCopy.xCoord = coordsWorld.x;
-				tileEntityCopy.yCoord = coordsWorld.y;
-				tileEntityCopy.zCoord = coordsWorld.z;
-				tileEntityCopy.validate();
-				
-				world.setBlockTileEntity( coordsWorld.x, coordsWorld.y, coordsWorld.z, tileEntityCopy );
+				restoreTileEntityToWorld( world, coordsWorld, nbt );
 			}
 			catch( Exception ex )
 			{
@@ -238,6 +284,31 @@ public class ShipWorld extends DetachedWorld
 			}
 		}
 		
+		// the tile entities we never loaded go straight from their NBT to the world
+		for( Map.Entry<Coords,TileEntityData> entry : m_tileEntityData.entrySet() )
+		{
+			Coords coordsShip = entry.getKey();
+			Coords coordsWorld = correspondence.get( coordsShip );
+			TileEntityData data = entry.getValue();
+			
+			try
+			{
+				restoreTileEntityToWorld( world, coordsWorld, data.getNBT() );
+			}
+			catch( Exception ex )
+			{
+				// remove the tile entity
+				world.removeBlockTileEntity( coordsWorld.x, coordsWorld.y, coordsWorld.z );
+				
+				Ships.logger.warning(
+					ex,
+					"Tile entity %s at (%d,%d,%d) didn't like being moved to the world. The tile entity has been removed from its block to prevent further errors.",
+					data.getId(),
+					coordsWorld.x, coordsWorld.y, coordsWorld.z
+				);
+			}
+		}
+		
 		// compute the translation from block space to world space
 		Coords translation = correspondence.get( new Coords( 0, 0, 0 ) );
 		
@@ -284,6 +355,18 @@ public class ShipWorld extends DetachedWorld
 		}
 	}
 	
+	private void restoreTileEntityToWorld( World world, Coords coordsWorld, NBTTagCompound nbt )
+	{
+		TileEntity tileEntityCopy = TileEntity.createAndLoadEntity( nbt );
+		tileEntityCopy.setWorldObj( world );
+		tileEntityCopy.xCoord = coordsWorld.x;
+		tileEntityCopy.yCoord = coordsWorld.y;
+		tileEntityCopy.zCoord = coordsWorld.z;
+		tileEntityCopy.validate();
+		
+		world.setBlockTileEntity( coordsWorld.x, coordsWorld.y, coordsWorld.z, tileEntityCopy );
+	}
+	
 	public BlockMap<EntityHanging> getNearbyHangingEntities( World world, BlockSet blocks )
 	{
 		// get the bounding box of the blocks
@@ -344,9 +427,61 @@ public class ShipWorld extends DetachedWorld
 	
 	public BlockMap<TileEntity> tileEntities( )
 	{
+		// NOTE: this loads every tile entity, so try not to call it on big ships
+		for( Coords coords : new ArrayList<Coords>( m_tileEntityData.keySet() ) )
+		{
+			loadTileEntity( coords, m_tileEntityData.remove( coords ) );
+		}
 		return m_tileEntities;
 	}
 	
+	public int getNumTileEntities( )
+	{
+		return m_tileEntities.size() + m_tileEntityData.size();
+	}
+	
+	public BlockSet tileEntityCoords( )
+	{
+		BlockSet coords = new BlockSet();
+		coords.addAll( m_tileEntities.keySet() );
+		coords.addAll( m_tileEntityData.keySet() );
+		return coords;
+	}
+	
+	public boolean isTileEntityLoaded( Coords coords )
+	{
+		return m_tileEntities.containsKey( coords );
+	}
+	
+	public TileEntityData getTileEntityData( Coords coords )
+	{
+		// tile entities that were never loaded already have their data
+		TileEntityData data = m_tileEntityData.get( coords );
+		if( data != null )
+		{
+			return data;
+		}
+		
+		TileEntity tileEntity = m_tileEntities.get( coords );
+		if( tileEntity == null )
+		{
+			return null;
+		}
+		NBTTagCompound nbt = new NBTTagCompound();
+		try
+		{
+			tileEntity.writeToNBT( nbt );
+		}
+		catch( Throwable t )
+		{
+			Ships.logger.warning( t, "Tile entity %s on a ship at (%d,%d,%d) did not behave during a save operation!",
+				tileEntity.getClass().getName(),
+				tileEntity.xCoord, tileEntity.yCoord, tileEntity.zCoord
+			);
+		}
+		return new TileEntityData( nbt );
+	}
+	
 	public BlockMap<EntityHanging> hangingEntities( )
 	{
 		return m_hangingEntities;
@@ -392,7 +527,7 @@ public class ShipWorld extends DetachedWorld
 	
 	public int getBlockId( Coords coords )
 	{
-		return getBlockStorage( coords ).id;
+		return m_storage.getBlockId( coords );
 	}
 	
 	@Override
@@ -411,7 +546,46 @@ public class ShipWorld extends DetachedWorld
 	
 	public TileEntity getBlockTileEntity( Coords coords )
 	{
-		return m_tileEntities.get( coords );
+		TileEntity tileEntity = m_tileEntities.get( coords );
+		if( tileEntity == null && !m_tileEntityData.isEmpty() )
+		{
+			// this is the first time anyone needed this tile entity, so load it now
+			TileEntityData data = m_tileEntityData.remove( coords );
+			if( data != null )
+			{
+				tileEntity = loadTileEntity( new Coords( coords ), data );
+			}
+		}
+		return tileEntity;
+	}
+	
+	private TileEntity loadTileEntity( Coords coords, TileEntityData data )
+	{
+		TileEntity tileEntity = null;
+		try
+		{
+			tileEntity = data.load( this, coords.x, coords.y, coords.z );
+		}
+		catch( Exception ex )
+		{
+			Ships.logger.warning( ex, "Tile entity %s on a ship at (%d,%d,%d) didn't like being loaded. The tile entity has been removed from its block to prevent further errors.",
+				data.getId(),
+				coords.x, coords.y, coords.z
+			);
+			return null;
+		}
+		if( tileEntity == null )
+		{
+			Ships.logger.warning( "Unable to restore tile entity: " + data.getId() );
+			return null;
+		}
+		
+		m_tileEntities.put( coords, tileEntity );
+		if( m_tileEntityScheduler != null )
+		{
+			m_tileEntityScheduler.add( coords, tileEntity );
+		}
+		return tileEntity;
 	}
 	
 	@Override
@@ -423,19 +597,21 @@ public class ShipWorld extends DetachedWorld
 	
 	public int getBlockMetadata( Coords coords )
 	{
-		return getBlockStorage( coords ).meta;
+		return m_storage.getBlockMeta( coords );
 	}
 	
 	@Override
 	public boolean setBlock( int x, int y, int z, int newBlockId, int newMeta, int ignored )
 	{
+		int oldBlockId = getBlockId( x, y, z );
+		int oldMeta = getBlockMetadata( x, y, z );
 		if( applyBlockChange( x, y, z, newBlockId, newMeta ) )
 		{
 			// on the client do nothing more
 			// on the server, buffer the changes to be broadcast to the client
 			if( Environment.isServer() )
 			{
-				m_changedBlocks.add( new Coords( x, y, z ) );
+				bufferBlockChange( x, y, z, oldBlockId, oldMeta );
 			}
 			return true;
 		}
@@ -451,24 +627,41 @@ public class ShipWorld extends DetachedWorld
 	@Override
 	public boolean setBlockMetadataWithNotify( int x, int y, int z, int meta, int ignored )
 	{
-		if( applyBlockChange( x, y, z, getBlockId( x, y, z ), meta ) )
+		int blockId = getBlockId( x, y, z );
+		int oldMeta = getBlockMetadata( x, y, z );
+		if( applyBlockChange( x, y, z, blockId, meta ) )
 		{
 			// on the client do nothing more
 			// on the server, buffer the changes to be broadcast to the client
 			if( Environment.isServer() )
 			{
-				m_changedBlocks.add( new Coords( x, y, z ) );
+				bufferBlockChange( x, y, z, blockId, oldMeta );
 			}
 			return true;
 		}
 		return false;
 	}
 	
-	public boolean needsRenderUpdate( )
+	private void bufferBlockChange( int x, int y, int z, int oldBlockId, int oldMeta )
+	{
+		// remember what the block was at the start of the tick, so we can tell if it changed back before the push
+		m_lookupCoords.set( x, y, z );
+		if( !m_changedBlocks.containsKey( m_lookupCoords ) )
+		{
+			m_changedBlocks.put( new Coords( x, y, z ), ( oldBlockId << 4 ) | ( oldMeta & 0xf ) );
+		}
+	}
+	
+	public int getNumChanges( )
 	{
-		boolean val = m_needsRenderUpdate;
-		m_needsRenderUpdate = false;
-		return val;
+		// NOTE: anything that caches something about the blocks (e.g. the encoded ship or collisions) can compare this to see if the ship changed since
+		return m_numChanges;
+	}
+	
+	public BlockSet getRenderUpdates( )
+	{
+		// NOTE: the renderer clears this set after it rebuilds the affected sections
+		return m_renderUpdates;
 	}
 	
 	public boolean applyBlockChange( int x, int y, int z, int newBlockId, int newMeta )
@@ -480,31 +673,50 @@ public class ShipWorld extends DetachedWorld
 	public boolean applyBlockChange( Coords coords, int newBlockId, int newMeta )
 	{
 		// lookup the affected block
-		BlockStorage storage = getBlockStorage( coords );
-		int oldBlockId = storage.id;
+		int oldBlockId = getBlockId( coords );
 		
 		// only allow benign changes to blocks
-		boolean isAllowed = false
+		// NOTE: air isn't stored in the ship, so there's nothing to change there
+		boolean isAllowed = oldBlockId != 0 && ( false
 			// allow metadata changes
 			|| ( oldBlockId == newBlockId )
 			// allow furnace block changes
 			|| ( oldBlockId == Block.furnaceBurning.blockID && newBlockId == Block.furnaceIdle.blockID )
-			|| ( oldBlockId == Block.furnaceIdle.blockID && newBlockId == Block.furnaceBurning.blockID );
+			|| ( oldBlockId == Block.furnaceIdle.blockID && newBlockId == Block.furnaceBurning.blockID ) );
 		
 		if( isAllowed )
 		{
 			// apply the change
-			storage.id = newBlockId;
-			storage.meta = newMeta;
+			m_storage.setBlock( coords, newBlockId, newMeta );
+			m_numChanges++;
 			
 			// notify the tile entity if needed
-			TileEntity tileEntity = getBlockTileEntity( coords );
+			// NOTE: tile entities that aren't loaded yet will find out about the block when they load
+			TileEntity tileEntity = m_tileEntities.get( coords );
 			if( tileEntity != null )
 			{
 				tileEntity.updateContainingBlockInfo();
 			}
 			
-			m_needsRenderUpdate = true;
+			m_renderUpdates.add( new Coords( coords ) );
+			
+			// relight the blocks around the change
+			if( m_lighting != null )
+			{
+				m_renderUpdates.addAll( m_lighting.onBlockChanged( coords.x, coords.y, coords.z, oldBlockId, newBlockId ) );
+			}
+			
+			// keep the display tick index up to date
+			if( m_displayTicks != null )
+			{
+				m_displayTicks.onBlockChanged( coords, newBlockId );
+			}
+			
+			// the change might give sleeping tile entities something to do
+			if( m_tileEntityScheduler != null )
+			{
+				m_tileEntityScheduler.wakeNeighborhood( coords.x, coords.y, coords.z );
+			}
 		}
 		
 		return isAllowed;
@@ -534,70 +746,148 @@ public class ShipWorld extends DetachedWorld
 		return block.isBlockNormalCube( this, x, y, z );
 	}
 	
+	public ShipLighting getLighting( )
+	{
+		// NOTE: only the client really needs light, so wait until someone asks for it
+		if( m_lighting == null )
+		{
+			m_lighting = new ShipLighting( m_storage );
+		}
+		return m_lighting;
+	}
+	
 	@Override
 	public int getLightBrightnessForSkyBlocks( int x, int y, int z, int blockBrightness )
 	{
-		// keep the ship fully sky-lit by default
-		return 15 << 20 | 0 << 4;
+		int skyLight = getLightForRender( EnumSkyBlock.Sky, x, y, z );
+		int blockLight = getLightForRender( EnumSkyBlock.Block, x, y, z );
+		if( blockLight < blockBrightness )
+		{
+			blockLight = blockBrightness;
+		}
+		return skyLight << 20 | blockLight << 4;
+	}
+	
+	private int getLightForRender( EnumSkyBlock type, int x, int y, int z )
+	{
+		// slabs, stairs, etc don't fill the whole block, so they get lit like the blocks next to them
+		if( Block.useNeighborBrightness[getBlockId( x, y, z )] )
+		{
+			return Math.max(
+				getSavedLightValue( type, x, y + 1, z ),
+				Math.max(
+					Math.max( getSavedLightValue( type, x + 1, y, z ), getSavedLightValue( type, x - 1, y, z ) ),
+					Math.max( getSavedLightValue( type, x, y, z + 1 ), getSavedLightValue( type, x, y, z - 1 ) )
+				)
+			);
+		}
+		return getSavedLightValue( type, x, y, z );
+	}
+	
+	@Override
+	public int getSavedLightValue( EnumSkyBlock type, int x, int y, int z )
+	{
+		if( type == EnumSkyBlock.Sky )
+		{
+			return getLighting().getSkyLight( x, y, z );
+		}
+		return getLighting().getBlockLight( x, y, z );
+	}
+	
+	@Override
+	public int getFullBlockLightValue( int x, int y, int z )
+	{
+		return Math.max( getLighting().getSkyLight( x, y, z ), getLighting().getBlockLight( x, y, z ) );
+	}
+	
+	@Override
+	public int getBlockLightValue_do( int x, int y, int z, boolean useNeighborBrightness )
+	{
+		if( useNeighborBrightness && Block.useNeighborBrightness[getBlockId( x, y, z )] )
+		{
+			return Math.max(
+				getBlockLightValue_do( x, y + 1, z, false ),
+				Math.max(
+					Math.max( getBlockLightValue_do( x + 1, y, z, false ), getBlockLightValue_do( x - 1, y, z, false ) ),
+					Math.max( getBlockLightValue_do( x, y, z + 1, false ), getBlockLightValue_do( x, y, z - 1, false ) )
+				)
+			);
+		}
 		
-		// TODO: lighting on ships
+		// NOTE: skylightSubtracted takes care of the time of day
+		return Math.max( getLighting().getSkyLight( x, y, z ) - skylightSubtracted, getLighting().getBlockLight( x, y, z ) );
 	}
 	
 	@Override
-	@SuppressWarnings( "rawtypes" )
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
 	public List selectEntitiesWithinAABB( Class theClass, AxisAlignedBB box, IEntitySelector selector )
 	{
-		// there are no entities in ship world
-		return new ArrayList();
-		
-		// UNDONE: actually do this query?
-		// get the AABB for the query box in world coords
-		// get the entities from the real world
-		// transform them into ship world
+		// NOTE: the box is in blocks space
+		List entities = new ArrayList();
+		if( m_ship != null )
+		{
+			getEntityIndex().getEntities( entities, theClass, box, null, selector );
+		}
+		return entities;
 	}
 	
 	@Override
-	@SuppressWarnings( "rawtypes" )
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
 	public List getEntitiesWithinAABBExcludingEntity( Entity entity, AxisAlignedBB box, IEntitySelector selector )
-    {
-		// there are no entities in ship world
-		return new ArrayList();
+	{
+		List entities = new ArrayList();
+		if( m_ship != null )
+		{
+			getEntityIndex().getEntities( entities, Entity.class, box, entity, selector );
+		}
+		return entities;
+	}
+	
+	private ShipEntityIndex getEntityIndex( )
+	{
+		if( m_entityIndex == null )
+		{
+			m_entityIndex = new ShipEntityIndex();
+			m_nearbyEntities = new ArrayList<Entity>();
+		}
+		
+		// the entities move around, so rebuild the index once per tick, but only if someone asks
+		long time = m_ship.worldObj.getTotalWorldTime();
+		if( time != m_entityIndexTime )
+		{
+			m_ship.getCollider().getNearbyEntities( m_nearbyEntities );
+			m_entityIndex.update( m_nearbyEntities, m_ship.getTransform() );
+			m_entityIndexTime = time;
+		}
+		return m_entityIndex;
 	}
 	
 	@Override
 	public void markTileEntityChunkModified( int x, int y, int z, TileEntity tileEntity )
 	{
-		// don't need to do anything
+		// NOTE: tile entities call this when their inventories change, so wake them up
+		m_numChanges++;
+		if( m_tileEntityScheduler != null )
+		{
+			m_tileEntityScheduler.wakeNeighborhood( x, y, z );
+		}
 	}
 	
-	@Override
-	public void updateEntities( )
+	public TileEntityScheduler getTileEntityScheduler( )
 	{
-		// update the tile entities
-		Iterator<Map.Entry<Coords,TileEntity>> iter = m_tileEntities.entrySet().iterator();
-		while( iter.hasNext() )
+		// NOTE: the tile entities are all in place once the constructors are done, so build the scheduler on first use
+		if( m_tileEntityScheduler == null )
 		{
-			Map.Entry<Coords,TileEntity> entry = iter.next();
-			Coords coords = entry.getKey();
-			TileEntity entity = entry.getValue();
-			
-			try
-			{
-				entity.updateEntity();
-			}
-			catch( Exception ex )
-			{
-				// remove the offending tile entity
-				iter.remove();
-				
-				Ships.logger.warning(
-					ex,
-					"Tile entity %s at (%d,%d,%d) had a problem during an update! The tile entity has been removed from its block to prevent further errors.",
-					entity.getClass().getName(),
-					coords.x, coords.y, coords.z
-				);
-			}
+			m_tileEntityScheduler = new TileEntityScheduler( m_tileEntities );
 		}
+		return m_tileEntityScheduler;
+	}
+	
+	@Override
+	public void updateEntities( )
+	{
+		// update the tile entities that have something to do
+		getTileEntityScheduler().update();
 		
 		// on the client, do random update ticks
 		if( Environment.isClient() && m_ship != null )
@@ -625,18 +915,13 @@ public class ShipWorld extends DetachedWorld
 		int playerY = MathHelper.floor_double( v.yCoord );
 		int playerZ = MathHelper.floor_double( v.zCoord );
 		
-		Random random = new Random();
-		for( int i=0; i<1000; i++ )
+		// do random display ticks, but only on the blocks that use them
+		// NOTE: the index (and its random number generator) lives as long as the ship does
+		if( m_displayTicks == null )
 		{
-			int x = playerX + random.nextInt( 16 ) - random.nextInt( 16 );
-			int y = playerY + random.nextInt( 16 ) - random.nextInt( 16 );
-			int z = playerZ + random.nextInt( 16 ) - random.nextInt( 16 );
-			int blockId = getBlockId( x, y, z );
-			if( blockId > 0 )
-			{
-				Block.blocksList[blockId].randomDisplayTick( this, x, y, z, random );
-			}
+			m_displayTicks = new DisplayTickIndex( this, m_ship.entityId );
 		}
+		m_displayTicks.update( playerX, playerY, playerZ );
 	}
 
 	private void pushBlockChangesToClients( )
@@ -646,11 +931,31 @@ public class ShipWorld extends DetachedWorld
 			return;
 		}
 		
-		MinecraftServer.getServer().getConfigurationManager().sendToAllNear(
-			m_ship.posX, m_ship.posY, m_ship.posZ, 64,
-			m_ship.worldObj.provider.dimensionId,
-			new PacketChangedBlocks( m_ship, m_changedBlocks ).getCustomPacket()
-		);
+		// coalesce the changes for this tick. blocks that changed back (like a redstone clock) don't need to be sent
+		BlockSet changedBlocks = new BlockSet();
+		for( Map.Entry<Coords,Integer> entry : m_changedBlocks.entrySet() )
+		{
+			Coords coords = entry.getKey();
+			int packed = ( getBlockId( coords ) << 4 ) | ( getBlockMetadata( coords ) & 0xf );
+			if( packed != entry.getValue() )
+			{
+				changedBlocks.add( coords );
+			}
+		}
+		if( changedBlocks.isEmpty() )
+		{
+			return;
+		}
+		
+		// NOTE: lots of changes at once (like relighting a big ship) might not fit in one packet
+		for( Packet250CustomPayload customPacket : new PacketChangedBlocks( m_ship, changedBlocks ).getCustomPackets() )
+		{
+			MinecraftServer.getServer().getConfigurationManager().sendToAllNear(
+				m_ship.posX, m_ship.posY, m_ship.posZ, 64,
+				m_ship.worldObj.provider.dimensionId,
+				customPacket
+			);
+		}
 	}
 	
 	@Override
@@ -13,6 +13,7 @@ package cuchaz.ships;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.logging.Logger;
 
 import net.minecraft.block.Block;
@@ -28,6 +29,8 @@ import net.minecraft.world.World;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.ForgeSubscribe;
 import net.minecraftforge.event.entity.EntityJoinWorldEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
 
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
@@ -36,8 +39,10 @@ import cpw.mods.fml.client.FMLFileResourcePack;
 import cpw.mods.fml.client.FMLFolderResourcePack;
 import cpw.mods.fml.client.registry.RenderingRegistry;
 import cpw.mods.fml.common.DummyModContainer;
+import cpw.mods.fml.common.ITickHandler;
 import cpw.mods.fml.common.LoadController;
 import cpw.mods.fml.common.ModMetadata;
+import cpw.mods.fml.common.TickType;
 import cpw.mods.fml.common.event.FMLConstructionEvent;
 import cpw.mods.fml.common.event.FMLInitializationEvent;
 import cpw.mods.fml.common.event.FMLServerStartingEvent;
@@ -50,6 +55,7 @@ import cpw.mods.fml.common.network.Player;
 import cpw.mods.fml.common.registry.EntityRegistry;
 import cpw.mods.fml.common.registry.GameRegistry;
 import cpw.mods.fml.common.registry.LanguageRegistry;
+import cpw.mods.fml.common.registry.TickRegistry;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
 import cuchaz.modsShared.FMLHacker;
@@ -77,6 +83,7 @@ import cuchaz.ships.packets.Packet;
 import cuchaz.ships.packets.PacketBlockPropertiesOverrides;
 import cuchaz.ships.packets.PacketChangedBlocks;
 import cuchaz.ships.packets.PacketEraseShip;
+import cuchaz.ships.packets.PacketFragment;
 import cuchaz.ships.packets.PacketHandler;
 import cuchaz.ships.packets.PacketLaunchShip;
 import cuchaz.ships.packets.PacketPasteShip;
@@ -101,7 +108,7 @@ import cuchaz.ships.render.TileEntityProjectorRenderer;
 		PacketRequestShipBlocks.Channel, PacketShipBlocks.Channel, PacketPilotShip.Channel,
 		PacketShipBlockEvent.Channel, PacketChangedBlocks.Channel, PacketPasteShip.Channel,
 		PacketEraseShip.Channel, PacketShipPlaque.Channel, PacketPlayerSleepInBerth.Channel,
-		PacketBlockPropertiesOverrides.Channel, PacketPlaceProjector.Channel },
+		PacketBlockPropertiesOverrides.Channel, PacketPlaceProjector.Channel, PacketFragment.Channel },
 	packetHandler = PacketHandler.class,
 	clientSideRequired = true, // clients without ship mod should not connect to a ships mod server
 	serverSideRequired = false // clients with ships mod should connect to a non-ships mod server
@@ -267,6 +274,34 @@ public class Ships extends DummyModContainer
 					return Gui.values()[id].getGui( player, world, x, y, z );
 				}
 			} );
+			
+			// finish ship launches on the server thread
+			TickRegistry.registerTickHandler( new ITickHandler( )
+			{
+				@Override
+				public void tickStart( EnumSet<TickType> type, Object ... tickData )
+				{
+					// nothing to do
+				}
+				
+				@Override
+				public void tickEnd( EnumSet<TickType> type, Object ... tickData )
+				{
+					ShipLaunchQueue.update();
+				}
+				
+				@Override
+				public EnumSet<TickType> ticks( )
+				{
+					return EnumSet.of( TickType.SERVER );
+				}
+				
+				@Override
+				public String getLabel( )
+				{
+					return "Ship launches";
+				}
+			}, Side.SERVER );
 		}
 		catch( Throwable ex )
 		{
@@ -466,6 +501,13 @@ public class Ships extends DummyModContainer
 	@ForgeSubscribe
 	public void onEntityJoin( EntityJoinWorldEvent event )
 	{
+		// keep track of ships on both client and server
+		if( event.entity instanceof EntityShip )
+		{
+			ShipRegistry.onShipAdded( (EntityShip)event.entity );
+			return;
+		}
+		
 		if( event.world.isRemote )
 		{
 			// ignore on client
@@ -487,4 +529,17 @@ public class Ships extends DummyModContainer
 		Packet packet = new PacketBlockPropertiesOverrides( BlockProperties.getOverrides() );
 		PacketDispatcher.sendPacketToPlayer( packet.getCustomPacket(), (Player)player );
 	}
+	
+	@ForgeSubscribe
+	public void onChunkUnload( ChunkEvent.Unload event )
+	{
+		ShipRegistry.onChunkUnloaded( event.getChunk() );
+	}
+	
+	@ForgeSubscribe
+	public void onWorldUnload( WorldEvent.Unload event )
+	{
+		ShipRegistry.onWorldUnloaded( event.world );
+		ShipLaunchQueue.onWorldUnloaded( event.world );
+	}
 }
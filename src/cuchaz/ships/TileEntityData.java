@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.tileentity.TileEntityChest;
+import net.minecraft.tileentity.TileEntityEnderChest;
+import net.minecraft.world.World;
+import cuchaz.modsShared.blocks.Coords;
+
+public class TileEntityData
+{
+	// a tile entity that hasn't been loaded yet, kept exactly as it was encoded
+	// loading a tile entity means building it and all its items from NBT, so ships only do that when something actually needs the tile entity
+	// NOTE: the encoded bytes never change, so saving an unloaded tile entity gives back exactly what we read
+	
+	private static final String[] ClassMapNames = { "nameToClassMap", "field_70326_a" };
+	private static final String[] MethodNames = { "updateEntity", "func_70316_g" };
+	private static Map<String,Class<?>> m_classes;
+	private static Map<Class<?>,Boolean> m_overrides;
+	
+	static
+	{
+		m_classes = null;
+		m_overrides = new HashMap<Class<?>,Boolean>();
+	}
+	
+	private String m_id;
+	private Coords m_coords;
+	private byte[] m_data;
+	
+	public TileEntityData( NBTTagCompound nbt )
+	{
+		m_id = nbt.getString( "id" );
+		m_coords = new Coords( nbt.getInteger( "x" ), nbt.getInteger( "y" ), nbt.getInteger( "z" ) );
+		try
+		{
+			ByteArrayOutputStream buf = new ByteArrayOutputStream();
+			NBTBase.writeNamedTag( nbt, new DataOutputStream( buf ) );
+			m_data = buf.toByteArray();
+		}
+		catch( IOException ex )
+		{
+			// byte buffers should never throw an IOException
+			throw new Error( ex );
+		}
+	}
+	
+	private TileEntityData( NBTTagCompound nbt, byte[] data )
+	{
+		m_id = nbt.getString( "id" );
+		m_coords = new Coords( nbt.getInteger( "x" ), nbt.getInteger( "y" ), nbt.getInteger( "z" ) );
+		m_data = data;
+	}
+	
+	public static TileEntityData read( InputStream in )
+	throws IOException
+	{
+		// keep the bytes as we parse them, so we don't have to encode the tag again later
+		final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		InputStream teeIn = new FilterInputStream( in )
+		{
+			@Override
+			public int read( )
+			throws IOException
+			{
+				int b = super.read();
+				if( b >= 0 )
+				{
+					buf.write( b );
+				}
+				return b;
+			}
+			
+			@Override
+			public int read( byte[] data, int offset, int length )
+			throws IOException
+			{
+				int numRead = super.read( data, offset, length );
+				if( numRead > 0 )
+				{
+					buf.write( data, offset, numRead );
+				}
+				return numRead;
+			}
+		};
+		NBTTagCompound nbt = (NBTTagCompound)NBTBase.readNamedTag( new DataInputStream( teeIn ) );
+		return new TileEntityData( nbt, buf.toByteArray() );
+	}
+	
+	public void write( OutputStream out )
+	throws IOException
+	{
+		out.write( m_data );
+	}
+	
+	public String getId( )
+	{
+		return m_id;
+	}
+	
+	public Coords getCoords( )
+	{
+		return m_coords;
+	}
+	
+	public NBTTagCompound getNBT( )
+	{
+		try
+		{
+			return (NBTTagCompound)NBTBase.readNamedTag( new DataInputStream( new ByteArrayInputStream( m_data ) ) );
+		}
+		catch( IOException ex )
+		{
+			// byte buffers should never throw an IOException
+			throw new Error( ex );
+		}
+	}
+	
+	public TileEntity load( World world, int x, int y, int z )
+	{
+		// NOTE: returns null if the tile entity type isn't registered anymore
+		TileEntity tileEntity = TileEntity.createAndLoadEntity( getNBT() );
+		if( tileEntity != null )
+		{
+			tileEntity.setWorldObj( world );
+			tileEntity.xCoord = x;
+			tileEntity.yCoord = y;
+			tileEntity.zCoord = z;
+			tileEntity.validate();
+		}
+		return tileEntity;
+	}
+	
+	public boolean canWait( )
+	{
+		// tile entities that don't update can stay unloaded until someone touches them
+		Class<?> c = getTileEntityClass( m_id );
+		if( c == null )
+		{
+			// we can't tell, so load it now
+			return false;
+		}
+		
+		// chests only update to animate their lids, and a chest that was just loaded is closed with nobody using it
+		if( c == TileEntityChest.class || c == TileEntityEnderChest.class )
+		{
+			return true;
+		}
+		
+		return !hasUpdates( c );
+	}
+	
+	private static synchronized boolean hasUpdates( Class<?> c )
+	{
+		// NOTE: the client and the integrated server both load ships, so the caches need to be synchronized
+		Boolean hasOverride = m_overrides.get( c );
+		if( hasOverride == null )
+		{
+			hasOverride = overridesUpdateEntity( c );
+			m_overrides.put( c, hasOverride );
+		}
+		return hasOverride;
+	}
+	
+	@SuppressWarnings( "unchecked" )
+	private static synchronized Class<?> getTileEntityClass( String id )
+	{
+		if( m_classes == null )
+		{
+			// NOTE: field names are obfuscated outside the dev environment, so check both names
+			m_classes = new HashMap<String,Class<?>>();
+			for( String fieldName : ClassMapNames )
+			{
+				try
+				{
+					Field field = TileEntity.class.getDeclaredField( fieldName );
+					field.setAccessible( true );
+					m_classes = (Map<String,Class<?>>)field.get( null );
+					break;
+				}
+				catch( Exception ex )
+				{
+					// keep looking
+				}
+			}
+		}
+		return m_classes.get( id );
+	}
+	
+	private static boolean overridesUpdateEntity( Class<?> c )
+	{
+		// NOTE: method names are obfuscated outside the dev environment, so check both names
+		for( ; c != null && c != TileEntity.class; c = c.getSuperclass() )
+		{
+			for( String methodName : MethodNames )
+			{
+				try
+				{
+					c.getDeclaredMethod( methodName );
+					return true;
+				}
+				catch( NoSuchMethodException ex )
+				{
+					// keep looking
+				}
+				catch( SecurityException ex )
+				{
+					// we can't tell, so assume it does
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
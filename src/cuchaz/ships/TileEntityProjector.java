@@ -21,11 +21,14 @@ import cpw.mods.fml.relauncher.SideOnly;
 import cuchaz.modsShared.blocks.BoundingBoxInt;
 import cuchaz.modsShared.blocks.Coords;
 import cuchaz.ships.persistence.PersistenceException;
+import cuchaz.ships.persistence.ShipEncodingCache;
 import cuchaz.ships.persistence.ShipWorldPersistence;
 
 public class TileEntityProjector extends TileEntity
 {
 	private ShipWorld m_shipWorld;
+	private ShipEncodingCache.Entry m_encoding;
+	private int m_encodingNumChanges;
 	private byte[] m_encodedBlocksToLoad;
 	private AxisAlignedBB m_boundingBox;
 	private Coords m_shipTranslation;
@@ -33,6 +36,8 @@ public class TileEntityProjector extends TileEntity
 	public TileEntityProjector( )
 	{
 		m_shipWorld = null;
+		m_encoding = null;
+		m_encodingNumChanges = 0;
 		m_encodedBlocksToLoad = null;
 		m_boundingBox = null;
 		m_shipTranslation = new Coords( 0, 0, 0 );
@@ -45,6 +50,7 @@ public class TileEntityProjector extends TileEntity
 	public void setShipWorld( ShipWorld shipWorld )
 	{
 		m_shipWorld = shipWorld;
+		m_encoding = null;
 		
 		// set the bounding box (center the ship over the projector)
 		BoundingBoxInt box = m_shipWorld.getBoundingBox();
@@ -89,6 +95,12 @@ public class TileEntityProjector extends TileEntity
 				try
 				{
 					setShipWorld( ShipWorldPersistence.readAnyVersion( worldObj, m_encodedBlocksToLoad ) );
+					
+					// if the bytes are already in the newest format, they're exactly what we'd get by encoding the ship again
+					if( ShipWorldPersistence.isNewestVersion( m_encodedBlocksToLoad ) )
+					{
+						setEncoding( ShipEncodingCache.intern( m_encodedBlocksToLoad ) );
+					}
 				}
 				catch( PersistenceException ex )
 				{
@@ -114,8 +126,29 @@ public class TileEntityProjector extends TileEntity
 		super.writeToNBT( nbt );
 		if( m_shipWorld != null )
 		{
-			nbt.setByteArray( "shipWorld", ShipWorldPersistence.writeNewestVersion( m_shipWorld ) );
+			nbt.setByteArray( "shipWorld", getEncoding().getData() );
 		}
+		else if( m_encodedBlocksToLoad != null )
+		{
+			// we haven't loaded the ship yet, so save what we read
+			nbt.setByteArray( "shipWorld", m_encodedBlocksToLoad );
+		}
+	}
+	
+	private ShipEncodingCache.Entry getEncoding( )
+	{
+		// chunk saves and description packets both need the encoded ship, so only encode it again when the ship changes
+		if( m_encoding == null || m_encodingNumChanges != m_shipWorld.getNumChanges() )
+		{
+			setEncoding( ShipEncodingCache.encode( m_shipWorld ) );
+		}
+		return m_encoding;
+	}
+	
+	private void setEncoding( ShipEncodingCache.Entry encoding )
+	{
+		m_encoding = encoding;
+		m_encodingNumChanges = m_shipWorld.getNumChanges();
 	}
 	
 	@Override
@@ -0,0 +1,403 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import net.minecraft.inventory.IInventory;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.crafting.FurnaceRecipes;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.tileentity.TileEntityFurnace;
+import net.minecraft.tileentity.TileEntityHopper;
+import net.minecraft.world.World;
+import cuchaz.modsShared.blocks.BlockMap;
+import cuchaz.modsShared.blocks.Coords;
+
+public class TileEntityScheduler
+{
+	// only ticks the tile entities that can actually do something
+	// a tile entity goes to sleep when its next update would be a no-op, and wakes up when its inventory or a neighboring block changes
+	// awake tile entities are kept in the same order as the tile entity map, so they tick in the same order they always did
+	// tile entities loaded after the scheduler was built go after the rest, in the order they were loaded
+	// NOTE: only tile entities we understand (furnaces and hoppers) can sleep. everything else ticks every time, just like before
+	
+	private BlockMap<TileEntity> m_tileEntities;
+	private Coords[] m_coords;
+	private TileEntity[] m_entities;
+	private int m_numEntities;
+	private BlockMap<Integer> m_indices;
+	private boolean[] m_isAwake;
+	private int[] m_awake;
+	private int m_numAwake;
+	private long m_budgetNanos;
+	private int m_startPos;
+	private boolean m_isUpdating;
+	private int m_cursor;
+	private int m_end;
+	private int m_wrapEnd;
+	private Coords m_lookupCoords;
+	
+	public TileEntityScheduler( BlockMap<TileEntity> tileEntities )
+	{
+		m_tileEntities = tileEntities;
+		m_coords = new Coords[tileEntities.size()];
+		m_entities = new TileEntity[tileEntities.size()];
+		m_indices = new BlockMap<Integer>();
+		int i = 0;
+		for( Map.Entry<Coords,TileEntity> entry : tileEntities.entrySet() )
+		{
+			m_coords[i] = entry.getKey();
+			m_entities[i] = entry.getValue();
+			m_indices.put( entry.getKey(), i );
+			i++;
+		}
+		m_numEntities = i;
+		m_isAwake = new boolean[m_entities.length];
+		m_awake = new int[m_entities.length];
+		m_numAwake = 0;
+		m_budgetNanos = 0;
+		m_startPos = 0;
+		m_isUpdating = false;
+		m_lookupCoords = new Coords( 0, 0, 0 );
+		
+		wakeAll();
+	}
+	
+	public int getNumTileEntities( )
+	{
+		return m_numEntities;
+	}
+	
+	public void add( Coords coords, TileEntity tileEntity )
+	{
+		if( m_numEntities == m_entities.length )
+		{
+			int capacity = Math.max( 16, m_entities.length*2 );
+			m_coords = Arrays.copyOf( m_coords, capacity );
+			m_entities = Arrays.copyOf( m_entities, capacity );
+			m_isAwake = Arrays.copyOf( m_isAwake, capacity );
+			m_awake = Arrays.copyOf( m_awake, capacity );
+		}
+		int index = m_numEntities++;
+		m_coords[index] = coords;
+		m_entities[index] = tileEntity;
+		m_indices.put( coords, index );
+		
+		// it hasn't had a chance to update yet, so start it awake
+		wake( coords.x, coords.y, coords.z );
+	}
+	
+	public int getNumAwake( )
+	{
+		return m_numAwake;
+	}
+	
+	public long getTickBudget( )
+	{
+		return m_budgetNanos;
+	}
+	
+	public void setTickBudget( long nanos )
+	{
+		// NOTE: 0 means no budget. With a budget, tile entities that don't fit in a tick wait for the next one,
+		// so big ships won't lag the server, but their machines will run a little slower
+		m_budgetNanos = nanos;
+	}
+	
+	public void wakeAll( )
+	{
+		m_numAwake = 0;
+		for( int i=0; i<m_numEntities; i++ )
+		{
+			m_isAwake[i] = m_entities[i] != null;
+			if( m_isAwake[i] )
+			{
+				m_awake[m_numAwake++] = i;
+			}
+		}
+		m_startPos = 0;
+	}
+	
+	public void wakeNeighborhood( int x, int y, int z )
+	{
+		wake( x, y, z );
+		wake( x + 1, y, z );
+		wake( x - 1, y, z );
+		wake( x, y + 1, z );
+		wake( x, y - 1, z );
+		wake( x, y, z + 1 );
+		wake( x, y, z - 1 );
+	}
+	
+	public void wake( int x, int y, int z )
+	{
+		m_lookupCoords.set( x, y, z );
+		Integer index = m_indices.get( m_lookupCoords );
+		if( index == null || m_entities[index] == null )
+		{
+			return;
+		}
+		if( m_isAwake[index] )
+		{
+			return;
+		}
+		m_isAwake[index] = true;
+		
+		// keep the awake list in map order
+		int pos = findPos( index );
+		if( pos >= 0 )
+		{
+			// it fell asleep earlier this update, but it's still in the list
+			return;
+		}
+		pos = -pos - 1;
+		System.arraycopy( m_awake, pos, m_awake, pos + 1, m_numAwake - pos );
+		m_awake[pos] = index;
+		m_numAwake++;
+		
+		// if we're in the middle of an update, it gets its turn this tick only if we haven't passed it yet
+		if( pos < m_startPos )
+		{
+			m_startPos++;
+		}
+		if( m_isUpdating )
+		{
+			if( pos < m_cursor )
+			{
+				m_cursor++;
+			}
+			if( pos <= m_end )
+			{
+				m_end++;
+			}
+			if( pos <= m_wrapEnd )
+			{
+				m_wrapEnd++;
+			}
+		}
+	}
+	
+	public void update( )
+	{
+		if( m_numAwake == 0 )
+		{
+			return;
+		}
+		
+		long deadline = m_budgetNanos > 0 ? System.nanoTime() + m_budgetNanos : 0;
+		
+		// start where the last update left off, then wrap around to the beginning
+		m_isUpdating = true;
+		m_cursor = Math.min( m_startPos, m_numAwake );
+		m_end = m_numAwake;
+		m_wrapEnd = m_cursor;
+		boolean needsWrap = m_cursor > 0;
+		boolean isOverBudget = false;
+		while( true )
+		{
+			if( m_cursor >= m_end )
+			{
+				if( !needsWrap )
+				{
+					break;
+				}
+				needsWrap = false;
+				m_cursor = 0;
+				m_end = m_wrapEnd;
+				continue;
+			}
+			
+			int index = m_awake[m_cursor++];
+			if( m_isAwake[index] )
+			{
+				tick( index );
+			}
+			
+			if( deadline != 0 && System.nanoTime() >= deadline )
+			{
+				isOverBudget = true;
+				break;
+			}
+		}
+		m_isUpdating = false;
+		
+		// the next update starts with the first tile entity we didn't get to
+		m_startPos = isOverBudget ? m_cursor : 0;
+		
+		// drop the tile entities that fell asleep from the awake list
+		int numAwake = 0;
+		int startPos = 0;
+		for( int pos=0; pos<m_numAwake; pos++ )
+		{
+			int index = m_awake[pos];
+			if( m_isAwake[index] )
+			{
+				m_awake[numAwake++] = index;
+			}
+			if( pos < m_startPos )
+			{
+				startPos = numAwake;
+			}
+		}
+		m_numAwake = numAwake;
+		m_startPos = startPos < m_numAwake ? startPos : 0;
+	}
+	
+	private void tick( int index )
+	{
+		TileEntity entity = m_entities[index];
+		Coords coords = m_coords[index];
+		try
+		{
+			entity.updateEntity();
+		}
+		catch( Exception ex )
+		{
+			// remove the offending tile entity
+			m_tileEntities.remove( coords );
+			m_entities[index] = null;
+			m_isAwake[index] = false;
+			
+			Ships.logger.warning(
+				ex,
+				"Tile entity %s at (%d,%d,%d) had a problem during an update! The tile entity has been removed from its block to prevent further errors.",
+				entity.getClass().getName(),
+				coords.x, coords.y, coords.z
+			);
+			return;
+		}
+		
+		if( isIdle( entity ) )
+		{
+			m_isAwake[index] = false;
+		}
+	}
+	
+	private int findPos( int index )
+	{
+		int lo = 0;
+		int hi = m_numAwake - 1;
+		while( lo <= hi )
+		{
+			int mid = ( lo + hi ) >>> 1;
+			if( m_awake[mid] < index )
+			{
+				lo = mid + 1;
+			}
+			else if( m_awake[mid] > index )
+			{
+				hi = mid - 1;
+			}
+			else
+			{
+				return mid;
+			}
+		}
+		return -( lo + 1 );
+	}
+	
+	public static boolean isIdle( TileEntity entity )
+	{
+		// NOTE: check the exact class, since subclasses could do anything in their updates
+		if( entity.getClass() == TileEntityFurnace.class )
+		{
+			return isIdle( (TileEntityFurnace)entity );
+		}
+		if( entity.getClass() == TileEntityHopper.class )
+		{
+			return isIdle( (TileEntityHopper)entity );
+		}
+		return false;
+	}
+	
+	private static boolean isIdle( TileEntityFurnace furnace )
+	{
+		// a burning or cooking furnace always has something to do
+		if( furnace.furnaceBurnTime != 0 || furnace.furnaceCookTime != 0 )
+		{
+			return false;
+		}
+		
+		// an unlit furnace only does something if it has something to smelt
+		if( !canSmelt( furnace ) )
+		{
+			return true;
+		}
+		
+		// and fuel to burn
+		// NOTE: the update also resets the current item burn time when there's no fuel, so wait for that too
+		return TileEntityFurnace.getItemBurnTime( furnace.getStackInSlot( 1 ) ) <= 0 && furnace.currentItemBurnTime == 0;
+	}
+	
+	private static boolean isIdle( TileEntityHopper hopper )
+	{
+		// a hopper waiting out its transfer cooldown, or with something to push, always has something to do
+		if( hopper.isCoolingDown() || !isEmpty( hopper ) )
+		{
+			return false;
+		}
+		
+		// an empty hopper only does something if it has something to pull from above
+		// NOTE: items and minecarts can show up above it without changing any blocks, so only sleep when nothing can get there.
+		// ie, the block above is solid, or it's an inventory that wakes us up when it changes
+		World world = hopper.getWorldObj();
+		int x = hopper.xCoord;
+		int y = hopper.yCoord + 1;
+		int z = hopper.zCoord;
+		TileEntity above = world.getBlockTileEntity( x, y, z );
+		if( above instanceof IInventory )
+		{
+			// NOTE: double chests pull from the other half too, which isn't our neighbor, so stay awake under those
+			return TileEntityHopper.getInventoryAboveHopper( hopper ) == above && isEmpty( (IInventory)above );
+		}
+		return above == null && world.isBlockOpaqueCube( x, y, z );
+	}
+	
+	private static boolean isEmpty( IInventory inventory )
+	{
+		for( int i=0; i<inventory.getSizeInventory(); i++ )
+		{
+			if( inventory.getStackInSlot( i ) != null )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean canSmelt( TileEntityFurnace furnace )
+	{
+		// NOTE: this is the same check as TileEntityFurnace.canSmelt(), which is private
+		ItemStack input = furnace.getStackInSlot( 0 );
+		if( input == null )
+		{
+			return false;
+		}
+		ItemStack result = FurnaceRecipes.smelting().getSmeltingResult( input );
+		if( result == null )
+		{
+			return false;
+		}
+		ItemStack output = furnace.getStackInSlot( 2 );
+		if( output == null )
+		{
+			return true;
+		}
+		if( !output.isItemEqual( result ) )
+		{
+			return false;
+		}
+		int size = output.stackSize + result.stackSize;
+		return size <= furnace.getInventoryStackLimit() && size <= result.getMaxStackSize();
+	}
+}
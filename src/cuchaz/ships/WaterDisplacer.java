@@ -10,11 +10,8 @@
  ******************************************************************************/
 package cuchaz.ships;
 
-import java.util.Iterator;
-
 import net.minecraft.block.Block;
 import cuchaz.modsShared.blocks.BlockSet;
-import cuchaz.modsShared.blocks.Coords;
 import cuchaz.ships.config.BlockProperties;
 
 public class WaterDisplacer extends Displacer
@@ -34,22 +31,15 @@ public class WaterDisplacer extends Displacer
 			return;
 		}
 		
-		// translate to world blocks
-		m_shouldBeDisplaced.clear();
-		m_ship.getCollider().getIntersectingWorldBlocks( m_shouldBeDisplaced, trappedAirBlocks, 0.01, false );
-		
-		// filter out blocks that aren't water
-		Iterator<Coords> iter = m_shouldBeDisplaced.iterator();
-		while( iter.hasNext() )
-		{
-			Coords coords = iter.next();
-			int blockId = m_ship.worldObj.getBlockId( coords.x, coords.y, coords.z );
-			if( !BlockProperties.isWater( Block.blocksList[blockId] ) )
-			{
-				iter.remove();
-			}
-		}
-		
-		updateDisplacement();
+		// NOTE: grow the ship blocks just a bit so we get more robust collisions
+		updateDisplacement( trappedAirBlocks, 0.01 );
+	}
+	
+	@Override
+	protected boolean shouldDisplace( int blockId )
+	{
+		// only displace water
+		Block block = Block.blocksList[blockId];
+		return block != null && BlockProperties.isWater( block );
 	}
 }
@@ -6,6 +6,7 @@ import net.minecraft.creativetab.CreativeTabs;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
+import net.minecraft.network.packet.Packet250CustomPayload;
 import net.minecraft.util.EnumMovingObjectType;
 import net.minecraft.util.MovingObjectPosition;
 import net.minecraft.world.World;
@@ -82,7 +83,10 @@ public class ItemProjector extends Item
 			placeProjector( world, x, y + 1, z, shipWorld );
 			
 			// tell the server
-			PacketDispatcher.sendPacketToServer( new PacketPlaceProjector( encodedBlocks, x, y + 1, z ).getCustomPacket() );
+			for( Packet250CustomPayload customPacket : new PacketPlaceProjector( encodedBlocks, x, y + 1, z ).getCustomPackets() )
+			{
+				PacketDispatcher.sendPacketToServer( customPacket );
+			}
 			
 			if( !player.capabilities.isCreativeMode )
 			{
@@ -16,6 +16,7 @@ import net.minecraft.creativetab.CreativeTabs;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
+import net.minecraft.network.packet.Packet250CustomPayload;
 import net.minecraft.util.EnumMovingObjectType;
 import net.minecraft.util.MovingObjectPosition;
 import net.minecraft.world.World;
@@ -191,7 +192,11 @@ public class ItemShipClipboard extends Item
 						int tz = box.minZ - shipBox.minZ;
 						
 						// send the ship to the server for reconstruction
-						PacketDispatcher.sendPacketToServer( new PacketPasteShip( encodedBlocks, tx, ty, tz ).getCustomPacket() );
+						// NOTE: big ships don't fit in one packet
+						for( Packet250CustomPayload customPacket : new PacketPasteShip( encodedBlocks, tx, ty, tz ).getCustomPackets() )
+						{
+							PacketDispatcher.sendPacketToServer( customPacket );
+						}
 						message( player, GuiString.PastedShip );
 						return true;
 					}
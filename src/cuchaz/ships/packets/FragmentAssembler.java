@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships.packets;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.minecraft.network.packet.Packet250CustomPayload;
+import cuchaz.ships.Ships;
+
+public class FragmentAssembler
+{
+	// collects the fragments from one sender until a whole payload has arrived
+	// partial transfers get dropped if they stall, or if they would use too much memory
+	
+	public static final long TimeoutMillis = 60*1000;
+	public static final int MaxPayloadSize = 8*1024*1024;
+	public static final int MaxBufferedBytes = 16*1024*1024;
+	
+	private static class Transfer
+	{
+		public String channel;
+		public int numFragments;
+		public byte[] data;
+		public boolean[] isReceived;
+		public int numReceived;
+		public long lastTime;
+		
+		public Transfer( PacketFragment fragment, long time )
+		{
+			channel = fragment.getPayloadChannel();
+			numFragments = fragment.getNumFragments();
+			data = new byte[fragment.getPayloadSize()];
+			isReceived = new boolean[numFragments];
+			numReceived = 0;
+			lastTime = time;
+		}
+		
+		public boolean matches( PacketFragment fragment )
+		{
+			return channel.equals( fragment.getPayloadChannel() )
+				&& numFragments == fragment.getNumFragments()
+				&& data.length == fragment.getPayloadSize();
+		}
+	}
+	
+	private Map<Integer,Transfer> m_transfers;
+	private int m_numBufferedBytes;
+	
+	public FragmentAssembler( )
+	{
+		m_transfers = new TreeMap<Integer,Transfer>();
+		m_numBufferedBytes = 0;
+	}
+	
+	public int getNumTransfers( )
+	{
+		return m_transfers.size();
+	}
+	
+	public int getNumBufferedBytes( )
+	{
+		return m_numBufferedBytes;
+	}
+	
+	public Packet250CustomPayload add( PacketFragment fragment, long time )
+	{
+		removeExpiredTransfers( time );
+		
+		Transfer transfer = m_transfers.get( fragment.getTransferId() );
+		if( transfer == null )
+		{
+			// start a new transfer
+			if( !isValidHeader( fragment ) )
+			{
+				Ships.logger.warning( "Received invalid fragment %d/%d of a %d byte payload on channel %s! Dropping it.",
+					fragment.getIndex(), fragment.getNumFragments(), fragment.getPayloadSize(), fragment.getPayloadChannel()
+				);
+				return null;
+			}
+			if( m_numBufferedBytes + fragment.getPayloadSize() > MaxBufferedBytes )
+			{
+				Ships.logger.warning( "Too many partial packets! %dk payload on channel %s will be dropped.", fragment.getPayloadSize()/1024, fragment.getPayloadChannel() );
+				return null;
+			}
+			transfer = new Transfer( fragment, time );
+			m_transfers.put( fragment.getTransferId(), transfer );
+			m_numBufferedBytes += transfer.data.length;
+		}
+		else if( !transfer.matches( fragment ) || fragment.getIndex() < 0 || fragment.getIndex() >= transfer.numFragments )
+		{
+			Ships.logger.warning( "Received mismatched fragment for payload on channel %s! Payload will be dropped.", transfer.channel );
+			removeTransfer( fragment.getTransferId() );
+			return null;
+		}
+		
+		// does the fragment data fit where it should go?
+		int offset = fragment.getIndex()*PacketFragment.MaxDataSize;
+		int expectedSize = Math.min( PacketFragment.MaxDataSize, transfer.data.length - offset );
+		if( fragment.getData().length != expectedSize )
+		{
+			Ships.logger.warning( "Received fragment with wrong size for payload on channel %s! Payload will be dropped.", transfer.channel );
+			removeTransfer( fragment.getTransferId() );
+			return null;
+		}
+		
+		// copy the data, but ignore any duplicate fragments
+		if( !transfer.isReceived[fragment.getIndex()] )
+		{
+			System.arraycopy( fragment.getData(), 0, transfer.data, offset, expectedSize );
+			transfer.isReceived[fragment.getIndex()] = true;
+			transfer.numReceived++;
+		}
+		transfer.lastTime = time;
+		
+		if( transfer.numReceived < transfer.numFragments )
+		{
+			// wait for the rest of the fragments
+			return null;
+		}
+		
+		// the payload is complete
+		removeTransfer( fragment.getTransferId() );
+		Packet250CustomPayload customPacket = new Packet250CustomPayload();
+		customPacket.channel = transfer.channel;
+		customPacket.data = transfer.data;
+		customPacket.length = transfer.data.length;
+		return customPacket;
+	}
+	
+	public void removeExpiredTransfers( long time )
+	{
+		Iterator<Map.Entry<Integer,Transfer>> iter = m_transfers.entrySet().iterator();
+		while( iter.hasNext() )
+		{
+			Transfer transfer = iter.next().getValue();
+			if( time - transfer.lastTime > TimeoutMillis )
+			{
+				Ships.logger.warning( "Timed out waiting for fragments! %dk payload on channel %s will be dropped.", transfer.data.length/1024, transfer.channel );
+				m_numBufferedBytes -= transfer.data.length;
+				iter.remove();
+			}
+		}
+	}
+	
+	private void removeTransfer( int transferId )
+	{
+		Transfer transfer = m_transfers.remove( transferId );
+		if( transfer != null )
+		{
+			m_numBufferedBytes -= transfer.data.length;
+		}
+	}
+	
+	private boolean isValidHeader( PacketFragment fragment )
+	{
+		return fragment.getPayloadChannel() != null
+			&& fragment.getPayloadSize() > 0
+			&& fragment.getPayloadSize() <= MaxPayloadSize
+			&& fragment.getNumFragments() == PacketFragment.getNumFragments( fragment.getPayloadSize() )
+			&& fragment.getIndex() >= 0
+			&& fragment.getIndex() < fragment.getNumFragments();
+	}
+}
@@ -15,6 +15,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import cuchaz.ships.Ships;
 
@@ -24,6 +26,7 @@ import net.minecraft.network.packet.Packet250CustomPayload;
 public abstract class Packet
 {
 	protected static final int MaxPacketSize = 32767;
+	private static final String Encoding = "UTF-8";
 	
 	private String m_channel;
 	
@@ -33,6 +36,16 @@ public abstract class Packet
 	}
 	
 	public Packet250CustomPayload getCustomPacket( )
+	{
+		Packet250CustomPayload customPacket = buildCustomPacket();
+		if( customPacket.length > MaxPacketSize )
+		{
+			Ships.logger.warning( "Packet payload on channel %s too large! %dk Packet payload will be dropped.", m_channel, customPacket.length/1024 );
+		}
+		return customPacket;
+	}
+	
+	private Packet250CustomPayload buildCustomPacket( )
 	{
 		Packet250CustomPayload customPacket = new Packet250CustomPayload();
 		customPacket.channel = m_channel;
@@ -44,11 +57,6 @@ public abstract class Packet
 			DataOutputStream out = new DataOutputStream( data );
 			writeData( out );
 			customPacket.data = data.toByteArray();
-			
-			if( customPacket.data.length > MaxPacketSize )
-			{
-				Ships.logger.warning( "Packet payload on channel %s too large! %dk Packet payload will be dropped.", m_channel, customPacket.data.length/1024 );
-			}
 		}
 		catch( IOException ex )
 		{
@@ -59,6 +67,20 @@ public abstract class Packet
 		return customPacket;
 	}
 	
+	public List<Packet250CustomPayload> getCustomPackets( )
+	{
+		// big payloads (like ships) need to be split into fragments that fit under the packet size limit
+		// the PacketHandler on the other side puts them back together
+		Packet250CustomPayload customPacket = buildCustomPacket();
+		if( customPacket.length > MaxPacketSize )
+		{
+			return PacketFragment.split( customPacket );
+		}
+		List<Packet250CustomPayload> customPackets = new ArrayList<Packet250CustomPayload>( 1 );
+		customPackets.add( customPacket );
+		return customPackets;
+	}
+	
 	public void readCustomPacket( Packet250CustomPayload customPacket )
 	{
 		try
@@ -73,6 +95,82 @@ public abstract class Packet
 		}
 	}
 	
+	protected static void writeBytes( DataOutputStream out, byte[] data )
+	throws IOException
+	{
+		out.writeInt( data.length );
+		out.write( data );
+	}
+	
+	protected static byte[] readBytes( DataInputStream in )
+	throws IOException
+	{
+		// NOTE: don't trust the length from the packet, or a bad packet could make us allocate a huge array
+		int length = in.readInt();
+		if( length < 0 || length > in.available() )
+		{
+			throw new IOException( "Invalid byte array length: " + length );
+		}
+		byte[] data = new byte[length];
+		in.readFully( data );
+		return data;
+	}
+	
+	protected static void writeString( DataOutputStream out, String val )
+	throws IOException
+	{
+		// NOTE: writeUTF() can only write 64k bytes, and encoded ships can be a lot bigger than that
+		writeBytes( out, val.getBytes( Encoding ) );
+	}
+	
+	protected static String readString( DataInputStream in )
+	throws IOException
+	{
+		return new String( readBytes( in ), Encoding );
+	}
+	
+	protected static void writeVarInt( DataOutputStream out, int val )
+	throws IOException
+	{
+		// 7 bits per byte, low bits first. the high bit means there's another byte
+		while( ( val & ~0x7f ) != 0 )
+		{
+			out.writeByte( ( val & 0x7f ) | 0x80 );
+			val >>>= 7;
+		}
+		out.writeByte( val );
+	}
+	
+	protected static int readVarInt( DataInputStream in )
+	throws IOException
+	{
+		int val = 0;
+		for( int shift=0; shift<32; shift+=7 )
+		{
+			int b = in.readUnsignedByte();
+			val |= ( b & 0x7f ) << shift;
+			if( ( b & 0x80 ) == 0 )
+			{
+				return val;
+			}
+		}
+		throw new IOException( "Varint is too long!" );
+	}
+	
+	protected static void writeSignedVarInt( DataOutputStream out, int val )
+	throws IOException
+	{
+		// NOTE: zig-zag encode so small negative numbers stay small too
+		writeVarInt( out, ( val << 1 ) ^ ( val >> 31 ) );
+	}
+	
+	protected static int readSignedVarInt( DataInputStream in )
+	throws IOException
+	{
+		int val = readVarInt( in );
+		return ( val >>> 1 ) ^ -( val & 1 );
+	}
+	
 	public abstract void writeData( DataOutputStream out ) throws IOException;
 	public abstract void readData( DataInputStream in ) throws IOException;
 	public abstract void onPacketReceived( EntityPlayer player );
@@ -13,20 +13,27 @@ package cuchaz.ships.packets;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import net.minecraft.entity.player.EntityPlayer;
 import cuchaz.modsShared.blocks.BlockSet;
 import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.BlocksStorage;
 import cuchaz.ships.EntityShip;
 import cuchaz.ships.ShipLocator;
 import cuchaz.ships.ShipWorld;
 
 public class PacketChangedBlocks extends Packet
 {
+	// changes are grouped into runs of the same id/meta, like a bank of furnaces all lighting up at once
+	// within the packet, each block is a varint offset from the one before it, so nearby changes only take a few bytes
+	
 	public static final String Channel = "changedBlocks";
 	
-	private BlockSet m_changedBlocks;
-	private EntityShip m_ship;
 	private int m_entityId;
 	private int m_numChangedBlocks;
 	private int[] m_x;
@@ -41,26 +48,99 @@ public class PacketChangedBlocks extends Packet
 	}
 	
 	public PacketChangedBlocks( EntityShip ship, BlockSet changedBlocks )
+	{
+		this( ship.entityId, ship.getShipWorld().getBlocksStorage(), changedBlocks );
+	}
+	
+	public PacketChangedBlocks( int entityId, BlocksStorage blocks, BlockSet changedBlocks )
 	{
 		this();
 		
-		m_changedBlocks = changedBlocks;
-		m_ship = ship;
+		m_entityId = entityId;
+		m_numChangedBlocks = changedBlocks.size();
+		m_x = new int[m_numChangedBlocks];
+		m_y = new int[m_numChangedBlocks];
+		m_z = new int[m_numChangedBlocks];
+		m_blockId = new int[m_numChangedBlocks];
+		m_meta = new int[m_numChangedBlocks];
+		
+		// NOTE: grab the blocks now, since the ship can keep changing before the packet gets written
+		int i = 0;
+		for( Coords coords : changedBlocks )
+		{
+			m_x[i] = coords.x;
+			m_y[i] = coords.y;
+			m_z[i] = coords.z;
+			m_blockId[i] = blocks.getBlockId( coords );
+			m_meta[i] = blocks.getBlockMeta( coords );
+			i++;
+		}
+	}
+	
+	public int getEntityId( )
+	{
+		return m_entityId;
+	}
+	
+	public int getNumChangedBlocks( )
+	{
+		return m_numChangedBlocks;
+	}
+	
+	public Coords getCoords( Coords out, int i )
+	{
+		out.set( m_x[i], m_y[i], m_z[i] );
+		return out;
+	}
+	
+	public int getBlockId( int i )
+	{
+		return m_blockId[i];
+	}
+	
+	public int getBlockMeta( int i )
+	{
+		return m_meta[i];
 	}
 	
 	@Override
 	public void writeData( DataOutputStream out ) throws IOException
 	{
-		ShipWorld world = m_ship.getShipWorld();
-		out.writeInt( m_ship.entityId );
-		out.writeInt( m_changedBlocks.size() );
-		for( Coords coords : m_changedBlocks )
+		// group the changes by id/meta
+		// NOTE: the changed blocks are already sorted, so each run stays sorted too
+		TreeMap<Integer,List<Integer>> runs = new TreeMap<Integer,List<Integer>>();
+		for( int i=0; i<m_numChangedBlocks; i++ )
 		{
-			out.writeShort( coords.x );
-			out.writeShort( coords.y );
-			out.writeShort( coords.z );
-			out.writeShort( world.getBlockId( coords ) );
-			out.writeByte( world.getBlockMetadata( coords ) );
+			Integer key = ( m_blockId[i] << 4 ) | ( m_meta[i] & 0xf );
+			List<Integer> run = runs.get( key );
+			if( run == null )
+			{
+				run = new ArrayList<Integer>();
+				runs.put( key, run );
+			}
+			run.add( i );
+		}
+		
+		out.writeInt( m_entityId );
+		writeVarInt( out, runs.size() );
+		int x = 0;
+		int y = 0;
+		int z = 0;
+		for( Map.Entry<Integer,List<Integer>> entry : runs.entrySet() )
+		{
+			List<Integer> run = entry.getValue();
+			writeVarInt( out, entry.getKey() >> 4 );
+			out.writeByte( entry.getKey() & 0xf );
+			writeVarInt( out, run.size() );
+			for( int i : run )
+			{
+				writeSignedVarInt( out, m_x[i] - x );
+				writeSignedVarInt( out, m_y[i] - y );
+				writeSignedVarInt( out, m_z[i] - z );
+				x = m_x[i];
+				y = m_y[i];
+				z = m_z[i];
+			}
 		}
 	}
 	
@@ -69,23 +149,42 @@ public class PacketChangedBlocks extends Packet
 	{
 		// read the header
 		m_entityId = in.readInt();
-		m_numChangedBlocks = in.readInt();
+		int numRuns = readVarInt( in );
 		
-		// allocate space for the rest
-		m_x = new int[m_numChangedBlocks];
-		m_y = new int[m_numChangedBlocks];
-		m_z = new int[m_numChangedBlocks];
-		m_blockId = new int[m_numChangedBlocks];
-		m_meta = new int[m_numChangedBlocks];
+		// NOTE: don't trust the counts from the packet. every block takes at least 3 bytes
+		m_numChangedBlocks = 0;
+		m_x = new int[Math.min( 16, in.available()/3 )];
+		m_y = new int[m_x.length];
+		m_z = new int[m_x.length];
+		m_blockId = new int[m_x.length];
+		m_meta = new int[m_x.length];
 		
 		// read the changes into a buffer
-		for( int i=0; i<m_numChangedBlocks; i++ )
+		int x = 0;
+		int y = 0;
+		int z = 0;
+		for( int i=0; i<numRuns; i++ )
 		{
-			m_x[i] = in.readShort();
-			m_y[i] = in.readShort();
-			m_z[i] = in.readShort();
-			m_blockId[i] = in.readShort();
-			m_meta[i] = in.readByte();
+			int blockId = readVarInt( in );
+			int meta = in.readUnsignedByte();
+			int numBlocks = readVarInt( in );
+			if( numBlocks < 0 || numBlocks > in.available()/3 )
+			{
+				throw new IOException( "Invalid number of changed blocks: " + numBlocks );
+			}
+			ensureCapacity( m_numChangedBlocks + numBlocks );
+			for( int j=0; j<numBlocks; j++ )
+			{
+				x += readSignedVarInt( in );
+				y += readSignedVarInt( in );
+				z += readSignedVarInt( in );
+				m_x[m_numChangedBlocks] = x;
+				m_y[m_numChangedBlocks] = y;
+				m_z[m_numChangedBlocks] = z;
+				m_blockId[m_numChangedBlocks] = blockId;
+				m_meta[m_numChangedBlocks] = meta;
+				m_numChangedBlocks++;
+			}
 		}
 	}
 	
@@ -106,4 +205,17 @@ public class PacketChangedBlocks extends Packet
 			world.applyBlockChange( m_x[i], m_y[i], m_z[i], m_blockId[i], m_meta[i] );
 		}
 	}
+	
+	private void ensureCapacity( int size )
+	{
+		if( size > m_x.length )
+		{
+			int capacity = Math.max( size, m_x.length*2 );
+			m_x = Arrays.copyOf( m_x, capacity );
+			m_y = Arrays.copyOf( m_y, capacity );
+			m_z = Arrays.copyOf( m_z, capacity );
+			m_blockId = Arrays.copyOf( m_blockId, capacity );
+			m_meta = Arrays.copyOf( m_meta, capacity );
+		}
+	}
 }
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships.packets;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.network.packet.Packet250CustomPayload;
+
+public class PacketFragment extends Packet
+{
+	public static final String Channel = "shipFragment";
+	
+	// NOTE: leave plenty of room for the fragment header under the packet size limit
+	public static final int MaxDataSize = MaxPacketSize - 1024;
+	
+	private static int m_nextTransferId;
+	
+	static
+	{
+		m_nextTransferId = 0;
+	}
+	
+	private int m_transferId;
+	private String m_payloadChannel;
+	private int m_index;
+	private int m_numFragments;
+	private int m_payloadSize;
+	private byte[] m_data;
+	
+	public PacketFragment( )
+	{
+		super( Channel );
+	}
+	
+	public PacketFragment( int transferId, String payloadChannel, int index, int numFragments, int payloadSize, byte[] data )
+	{
+		this();
+		
+		m_transferId = transferId;
+		m_payloadChannel = payloadChannel;
+		m_index = index;
+		m_numFragments = numFragments;
+		m_payloadSize = payloadSize;
+		m_data = data;
+	}
+	
+	public static List<Packet250CustomPayload> split( Packet250CustomPayload customPacket )
+	{
+		int transferId = getNextTransferId();
+		int numFragments = getNumFragments( customPacket.length );
+		List<Packet250CustomPayload> customPackets = new ArrayList<Packet250CustomPayload>( numFragments );
+		for( int i=0; i<numFragments; i++ )
+		{
+			int offset = i*MaxDataSize;
+			byte[] data = Arrays.copyOfRange( customPacket.data, offset, Math.min( offset + MaxDataSize, customPacket.length ) );
+			customPackets.add( new PacketFragment( transferId, customPacket.channel, i, numFragments, customPacket.length, data ).getCustomPacket() );
+		}
+		return customPackets;
+	}
+	
+	public static int getNumFragments( int payloadSize )
+	{
+		return ( payloadSize + MaxDataSize - 1 )/MaxDataSize;
+	}
+	
+	private static synchronized int getNextTransferId( )
+	{
+		// NOTE: the client and server threads share this counter in single player
+		return m_nextTransferId++;
+	}
+	
+	public int getTransferId( )
+	{
+		return m_transferId;
+	}
+	
+	public String getPayloadChannel( )
+	{
+		return m_payloadChannel;
+	}
+	
+	public int getIndex( )
+	{
+		return m_index;
+	}
+	
+	public int getNumFragments( )
+	{
+		return m_numFragments;
+	}
+	
+	public int getPayloadSize( )
+	{
+		return m_payloadSize;
+	}
+	
+	public byte[] getData( )
+	{
+		return m_data;
+	}
+	
+	@Override
+	public void writeData( DataOutputStream out ) throws IOException
+	{
+		out.writeInt( m_transferId );
+		out.writeUTF( m_payloadChannel );
+		out.writeInt( m_index );
+		out.writeInt( m_numFragments );
+		out.writeInt( m_payloadSize );
+		writeBytes( out, m_data );
+	}
+	
+	@Override
+	public void readData( DataInputStream in ) throws IOException
+	{
+		m_transferId = in.readInt();
+		m_payloadChannel = in.readUTF();
+		m_index = in.readInt();
+		m_numFragments = in.readInt();
+		m_payloadSize = in.readInt();
+		m_data = readBytes( in );
+	}
+	
+	@Override
+	public void onPacketReceived( EntityPlayer player )
+	{
+		// NOTE: the PacketHandler reassembles fragments, so they never get here
+	}
+}
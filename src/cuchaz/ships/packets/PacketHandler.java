@@ -11,6 +11,8 @@
 package cuchaz.ships.packets;
 
 import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.network.INetworkManager;
@@ -22,6 +24,7 @@ import cuchaz.ships.Ships;
 public class PacketHandler implements IPacketHandler
 {
 	private HashMap<String,Packet> m_packetTypes;
+	private Map<INetworkManager,FragmentAssembler> m_assemblers;
 	
 	public PacketHandler( )
 	{
@@ -41,6 +44,9 @@ public class PacketHandler implements IPacketHandler
 		m_packetTypes.put( PacketPlayerSleepInBerth.Channel, new PacketPlayerSleepInBerth() );
 		m_packetTypes.put( PacketBlockPropertiesOverrides.Channel, new PacketBlockPropertiesOverrides() );
 		m_packetTypes.put( PacketPlaceProjector.Channel, new PacketPlaceProjector() );
+		
+		// NOTE: use weak keys so we don't keep closed connections around
+		m_assemblers = new WeakHashMap<INetworkManager,FragmentAssembler>();
 	}
 	
 	@Override
@@ -55,6 +61,17 @@ public class PacketHandler implements IPacketHandler
 			return;
 		}
 		
+		// put fragmented packets back together
+		if( customPacket.channel.equals( PacketFragment.Channel ) )
+		{
+			customPacket = addFragment( manager, customPacket );
+			if( customPacket == null )
+			{
+				// wait for the rest of the fragments
+				return;
+			}
+		}
+		
 		Packet packet = m_packetTypes.get( customPacket.channel );
 		if( packet != null )
 		{
@@ -66,4 +83,22 @@ public class PacketHandler implements IPacketHandler
 			Ships.logger.warning( "Received packet on unregistered channel: %s", customPacket.channel );
 		}
 	}
+	
+	private Packet250CustomPayload addFragment( INetworkManager manager, Packet250CustomPayload customPacket )
+	{
+		PacketFragment fragment = new PacketFragment();
+		fragment.readCustomPacket( customPacket );
+		
+		// NOTE: the client and server threads share this handler in single player
+		synchronized( m_assemblers )
+		{
+			FragmentAssembler assembler = m_assemblers.get( manager );
+			if( assembler == null )
+			{
+				assembler = new FragmentAssembler();
+				m_assemblers.put( manager, assembler );
+			}
+			return assembler.add( fragment, System.currentTimeMillis() );
+		}
+	}
 }
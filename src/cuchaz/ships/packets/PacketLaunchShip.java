@@ -16,9 +16,8 @@ import java.io.IOException;
 
 import net.minecraft.entity.player.EntityPlayer;
 import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.ShipLaunchQueue;
 import cuchaz.ships.ShipLauncher;
-import cuchaz.ships.ShipLauncher.LaunchFlag;
-import cuchaz.ships.Ships;
 
 public class PacketLaunchShip extends Packet
 {
@@ -63,23 +62,7 @@ public class PacketLaunchShip extends Packet
 	@Override
 	public void onPacketReceived( EntityPlayer player )
 	{
-		// spawn the ship
-		ShipLauncher launcher = new ShipLauncher( player.worldObj, new Coords( m_x, m_y, m_z ) );
-		if( launcher.isLaunchable() )
-		{
-			launcher.launch();
-		}
-		else
-		{
-			// debug info
-			Ships.logger.warning(
-				"Server can't launch ship at: (%d,%d,%d)",
-				m_x, m_y, m_z
-			);
-			for( LaunchFlag flag : LaunchFlag.values() )
-			{
-				Ships.logger.warning( "\t" + flag.name() + ": " + launcher.getLaunchFlag( flag ) );
-			}
-		}
+		// analyze the ship in the background, then spawn it on a later tick
+		ShipLaunchQueue.submit( new ShipLauncher( player.worldObj, new Coords( m_x, m_y, m_z ), false ) );
 	}
 }
@@ -44,11 +44,16 @@ public class PacketPasteShip extends Packet
 		m_dz = dz;
 	}
 	
+	public String getEncodedBlocks( )
+	{
+		return m_encodedBlocks;
+	}
+	
 	@Override
 	public void writeData( DataOutputStream out )
 	throws IOException
 	{
-		out.writeUTF( m_encodedBlocks );
+		writeString( out, m_encodedBlocks );
 		out.writeInt( m_dx );
 		out.writeInt( m_dy );
 		out.writeInt( m_dz );
@@ -58,7 +63,7 @@ public class PacketPasteShip extends Packet
 	public void readData( DataInputStream in )
 	throws IOException
 	{
-		m_encodedBlocks = in.readUTF();
+		m_encodedBlocks = readString( in );
 		m_dx = in.readInt();
 		m_dy = in.readInt();
 		m_dz = in.readInt();
@@ -52,7 +52,7 @@ public class PacketPlaceProjector extends Packet
 	public void writeData( DataOutputStream out )
 	throws IOException
 	{
-		out.writeUTF( m_encodedBlocks );
+		writeString( out, m_encodedBlocks );
 		out.writeInt( m_x );
 		out.writeInt( m_y );
 		out.writeInt( m_z );
@@ -62,7 +62,7 @@ public class PacketPlaceProjector extends Packet
 	public void readData( DataInputStream in )
 	throws IOException
 	{
-		m_encodedBlocks = in.readUTF();
+		m_encodedBlocks = readString( in );
 		m_x = in.readInt();
 		m_y = in.readInt();
 		m_z = in.readInt();
@@ -15,6 +15,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.network.packet.Packet250CustomPayload;
 import cpw.mods.fml.common.network.PacketDispatcher;
 import cpw.mods.fml.common.network.Player;
 import cuchaz.ships.EntityShip;
@@ -61,6 +62,9 @@ public class PacketRequestShipBlocks extends Packet
 		}
 		
 		// respond with the blocks
-		PacketDispatcher.sendPacketToPlayer( new PacketShipBlocks( ship ).getCustomPacket(), (Player)player );
+		for( Packet250CustomPayload customPacket : new PacketShipBlocks( ship ).getCustomPackets() )
+		{
+			PacketDispatcher.sendPacketToPlayer( customPacket, (Player)player );
+		}
 	}
 }
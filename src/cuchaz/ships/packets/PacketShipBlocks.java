@@ -45,16 +45,14 @@ public class PacketShipBlocks extends Packet
 	public void writeData( DataOutputStream out ) throws IOException
 	{
 		out.writeInt( m_entityId );
-		out.writeInt( m_shipData.length );
-		out.write( m_shipData );
+		writeBytes( out, m_shipData );
 	}
 	
 	@Override
 	public void readData( DataInputStream in ) throws IOException
 	{
 		m_entityId = in.readInt();
-		m_shipData = new byte[Math.min( in.readInt(), MaxPacketSize )];
-		in.read( m_shipData );
+		m_shipData = readBytes( in );
 	}
 	
 	@Override
@@ -61,8 +61,7 @@ public class PacketShipLaunched extends Packet
 	public void writeData( DataOutputStream out ) throws IOException
 	{
 		out.writeInt( m_entityId );
-		out.writeInt( m_shipData.length );
-		out.write( m_shipData );
+		writeBytes( out, m_shipData );
 		out.writeInt( m_launchX );
 		out.writeInt( m_launchY );
 		out.writeInt( m_launchZ );
@@ -72,8 +71,7 @@ public class PacketShipLaunched extends Packet
 	public void readData( DataInputStream in ) throws IOException
 	{
 		m_entityId = in.readInt();
-		m_shipData = new byte[Math.min( in.readInt(), MaxPacketSize )];
-		in.read( m_shipData );
+		m_shipData = readBytes( in );
 		m_launchX = in.readInt();
 		m_launchY = in.readInt();
 		m_launchZ = in.readInt();
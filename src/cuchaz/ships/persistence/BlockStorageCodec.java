@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.binary.Base64InputStream;
+import org.apache.commons.codec.binary.Base64OutputStream;
+
+import cuchaz.ships.BlocksStorage;
+import cuchaz.ships.ShipWorld;
+
+public class BlockStorageCodec
+{
+	// encodes blocks and ship worlds into a heap buffer that gets reused between calls, and decodes blocks straight out of buffers
+	// the string format is still GZIP and Base64, but the compressor reads straight out of the buffer's array instead of one field at a time
+	// NOTE: each thread gets its own codec, and buffers returned by encode() are only valid until the next call on that thread
+	// NOTE: encoding a ship can encode other ships too (e.g. projectors on board write their ships into their NBT),
+	// so each nested call gets its own buffer from a stack instead of clobbering the one the outer call is writing
+	
+	private class BufferOutputStream extends OutputStream
+	{
+		// so stream writers (like NBT) can write into the buffer too
+		
+		@Override
+		public void write( int b )
+		{
+			ensureCapacity( m_buf.position() + 1 );
+			m_buf.put( (byte)b );
+		}
+		
+		@Override
+		public void write( byte[] b, int offset, int length )
+		{
+			ensureCapacity( m_buf.position() + length );
+			m_buf.put( b, offset, length );
+		}
+	}
+	
+	private static final ThreadLocal<BlockStorageCodec> Codecs = new ThreadLocal<BlockStorageCodec>( )
+	{
+		@Override
+		protected BlockStorageCodec initialValue( )
+		{
+			return new BlockStorageCodec();
+		}
+	};
+	
+	private static final String Encoding = "UTF-8";
+	private static final int InitialCapacity = 8*1024;
+	
+	private List<ByteBuffer> m_bufs;
+	private int m_depth;
+	private ByteBuffer m_buf;
+	private BufferOutputStream m_out;
+	
+	public static BlockStorageCodec get( )
+	{
+		return Codecs.get();
+	}
+	
+	private BlockStorageCodec( )
+	{
+		m_bufs = new ArrayList<ByteBuffer>();
+		m_bufs.add( ByteBuffer.allocate( InitialCapacity ) );
+		m_depth = 0;
+		m_buf = null;
+		m_out = new BufferOutputStream();
+	}
+	
+	public int getCapacity( )
+	{
+		// NOTE: only count the outermost buffer, nested buffers are only for ships inside ships
+		return m_bufs.get( 0 ).capacity();
+	}
+	
+	public ByteBuffer encode( BlocksStorage blocks )
+	{
+		BlockStoragePersistence persistence = BlockStoragePersistence.getNewestVersion();
+		pushBuffer();
+		try
+		{
+			ensureCapacity( persistence.getEncodedSize( blocks ) );
+			persistence.write( blocks, m_buf );
+			m_buf.flip();
+			return m_buf;
+		}
+		finally
+		{
+			popBuffer();
+		}
+	}
+	
+	public ByteBuffer encode( ShipWorld shipWorld )
+	{
+		pushBuffer();
+		try
+		{
+			ShipWorldPersistence.writeNewestVersion( shipWorld, m_out );
+			m_buf.flip();
+			return m_buf;
+		}
+		catch( IOException ex )
+		{
+			// the buffer stream never throws
+			throw new Error( ex );
+		}
+		finally
+		{
+			popBuffer();
+		}
+	}
+	
+	public String encodeString( BlocksStorage blocks )
+	{
+		return toString( encode( blocks ) );
+	}
+	
+	public String encodeString( ShipWorld shipWorld )
+	{
+		return toString( encode( shipWorld ) );
+	}
+	
+	public BlocksStorage decodeString( String data )
+	throws UnrecognizedPersistenceVersion
+	{
+		pushBuffer();
+		try
+		{
+			// inflate straight into the reusable buffer, then read the blocks from there
+			InputStream in = new GZIPInputStream( new Base64InputStream( new ByteArrayInputStream( data.getBytes( Encoding ) ) ), InitialCapacity );
+			while( true )
+			{
+				if( !m_buf.hasRemaining() )
+				{
+					ensureCapacity( m_buf.capacity() + 1 );
+				}
+				int length = in.read( m_buf.array(), m_buf.arrayOffset() + m_buf.position(), m_buf.remaining() );
+				if( length < 0 )
+				{
+					break;
+				}
+				m_buf.position( m_buf.position() + length );
+			}
+			in.close();
+			m_buf.flip();
+			return BlockStoragePersistence.readAnyVersion( m_buf );
+		}
+		catch( IOException ex )
+		{
+			throw new UnrecognizedPersistenceVersion();
+		}
+		finally
+		{
+			popBuffer();
+		}
+	}
+	
+	private String toString( ByteBuffer data )
+	{
+		try
+		{
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			OutputStream out = new GZIPOutputStream( new Base64OutputStream( buffer ) );
+			out.write( data.array(), data.arrayOffset() + data.position(), data.remaining() );
+			out.close();
+			return new String( buffer.toByteArray(), Encoding );
+		}
+		catch( IOException ex )
+		{
+			throw new Error( ex );
+		}
+	}
+	
+	private void pushBuffer( )
+	{
+		// NOTE: ensureCapacity() might have swapped in a bigger buffer for the outer call, so hang on to it
+		if( m_depth > 0 )
+		{
+			m_bufs.set( m_depth - 1, m_buf );
+		}
+		
+		// grab the buffer for this depth, or make a new one if we've never been this deep before
+		if( m_depth == m_bufs.size() )
+		{
+			m_bufs.add( ByteBuffer.allocate( InitialCapacity ) );
+		}
+		m_buf = m_bufs.get( m_depth++ );
+		m_buf.clear();
+	}
+	
+	private void popBuffer( )
+	{
+		// keep this depth's buffer for next time, and go back to the outer call's buffer
+		m_bufs.set( --m_depth, m_buf );
+		m_buf = m_depth > 0 ? m_bufs.get( m_depth - 1 ) : null;
+	}
+	
+	private void ensureCapacity( int size )
+	{
+		if( m_buf.capacity() >= size )
+		{
+			return;
+		}
+		
+		// NOTE: grow by doubling so big ships don't copy the buffer over and over, and keep whatever we already wrote
+		int capacity = m_buf.capacity();
+		while( capacity < size )
+		{
+			capacity *= 2;
+		}
+		ByteBuffer buf = ByteBuffer.allocate( capacity );
+		m_buf.flip();
+		buf.put( m_buf );
+		m_buf = buf;
+	}
+}
@@ -10,23 +10,16 @@
  ******************************************************************************/
 package cuchaz.ships.persistence;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.TreeMap;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
-
-import org.apache.commons.codec.binary.Base64InputStream;
-import org.apache.commons.codec.binary.Base64OutputStream;
 
 import cuchaz.modsShared.blocks.Coords;
 import cuchaz.ships.Bits;
-import cuchaz.ships.BlockStorage;
 import cuchaz.ships.BlocksStorage;
 
 public enum BlockStoragePersistence
@@ -34,68 +27,74 @@ public enum BlockStoragePersistence
 	V1( 1 )
 	{
 		@Override
-		protected BlocksStorage onRead( DataInputStream in, int numBlocks ) throws IOException
+		protected BlocksStorage onRead( ByteBuffer in, int numBlocks )
 		{
 			BlocksStorage blocks = new BlocksStorage();
+			Coords coords = new Coords( 0, 0, 0 );
 			for( int i=0; i<numBlocks; i++ )
 			{
-				Coords coords = new Coords( in.readInt(), in.readInt(), in.readInt() );
-				BlockStorage block = new BlockStorage( in.readInt(), in.readInt() );
-				blocks.setBlock( coords, block );
+				coords.set( in.getInt(), in.getInt(), in.getInt() );
+				blocks.setBlock( coords, in.getInt(), in.getInt() );
 			}
 			return blocks;
 		}
 		
 		@Override
-		protected void onWrite( BlocksStorage blocks, DataOutputStream out ) throws IOException
+		protected void onWrite( BlocksStorage blocks, ByteBuffer out )
 		{
-			out.writeInt( blocks.getNumBlocks() );
+			out.putInt( blocks.getNumBlocks() );
 			for( Coords coords : blocks.coords() )
 			{
-				out.writeInt( coords.x );
-				out.writeInt( coords.y );
-				out.writeInt( coords.z );
-				BlockStorage block = blocks.getBlock( coords );
-				out.writeInt( block.id );
-				out.writeInt( block.meta );
+				out.putInt( coords.x );
+				out.putInt( coords.y );
+				out.putInt( coords.z );
+				out.putInt( blocks.getBlockId( coords ) );
+				out.putInt( blocks.getBlockMeta( coords ) );
 			}
 		}
+		
+		@Override
+		protected int getBytesPerBlock( )
+		{
+			return 20;
+		}
 	},
 	V2( 2 )
 	{
 		@Override
-		protected BlocksStorage onRead( DataInputStream in, int numBlocks ) throws IOException
+		protected BlocksStorage onRead( ByteBuffer in, int numBlocks )
 		{
 			BlocksStorage blocks = new BlocksStorage();
+			Coords coords = new Coords( 0, 0, 0 );
 			for( int i=0; i<numBlocks; i++ )
 			{
-				Coords coords = new Coords( in.readShort(), in.readShort(), in.readShort() );
-				int n = in.readShort();
-				BlockStorage block = new BlockStorage();
-				block.id = Bits.unpackUnsigned( n, 12, 0 );
-				block.meta = Bits.unpackUnsigned( n, 4, 12 );
-				blocks.setBlock( coords, block );
+				coords.set( in.getShort(), in.getShort(), in.getShort() );
+				int n = in.getShort();
+				blocks.setBlock( coords, Bits.unpackUnsigned( n, 12, 0 ), Bits.unpackUnsigned( n, 4, 12 ) );
 			}
 			return blocks;
 		}
 		
 		@Override
-		protected void onWrite( BlocksStorage blocks, DataOutputStream out ) throws IOException
+		protected void onWrite( BlocksStorage blocks, ByteBuffer out )
 		{
-			out.writeInt( blocks.getNumBlocks() );
+			out.putInt( blocks.getNumBlocks() );
 			for( Coords coords : blocks.coords() )
 			{
-				out.writeShort( coords.x );
-				out.writeShort( coords.y );
-				out.writeShort( coords.z );
-				BlockStorage block = blocks.getBlock( coords );
-				out.writeShort( Bits.packUnsigned( block.id, 12, 0 ) | Bits.packUnsigned( block.meta, 4, 12 ) );
+				out.putShort( (short)coords.x );
+				out.putShort( (short)coords.y );
+				out.putShort( (short)coords.z );
+				out.putShort( (short)( Bits.packUnsigned( blocks.getBlockId( coords ), 12, 0 ) | Bits.packUnsigned( blocks.getBlockMeta( coords ), 4, 12 ) ) );
 			}
 		}
+		
+		@Override
+		protected int getBytesPerBlock( )
+		{
+			return 8;
+		}
 	};
 	
-	private static final String Encoding = "UTF-8";
-	
 	private static TreeMap<Integer,BlockStoragePersistence> m_versions;
 	
 	static
@@ -114,15 +113,16 @@ public enum BlockStoragePersistence
 		m_version = version;
 	}
 	
-	protected abstract BlocksStorage onRead( DataInputStream in, int numBlocks ) throws IOException;
-	protected abstract void onWrite( BlocksStorage blocks, DataOutputStream out ) throws IOException;
+	protected abstract BlocksStorage onRead( ByteBuffer in, int numBlocks );
+	protected abstract void onWrite( BlocksStorage blocks, ByteBuffer out );
+	protected abstract int getBytesPerBlock( );
 	
 	private static BlockStoragePersistence get( int version )
 	{
 		return m_versions.get( version );
 	}
 	
-	private static BlockStoragePersistence getNewestVersion( )
+	static BlockStoragePersistence getNewestVersion( )
 	{
 		return m_versions.lastEntry().getValue();
 	}
@@ -130,30 +130,45 @@ public enum BlockStoragePersistence
 	public static BlocksStorage readAnyVersion( String data )
 	throws UnrecognizedPersistenceVersion
 	{
-		try
-		{
-			// STREAM MADNESS!!! @_@  MADNESS, I TELL YOU!!
-			DataInputStream in = new DataInputStream( new GZIPInputStream( new Base64InputStream( new ByteArrayInputStream( data.getBytes( Encoding ) ) ) ) );
-			BlocksStorage blocks = readAnyVersion( in );
-			in.close();
-			return blocks;
-		}
-		catch( IOException ex )
-		{
-			throw new UnrecognizedPersistenceVersion(); 
-		}
+		return BlockStorageCodec.get().decodeString( data );
 	}
 	
 	public static BlocksStorage readAnyVersion( byte[] data )
 	throws UnrecognizedPersistenceVersion
 	{
+		return readAnyVersion( ByteBuffer.wrap( data ) );
+	}
+	
+	public static BlocksStorage readAnyVersion( ByteBuffer in )
+	throws UnrecognizedPersistenceVersion
+	{
+		// NOTE: this reads from the buffer's position, and leaves the position after the last block
 		try
 		{
-			return readAnyVersion( new ByteArrayInputStream( data ) );
+			// get the version and number of blocks, just like the stream version
+			int firstInt = in.getInt();
+			int version = 1;
+			int numBlocks = 0;
+			if( firstInt < 0 )
+			{
+				version = -firstInt;
+				numBlocks = in.getInt();
+			}
+			else
+			{
+				numBlocks = firstInt;
+			}
+			
+			BlockStoragePersistence persistence = get( version );
+			if( persistence == null )
+			{
+				throw new UnrecognizedPersistenceVersion( version );
+			}
+			return persistence.onRead( in, numBlocks );
 		}
-		catch( IOException ex )
+		catch( BufferUnderflowException ex )
 		{
-			throw new Error( ex );
+			throw new UnrecognizedPersistenceVersion();
 		}
 	}
 	
@@ -184,39 +199,30 @@ public enum BlockStoragePersistence
 		{
 			throw new UnrecognizedPersistenceVersion( version );
 		}
-		return persistence.onRead( din, numBlocks );
+		if( numBlocks < 0 || numBlocks > Integer.MAX_VALUE/persistence.getBytesPerBlock() )
+		{
+			throw new UnrecognizedPersistenceVersion();
+		}
+		
+		// NOTE: the blocks are fixed-size records, so read exactly those bytes and let the buffer version decode them
+		// that way there's only one implementation of each version, and the stream is left right after the last block
+		byte[] data = new byte[numBlocks*persistence.getBytesPerBlock()];
+		din.readFully( data );
+		return persistence.onRead( ByteBuffer.wrap( data ), numBlocks );
 	}
 	
 	public static String writeNewestVersionToString( BlocksStorage blocks )
 	{
-		try
-		{
-			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-			DataOutputStream out = new DataOutputStream( new GZIPOutputStream( new Base64OutputStream( buffer ) ) );
-			writeNewestVersion( blocks, out );
-			out.close();
-			return new String( buffer.toByteArray(), Encoding );
-		}
-		catch( IOException ex )
-		{
-			throw new Error( ex );
-		}
+		return BlockStorageCodec.get().encodeString( blocks );
 	}
 	
 	public static byte[] writeNewestVersion( BlocksStorage blocks )
 	{
-		try
-		{
-			ByteArrayOutputStream buf = new ByteArrayOutputStream();
-			writeNewestVersion( blocks, buf );
-			return buf.toByteArray();
-		}
-		catch( IOException ex )
-		{
-			// byte buffers should never throw an IOException, so writing a crap-ton of boilerplate code to handle
-			// those exception is pretty ridiculous. Just rethrow as an error
-			throw new Error( ex );
-		}
+		// we know exactly how big the data is, so write it straight into the array we return
+		BlockStoragePersistence persistence = getNewestVersion();
+		ByteBuffer buf = ByteBuffer.allocate( persistence.getEncodedSize( blocks ) );
+		persistence.write( blocks, buf );
+		return buf.array();
 	}
 	
 	public static void writeNewestVersion( BlocksStorage blocks, OutputStream out )
@@ -228,13 +234,26 @@ public enum BlockStoragePersistence
 	public void write( BlocksStorage blocks, OutputStream out )
 	throws IOException
 	{
-		DataOutputStream dout = new DataOutputStream( out );
-		
+		// we know exactly how big the data is, so encode it with the buffer version and write it all at once
+		ByteBuffer buf = ByteBuffer.allocate( getEncodedSize( blocks ) );
+		write( blocks, buf );
+		out.write( buf.array(), buf.arrayOffset(), buf.position() );
+	}
+	
+	public int getEncodedSize( BlocksStorage blocks )
+	{
+		// the version, the number of blocks, then the blocks
+		return 8 + blocks.getNumBlocks()*getBytesPerBlock();
+	}
+	
+	public void write( BlocksStorage blocks, ByteBuffer out )
+	{
+		// NOTE: the buffer needs at least getEncodedSize() bytes remaining
 		// NOTE: the original V1 didn't write out a version number
 		// the first int is the number of blocks, which must be positive
 		// so let's write a negative version number, so we can tell the difference
 		// between it and a number of blocks
-		dout.writeInt( -m_version );
-		onWrite( blocks, dout );
+		out.putInt( -m_version );
+		onWrite( blocks, out );
 	}
 }
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships.persistence;
+
+import java.lang.ref.WeakReference;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import cuchaz.ships.ShipWorld;
+
+public class ShipEncodingCache
+{
+	// encoded ship worlds, keyed by a hash of the encoded bytes
+	// anything showing the same ship gets the same entry, so there's only ever one copy of the bytes
+	// NOTE: entries are only weakly referenced here, so they go away once nothing holds on to them anymore
+	// NOTE: the client and the integrated server both use the cache, so it needs to be synchronized
+	
+	public static class Entry
+	{
+		private String m_hash;
+		private byte[] m_data;
+		
+		private Entry( String hash, byte[] data )
+		{
+			m_hash = hash;
+			m_data = data;
+		}
+		
+		public String getHash( )
+		{
+			return m_hash;
+		}
+		
+		public byte[] getData( )
+		{
+			// NOTE: the bytes are shared, so don't change them
+			return m_data;
+		}
+	}
+	
+	private static final String HashAlgorithm = "SHA-1";
+	
+	private static Map<String,WeakReference<Entry>> m_entries;
+	
+	static
+	{
+		m_entries = new HashMap<String,WeakReference<Entry>>();
+	}
+	
+	public static Entry encode( ShipWorld shipWorld )
+	{
+		return intern( ShipWorldPersistence.writeNewestVersion( shipWorld ) );
+	}
+	
+	public static synchronized Entry intern( byte[] data )
+	{
+		String hash = getHash( data );
+		WeakReference<Entry> ref = m_entries.get( hash );
+		Entry entry = ref != null ? ref.get() : null;
+		
+		// NOTE: check the bytes too, just in case the hashes collide
+		if( entry != null && Arrays.equals( entry.m_data, data ) )
+		{
+			return entry;
+		}
+		
+		// get rid of any entries nobody uses anymore before adding a new one
+		Iterator<WeakReference<Entry>> iter = m_entries.values().iterator();
+		while( iter.hasNext() )
+		{
+			if( iter.next().get() == null )
+			{
+				iter.remove();
+			}
+		}
+		
+		entry = new Entry( hash, data );
+		m_entries.put( hash, new WeakReference<Entry>( entry ) );
+		return entry;
+	}
+	
+	public static synchronized int size( )
+	{
+		return m_entries.size();
+	}
+	
+	private static String getHash( byte[] data )
+	{
+		try
+		{
+			return new BigInteger( 1, MessageDigest.getInstance( HashAlgorithm ).digest( data ) ).toString( 16 );
+		}
+		catch( NoSuchAlgorithmException ex )
+		{
+			// every JVM has to support SHA-1
+			throw new Error( ex );
+		}
+	}
+}
@@ -10,10 +10,13 @@
  ******************************************************************************/
 package cuchaz.ships.persistence;
 
+import java.io.IOException;
 import java.util.TreeMap;
 
 import net.minecraft.nbt.NBTTagCompound;
 import cuchaz.ships.EntityShip;
+import cuchaz.ships.ShipBuoyancy;
+import cuchaz.ships.Ships;
 
 public enum ShipPersistence
 {
@@ -50,6 +53,36 @@ public enum ShipPersistence
 			nbt.setByteArray( "waterDisplacement", ship.getWaterDisplacer().write() );
 			nbt.setByteArray( "rainDisplacement", ship.getRainDisplacer().write() );
 		}
+	},
+	V3( 3 )
+	{
+		@Override
+		public void read( EntityShip ship, NBTTagCompound nbt )
+		throws PersistenceException
+		{
+			ShipBuoyancy buoyancy = null;
+			try
+			{
+				buoyancy = ShipBuoyancy.read( nbt.getByteArray( "buoyancy" ) );
+			}
+			catch( IOException ex )
+			{
+				// no big deal, the ship can just compute it again
+				Ships.logger.warning( ex, "Unable to read ship buoyancy. Recomputing it." );
+			}
+			ship.setShipWorld( ShipWorldPersistence.readAnyVersion( ship.worldObj, nbt.getByteArray( "blocks" ) ), buoyancy );
+			ship.getWaterDisplacer().read( nbt.getByteArray( "waterDisplacement" ) );
+			ship.getRainDisplacer().read( nbt.getByteArray( "rainDisplacement" ) );
+		}
+		
+		@Override
+		public void write( EntityShip ship, NBTTagCompound nbt )
+		{
+			nbt.setByteArray( "blocks", ShipWorldPersistence.writeNewestVersion( ship.getShipWorld() ) );
+			nbt.setByteArray( "buoyancy", ship.getPhysics().getBuoyancy().write() );
+			nbt.setByteArray( "waterDisplacement", ship.getWaterDisplacer().write() );
+			nbt.setByteArray( "rainDisplacement", ship.getRainDisplacer().write() );
+		}
 	};
 	
 	private static TreeMap<Integer,ShipPersistence> m_versions;
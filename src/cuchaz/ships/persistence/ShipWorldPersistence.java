@@ -17,12 +17,21 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.commons.codec.binary.Base64InputStream;
-import org.apache.commons.codec.binary.Base64OutputStream;
 
 import net.minecraft.entity.EntityHanging;
 import net.minecraft.entity.EntityList;
@@ -32,9 +41,11 @@ import net.minecraft.tileentity.TileEntity;
 import net.minecraft.world.World;
 import cuchaz.modsShared.blocks.BlockMap;
 import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.Bits;
 import cuchaz.ships.BlocksStorage;
 import cuchaz.ships.ShipWorld;
 import cuchaz.ships.Ships;
+import cuchaz.ships.TileEntityData;
 
 public enum ShipWorldPersistence
 {
@@ -171,43 +182,17 @@ public enum ShipWorldPersistence
 			BlocksStorage storage = BlockStoragePersistence.readAnyVersion( in );
 			
 			// read the tile entities
-			BlockMap<TileEntity> tileEntities = new BlockMap<TileEntity>();
-			int numTileEntities = in.readInt();
-			for( int i = 0; i < numTileEntities; i++ )
-			{
-				// create the tile entity
-				NBTTagCompound nbt = (NBTTagCompound)NBTBase.readNamedTag( in );
-				TileEntity tileEntity = TileEntity.createAndLoadEntity( nbt );
-				if( tileEntity == null )
-				{
-					Ships.logger.warning( "Unable to restore tile entity: " + nbt.getString( "id" ) );
-					continue;
-				}
-				Coords coords = new Coords( tileEntity.xCoord, tileEntity.yCoord, tileEntity.zCoord );
-				tileEntities.put( coords, tileEntity );
-			}
+			BlockMap<TileEntityData> tileEntityData = new BlockMap<TileEntityData>();
+			readTileEntities( in, tileEntityData );
 			
 			// read the hanging entities
 			BlockMap<EntityHanging> hangingEntities = new BlockMap<EntityHanging>();
-			int numHangingEntities = in.readInt();
-			for( int i = 0; i < numHangingEntities; i++ )
-			{
-				// create the hanging entity
-				NBTTagCompound nbt = (NBTTagCompound)NBTBase.readNamedTag( in );
-				EntityHanging hangingEntity = (EntityHanging)EntityList.createEntityFromNBT( nbt, world );
-				if( hangingEntity == null )
-				{
-					Ships.logger.warning( "Unable to restore hanging entity: " + nbt.getString( "id" ) );
-					continue;
-				}
-				Coords coords = new Coords( hangingEntity.xPosition, hangingEntity.yPosition, hangingEntity.zPosition );
-				hangingEntities.put( coords, hangingEntity );
-			}
+			readHangingEntities( in, world, hangingEntities );
 			
 			// read the biome
 			int biomeId = in.readInt();
 			
-			return new ShipWorld( world, storage, tileEntities, hangingEntities, biomeId );
+			return new ShipWorld( world, storage, new BlockMap<TileEntity>(), tileEntityData, hangingEntities, biomeId );
 		}
 		
 		@Override
@@ -218,41 +203,91 @@ public enum ShipWorldPersistence
 			BlockStoragePersistence.V2.write( shipWorld.getBlocksStorage(), out );
 			
 			// write out the tile entities
-			out.writeInt( shipWorld.tileEntities().size() );
-			for( TileEntity tileEntity : shipWorld.tileEntities().values() )
+			writeTileEntities( shipWorld, shipWorld.tileEntityCoords(), out );
+			
+			// write out the hanging entities
+			writeHangingEntities( shipWorld.hangingEntities().values(), out );
+			
+			// write out the biome
+			out.writeInt( shipWorld.getBiomeId() );
+		}
+	},
+	V4( 4 )
+	{
+		// the ship is split into 16x16x16 sections, and each section is compressed on its own
+		// each section starts with its coords and length, so readers can skip the sections they don't need
+		// inside a section, the blocks are indices into the section's palette, packed into as few bits as possible
+		
+		@Override
+		public ShipWorld onRead( World world, DataInputStream in )
+		throws IOException, UnrecognizedPersistenceVersion
+		{
+			BlocksStorage storage = new BlocksStorage();
+			BlockMap<TileEntityData> tileEntityData = new BlockMap<TileEntityData>();
+			BlockMap<EntityHanging> hangingEntities = new BlockMap<EntityHanging>();
+			
+			// read the sections one at a time, so we never have to inflate the whole ship at once
+			int numSections = in.readInt();
+			for( int i=0; i<numSections; i++ )
 			{
-				NBTTagCompound nbt = new NBTTagCompound();
-				try
-				{
-					tileEntity.writeToNBT( nbt );
-				}
-				catch( Throwable t )
-				{
-					Ships.logger.warning( t, "Tile entity %s on a ship at (%d,%d,%d) did not behave during a save operation!",
-						tileEntity.getClass().getName(),
-						tileEntity.xCoord, tileEntity.yCoord, tileEntity.zCoord
-					);
-				}
-				NBTBase.writeNamedTag( nbt, out );
+				Coords sectionCoords = new Coords( in.readShort(), in.readShort(), in.readShort() );
+				DataInputStream sectionIn = new DataInputStream( new InflaterInputStream( new ByteArrayInputStream( readSection( in ) ) ) );
+				readSectionBlocks( sectionIn, sectionCoords, storage );
+				readTileEntities( sectionIn, tileEntityData );
+				readHangingEntities( sectionIn, world, hangingEntities );
+				sectionIn.close();
 			}
 			
-			// write out the hanging entities
-			out.writeInt( shipWorld.hangingEntities().size() );
-			for( EntityHanging hangingEntity : shipWorld.hangingEntities().values() )
+			// read the biome
+			int biomeId = in.readInt();
+			
+			return new ShipWorld( world, storage, new BlockMap<TileEntity>(), tileEntityData, hangingEntities, biomeId );
+		}
+		
+		@Override
+		public void onWrite( ShipWorld shipWorld, DataOutputStream out )
+		throws IOException
+		{
+			// sort everything into sections
+			// NOTE: use sorted maps so the same ship always writes the same bytes
+			TreeMap<Coords,List<Coords>> blocksBySection = new TreeMap<Coords,List<Coords>>();
+			for( Coords coords : shipWorld.coords() )
 			{
-				NBTTagCompound nbt = new NBTTagCompound();
-				try
-				{
-					hangingEntity.writeToNBTOptional( nbt );
-				}
-				catch( Throwable t )
-				{
-					Ships.logger.warning( t, "Hanging entity %s on a ship at (%d,%d,%d) did not behave during a save operation!",
-						hangingEntity.getClass().getName(),
-						hangingEntity.xPosition, hangingEntity.yPosition, hangingEntity.zPosition
-					);
-				}
-				NBTBase.writeNamedTag( nbt, out );
+				getSectionList( blocksBySection, coords.x, coords.y, coords.z ).add( coords );
+			}
+			TreeMap<Coords,List<Coords>> tileEntitiesBySection = new TreeMap<Coords,List<Coords>>();
+			for( Coords coords : shipWorld.tileEntityCoords() )
+			{
+				getSectionList( tileEntitiesBySection, coords.x, coords.y, coords.z ).add( coords );
+			}
+			TreeMap<Coords,TreeMap<Coords,EntityHanging>> hangingEntitiesBySection = new TreeMap<Coords,TreeMap<Coords,EntityHanging>>();
+			for( Map.Entry<Coords,EntityHanging> entry : shipWorld.hangingEntities().entrySet() )
+			{
+				Coords coords = entry.getKey();
+				getSectionMap( hangingEntitiesBySection, coords.x, coords.y, coords.z ).put( coords, entry.getValue() );
+			}
+			TreeSet<Coords> sections = new TreeSet<Coords>();
+			sections.addAll( blocksBySection.keySet() );
+			sections.addAll( tileEntitiesBySection.keySet() );
+			sections.addAll( hangingEntitiesBySection.keySet() );
+			
+			// write out the sections
+			out.writeInt( sections.size() );
+			for( Coords sectionCoords : sections )
+			{
+				ByteArrayOutputStream buf = new ByteArrayOutputStream();
+				DataOutputStream sectionOut = new DataOutputStream( new DeflaterOutputStream( buf ) );
+				writeSectionBlocks( sectionOut, sectionCoords, blocksBySection.get( sectionCoords ), shipWorld.getBlocksStorage() );
+				List<Coords> sectionTileEntities = tileEntitiesBySection.get( sectionCoords );
+				writeTileEntities( shipWorld, sectionTileEntities != null ? sectionTileEntities : new ArrayList<Coords>(), sectionOut );
+				writeHangingEntities( getValues( hangingEntitiesBySection.get( sectionCoords ) ), sectionOut );
+				sectionOut.close();
+				
+				out.writeShort( sectionCoords.x );
+				out.writeShort( sectionCoords.y );
+				out.writeShort( sectionCoords.z );
+				out.writeInt( buf.size() );
+				buf.writeTo( out );
 			}
 			
 			// write out the biome
@@ -261,6 +296,10 @@ public enum ShipWorldPersistence
 	};
 	
 	private static final String Encoding = "UTF-8";
+	private static final int SectionBits = 4;
+	private static final int SectionMask = ( 1 << SectionBits ) - 1;
+	private static final int SectionVolume = 1 << ( SectionBits*3 );
+	private static final int MaxSectionBytes = 16*1024*1024;
 	
 	private static TreeMap<Integer,ShipWorldPersistence> m_versions;
 	
@@ -353,20 +392,20 @@ public enum ShipWorldPersistence
 		}
 	}
 	
-	public static String writeNewestVersionToString( ShipWorld shipWorld )
+	public static boolean isNewestVersion( byte[] data )
 	{
-		try
+		// the version is the first int, in big-endian order
+		if( data.length < 4 )
 		{
-			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-			DataOutputStream out = new DataOutputStream( new GZIPOutputStream( new Base64OutputStream( buffer ) ) );
-			writeNewestVersion( shipWorld, out );
-			out.close();
-			return new String( buffer.toByteArray(), Encoding );
-		}
-		catch( IOException ex )
-		{
-			throw new Error( ex );
+			return false;
 		}
+		int version = ( data[0] & 0xff ) << 24 | ( data[1] & 0xff ) << 16 | ( data[2] & 0xff ) << 8 | ( data[3] & 0xff );
+		return version == getNewestVersion().m_version;
+	}
+	
+	public static String writeNewestVersionToString( ShipWorld shipWorld )
+	{
+		return BlockStorageCodec.get().encodeString( shipWorld );
 	}
 	
 	public static byte[] writeNewestVersion( ShipWorld shipWorld )
@@ -376,19 +415,19 @@ public enum ShipWorldPersistence
 	
 	public static byte[] writeNewestVersion( ShipWorld shipWorld, boolean useCompression )
 	{
+		// encode the ship into the codec's buffer, then copy or compress it straight out of the buffer's array
+		ByteBuffer data = BlockStorageCodec.get().encode( shipWorld );
+		int offset = data.arrayOffset() + data.position();
+		if( !useCompression )
+		{
+			return Arrays.copyOfRange( data.array(), offset, offset + data.remaining() );
+		}
 		try
 		{
 			ByteArrayOutputStream buf = new ByteArrayOutputStream();
-			if( useCompression )
-			{
-				GZIPOutputStream gzipOut = new GZIPOutputStream( buf );
-				writeNewestVersion( shipWorld, gzipOut );
-				gzipOut.finish();
-			}
-			else
-			{
-				writeNewestVersion( shipWorld, buf );
-			}
+			GZIPOutputStream gzipOut = new GZIPOutputStream( buf );
+			gzipOut.write( data.array(), offset, data.remaining() );
+			gzipOut.finish();
 			return buf.toByteArray();
 		}
 		catch( IOException ex )
@@ -401,10 +440,238 @@ public enum ShipWorldPersistence
 	
 	public static void writeNewestVersion( ShipWorld shipWorld, OutputStream out )
 	throws IOException
+	{
+		getNewestVersion().write( shipWorld, out );
+	}
+	
+	public void write( ShipWorld shipWorld, OutputStream out )
+	throws IOException
 	{
 		DataOutputStream dout = new DataOutputStream( out );
-		ShipWorldPersistence persistence = getNewestVersion();
-		dout.writeInt( persistence.m_version );
-		persistence.onWrite( shipWorld, dout );
+		dout.writeInt( m_version );
+		onWrite( shipWorld, dout );
+	}
+	
+	private static void readTileEntities( DataInputStream in, BlockMap<TileEntityData> tileEntityData )
+	throws IOException
+	{
+		// NOTE: don't create the tile entities yet. the ship world loads them when they're needed
+		int numTileEntities = in.readInt();
+		for( int i = 0; i < numTileEntities; i++ )
+		{
+			TileEntityData data = TileEntityData.read( in );
+			tileEntityData.put( data.getCoords(), data );
+		}
+	}
+	
+	private static void writeTileEntities( ShipWorld shipWorld, Collection<Coords> tileEntityCoords, DataOutputStream out )
+	throws IOException
+	{
+		out.writeInt( tileEntityCoords.size() );
+		for( Coords coords : tileEntityCoords )
+		{
+			shipWorld.getTileEntityData( coords ).write( out );
+		}
+	}
+	
+	private static void readHangingEntities( DataInputStream in, World world, BlockMap<EntityHanging> hangingEntities )
+	throws IOException
+	{
+		int numHangingEntities = in.readInt();
+		for( int i = 0; i < numHangingEntities; i++ )
+		{
+			// create the hanging entity
+			NBTTagCompound nbt = (NBTTagCompound)NBTBase.readNamedTag( in );
+			EntityHanging hangingEntity = (EntityHanging)EntityList.createEntityFromNBT( nbt, world );
+			if( hangingEntity == null )
+			{
+				Ships.logger.warning( "Unable to restore hanging entity: " + nbt.getString( "id" ) );
+				continue;
+			}
+			Coords coords = new Coords( hangingEntity.xPosition, hangingEntity.yPosition, hangingEntity.zPosition );
+			hangingEntities.put( coords, hangingEntity );
+		}
+	}
+	
+	private static void writeHangingEntities( Collection<EntityHanging> hangingEntities, DataOutputStream out )
+	throws IOException
+	{
+		out.writeInt( hangingEntities.size() );
+		for( EntityHanging hangingEntity : hangingEntities )
+		{
+			NBTTagCompound nbt = new NBTTagCompound();
+			try
+			{
+				hangingEntity.writeToNBTOptional( nbt );
+			}
+			catch( Throwable t )
+			{
+				Ships.logger.warning( t, "Hanging entity %s on a ship at (%d,%d,%d) did not behave during a save operation!",
+					hangingEntity.getClass().getName(),
+					hangingEntity.xPosition, hangingEntity.yPosition, hangingEntity.zPosition
+				);
+			}
+			NBTBase.writeNamedTag( nbt, out );
+		}
+	}
+	
+	private static byte[] readSection( DataInputStream in )
+	throws IOException
+	{
+		// NOTE: don't trust the length, or a bad save could make us allocate a huge array
+		int length = in.readInt();
+		if( length < 0 || length > MaxSectionBytes )
+		{
+			throw new IOException( "Invalid section length: " + length );
+		}
+		byte[] data = new byte[length];
+		in.readFully( data );
+		return data;
+	}
+	
+	private static void readSectionBlocks( DataInputStream in, Coords sectionCoords, BlocksStorage storage )
+	throws IOException
+	{
+		// read the palette
+		int paletteSize = in.readUnsignedShort();
+		if( paletteSize > SectionVolume )
+		{
+			throw new IOException( "Invalid palette size: " + paletteSize );
+		}
+		int[] palette = new int[paletteSize];
+		for( int i=0; i<paletteSize; i++ )
+		{
+			palette[i] = in.readUnsignedShort();
+		}
+		if( paletteSize == 0 )
+		{
+			return;
+		}
+		
+		// read the packed indices
+		int bitsPerIndex = getBitsPerIndex( paletteSize );
+		int indicesPerWord = 64/bitsPerIndex;
+		long mask = ( 1L << bitsPerIndex ) - 1;
+		long word = 0;
+		Coords coords = new Coords( 0, 0, 0 );
+		for( int i=0; i<SectionVolume; i++ )
+		{
+			if( i % indicesPerWord == 0 )
+			{
+				word = in.readLong();
+			}
+			int index = (int)( ( word >>> ( ( i % indicesPerWord )*bitsPerIndex ) ) & mask );
+			if( index == 0 )
+			{
+				// no block here
+				continue;
+			}
+			if( index > paletteSize )
+			{
+				throw new IOException( "Invalid palette index: " + index );
+			}
+			int packed = palette[index - 1];
+			coords.set(
+				( sectionCoords.x << SectionBits ) + ( i >> ( SectionBits*2 ) ),
+				( sectionCoords.y << SectionBits ) + ( ( i >> SectionBits ) & SectionMask ),
+				( sectionCoords.z << SectionBits ) + ( i & SectionMask )
+			);
+			storage.setBlock( coords, Bits.unpackUnsigned( packed, 12, 0 ), Bits.unpackUnsigned( packed, 4, 12 ) );
+		}
+	}
+	
+	private static void writeSectionBlocks( DataOutputStream out, Coords sectionCoords, List<Coords> blocks, BlocksStorage storage )
+	throws IOException
+	{
+		// build the palette and the indices
+		// NOTE: index 0 means there's no block, so palette entries start at 1
+		int[] indices = new int[SectionVolume];
+		List<Integer> palette = new ArrayList<Integer>();
+		Map<Integer,Integer> paletteIndices = new HashMap<Integer,Integer>();
+		if( blocks != null )
+		{
+			for( Coords coords : blocks )
+			{
+				int packed = Bits.packUnsigned( storage.getBlockId( coords ), 12, 0 ) | Bits.packUnsigned( storage.getBlockMeta( coords ), 4, 12 );
+				Integer index = paletteIndices.get( packed );
+				if( index == null )
+				{
+					palette.add( packed );
+					index = palette.size();
+					paletteIndices.put( packed, index );
+				}
+				indices[getSectionIndex( coords )] = index;
+			}
+		}
+		
+		// write the palette
+		out.writeShort( palette.size() );
+		for( int packed : palette )
+		{
+			out.writeShort( packed );
+		}
+		if( palette.isEmpty() )
+		{
+			return;
+		}
+		
+		// write the packed indices
+		int bitsPerIndex = getBitsPerIndex( palette.size() );
+		int indicesPerWord = 64/bitsPerIndex;
+		long word = 0;
+		for( int i=0; i<SectionVolume; i++ )
+		{
+			word |= (long)indices[i] << ( ( i % indicesPerWord )*bitsPerIndex );
+			if( i % indicesPerWord == indicesPerWord - 1 || i == SectionVolume - 1 )
+			{
+				out.writeLong( word );
+				word = 0;
+			}
+		}
+	}
+	
+	private static int getBitsPerIndex( int paletteSize )
+	{
+		// enough bits for every palette entry, plus the empty index
+		return 32 - Integer.numberOfLeadingZeros( paletteSize );
+	}
+	
+	private static int getSectionIndex( Coords coords )
+	{
+		// NOTE: x-major order, so the blocks come back out sorted within the section
+		return ( ( ( coords.x & SectionMask ) << SectionBits | ( coords.y & SectionMask ) ) << SectionBits ) | ( coords.z & SectionMask );
+	}
+	
+	private static List<Coords> getSectionList( TreeMap<Coords,List<Coords>> sections, int x, int y, int z )
+	{
+		Coords sectionCoords = new Coords( x >> SectionBits, y >> SectionBits, z >> SectionBits );
+		List<Coords> list = sections.get( sectionCoords );
+		if( list == null )
+		{
+			list = new ArrayList<Coords>();
+			sections.put( sectionCoords, list );
+		}
+		return list;
+	}
+	
+	private static <T> TreeMap<Coords,T> getSectionMap( TreeMap<Coords,TreeMap<Coords,T>> sections, int x, int y, int z )
+	{
+		Coords sectionCoords = new Coords( x >> SectionBits, y >> SectionBits, z >> SectionBits );
+		TreeMap<Coords,T> map = sections.get( sectionCoords );
+		if( map == null )
+		{
+			map = new TreeMap<Coords,T>();
+			sections.put( sectionCoords, map );
+		}
+		return map;
+	}
+	
+	private static <T> Collection<T> getValues( TreeMap<Coords,T> map )
+	{
+		if( map == null )
+		{
+			return new ArrayList<T>();
+		}
+		return map.values();
 	}
 }
@@ -59,7 +59,7 @@ public class Sail extends PropulsionMethod
 				coords.y + checkDirection.getDy(),
 				coords.z + checkDirection.getDz()
 			);
-			if( shipBlocks.getBlock( checkCoords ).id == 0 )
+			if( shipBlocks.getBlockId( checkCoords ) == 0 )
 			{
 				numExposedBlocks++;
 			}
@@ -30,7 +30,7 @@ public class SailDiscoverer implements PropulsionDiscoverer
 		BlockSet clothCoords = new BlockSet();
 		for( Coords coords : shipBlocks.coords() )
 		{
-			if( shipBlocks.getBlock( coords ).id == Block.cloth.blockID )
+			if( shipBlocks.getBlockId( coords ) == Block.cloth.blockID )
 			{
 				clothCoords.add( coords );
 			}
@@ -10,10 +10,10 @@
  ******************************************************************************/
 package cuchaz.ships.render;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -23,6 +23,8 @@ import net.minecraft.client.renderer.GLAllocation;
 import net.minecraft.client.renderer.RenderBlocks;
 import net.minecraft.client.renderer.RenderHelper;
 import net.minecraft.client.renderer.Tessellator;
+import net.minecraft.client.renderer.culling.ClippingHelperImpl;
+import net.minecraft.client.renderer.culling.Frustrum;
 import net.minecraft.client.renderer.entity.Render;
 import net.minecraft.client.renderer.entity.RenderManager;
 import net.minecraft.client.renderer.texture.TextureMap;
@@ -32,31 +34,47 @@ import net.minecraft.entity.EntityHanging;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.util.MathHelper;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.Vec3;
 
 import org.lwjgl.opengl.GL11;
 
 import cuchaz.modsShared.ColorUtils;
+import cuchaz.modsShared.blocks.BlockSet;
 import cuchaz.modsShared.blocks.Coords;
 import cuchaz.ships.EntityShip;
 import cuchaz.ships.HitList;
 import cuchaz.ships.ShipWorld;
-import cuchaz.ships.Ships;
 
 public class RenderShip extends Render
 {
+	private static class SectionsEntry
+	{
+		// NOTE: only weakly reference the ship world, so we notice when it goes away and can free its display lists
+		public WeakReference<ShipWorld> shipWorld;
+		public ShipRenderSections sections;
+		
+		public SectionsEntry( ShipWorld shipWorld )
+		{
+			this.shipWorld = new WeakReference<ShipWorld>( shipWorld );
+			this.sections = new ShipRenderSections( shipWorld.coords() );
+		}
+	}
+	
 	private RenderBlocks m_renderBlocks;
 	private Set<Integer> m_blacklistedBlocks;
-	private Map<ShipWorld,Integer> m_displayListIds;
+	private List<SectionsEntry> m_sections;
 	private List<TileEntity> m_tileEntitiesToRender;
+	private Frustrum m_frustum;
 	
 	public RenderShip( )
 	{
 		m_renderBlocks = new RenderBlocks();
 		m_blacklistedBlocks = new TreeSet<Integer>();
-		m_displayListIds = new HashMap<ShipWorld,Integer>(); // fine to hash on instance
+		m_sections = new ArrayList<SectionsEntry>();
 		m_tileEntitiesToRender = new ArrayList<TileEntity>();
+		m_frustum = new Frustrum(); // lol, they spelled Frustum wrong
 	}
 	
 	@Override
@@ -85,6 +103,10 @@ public class RenderShip extends Render
 		
 		ShipWorld shipWorld = ship.getShipWorld();
 		
+		// NOTE: the frustum reads the GL matrices from the shared clipping helper, so update that before we change them
+		ClippingHelperImpl.getInstance();
+		Frustrum frustum = m_frustum;
+		
 		// prep for rendering in blocks space
 		GL11.glPushMatrix();
 		GL11.glTranslated( x, y, z );
@@ -93,9 +115,16 @@ public class RenderShip extends Render
 		RenderHelper.disableStandardItemLighting();
 		RenderManager.instance.worldObj = shipWorld;
 		
-		// handle the display list
+		// draw the sections we can see
 		RenderManager.instance.renderEngine.bindTexture( TextureMap.locationBlocksTexture );
-		GL11.glCallList( getDisplayList( m_renderBlocks, shipWorld ) );
+		ShipRenderSections sections = getSections( shipWorld );
+		for( ShipRenderSections.Section section : sections.sections() )
+		{
+			if( isSectionInFrustum( frustum, ship, section, x, y, z, yaw ) )
+			{
+				renderSection( m_renderBlocks, shipWorld, sections, section );
+			}
+		}
 		
 		// collect all the tile entities we need to render
 		m_tileEntitiesToRender.clear();
@@ -136,65 +165,163 @@ public class RenderShip extends Render
 		}
 	}
 	
-	public int getDisplayList( RenderBlocks renderBlocks, ShipWorld shipWorld )
+	public ShipRenderSections getSections( ShipWorld shipWorld )
 	{
-		// does the ship have a list already?
-		Integer id = m_displayListIds.get( shipWorld );
+		// does the ship have sections already?
+		// NOTE: there are only ever a few ships around, so just look through the list
+		// and free the display lists of ships that went away while we're at it
+		ShipRenderSections sections = null;
+		Iterator<SectionsEntry> iter = m_sections.iterator();
+		while( iter.hasNext() )
+		{
+			SectionsEntry entry = iter.next();
+			ShipWorld entryShipWorld = entry.shipWorld.get();
+			if( entryShipWorld == shipWorld )
+			{
+				sections = entry.sections;
+			}
+			else if( entryShipWorld == null || ( entryShipWorld.getShip() != null && entryShipWorld.getShip().isDead ) )
+			{
+				deleteDisplayLists( entry.sections );
+				iter.remove();
+			}
+		}
+		if( sections == null )
+		{
+			SectionsEntry entry = new SectionsEntry( shipWorld );
+			m_sections.add( entry );
+			sections = entry.sections;
+		}
 		
-		if( id != null && shipWorld.needsRenderUpdate() )
+		// invalidate the sections touched by block changes
+		BlockSet renderUpdates = shipWorld.getRenderUpdates();
+		if( !renderUpdates.isEmpty() )
+		{
+			for( Coords coords : renderUpdates )
+			{
+				sections.markDirty( coords );
+			}
+			renderUpdates.clear();
+		}
+		return sections;
+	}
+	
+	public void renderShip( RenderBlocks renderBlocks, ShipWorld shipWorld )
+	{
+		// render every section, no culling
+		ShipRenderSections sections = getSections( shipWorld );
+		for( ShipRenderSections.Section section : sections.sections() )
 		{
-			// invalidate the old list
-			GL11.glDeleteLists( id, 1 );
-			id = null;
+			renderSection( renderBlocks, shipWorld, sections, section );
+		}
+	}
+	
+	private void renderSection( RenderBlocks renderBlocks, ShipWorld shipWorld, ShipRenderSections sections, ShipRenderSections.Section section )
+	{
+		if( section.displayListId < 0 )
+		{
+			section.displayListId = GLAllocation.generateDisplayLists( 1 );
+			section.isDirty = true;
 		}
 		
-		if( id == null )
+		// only rebuild the list if the blocks changed
+		// NOTE: rebuilding compiles into the list we already have, which replaces the old contents
+		if( section.isDirty )
 		{
-			// create a new list
-			id = GLAllocation.generateDisplayLists( 1 );
-			m_displayListIds.put( shipWorld, id );
-			
-			// build the list
-			GL11.glNewList( id, GL11.GL_COMPILE );
-			renderShip( renderBlocks, shipWorld );
+			GL11.glNewList( section.displayListId, GL11.GL_COMPILE );
+			sections.buildSection( section, shipWorld.getBlocksStorage(), new BlocksTessellator( renderBlocks, shipWorld ), m_blacklistedBlocks );
 			GL11.glEndList();
 		}
-		return id;
+		
+		GL11.glCallList( section.displayListId );
 	}
 	
-	private void renderShip( RenderBlocks renderBlocks, ShipWorld shipWorld )
+	private void deleteDisplayLists( ShipRenderSections sections )
 	{
-		renderBlocks.blockAccess = shipWorld;
-		Tessellator tessellator = Tessellator.instance;
-		tessellator.startDrawingQuads();
-		
-		// draw all the blocks (but defer special tile entities for later rendering)
-		for( Coords coords : shipWorld.coords() )
+		// NOTE: GLAllocation keeps track of the lists it made, so give them back the same way
+		for( ShipRenderSections.Section section : sections.sections() )
 		{
-			Block block = Block.blocksList[shipWorld.getBlockId( coords )];
-			
-			// mod blocks can do weird things and crash. We need to be careful here
-			try
+			if( section.displayListId >= 0 )
 			{
-				if( m_blacklistedBlocks.contains( block.blockID ) )
-				{
-					renderBlockFailsafe( renderBlocks, block, coords );
-				}
-				else
-				{
-					renderBlock( renderBlocks, shipWorld, block, coords );
-				}
-			}
-			catch( Throwable t )
-			{
-				// blacklist the block
-				m_blacklistedBlocks.add( block.blockID );
-				
-				Ships.logger.warning( t, "Block: %s couldn't render properly! Blocks of this type will not be rendered again.", block.getUnlocalizedName() );
+				GLAllocation.deleteDisplayLists( section.displayListId );
+				section.displayListId = -1;
+				section.isDirty = true;
 			}
 		}
+	}
+	
+	private boolean isSectionInFrustum( Frustrum frustum, EntityShip ship, ShipRenderSections.Section section, double x, double y, double z, float yaw )
+	{
+		// get the section box in ship space
+		double minX = ship.blocksToShipX( section.minX );
+		double minY = ship.blocksToShipY( section.minY );
+		double minZ = ship.blocksToShipZ( section.minZ );
+		double maxX = ship.blocksToShipX( section.maxX + 1 );
+		double maxY = ship.blocksToShipY( section.maxY + 1 );
+		double maxZ = ship.blocksToShipZ( section.maxZ + 1 );
+		
+		// rotate the corners the same way the GL matrix does and take the camera-space bounding box
+		float yawRad = (float)Math.toRadians( yaw );
+		double cos = MathHelper.cos( yawRad );
+		double sin = MathHelper.sin( yawRad );
+		double boxMinX = Double.POSITIVE_INFINITY;
+		double boxMinZ = Double.POSITIVE_INFINITY;
+		double boxMaxX = Double.NEGATIVE_INFINITY;
+		double boxMaxZ = Double.NEGATIVE_INFINITY;
+		for( int i=0; i<4; i++ )
+		{
+			double cornerX = ( i & 1 ) == 0 ? minX : maxX;
+			double cornerZ = ( i & 2 ) == 0 ? minZ : maxZ;
+			double rotatedX = cornerX*cos + cornerZ*sin;
+			double rotatedZ = -cornerX*sin + cornerZ*cos;
+			boxMinX = Math.min( boxMinX, rotatedX );
+			boxMinZ = Math.min( boxMinZ, rotatedZ );
+			boxMaxX = Math.max( boxMaxX, rotatedX );
+			boxMaxZ = Math.max( boxMaxZ, rotatedZ );
+		}
+		
+		// NOTE: the frustum is at the origin, so the box is relative to the camera
+		return frustum.isBoxInFrustum(
+			boxMinX + x, minY + y, boxMinZ + z,
+			boxMaxX + x, maxY + y, boxMaxZ + z
+		);
+	}
+	
+	private static class BlocksTessellator implements ShipTessellator
+	{
+		private RenderBlocks m_renderBlocks;
+		private ShipWorld m_shipWorld;
+		
+		public BlocksTessellator( RenderBlocks renderBlocks, ShipWorld shipWorld )
+		{
+			m_renderBlocks = renderBlocks;
+			m_shipWorld = shipWorld;
+		}
 		
-		tessellator.draw();
+		@Override
+		public void startSection( ShipRenderSections.Section section )
+		{
+			m_renderBlocks.blockAccess = m_shipWorld;
+			Tessellator.instance.startDrawingQuads();
+		}
+		
+		@Override
+		public void renderBlock( Block block, Coords coords )
+		{
+			RenderShip.renderBlock( m_renderBlocks, m_shipWorld, block, coords );
+		}
+		
+		@Override
+		public void renderBlockFailsafe( Block block, Coords coords )
+		{
+			RenderShip.renderBlockFailsafe( m_renderBlocks, block, coords );
+		}
+		
+		@Override
+		public void endSection( )
+		{
+			Tessellator.instance.draw();
+		}
 	}
 	
 	public static void renderBlock( RenderBlocks renderBlocks, ShipWorld shipWorld, Block block, Coords coords )
@@ -344,28 +471,4 @@ public class RenderShip extends Render
 		
 		info.setRendered();
 	}
-	
-	/* frustum stuff for later reference
-	
-	// create the viewing frustum (NOTE: the frustum is in world space)
-	EntityLivingBase viewEntity = Minecraft.getMinecraft().renderViewEntity;
-	Vec3 v = Vec3.createVectorHelper(
-		viewEntity.lastTickPosX + ( viewEntity.posX - viewEntity.lastTickPosX ) * (double)partialTickTime,
-        viewEntity.lastTickPosY + ( viewEntity.posY - viewEntity.lastTickPosY ) * (double)partialTickTime,
-        viewEntity.lastTickPosZ + ( viewEntity.posZ - viewEntity.lastTickPosZ ) * (double)partialTickTime
-	);
-	Frustrum frustum = new Frustrum(); // lol, they spelled Frustum wrong
-	frustum.setPosition( v.xCoord, v.yCoord, v.zCoord );
-	
-	// is this block in the view frustum?
-	ship.getCollider().getBlockWorldBoundingBox( worldBox, coords );
-	boolean isInFrustum = frustum.isBoxInFrustum(
-		worldBox.minX, worldBox.minY, worldBox.minZ,
-		worldBox.maxX, worldBox.maxY, worldBox.maxZ
-	);
-	if( !isInFrustum )
-	{
-		continue;
-	}
-	*/
 }
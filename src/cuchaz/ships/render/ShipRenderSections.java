@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships.render;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.minecraft.block.Block;
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.BlocksStorage;
+import cuchaz.ships.CoordsBuffer;
+import cuchaz.ships.Ships;
+
+public class ShipRenderSections
+{
+	// splits the ship blocks into 16x16x16 sections, so each section can have its own display list
+	// then block changes only rebuild the sections they touch, and we can skip drawing sections we can't see
+	
+	public static final int SectionSize = 16;
+	
+	public static class Section
+	{
+		public Coords coords;
+		public CoordsBuffer blocks;
+		public int minX;
+		public int minY;
+		public int minZ;
+		public int maxX;
+		public int maxY;
+		public int maxZ;
+		public int displayListId;
+		public boolean isDirty;
+		
+		public Section( Coords coords )
+		{
+			this.coords = coords;
+			blocks = new CoordsBuffer();
+			minX = Integer.MAX_VALUE;
+			minY = Integer.MAX_VALUE;
+			minZ = Integer.MAX_VALUE;
+			maxX = Integer.MIN_VALUE;
+			maxY = Integer.MIN_VALUE;
+			maxZ = Integer.MIN_VALUE;
+			displayListId = -1;
+			isDirty = true;
+		}
+		
+		public void add( Coords block )
+		{
+			blocks.add( block );
+			minX = Math.min( minX, block.x );
+			minY = Math.min( minY, block.y );
+			minZ = Math.min( minZ, block.z );
+			maxX = Math.max( maxX, block.x );
+			maxY = Math.max( maxY, block.y );
+			maxZ = Math.max( maxZ, block.z );
+		}
+	}
+	
+	private Map<Coords,Section> m_sections;
+	private Coords m_lookupCoords;
+	
+	public ShipRenderSections( BlockSet blocks )
+	{
+		m_sections = new TreeMap<Coords,Section>();
+		m_lookupCoords = new Coords( 0, 0, 0 );
+		
+		for( Coords block : blocks )
+		{
+			getSectionCoords( m_lookupCoords, block.x, block.y, block.z );
+			Section section = m_sections.get( m_lookupCoords );
+			if( section == null )
+			{
+				section = new Section( new Coords( m_lookupCoords ) );
+				m_sections.put( section.coords, section );
+			}
+			section.add( block );
+		}
+	}
+	
+	public int getNumSections( )
+	{
+		return m_sections.size();
+	}
+	
+	public Collection<Section> sections( )
+	{
+		return m_sections.values();
+	}
+	
+	public Section getSection( Coords block )
+	{
+		return m_sections.get( getSectionCoords( m_lookupCoords, block.x, block.y, block.z ) );
+	}
+	
+	public int getNumDirtySections( )
+	{
+		int numDirty = 0;
+		for( Section section : m_sections.values() )
+		{
+			if( section.isDirty )
+			{
+				numDirty++;
+			}
+		}
+		return numDirty;
+	}
+	
+	public void markDirty( Coords block )
+	{
+		// blocks render differently depending on their neighbors (face culling, connected textures, etc),
+		// so changes on a section border need to rebuild the sections next door too
+		int minSectionX = ( block.x - 1 ) >> 4;
+		int minSectionY = ( block.y - 1 ) >> 4;
+		int minSectionZ = ( block.z - 1 ) >> 4;
+		int maxSectionX = ( block.x + 1 ) >> 4;
+		int maxSectionY = ( block.y + 1 ) >> 4;
+		int maxSectionZ = ( block.z + 1 ) >> 4;
+		for( int x=minSectionX; x<=maxSectionX; x++ )
+		{
+			for( int y=minSectionY; y<=maxSectionY; y++ )
+			{
+				for( int z=minSectionZ; z<=maxSectionZ; z++ )
+				{
+					m_lookupCoords.set( x, y, z );
+					Section section = m_sections.get( m_lookupCoords );
+					if( section != null )
+					{
+						section.isDirty = true;
+					}
+				}
+			}
+		}
+	}
+	
+	public void markAllDirty( )
+	{
+		for( Section section : m_sections.values() )
+		{
+			section.isDirty = true;
+		}
+	}
+	
+	public void buildSection( Section section, BlocksStorage storage, ShipTessellator tessellator, Set<Integer> blacklistedBlocks )
+	{
+		tessellator.startSection( section );
+		
+		// draw all the blocks in the section
+		Coords coords = new Coords( 0, 0, 0 );
+		for( int i=0; i<section.blocks.size(); i++ )
+		{
+			section.blocks.get( coords, i );
+			Block block = Block.blocksList[storage.getBlockId( coords )];
+			if( block == null )
+			{
+				continue;
+			}
+			
+			// mod blocks can do weird things and crash. We need to be careful here
+			try
+			{
+				if( blacklistedBlocks.contains( block.blockID ) )
+				{
+					tessellator.renderBlockFailsafe( block, coords );
+				}
+				else
+				{
+					tessellator.renderBlock( block, coords );
+				}
+			}
+			catch( Throwable t )
+			{
+				// blacklist the block
+				blacklistedBlocks.add( block.blockID );
+				
+				Ships.logger.warning( t, "Block: %s couldn't render properly! Blocks of this type will not be rendered again.", block.getUnlocalizedName() );
+			}
+		}
+		
+		tessellator.endSection();
+		section.isDirty = false;
+	}
+	
+	public static Coords getSectionCoords( Coords out, int x, int y, int z )
+	{
+		out.set( x >> 4, y >> 4, z >> 4 );
+		return out;
+	}
+}
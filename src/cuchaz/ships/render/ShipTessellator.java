@@ -0,0 +1,22 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships.render;
+
+import net.minecraft.block.Block;
+import cuchaz.modsShared.blocks.Coords;
+
+public interface ShipTessellator
+{
+	public void startSection( ShipRenderSections.Section section );
+	public void renderBlock( Block block, Coords coords );
+	public void renderBlockFailsafe( Block block, Coords coords );
+	public void endSection( );
+}
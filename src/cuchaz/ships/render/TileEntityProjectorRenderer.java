@@ -99,9 +99,9 @@ public class TileEntityProjectorRenderer extends TileEntitySpecialRenderer
 				GL14.glBlendColor( 49f/255f*alpha, 136f/255f*alpha, alpha, 0f );
 				GL11.glBlendFunc( GL11.GL_CONSTANT_COLOR, GL11.GL_ONE_MINUS_CONSTANT_COLOR );
 				
-				// render the display list
+				// render the display lists
 				m_renderBlocks.renderAllFaces = true;
-				GL11.glCallList( m_shipRenderer.getDisplayList( m_renderBlocks, shipWorld ) );
+				m_shipRenderer.renderShip( m_renderBlocks, shipWorld );
 				
 				GL11.glPopMatrix();
 			}
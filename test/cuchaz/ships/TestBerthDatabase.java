@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cuchaz.ships.PlayerRespawner.BerthCoords;
+
+public class TestBerthDatabase
+{
+	private static final UUID ShipUuid = new UUID( 1234, 5678 );
+	
+	private File m_dir;
+	
+	@Before
+	public void before( )
+	{
+		m_dir = new File( System.getProperty( "java.io.tmpdir" ), "testBerths" + System.nanoTime() );
+		m_dir.mkdirs();
+	}
+	
+	@After
+	public void after( )
+	{
+		for( File file : m_dir.listFiles() )
+		{
+			file.delete();
+		}
+		m_dir.delete();
+	}
+	
+	@Test
+	public void indexes( )
+	{
+		BerthDatabase berths = new BerthDatabase( m_dir );
+		berths.put( "cuchaz", newBerth( 0, 5, 64, 5 ) );
+		berths.put( "jeff", newBerth( 0, 20, 64, -20 ) );
+		berths.put( "nether", newBerth( -1, 5, 64, 5 ) );
+		
+		assertEquals( Arrays.asList( "cuchaz" ), berths.getUsernamesInChunks( 0, 0, 0, 0, 0 ) );
+		assertEquals( Arrays.asList( "jeff" ), berths.getUsernamesInChunks( 0, 1, -2, 1, -2 ) );
+		assertEquals( Arrays.asList( "cuchaz", "jeff" ), berths.getUsernamesInChunks( 0, 0, -2, 1, 0 ) );
+		assertEquals( Arrays.asList( "nether" ), berths.getUsernamesInChunks( -1, 0, 0, 0, 0 ) );
+		assertTrue( berths.getUsernamesOnShip( ShipUuid ).isEmpty() );
+		
+		// launch one berth onto the ship
+		berths.moveToShip( "cuchaz", ShipUuid, 1, 2, 3 );
+		assertTrue( berths.getUsernamesInChunks( 0, 0, 0, 0, 0 ).isEmpty() );
+		assertEquals( Arrays.asList( "cuchaz" ), berths.getUsernamesOnShip( ShipUuid ) );
+		
+		// and dock it somewhere else
+		berths.moveToWorld( "cuchaz", 20, 64, -18 );
+		assertTrue( berths.getUsernamesOnShip( ShipUuid ).isEmpty() );
+		assertEquals( Arrays.asList( "cuchaz", "jeff" ), berths.getUsernamesInChunks( 0, 1, -2, 1, -2 ) );
+	}
+	
+	@Test
+	public void journalReplay( )
+	{
+		BerthDatabase berths = new BerthDatabase( m_dir );
+		berths.put( "cuchaz", newBerth( 0, 5, 64, 5 ) );
+		berths.put( "jeff", newBerth( 0, 20, 64, -20 ) );
+		berths.save();
+		berths.moveToShip( "cuchaz", ShipUuid, 1, 2, 3 );
+		berths.save();
+		
+		// only the journal got written
+		assertFalse( new File( m_dir, "berths.dat" ).exists() );
+		assertEquals( 3, berths.getNumJournalRecords() );
+		
+		BerthDatabase loaded = new BerthDatabase( m_dir );
+		loaded.load();
+		assertSameBerths( berths, loaded );
+		assertEquals( Arrays.asList( "cuchaz" ), loaded.getUsernamesOnShip( ShipUuid ) );
+	}
+	
+	@Test
+	public void compaction( )
+	{
+		BerthDatabase berths = new BerthDatabase( m_dir );
+		berths.put( "cuchaz", newBerth( 0, 5, 64, 5 ) );
+		berths.save();
+		
+		// move the berth back and forth until the journal gets compacted
+		for( int i=0; i<100; i++ )
+		{
+			berths.moveToShip( "cuchaz", ShipUuid, i, 2, 3 );
+			berths.save();
+			berths.moveToWorld( "cuchaz", i, 64, 5 );
+			berths.save();
+		}
+		assertTrue( new File( m_dir, "berths.dat" ).exists() );
+		assertTrue( berths.getNumJournalRecords() < 64 );
+		
+		BerthDatabase loaded = new BerthDatabase( m_dir );
+		loaded.load();
+		assertSameBerths( berths, loaded );
+		assertEquals( 99, loaded.get( "cuchaz" ).x );
+		
+		// compacting again shouldn't change anything
+		loaded.compact();
+		assertFalse( new File( m_dir, "berths.journal" ).exists() );
+		BerthDatabase reloaded = new BerthDatabase( m_dir );
+		reloaded.load();
+		assertSameBerths( berths, reloaded );
+	}
+	
+	@Test
+	public void truncatedJournal( )
+	throws Exception
+	{
+		// NOTE: the warning for the damaged journal needs the mod classes
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BerthDatabase berths = new BerthDatabase( m_dir );
+				berths.put( "cuchaz", newBerth( 0, 5, 64, 5 ) );
+				berths.put( "jeff", newBerth( 0, 20, 64, -20 ) );
+				berths.save();
+				berths.moveToShip( "jeff", ShipUuid, 1, 2, 3 );
+				berths.save();
+				
+				// chop the last record in half, like the server died while writing it
+				RandomAccessFile file = new RandomAccessFile( new File( m_dir, "berths.journal" ), "rw" );
+				file.setLength( file.length() - 10 );
+				file.close();
+				
+				// we should lose the last change, but nothing else
+				BerthDatabase loaded = new BerthDatabase( m_dir );
+				loaded.load();
+				assertEquals( 2, loaded.size() );
+				assertNull( loaded.get( "jeff" ).shipUuid );
+				assertEquals( 20, loaded.get( "jeff" ).x );
+				assertEquals( Arrays.asList( "jeff" ), loaded.getUsernamesInChunks( 0, 1, -2, 1, -2 ) );
+				
+				// the damaged journal should be gone, so new changes can be read back
+				assertFalse( new File( m_dir, "berths.journal" ).exists() );
+				loaded.moveToShip( "cuchaz", ShipUuid, 4, 5, 6 );
+				loaded.save();
+				BerthDatabase reloaded = new BerthDatabase( m_dir );
+				reloaded.load();
+				assertSameBerths( loaded, reloaded );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void interruptedCompaction( )
+	throws Exception
+	{
+		// NOTE: the warning for the missing snapshot needs the mod classes
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BerthDatabase berths = new BerthDatabase( m_dir );
+				berths.put( "cuchaz", newBerth( 0, 5, 64, 5 ) );
+				berths.put( "jeff", newBerth( 0, 20, 64, -20 ) );
+				berths.compact();
+				berths.moveToShip( "jeff", ShipUuid, 1, 2, 3 );
+				berths.save();
+				
+				// leave only the temp snapshot, like the server died between deleting the old snapshot and renaming the new one
+				File snapshotFile = new File( m_dir, "berths.dat" );
+				File tempFile = new File( m_dir, "berths.dat.tmp" );
+				assertTrue( snapshotFile.renameTo( tempFile ) );
+				
+				// we shouldn't lose anything
+				BerthDatabase loaded = new BerthDatabase( m_dir );
+				loaded.load();
+				assertSameBerths( berths, loaded );
+				assertEquals( Arrays.asList( "jeff" ), loaded.getUsernamesOnShip( ShipUuid ) );
+				
+				// and the compaction should be finished
+				assertTrue( snapshotFile.exists() );
+				assertFalse( tempFile.exists() );
+				BerthDatabase reloaded = new BerthDatabase( m_dir );
+				reloaded.load();
+				assertSameBerths( berths, reloaded );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void truncatedTempSnapshot( )
+	throws Exception
+	{
+		// NOTE: the warning for the damaged snapshot needs the mod classes
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BerthDatabase berths = new BerthDatabase( m_dir );
+				berths.put( "cuchaz", newBerth( 0, 5, 64, 5 ) );
+				berths.put( "jeff", newBerth( 0, 20, 64, -20 ) );
+				berths.save();
+				
+				// leave a temp snapshot that's missing its records, like the server died while writing it
+				DataOutputStream out = new DataOutputStream( new FileOutputStream( new File( m_dir, "berths.dat.tmp" ) ) );
+				out.writeInt( 2 );
+				out.writeUTF( "cuchaz" );
+				out.close();
+				
+				// the half-written snapshot should be ignored, and the journal still has everything
+				BerthDatabase loaded = new BerthDatabase( m_dir );
+				loaded.load();
+				assertSameBerths( berths, loaded );
+				assertEquals( 5, loaded.get( "cuchaz" ).x );
+			}
+		}.run();
+	}
+	
+	private BerthCoords newBerth( int dimensionId, int x, int y, int z )
+	{
+		BerthCoords coords = new BerthCoords();
+		coords.dimensionId = dimensionId;
+		coords.x = x;
+		coords.y = y;
+		coords.z = z;
+		return coords;
+	}
+	
+	private void assertSameBerths( BerthDatabase expected, BerthDatabase observed )
+	{
+		assertEquals( expected.size(), observed.size() );
+		for( String username : Arrays.asList( "cuchaz", "jeff" ) )
+		{
+			BerthCoords expectedCoords = expected.get( username );
+			BerthCoords observedCoords = observed.get( username );
+			if( expectedCoords == null )
+			{
+				assertNull( observedCoords );
+				continue;
+			}
+			assertEquals( expectedCoords.dimensionId, observedCoords.dimensionId );
+			assertEquals( expectedCoords.shipUuid, observedCoords.shipUuid );
+			assertEquals( expectedCoords.x, observedCoords.x );
+			assertEquals( expectedCoords.y, observedCoords.y );
+			assertEquals( expectedCoords.z, observedCoords.z );
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.persistence.BlockStoragePersistence;
+
+public class TestBlocksBackends
+{
+	private static final int NumCopies = 20;
+	
+	@Test
+	public void sameBlocks( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BlocksStorage ship = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+				
+				// add the blocks in a random order, and set some of them twice
+				Random rand = new Random( 12345 );
+				List<Coords> shuffledCoords = new ArrayList<Coords>( ship.coords() );
+				Collections.shuffle( shuffledCoords, rand );
+				BlocksBackend mapBackend = new MapBlocksBackend();
+				BlocksBackend packedBackend = new PackedBlocksBackend();
+				for( Coords coords : shuffledCoords )
+				{
+					if( rand.nextInt( 4 ) == 0 )
+					{
+						mapBackend.setBlock( coords, 1, 1 );
+						packedBackend.setBlock( coords, 1, 1 );
+					}
+					BlockStorage block = ship.getBlock( coords );
+					mapBackend.setBlock( coords, block.id, block.meta );
+					packedBackend.setBlock( coords, block.id, block.meta );
+				}
+				
+				for( BlocksBackend backend : new BlocksBackend[] { mapBackend, packedBackend } )
+				{
+					assertEquals( ship.getNumBlocks(), backend.getNumBlocks() );
+					assertEquals( ship.coords(), backend.coords() );
+					for( Coords coords : ship.coords() )
+					{
+						assertTrue( backend.hasBlock( coords ) );
+						assertEquals( ship.getBlockId( coords ), backend.getBlockId( coords ) );
+						assertEquals( ship.getBlockMeta( coords ), backend.getBlockMeta( coords ) );
+					}
+					
+					// air should come back as air
+					Coords airCoords = new Coords( 10000, 10000, 10000 );
+					assertFalse( backend.hasBlock( airCoords ) );
+					assertEquals( 0, backend.getBlockId( airCoords ) );
+					assertEquals( 0, backend.getBlockMeta( airCoords ) );
+				}
+			}
+		}.run();
+	}
+	
+	@Test
+	public void memoryFootprint( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BlocksStorage ship = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+				
+				// build the coords set now, so it doesn't count against either backend
+				ship.coords();
+				
+				// measure the blocks alone, and then with everything a launched ship builds from them
+				long mapBytes = getFootprint( ship, false, false );
+				long packedBytes = getFootprint( ship, true, false );
+				long mapShipBytes = getFootprint( ship, false, true );
+				long packedShipBytes = getFootprint( ship, true, true );
+				
+				double numBlocks = ship.getNumBlocks()*NumCopies;
+				System.out.println( String.format( "Map backend:    %.1f bytes per block, %.1f with geometry and displacement", mapBytes/numBlocks, mapShipBytes/numBlocks ) );
+				System.out.println( String.format( "Packed backend: %.1f bytes per block, %.1f with geometry and displacement", packedBytes/numBlocks, packedShipBytes/numBlocks ) );
+				
+				// a packed block is one long, plus some slack in the array
+				assertTrue( packedBytes/numBlocks <= 20 );
+				assertTrue( packedBytes*4 < mapBytes );
+				
+				// the geometry shares the coords set with the storage, so the packed backend should still save the map entries
+				assertTrue( packedShipBytes < mapShipBytes );
+				assertTrue( mapShipBytes - packedShipBytes > ( mapBytes - packedBytes )/2 );
+			}
+		}.run();
+	}
+	
+	private long getFootprint( BlocksStorage ship, boolean isPacked, boolean buildShip )
+	{
+		long usedBefore = getUsedMemory();
+		List<BlocksStorage> copies = new ArrayList<BlocksStorage>();
+		for( int i=0; i<NumCopies; i++ )
+		{
+			BlocksStorage copy = new BlocksStorage( isPacked ? new PackedBlocksBackend() : new MapBlocksBackend() );
+			for( Coords coords : ship.coords() )
+			{
+				copy.setBlock( coords, ship.getBlockId( coords ), ship.getBlockMeta( coords ) );
+			}
+			copy.getBlockId( ship.coords().first() );
+			if( buildShip )
+			{
+				copy.getGeometry();
+				copy.getDisplacement();
+			}
+			copies.add( copy );
+		}
+		long usedAfter = getUsedMemory();
+		
+		// make sure the copies are still around when we measure
+		assertEquals( NumCopies, copies.size() );
+		return usedAfter - usedBefore;
+	}
+	
+	private long getUsedMemory( )
+	{
+		Runtime runtime = Runtime.getRuntime();
+		for( int i=0; i<4; i++ )
+		{
+			System.gc();
+			try
+			{
+				Thread.sleep( 50 );
+			}
+			catch( InterruptedException ex )
+			{
+				// don't care
+			}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.packets.PacketChangedBlocks;
+import cuchaz.ships.persistence.BlockStoragePersistence;
+
+public class TestChangedBlocksPacket
+{
+	private static final int FurnaceLitId = 62;
+	private static final int RedstoneWireId = 55;
+	
+	@Test
+	public void furnaceBank( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				// two rows of furnaces all light up on the same tick
+				BlocksStorage blocks = new BlocksStorage();
+				BlockSet changedBlocks = new BlockSet();
+				for( int x=0; x<8; x++ )
+				{
+					for( int y=1; y<=2; y++ )
+					{
+						Coords coords = new Coords( x, y, 3 );
+						blocks.setBlock( coords, FurnaceLitId, 2 );
+						changedBlocks.add( coords );
+					}
+				}
+				
+				// it's all one run, so it should be way smaller
+				int numBytes = checkPacket( "Furnace bank", blocks, changedBlocks );
+				assertTrue( numBytes*2 < getOldNumBytes( blocks, changedBlocks ) );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void redstoneClock( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				// a line of redstone wire, with the power dropping off along the line
+				BlocksStorage blocks = new BlocksStorage();
+				BlockSet changedBlocks = new BlockSet();
+				for( int x=0; x<15; x++ )
+				{
+					Coords coords = new Coords( x - 7, 2, -4 );
+					blocks.setBlock( coords, RedstoneWireId, 15 - x );
+					changedBlocks.add( coords );
+				}
+				
+				// every block is its own run, but the coords are still cheap
+				int numBytes = checkPacket( "Redstone clock", blocks, changedBlocks );
+				assertTrue( numBytes < getOldNumBytes( blocks, changedBlocks ) );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void scatteredChanges( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				// pick random blocks all over a big ship
+				BlocksStorage blocks = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+				List<Coords> coords = new ArrayList<Coords>( blocks.coords() );
+				Collections.shuffle( coords, new Random( 12345 ) );
+				BlockSet changedBlocks = new BlockSet();
+				changedBlocks.addAll( coords.subList( 0, 64 ) );
+				
+				int numBytes = checkPacket( "Scattered", blocks, changedBlocks );
+				assertTrue( numBytes < getOldNumBytes( blocks, changedBlocks ) );
+			}
+		}.run();
+	}
+	
+	private int checkPacket( String name, BlocksStorage blocks, BlockSet changedBlocks )
+	throws IOException
+	{
+		// write the packet
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream( buf );
+		new PacketChangedBlocks( 5, blocks, changedBlocks ).writeData( out );
+		out.close();
+		byte[] data = buf.toByteArray();
+		
+		// read it back
+		PacketChangedBlocks packet = new PacketChangedBlocks();
+		packet.readData( new DataInputStream( new ByteArrayInputStream( data ) ) );
+		assertEquals( 5, packet.getEntityId() );
+		assertEquals( changedBlocks.size(), packet.getNumChangedBlocks() );
+		BlockSet readBlocks = new BlockSet();
+		for( int i=0; i<packet.getNumChangedBlocks(); i++ )
+		{
+			Coords coords = packet.getCoords( new Coords( 0, 0, 0 ), i );
+			readBlocks.add( coords );
+			assertEquals( blocks.getBlockId( coords ), packet.getBlockId( i ) );
+			assertEquals( blocks.getBlockMeta( coords ), packet.getBlockMeta( i ) );
+		}
+		assertEquals( changedBlocks, readBlocks );
+		
+		System.out.println( String.format( "%s: %d blocks, %d bytes (was %d bytes)",
+			name, changedBlocks.size(), data.length, getOldNumBytes( blocks, changedBlocks )
+		) );
+		return data.length;
+	}
+	
+	private int getOldNumBytes( BlocksStorage blocks, BlockSet changedBlocks )
+	throws IOException
+	{
+		// the old format: a short for each of x, y, z and id, and a byte for meta
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream( buf );
+		out.writeInt( 5 );
+		out.writeInt( changedBlocks.size() );
+		for( Coords coords : changedBlocks )
+		{
+			out.writeShort( coords.x );
+			out.writeShort( coords.y );
+			out.writeShort( coords.z );
+			out.writeShort( blocks.getBlockId( coords ) );
+			out.writeByte( blocks.getBlockMeta( coords ) );
+		}
+		out.close();
+		return buf.size();
+	}
+}
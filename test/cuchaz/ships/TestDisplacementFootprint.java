@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.Coords;
+
+public class TestDisplacementFootprint
+{
+	private static final int NumSteps = 200;
+	
+	@Test
+	public void sameAsRebuilding( )
+	{
+		Random rand = new Random( 12345 );
+		DisplacementFootprint footprint = new DisplacementFootprint();
+		BlockSet oldWorldBlocks = new BlockSet();
+		BlockSet entering = new BlockSet();
+		BlockSet leaving = new BlockSet();
+		
+		double x = 0;
+		double z = 0;
+		for( int step=0; step<NumSteps; step++ )
+		{
+			// drift the ship a little bit, and sometimes change which ship blocks we want
+			x += rand.nextDouble()*0.6 - 0.2;
+			z += rand.nextDouble()*0.6 - 0.2;
+			BlockSet shipBlocks = getShipBlocks( 4 + rand.nextInt( 3 ) );
+			
+			entering.clear();
+			leaving.clear();
+			BlockSet worldBlocks = new BlockSet();
+			for( Coords coords : shipBlocks )
+			{
+				int minX = (int)Math.floor( coords.x + x - 0.01 );
+				int minY = (int)Math.floor( coords.y - 0.01 );
+				int minZ = (int)Math.floor( coords.z + z - 0.01 );
+				int maxX = (int)Math.floor( coords.x + x + 1.01 );
+				int maxY = (int)Math.floor( coords.y + 1.01 );
+				int maxZ = (int)Math.floor( coords.z + z + 1.01 );
+				footprint.set( coords, minX, minY, minZ, maxX, maxY, maxZ, entering, leaving );
+				
+				// rebuild the footprint from scratch, the old way
+				for( int wx=minX; wx<=maxX; wx++ )
+				{
+					for( int wy=minY; wy<=maxY; wy++ )
+					{
+						for( int wz=minZ; wz<=maxZ; wz++ )
+						{
+							worldBlocks.add( new Coords( wx, wy, wz ) );
+						}
+					}
+				}
+			}
+			footprint.retainAll( shipBlocks, entering, leaving );
+			
+			assertEquals( shipBlocks.size(), footprint.getNumShipBlocks() );
+			BlockSet footprintBlocks = new BlockSet();
+			footprintBlocks.addAll( footprint.worldBlocks() );
+			assertEquals( worldBlocks, footprintBlocks );
+			assertEquals( getDifference( worldBlocks, oldWorldBlocks ), entering );
+			assertEquals( getDifference( oldWorldBlocks, worldBlocks ), leaving );
+			oldWorldBlocks = worldBlocks;
+		}
+	}
+	
+	@Test
+	public void noMovement( )
+	{
+		DisplacementFootprint footprint = new DisplacementFootprint();
+		BlockSet entering = new BlockSet();
+		BlockSet leaving = new BlockSet();
+		BlockSet shipBlocks = getShipBlocks( 5 );
+		for( int i=0; i<2; i++ )
+		{
+			entering.clear();
+			for( Coords coords : shipBlocks )
+			{
+				footprint.set( coords, coords.x, coords.y, coords.z, coords.x + 1, coords.y, coords.z, entering, leaving );
+			}
+			footprint.retainAll( shipBlocks, entering, leaving );
+		}
+		
+		// the second time around, nothing should enter or leave
+		assertTrue( entering.isEmpty() );
+		assertTrue( leaving.isEmpty() );
+		assertEquals( 6*5, footprint.worldBlocks().size() );
+	}
+	
+	private BlockSet getShipBlocks( int size )
+	{
+		BlockSet blocks = new BlockSet();
+		for( int x=0; x<size; x++ )
+		{
+			for( int z=0; z<size; z++ )
+			{
+				blocks.add( new Coords( x, 0, z ) );
+			}
+		}
+		return blocks;
+	}
+	
+	private BlockSet getDifference( BlockSet a, BlockSet b )
+	{
+		BlockSet out = new BlockSet( a );
+		out.removeAll( b );
+		return out;
+	}
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.minecraft.block.Block;
+
+import org.junit.Test;
+
+public class TestDisplayTickIndex
+{
+	@Test
+	public void sameDensityAsVanilla( )
+	{
+		// all the odds together should add up to vanilla's 1000 tries
+		double sum = 0;
+		for( int dx=-16; dx<=16; dx++ )
+		{
+			for( int dy=-16; dy<=16; dy++ )
+			{
+				for( int dz=-16; dz<=16; dz++ )
+				{
+					sum += DisplayTickIndex.getExpectedTicks( dx, dy, dz );
+				}
+			}
+		}
+		assertEquals( 1000, sum, 1e-6 );
+		
+		// and each block should get the same odds as with vanilla's sampling
+		Random rand = new Random( 12345 );
+		int numTries = 10000000;
+		int numHits = 0;
+		for( int i=0; i<numTries; i++ )
+		{
+			if( rand.nextInt( 16 ) - rand.nextInt( 16 ) == 3
+				&& rand.nextInt( 16 ) - rand.nextInt( 16 ) == -1
+				&& rand.nextInt( 16 ) - rand.nextInt( 16 ) == 0 )
+			{
+				numHits++;
+			}
+		}
+		assertEquals( DisplayTickIndex.getExpectedTicks( 3, -1, 0 )/1000, (double)numHits/numTries, 2e-5 );
+		
+		// blocks out of range never get ticked
+		assertEquals( 0, DisplayTickIndex.getExpectedTicks( 16, 0, 0 ), 0 );
+	}
+	
+	@Test
+	public void indexedBlocks( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				assertTrue( DisplayTickIndex.hasRandomDisplayTick( Block.torchWood.blockID ) );
+				assertTrue( DisplayTickIndex.hasRandomDisplayTick( Block.furnaceBurning.blockID ) );
+				assertTrue( DisplayTickIndex.hasRandomDisplayTick( Block.redstoneWire.blockID ) );
+				assertFalse( DisplayTickIndex.hasRandomDisplayTick( Block.stone.blockID ) );
+				assertFalse( DisplayTickIndex.hasRandomDisplayTick( Block.planks.blockID ) );
+				assertFalse( DisplayTickIndex.hasRandomDisplayTick( 0 ) );
+			}
+		}.run();
+	}
+}
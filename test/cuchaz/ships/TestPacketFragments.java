@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.network.packet.Packet250CustomPayload;
+
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.packets.FragmentAssembler;
+import cuchaz.ships.packets.Packet;
+import cuchaz.ships.packets.PacketFragment;
+import cuchaz.ships.packets.PacketPasteShip;
+import cuchaz.ships.persistence.BlockStoragePersistence;
+
+public class TestPacketFragments
+{
+	private static class PacketBytes extends Packet
+	{
+		public static final String Channel = "testBytes";
+		
+		public byte[] data;
+		
+		public PacketBytes( )
+		{
+			super( Channel );
+		}
+		
+		@Override
+		public void writeData( DataOutputStream out ) throws IOException
+		{
+			writeBytes( out, data );
+		}
+		
+		@Override
+		public void readData( DataInputStream in ) throws IOException
+		{
+			data = readBytes( in );
+		}
+		
+		@Override
+		public void onPacketReceived( EntityPlayer player )
+		{
+			// nothing to do
+		}
+	}
+	
+	@Test
+	public void smallPacket( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				// small packets shouldn't get fragmented
+				PacketBytes packet = new PacketBytes();
+				packet.data = new byte[] { 1, 2, 3, 4, 5 };
+				List<Packet250CustomPayload> customPackets = packet.getCustomPackets();
+				assertEquals( 1, customPackets.size() );
+				assertEquals( PacketBytes.Channel, customPackets.get( 0 ).channel );
+				
+				PacketBytes receivedPacket = new PacketBytes();
+				receivedPacket.readCustomPacket( customPackets.get( 0 ) );
+				assertArrayEquals( packet.data, receivedPacket.data );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void loopbackShip( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				// make a ship with 10k blocks
+				BlocksStorage blocks = makeShip( new Random( 12345 ) );
+				assertEquals( 10000, blocks.getNumBlocks() );
+				PacketBytes packet = new PacketBytes();
+				packet.data = BlockStoragePersistence.writeNewestVersion( blocks );
+				
+				List<Packet250CustomPayload> customPackets = packet.getCustomPackets();
+				assertTrue( customPackets.size() > 1 );
+				for( Packet250CustomPayload customPacket : customPackets )
+				{
+					assertEquals( PacketFragment.Channel, customPacket.channel );
+					assertTrue( customPacket.length <= 32767 );
+				}
+				
+				// send the fragments out of order, with a duplicate
+				Collections.shuffle( customPackets, new Random( 54321 ) );
+				customPackets.add( 1, customPackets.get( 0 ) );
+				FragmentAssembler assembler = new FragmentAssembler();
+				Packet250CustomPayload receivedCustomPacket = null;
+				for( Packet250CustomPayload customPacket : customPackets )
+				{
+					assertNull( receivedCustomPacket );
+					receivedCustomPacket = assembler.add( readFragment( customPacket ), 0 );
+				}
+				assertTrue( receivedCustomPacket != null );
+				assertEquals( PacketBytes.Channel, receivedCustomPacket.channel );
+				assertEquals( 0, assembler.getNumTransfers() );
+				assertEquals( 0, assembler.getNumBufferedBytes() );
+				
+				// the ship should come through intact
+				PacketBytes receivedPacket = new PacketBytes();
+				receivedPacket.readCustomPacket( receivedCustomPacket );
+				assertArrayEquals( packet.data, receivedPacket.data );
+				BlocksStorage receivedBlocks = BlockStoragePersistence.readAnyVersion( receivedPacket.data );
+				assertEquals( blocks.coords(), receivedBlocks.coords() );
+				for( Coords coords : blocks.coords() )
+				{
+					assertEquals( blocks.getBlock( coords ).id, receivedBlocks.getBlock( coords ).id );
+					assertEquals( blocks.getBlock( coords ).meta, receivedBlocks.getBlock( coords ).meta );
+				}
+			}
+		}.run();
+	}
+	
+	@Test
+	public void oversizedPaste( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				// a big ship on the clipboard doesn't fit in one packet, or even in a UTF string
+				BlocksStorage blocks = makeShip( new Random( 12345 ), 64, 16, 64 );
+				String encodedBlocks = BlockStoragePersistence.writeNewestVersionToString( blocks );
+				assertTrue( encodedBlocks.length() > 65535 );
+				PacketPasteShip packet = new PacketPasteShip( encodedBlocks, 1, 2, 3 );
+				List<Packet250CustomPayload> customPackets = packet.getCustomPackets();
+				assertTrue( customPackets.size() > 1 );
+				FragmentAssembler assembler = new FragmentAssembler();
+				Packet250CustomPayload receivedCustomPacket = null;
+				for( Packet250CustomPayload customPacket : customPackets )
+				{
+					assertEquals( PacketFragment.Channel, customPacket.channel );
+					assertTrue( customPacket.length <= 32767 );
+					assertNull( receivedCustomPacket );
+					receivedCustomPacket = assembler.add( readFragment( customPacket ), 0 );
+				}
+				assertTrue( receivedCustomPacket != null );
+				assertEquals( PacketPasteShip.Channel, receivedCustomPacket.channel );
+				
+				// the server should get the whole ship
+				PacketPasteShip receivedPacket = new PacketPasteShip();
+				receivedPacket.readCustomPacket( receivedCustomPacket );
+				assertEquals( encodedBlocks, receivedPacket.getEncodedBlocks() );
+				assertEquals( blocks.coords(), BlockStoragePersistence.readAnyVersion( receivedPacket.getEncodedBlocks() ).coords() );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void timeout( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				PacketBytes packet = new PacketBytes();
+				packet.data = BlockStoragePersistence.writeNewestVersion( makeShip( new Random( 12345 ) ) );
+				List<Packet250CustomPayload> customPackets = packet.getCustomPackets();
+				
+				// the first fragment arrives, then nothing for a long time
+				FragmentAssembler assembler = new FragmentAssembler();
+				assertNull( assembler.add( readFragment( customPackets.get( 0 ) ), 0 ) );
+				assertEquals( 1, assembler.getNumTransfers() );
+				assembler.removeExpiredTransfers( FragmentAssembler.TimeoutMillis + 1 );
+				assertEquals( 0, assembler.getNumTransfers() );
+				assertEquals( 0, assembler.getNumBufferedBytes() );
+				
+				// the rest of the fragments can't complete the payload
+				long time = FragmentAssembler.TimeoutMillis + 1;
+				for( int i=1; i<customPackets.size(); i++ )
+				{
+					assertNull( assembler.add( readFragment( customPackets.get( i ) ), time ) );
+				}
+			}
+		}.run();
+	}
+	
+	@Test
+	public void memoryCap( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				FragmentAssembler assembler = new FragmentAssembler();
+				
+				// payloads that are too big get dropped right away
+				int payloadSize = FragmentAssembler.MaxPayloadSize + 1;
+				assertNull( assembler.add( makeFragment( 0, payloadSize ), 0 ) );
+				assertEquals( 0, assembler.getNumTransfers() );
+				
+				// start as many big transfers as we can
+				payloadSize = FragmentAssembler.MaxPayloadSize;
+				int numTransfers = FragmentAssembler.MaxBufferedBytes/payloadSize;
+				for( int i=0; i<numTransfers; i++ )
+				{
+					assertNull( assembler.add( makeFragment( i, payloadSize ), 0 ) );
+				}
+				assertEquals( numTransfers, assembler.getNumTransfers() );
+				assertTrue( assembler.getNumBufferedBytes() <= FragmentAssembler.MaxBufferedBytes );
+				
+				// the next one should get dropped
+				assertNull( assembler.add( makeFragment( numTransfers, payloadSize ), 0 ) );
+				assertEquals( numTransfers, assembler.getNumTransfers() );
+				assertTrue( assembler.getNumBufferedBytes() <= FragmentAssembler.MaxBufferedBytes );
+			}
+		}.run();
+	}
+	
+	private BlocksStorage makeShip( Random rand )
+	{
+		return makeShip( rand, 25, 16, 25 );
+	}
+	
+	private BlocksStorage makeShip( Random rand, int dx, int dy, int dz )
+	{
+		BlocksStorage blocks = new BlocksStorage();
+		for( int x=0; x<dx; x++ )
+		{
+			for( int y=0; y<dy; y++ )
+			{
+				for( int z=0; z<dz; z++ )
+				{
+					blocks.setBlock( new Coords( x, y, z ), new BlockStorage( 1 + rand.nextInt( 100 ), rand.nextInt( 16 ) ) );
+				}
+			}
+		}
+		return blocks;
+	}
+	
+	private PacketFragment readFragment( Packet250CustomPayload customPacket )
+	{
+		PacketFragment fragment = new PacketFragment();
+		fragment.readCustomPacket( customPacket );
+		return fragment;
+	}
+	
+	private PacketFragment makeFragment( int transferId, int payloadSize )
+	{
+		byte[] data = new byte[Math.min( payloadSize, PacketFragment.MaxDataSize )];
+		return new PacketFragment( transferId, PacketBytes.Channel, 0, PacketFragment.getNumFragments( payloadSize ), payloadSize, data );
+	}
+}
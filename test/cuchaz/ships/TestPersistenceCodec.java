@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.binary.Base64InputStream;
+import org.apache.commons.codec.binary.Base64OutputStream;
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.persistence.BlockStorageCodec;
+import cuchaz.ships.persistence.BlockStoragePersistence;
+
+public class TestPersistenceCodec
+{
+	@Test
+	public void sameData( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BlocksStorage blocks = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+				BlockStorageCodec codec = BlockStorageCodec.get();
+				
+				// the codec should write exactly what the streams wrote
+				ByteArrayOutputStream buf = new ByteArrayOutputStream();
+				BlockStoragePersistence.V2.write( blocks, buf );
+				ByteBuffer encoded = codec.encode( blocks );
+				byte[] encodedBytes = new byte[encoded.remaining()];
+				encoded.get( encodedBytes );
+				assertArrayEquals( buf.toByteArray(), encodedBytes );
+				assertArrayEquals( buf.toByteArray(), BlockStoragePersistence.writeNewestVersion( blocks ) );
+				assertEquals( encodeWithStreams( blocks ), codec.encodeString( blocks ) );
+				
+				// and read back the same blocks, from every version
+				assertSameBlocks( blocks, BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip ) );
+				assertSameBlocks( blocks, decodeWithStreams( TestShipLag.BigShip ) );
+				for( BlockStoragePersistence persistence : BlockStoragePersistence.values() )
+				{
+					buf = new ByteArrayOutputStream();
+					persistence.write( blocks, buf );
+					assertSameBlocks( blocks, BlockStoragePersistence.readAnyVersion( buf.toByteArray() ) );
+				}
+			}
+		}.run();
+	}
+	
+	private String encodeWithStreams( BlocksStorage blocks )
+	throws Exception
+	{
+		// the way BlockStoragePersistence used to do it
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream( new GZIPOutputStream( new Base64OutputStream( buffer ) ) );
+		BlockStoragePersistence.V2.write( blocks, out );
+		out.close();
+		return new String( buffer.toByteArray(), "UTF-8" );
+	}
+	
+	private BlocksStorage decodeWithStreams( String data )
+	throws Exception
+	{
+		DataInputStream in = new DataInputStream( new GZIPInputStream( new Base64InputStream( new ByteArrayInputStream( data.getBytes( "UTF-8" ) ) ) ) );
+		BlocksStorage blocks = BlockStoragePersistence.readAnyVersion( in );
+		in.close();
+		return blocks;
+	}
+	
+	private void assertSameBlocks( BlocksStorage expected, BlocksStorage observed )
+	{
+		assertEquals( expected.coords(), observed.coords() );
+		for( Coords coords : expected.coords() )
+		{
+			assertEquals( expected.getBlockId( coords ), observed.getBlockId( coords ) );
+			assertEquals( expected.getBlockMeta( coords ), observed.getBlockMeta( coords ) );
+		}
+	}
+}
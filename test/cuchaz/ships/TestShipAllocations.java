@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityHanging;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.world.World;
+
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.BlockMap;
+import cuchaz.modsShared.blocks.BoundingBoxInt;
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.persistence.BlockStoragePersistence;
+
+public class TestShipAllocations
+{
+	private static final int NumWarmups = 100;
+	private static final int NumIterations = 1000;
+	
+	@Test
+	public void scratchArena( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				final ScratchArena arena = ScratchArena.get();
+				assertZeroAllocations( new Runnable( )
+				{
+					@Override
+					public void run( )
+					{
+						arena.push();
+						try
+						{
+							AxisAlignedBB box = arena.box( 0, 0, 0, 1, 1, 1 );
+							arena.box( box ).offset( 1, 2, 3 );
+							arena.vec( 1, 2, 3 );
+							arena.coords().set( 1, 2, 3 );
+							arena.buffer().add( 1, 2, 3 );
+							
+							// nested frames reuse the same objects
+							arena.push();
+							try
+							{
+								List<AxisAlignedBB> boxes = arena.list();
+								boxes.add( box );
+								boxes.add( arena.box() );
+							}
+							finally
+							{
+								arena.pop();
+							}
+						}
+						finally
+						{
+							arena.pop();
+						}
+					}
+				} );
+				assertEquals( 0, arena.getNumFrames() );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void collisionQueries( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BlocksStorage shipBlocks = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+				final ShipGeometry geometry = shipBlocks.getGeometry();
+				final ShipBroadphase broadphase = geometry.getBroadphase();
+				final BoundingBoxInt shipBox = shipBlocks.getBoundingBox();
+				final CoordsBuffer worldBlocks = new CoordsBuffer();
+				for( int x=shipBox.minX - 1; x<=shipBox.maxX + 1; x++ )
+				{
+					worldBlocks.add( x, shipBox.minY - 1, ( shipBox.minZ + shipBox.maxZ )/2 );
+				}
+				final CoordsBuffer nearbyBlocks = new CoordsBuffer();
+				final AxisAlignedBB box = AxisAlignedBB.getBoundingBox(
+					shipBox.minX, shipBox.minY, shipBox.minZ,
+					( shipBox.minX + shipBox.maxX )/2, shipBox.maxY, ( shipBox.minZ + shipBox.maxZ )/2
+				);
+				final Coords coords = new Coords();
+				
+				assertZeroAllocations( new Runnable( )
+				{
+					@Override
+					public void run( )
+					{
+						nearbyBlocks.clear();
+						geometry.rangeQuery( nearbyBlocks, box );
+						geometry.hasBlocksInRange( box );
+						broadphase.findCandidates( worldBlocks, 0, 64, 0, 30, 0, 0, 0, 0.1, -0.1, 0.1, 1 );
+						for( int i=0; i<broadphase.getNumBlocks(); i++ )
+						{
+							if( broadphase.isCandidate( i ) )
+							{
+								broadphase.getBlock( coords, i );
+							}
+						}
+					}
+				} );
+				
+				// make sure we actually tested something
+				assertTrue( nearbyBlocks.size() > 0 );
+				assertTrue( broadphase.getNumCandidates() > 0 );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void shipTick( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				World world = new TestWorld();
+				
+				// put a ship on the floor, right next to another ship
+				final EntityShip ship = makeShip( world, TestShipLag.BigShip );
+				ship.setPosition( 8, ship.posY + TestWorld.FloorY + 0.01 - ship.boundingBox.minY, 8 );
+				EntityShip otherShip = makeShip( world, TestDisplacementComponents.ShipA );
+				otherShip.setPosition(
+					otherShip.posX + ship.boundingBox.maxX + 0.01 - otherShip.boundingBox.minX,
+					otherShip.posY + TestWorld.FloorY + 0.01 - otherShip.boundingBox.minY,
+					ship.posZ
+				);
+				
+				// do the same collision work as EntityShip.onUpdate(): find the riders, then move the ship
+				final ShipCollider collider = ship.getCollider();
+				final List<Entity> riders = new ArrayList<Entity>();
+				assertZeroAllocations( new Runnable( )
+				{
+					private double m_dz = 0.05;
+					
+					@Override
+					public void run( )
+					{
+						// NOTE: Minecraft cleans up the box pool every tick, so block collision boxes get reused
+						AxisAlignedBB.getAABBPool().cleanPool();
+						
+						collider.getRiders( riders );
+						
+						// push into the floor, then slide back and forth along the floor and the other ship
+						collider.moveShip( 0, -0.05, 0, 0 );
+						collider.moveShip( 0, 0, m_dz, 0 );
+						m_dz = -m_dz;
+					}
+				} );
+				
+				// make sure the floor actually stopped the ship
+				assertTrue( ship.boundingBox.minY > TestWorld.FloorY - 0.01 );
+			}
+		}.run();
+	}
+	
+	private EntityShip makeShip( World world, String encodedBlocks )
+	throws Exception
+	{
+		EntityShip ship = new EntityShip( world );
+		BlocksStorage storage = BlockStoragePersistence.readAnyVersion( encodedBlocks );
+		ship.setShipWorld( new ShipWorld( world, storage, new BlockMap<TileEntity>(), new BlockMap<EntityHanging>(), 0 ) );
+		ShipRegistry.onShipAdded( ship );
+		return ship;
+	}
+	
+	private void assertZeroAllocations( Runnable task )
+	{
+		// let the pools, buffers, and the JIT settle down first
+		for( int i=0; i<NumWarmups; i++ )
+		{
+			task.run();
+		}
+		
+		// measure the cost of measuring, so it doesn't count against the task
+		long overhead = getAllocatedBytes();
+		overhead = getAllocatedBytes() - overhead;
+		
+		long bytes = getAllocatedBytes();
+		for( int i=0; i<NumIterations; i++ )
+		{
+			task.run();
+		}
+		bytes = getAllocatedBytes() - bytes - overhead;
+		
+		assertEquals( 0, bytes );
+	}
+	
+	private long getAllocatedBytes( )
+	{
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		return bean.getThreadAllocatedBytes( Thread.currentThread().getId() );
+	}
+}
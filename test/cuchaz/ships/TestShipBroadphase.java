@@ -0,0 +1,403 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.minecraft.util.MathHelper;
+
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.BoundingBoxInt;
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.persistence.BlockStoragePersistence;
+
+public class TestShipBroadphase
+{
+	@Test
+	public void shipA( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				testShip( TestDisplacementComponents.ShipA );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void shipB( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				testShip( TestDisplacementComponents.ShipB );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void bigShip( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				testShip( TestShipLag.BigShip );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void shipPairs( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				testShipPair( TestDisplacementComponents.ShipA, TestDisplacementComponents.ShipB );
+				testShipPair( TestDisplacementComponents.ShipB, TestDisplacementComponents.ShipA );
+				testShipPair( TestShipLag.BigShip, TestDisplacementComponents.ShipA );
+			}
+		}.run();
+	}
+	
+	private void testShip( String encodedBlocks )
+	throws Exception
+	{
+		BlocksStorage shipBlocks = BlockStoragePersistence.readAnyVersion( encodedBlocks );
+		ShipGeometry geometry = shipBlocks.getGeometry();
+		ShipBroadphase broadphase = geometry.getBroadphase();
+		BoundingBoxInt box = shipBlocks.getBoundingBox();
+		
+		// put the ship origin near the middle of the ship, like the center of mass would be
+		double shipBlockX = -( box.minX + box.maxX + 1 )/2.0;
+		double shipBlockY = -( box.minY + box.maxY + 1 )/2.0;
+		double shipBlockZ = -( box.minZ + box.maxZ + 1 )/2.0;
+		
+		Random rand = new Random( 12345 );
+		for( int i=0; i<20; i++ )
+		{
+			Pose pose = new Pose();
+			pose.x = rand.nextDouble()*100 - 50;
+			pose.y = 64 + rand.nextDouble();
+			pose.z = rand.nextDouble()*100 - 50;
+			pose.yaw = rand.nextFloat()*360;
+			pose.shipBlockX = shipBlockX;
+			pose.shipBlockY = shipBlockY;
+			pose.shipBlockZ = shipBlockZ;
+			double dx = rand.nextDouble() - 0.5;
+			double dy = rand.nextDouble() - 0.5;
+			double dz = rand.nextDouble() - 0.5;
+			float dYaw = rand.nextFloat()*8 - 4;
+			
+			// scatter solid world blocks around the ship hull
+			double[] hull = getHull( shipBlocks.coords(), pose, dx, dy, dz, dYaw );
+			CoordsBuffer worldBlocks = new CoordsBuffer();
+			BlockSet worldBlockSet = new BlockSet();
+			for( int j=0; j<200; j++ )
+			{
+				Coords coords = new Coords(
+					MathHelper.floor_double( hull[0] + rand.nextDouble()*( hull[3] - hull[0] ) ),
+					MathHelper.floor_double( hull[1] + rand.nextDouble()*( hull[4] - hull[1] ) ),
+					MathHelper.floor_double( hull[2] + rand.nextDouble()*( hull[5] - hull[2] ) )
+				);
+				if( worldBlockSet.add( coords ) )
+				{
+					worldBlocks.add( coords );
+				}
+			}
+			
+			// nothing to collide with means nothing to check
+			assertEquals( 0, broadphase.findCandidates( new CoordsBuffer(), pose.x, pose.y, pose.z, pose.yaw,
+				pose.shipBlockX, pose.shipBlockY, pose.shipBlockZ, dx, dy, dz, dYaw ) );
+			
+			broadphase.findCandidates( worldBlocks, pose.x, pose.y, pose.z, pose.yaw,
+				pose.shipBlockX, pose.shipBlockY, pose.shipBlockZ, dx, dy, dz, dYaw );
+			BlockSet candidates = new BlockSet();
+			for( int j=0; j<broadphase.getNumBlocks(); j++ )
+			{
+				if( broadphase.isCandidate( j ) )
+				{
+					candidates.add( broadphase.getBlock( new Coords(), j ) );
+				}
+			}
+			assertEquals( broadphase.getNumCandidates(), candidates.size() );
+			
+			// every ship block that touches a world block during the move must be a candidate,
+			// and the collision scaling must come out exactly the same as checking every block
+			double expectedScaling = 1;
+			double observedScaling = 1;
+			for( Coords coords : shipBlocks.coords() )
+			{
+				double[] sweptBox = getSweptBlockBox( coords, pose, dx, dy, dz, dYaw );
+				double blockScaling = getScaling( sweptBox, coords, pose, dx, dy, dz, worldBlockSet );
+				if( blockScaling < 1 || touchesAny( sweptBox, worldBlockSet ) )
+				{
+					assertTrue( candidates.contains( coords ) );
+				}
+				expectedScaling = Math.min( expectedScaling, blockScaling );
+				if( candidates.contains( coords ) )
+				{
+					observedScaling = Math.min( observedScaling, blockScaling );
+				}
+			}
+			assertEquals( expectedScaling, observedScaling, 0 );
+		}
+	}
+	
+	private void testShipPair( String encodedBlocks, String encodedOtherBlocks )
+	throws Exception
+	{
+		BlocksStorage shipBlocks = BlockStoragePersistence.readAnyVersion( encodedBlocks );
+		BlocksStorage otherShipBlocks = BlockStoragePersistence.readAnyVersion( encodedOtherBlocks );
+		ShipBroadphase broadphase = shipBlocks.getGeometry().getBroadphase();
+		ShipGeometryIndex otherIndex = otherShipBlocks.getGeometry().getIndex();
+		BoundingBoxInt box = shipBlocks.getBoundingBox();
+		BoundingBoxInt otherBox = otherShipBlocks.getBoundingBox();
+		
+		int numChecked = 0;
+		int numPruned = 0;
+		Random rand = new Random( 12345 );
+		for( int i=0; i<50; i++ )
+		{
+			// put the ships close enough together that their hulls usually overlap
+			Pose pose = new Pose();
+			pose.x = rand.nextDouble()*10 - 5;
+			pose.y = 64 + rand.nextDouble();
+			pose.z = rand.nextDouble()*10 - 5;
+			pose.yaw = rand.nextFloat()*360;
+			pose.shipBlockX = -( box.minX + box.maxX + 1 )/2.0;
+			pose.shipBlockY = -( box.minY + box.maxY + 1 )/2.0;
+			pose.shipBlockZ = -( box.minZ + box.maxZ + 1 )/2.0;
+			Pose otherPose = new Pose();
+			otherPose.x = rand.nextDouble()*10 - 5 + ( box.maxX - box.minX )/2;
+			otherPose.y = 64 + rand.nextDouble()*4 - 2;
+			otherPose.z = rand.nextDouble()*10 - 5;
+			otherPose.yaw = rand.nextFloat()*360;
+			otherPose.shipBlockX = -( otherBox.minX + otherBox.maxX + 1 )/2.0;
+			otherPose.shipBlockY = -( otherBox.minY + otherBox.maxY + 1 )/2.0;
+			otherPose.shipBlockZ = -( otherBox.minZ + otherBox.maxZ + 1 )/2.0;
+			double dx = rand.nextDouble() - 0.5;
+			double dy = rand.nextDouble() - 0.5;
+			double dz = rand.nextDouble() - 0.5;
+			float dYaw = rand.nextFloat()*8 - 4;
+			
+			CoordsBuffer otherBlocks = new CoordsBuffer();
+			broadphase.findCandidates( otherIndex, otherBlocks,
+				pose.x, pose.y, pose.z, pose.yaw, pose.shipBlockX, pose.shipBlockY, pose.shipBlockZ,
+				otherPose.x, otherPose.y, otherPose.z, otherPose.yaw, otherPose.shipBlockX, otherPose.shipBlockY, otherPose.shipBlockZ,
+				dx, dy, dz, dYaw );
+			BlockSet otherBlockSet = otherBlocks.toBlockSet();
+			BlockSet candidates = new BlockSet();
+			for( int j=0; j<broadphase.getNumBlocks(); j++ )
+			{
+				if( broadphase.isCandidate( j ) )
+				{
+					candidates.add( broadphase.getBlock( new Coords(), j ) );
+				}
+			}
+			assertEquals( broadphase.getNumCandidates(), candidates.size() );
+			numPruned += broadphase.getNumBlocks() - candidates.size();
+			
+			// every ship block that could find a block of the other ship in its trajectory query must be a candidate,
+			// and every block of the other ship it could find must be in the overlap
+			Coords otherCoords = new Coords();
+			for( Coords coords : shipBlocks.coords() )
+			{
+				double[] sweptBox = getSweptBlockBox( coords, pose, otherPose, dx, dy, dz, dYaw );
+				for( int x=MathHelper.floor_double( sweptBox[0] - 1 ); x<=MathHelper.floor_double( sweptBox[3] + 1 ); x++ )
+				{
+					for( int y=MathHelper.floor_double( sweptBox[1] - 1 ); y<=MathHelper.floor_double( sweptBox[4] + 1 ); y++ )
+					{
+						for( int z=MathHelper.floor_double( sweptBox[2] - 1 ); z<=MathHelper.floor_double( sweptBox[5] + 1 ); z++ )
+						{
+							otherCoords.set( x, y, z );
+							if( otherShipBlocks.coords().contains( otherCoords ) )
+							{
+								assertTrue( candidates.contains( coords ) );
+								assertTrue( otherBlockSet.contains( otherCoords ) );
+								numChecked++;
+							}
+						}
+					}
+				}
+			}
+		}
+		
+		// make sure the test actually tested something
+		assertTrue( numChecked > 0 );
+		assertTrue( numPruned > 0 );
+	}
+	
+	private static class Pose
+	{
+		public double x;
+		public double y;
+		public double z;
+		public float yaw;
+		public double shipBlockX;
+		public double shipBlockY;
+		public double shipBlockZ;
+	}
+	
+	private double[] getBlockBox( Coords coords, Pose pose, double dx, double dy, double dz, float dYaw )
+	{
+		return getBlockBox( coords, pose, null, dx, dy, dz, dYaw );
+	}
+	
+	private double[] getBlockBox( Coords coords, Pose pose, Pose otherPose, double dx, double dy, double dz, float dYaw )
+	{
+		// same math as ShipCollider.getBlockBoundingBox()
+		double yawRad = Math.toRadians( pose.yaw + dYaw );
+		double x = coords.x + 0.5 + pose.shipBlockX;
+		double y = coords.y + 0.5 + pose.shipBlockY;
+		double z = coords.z + 0.5 + pose.shipBlockZ;
+		double worldX = x*Math.cos( yawRad ) + z*Math.sin( yawRad ) + pose.x + dx;
+		double worldY = y + pose.y + dy;
+		double worldZ = -x*Math.sin( yawRad ) + z*Math.cos( yawRad ) + pose.z + dz;
+		
+		float boxYawRad = (float)yawRad;
+		if( otherPose != null )
+		{
+			// transform into the other ship's blocks space
+			double otherYawRad = Math.toRadians( otherPose.yaw );
+			x = worldX - otherPose.x;
+			z = worldZ - otherPose.z;
+			worldX = x*Math.cos( otherYawRad ) - z*Math.sin( otherYawRad ) - otherPose.shipBlockX;
+			worldY = worldY - otherPose.y - otherPose.shipBlockY;
+			worldZ = x*Math.sin( otherYawRad ) + z*Math.cos( otherYawRad ) - otherPose.shipBlockZ;
+			boxYawRad -= (float)otherYawRad;
+		}
+		
+		double cos = MathHelper.cos( boxYawRad );
+		double sin = MathHelper.sin( boxYawRad );
+		double halfSize = Math.max( Math.abs( cos - sin ), Math.abs( sin + cos ) )/2;
+		return new double[] {
+			worldX - halfSize, worldY - 0.5, worldZ - halfSize,
+			worldX + halfSize, worldY + 0.5, worldZ + halfSize
+		};
+	}
+	
+	private double[] getSweptBlockBox( Coords coords, Pose pose, double dx, double dy, double dz, float dYaw )
+	{
+		return getSweptBlockBox( coords, pose, null, dx, dy, dz, dYaw );
+	}
+	
+	private double[] getSweptBlockBox( Coords coords, Pose pose, Pose otherPose, double dx, double dy, double dz, float dYaw )
+	{
+		double[] box = getBlockBox( coords, pose, otherPose, 0, 0, 0, 0 );
+		double[] nextBox = getBlockBox( coords, pose, otherPose, dx, dy, dz, dYaw );
+		for( int i=0; i<3; i++ )
+		{
+			box[i] = Math.min( box[i], nextBox[i] );
+			box[i + 3] = Math.max( box[i + 3], nextBox[i + 3] );
+		}
+		return box;
+	}
+	
+	private double[] getHull( BlockSet blocks, Pose pose, double dx, double dy, double dz, float dYaw )
+	{
+		double[] hull = null;
+		for( Coords coords : blocks )
+		{
+			double[] box = getSweptBlockBox( coords, pose, dx, dy, dz, dYaw );
+			if( hull == null )
+			{
+				hull = box;
+			}
+			for( int i=0; i<3; i++ )
+			{
+				hull[i] = Math.min( hull[i], box[i] - 1 );
+				hull[i + 3] = Math.max( hull[i + 3], box[i + 3] + 1 );
+			}
+		}
+		return hull;
+	}
+	
+	private boolean touchesAny( double[] box, BlockSet worldBlocks )
+	{
+		// same cells as the world range query
+		Coords coords = new Coords();
+		for( int x=MathHelper.floor_double( box[0] ); x<=MathHelper.floor_double( box[3] ); x++ )
+		{
+			for( int y=MathHelper.floor_double( box[1] ); y<=MathHelper.floor_double( box[4] ); y++ )
+			{
+				for( int z=MathHelper.floor_double( box[2] ); z<=MathHelper.floor_double( box[5] ); z++ )
+				{
+					coords.set( x, y, z );
+					if( worldBlocks.contains( coords ) )
+					{
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+	
+	private double getScaling( double[] sweptBox, Coords coords, Pose pose, double dx, double dy, double dz, BlockSet worldBlocks )
+	{
+		// same math as ShipCollider.checkBlockCollision(), using full cubes for the world blocks
+		double[] box = getBlockBox( coords, pose, 0, 0, 0, 0 );
+		double[] delta = { dx, dy, dz };
+		double scaling = 1;
+		Coords worldCoords = new Coords();
+		for( int x=MathHelper.floor_double( sweptBox[0] ); x<=MathHelper.floor_double( sweptBox[3] ); x++ )
+		{
+			for( int y=MathHelper.floor_double( sweptBox[1] ); y<=MathHelper.floor_double( sweptBox[4] ); y++ )
+			{
+				for( int z=MathHelper.floor_double( sweptBox[2] ); z<=MathHelper.floor_double( sweptBox[5] ); z++ )
+				{
+					worldCoords.set( x, y, z );
+					if( !worldBlocks.contains( worldCoords ) )
+					{
+						continue;
+					}
+					
+					int[] obstacle = { x, y, z };
+					for( int i=0; i<3; i++ )
+					{
+						double s = 1;
+						if( delta[i] > 0 && obstacle[i] - box[i + 3] >= 0 )
+						{
+							s = ( obstacle[i] - box[i + 3] )/delta[i];
+						}
+						else if( delta[i] < 0 && box[i] - ( obstacle[i] + 1 ) >= 0 )
+						{
+							s = ( box[i] - ( obstacle[i] + 1 ) )/-delta[i];
+						}
+						scaling = Math.min( scaling, s );
+					}
+				}
+			}
+		}
+		return scaling;
+	}
+}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import net.minecraft.block.Block;
+import net.minecraft.util.Vec3;
+
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.BoundingBoxInt;
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.config.BlockProperties;
+import cuchaz.ships.persistence.BlockStoragePersistence;
+
+public class TestShipBuoyancy
+{
+	@Test
+	public void sameDisplacement( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				for( String encodedBlocks : new String[] { TestShipLag.BigShip, TestDisplacementComponents.ShipA, TestDisplacementComponents.ShipB } )
+				{
+					BlocksStorage shipBlocks = BlockStoragePersistence.readAnyVersion( encodedBlocks );
+					ShipBuoyancy buoyancy = new ShipBuoyancy( shipBlocks );
+					ShipDisplacement displacement = shipBlocks.getDisplacement();
+					
+					// the table should match adding up the displacement one block at a time
+					for( int y=displacement.getMinY() - 2; y<=displacement.getMaxY() + 3; y++ )
+					{
+						assertEquals( getDisplacement( shipBlocks, displacement.getSurfaceBlocks( y ) ), buoyancy.getSurfaceDisplacement( y ), 0 );
+						assertEquals( getDisplacement( shipBlocks, displacement.getUnderwaterBlocks( y ) ), buoyancy.getUnderwaterDisplacement( y ), 0 );
+					}
+					assertEquals( displacement.getLastFillY(), buoyancy.getSinkWaterHeight() );
+				}
+			}
+		}.run();
+	}
+	
+	@Test
+	public void centerOfBuoyancy( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BlocksStorage shipBlocks = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+				ShipBuoyancy buoyancy = new ShipBuoyancy( shipBlocks );
+				BoundingBoxInt box = shipBlocks.getBoundingBox();
+				
+				// the center of buoyancy should stay inside the ship, and below the water
+				for( double waterHeight=box.minY + 0.5; waterHeight<=box.maxY + 1; waterHeight+=0.5 )
+				{
+					Vec3 center = buoyancy.getCenterOfBuoyancy( waterHeight );
+					if( center == null )
+					{
+						// nothing is underwater yet
+						continue;
+					}
+					assertFalse( center.xCoord < box.minX || center.xCoord > box.maxX + 1 );
+					assertFalse( center.yCoord < box.minY || center.yCoord > waterHeight );
+					assertFalse( center.zCoord < box.minZ || center.zCoord > box.maxZ + 1 );
+				}
+			}
+		}.run();
+	}
+	
+	@Test
+	public void changedShipIsInvalid( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BlocksStorage shipBlocks = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+				ShipBuoyancy buoyancy = new ShipBuoyancy( shipBlocks );
+				assertTrue( buoyancy.isValid( shipBlocks ) );
+				
+				// swapping a block keeps the same number of blocks, but the table is no good anymore
+				Coords coords = shipBlocks.coords().iterator().next();
+				int blockId = shipBlocks.getBlockId( coords );
+				int meta = shipBlocks.getBlockMeta( coords );
+				shipBlocks.setBlock( coords, blockId, ( meta + 1 ) & 0xf );
+				assertFalse( buoyancy.isValid( shipBlocks ) );
+				shipBlocks.setBlock( coords, blockId == Block.glass.blockID ? Block.planks.blockID : Block.glass.blockID, meta );
+				assertFalse( buoyancy.isValid( shipBlocks ) );
+				shipBlocks.setBlock( coords, blockId, meta );
+				assertTrue( buoyancy.isValid( shipBlocks ) );
+				
+				// so is changing the block properties
+				Block block = Block.blocksList[blockId];
+				BlockProperties.setOverrides( block.getUnlocalizedName() + "="
+					+ BlockProperties.getMass( block ) + ","
+					+ ( BlockProperties.getDisplacement( block ) + 0.5 ) + ","
+					+ BlockProperties.isWatertight( block ) + ",false,false"
+				);
+				try
+				{
+					assertFalse( buoyancy.isValid( shipBlocks ) );
+				}
+				finally
+				{
+					BlockProperties.setOverrides( "" );
+				}
+				assertTrue( buoyancy.isValid( shipBlocks ) );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void persistence( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BlocksStorage shipBlocks = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+				ShipPhysics physics = new ShipPhysics( shipBlocks );
+				ShipBuoyancy buoyancy = ShipBuoyancy.read( physics.getBuoyancy().write() );
+				ShipPhysics loadedPhysics = new ShipPhysics( shipBlocks, buoyancy );
+				
+				// the loaded ship should use the saved table, and get the same answers
+				assertSame( buoyancy, loadedPhysics.getBuoyancy() );
+				assertEquals( physics.getEquilibriumWaterHeight(), loadedPhysics.getEquilibriumWaterHeight() );
+				assertEquals( physics.getSinkWaterHeight(), loadedPhysics.getSinkWaterHeight() );
+				BoundingBoxInt box = shipBlocks.getBoundingBox();
+				for( double waterHeight=box.minY - 1; waterHeight<=box.maxY + 2; waterHeight+=0.25 )
+				{
+					assertEquals( physics.getDisplacedWaterMass( waterHeight ), loadedPhysics.getDisplacedWaterMass( waterHeight ), 0 );
+					assertSameCenter( physics.getCenterOfBuoyancy( waterHeight ), loadedPhysics.getCenterOfBuoyancy( waterHeight ) );
+				}
+			}
+		}.run();
+	}
+	
+	private void assertSameCenter( Vec3 expected, Vec3 observed )
+	{
+		if( expected == null )
+		{
+			assertNull( observed );
+			return;
+		}
+		assertEquals( expected.xCoord, observed.xCoord, 0 );
+		assertEquals( expected.yCoord, observed.yCoord, 0 );
+		assertEquals( expected.zCoord, observed.zCoord, 0 );
+	}
+	
+	private double getDisplacement( BlocksStorage shipBlocks, Iterable<Coords> blocks )
+	{
+		double displacement = 0;
+		for( Coords coords : blocks )
+		{
+			displacement += BlockProperties.getDisplacement( Block.blocksList[shipBlocks.getBlockId( coords )] );
+		}
+		return displacement;
+	}
+}
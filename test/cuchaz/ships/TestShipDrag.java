@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import net.minecraft.util.Vec3;
+
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.BlockSide;
+import cuchaz.modsShared.blocks.BoundingBoxInt;
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.persistence.BlockStoragePersistence;
+
+public class TestShipDrag
+{
+	// the interpolated drag should be within 1% of the fully-submerged drag
+	private static final double Tolerance = 0.01;
+	private static final double WaterHeightStep = 0.037;
+	
+	@Test
+	public void linearViscosity( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				for( String encodedBlocks : new String[] { TestShipLag.BigShip, TestDisplacementComponents.ShipA, TestDisplacementComponents.ShipB } )
+				{
+					BlocksStorage shipBlocks = BlockStoragePersistence.readAnyVersion( encodedBlocks );
+					ShipDrag drag = new ShipDrag( shipBlocks.getGeometry(), new ShipPhysics( shipBlocks ).getCenterOfMass() );
+					BoundingBoxInt box = shipBlocks.getBoundingBox();
+					
+					for( BlockSide side : BlockSide.xzSides() )
+					{
+						double maxViscosity = getLinearViscosity( shipBlocks, side, box.maxY + 10 );
+						for( double waterHeight=box.minY - 2; waterHeight<=box.maxY + 3; waterHeight+=WaterHeightStep )
+						{
+							assertEquals(
+								getLinearViscosity( shipBlocks, side, waterHeight ),
+								drag.getLinearViscosity( side, waterHeight ),
+								maxViscosity*Tolerance
+							);
+						}
+					}
+				}
+			}
+		}.run();
+	}
+	
+	@Test
+	public void angularViscosity( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				for( String encodedBlocks : new String[] { TestShipLag.BigShip, TestDisplacementComponents.ShipA, TestDisplacementComponents.ShipB } )
+				{
+					BlocksStorage shipBlocks = BlockStoragePersistence.readAnyVersion( encodedBlocks );
+					Vec3 centerOfMass = new ShipPhysics( shipBlocks ).getCenterOfMass();
+					ShipDrag drag = new ShipDrag( shipBlocks.getGeometry(), centerOfMass );
+					BoundingBoxInt box = shipBlocks.getBoundingBox();
+					
+					double maxViscosity = getAngularViscosity( shipBlocks, centerOfMass, box.maxY + 10 );
+					for( double waterHeight=box.minY - 2; waterHeight<=box.maxY + 3; waterHeight+=WaterHeightStep )
+					{
+						assertEquals(
+							getAngularViscosity( shipBlocks, centerOfMass, waterHeight ),
+							drag.getAngularViscosity( waterHeight ),
+							maxViscosity*Tolerance
+						);
+					}
+				}
+			}
+		}.run();
+	}
+	
+	@Test
+	public void changedBlocks( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BlocksStorage shipBlocks = BlockStoragePersistence.readAnyVersion( TestDisplacementComponents.ShipB );
+				ShipGeometry geometry = shipBlocks.getGeometry();
+				
+				// changing a block keeps the geometry
+				Coords coords = shipBlocks.coords().first();
+				shipBlocks.setBlock( coords, shipBlocks.getBlockId( coords ), 0 );
+				assertSame( geometry, shipBlocks.getGeometry() );
+				
+				// but adding a block doesn't
+				BoundingBoxInt box = shipBlocks.getBoundingBox();
+				shipBlocks.setBlock( new Coords( box.maxX + 1, box.maxY, box.maxZ ), shipBlocks.getBlockId( coords ), 0 );
+				assertNotSame( geometry, shipBlocks.getGeometry() );
+			}
+		}.run();
+	}
+	
+	private double getLinearViscosity( BlocksStorage shipBlocks, BlockSide side, double waterHeight )
+	{
+		// this is the old exact computation, one block at a time
+		double airSurfaceArea = 0;
+		double waterSurfaceArea = 0;
+		for( Coords coords : shipBlocks.getGeometry().getEnvelopes().getEnvelope( side ).toBlockSet() )
+		{
+			double fractionSubmerged = side.getFractionSubmerged( coords.y, waterHeight );
+			waterSurfaceArea += fractionSubmerged;
+			airSurfaceArea += 1 - fractionSubmerged;
+		}
+		return ShipDrag.AirViscosity*airSurfaceArea + ShipDrag.WaterViscosity*waterSurfaceArea;
+	}
+	
+	private double getAngularViscosity( BlocksStorage shipBlocks, Vec3 centerOfMass, double waterHeight )
+	{
+		return getAngularViscosity( shipBlocks, BlockSide.North, waterHeight, centerOfMass.xCoord )
+			+ getAngularViscosity( shipBlocks, BlockSide.East, waterHeight, centerOfMass.zCoord );
+	}
+	
+	private double getAngularViscosity( BlocksStorage shipBlocks, BlockSide side, double waterHeight, double center )
+	{
+		int centerCoord = (int)center;
+		double viscosity = 0;
+		for( Coords coords : shipBlocks.getGeometry().getEnvelopes().getEnvelope( side ).toBlockSet() )
+		{
+			double fractionSubmerged = side.getFractionSubmerged( coords.y, waterHeight );
+			double dist = Math.abs( side.getU( coords.x, coords.y, coords.z ) - centerCoord );
+			viscosity += ( fractionSubmerged*ShipDrag.WaterViscosity + ( 1 - fractionSubmerged )*ShipDrag.AirViscosity )*dist;
+		}
+		return viscosity*ShipDrag.AngularViscosityScale;
+	}
+}
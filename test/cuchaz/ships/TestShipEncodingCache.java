@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+
+import net.minecraft.entity.EntityHanging;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.BlockMap;
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.persistence.BlockStoragePersistence;
+import cuchaz.ships.persistence.ShipEncodingCache;
+import cuchaz.ships.persistence.ShipWorldPersistence;
+
+public class TestShipEncodingCache
+{
+	@Test
+	public void sameShipSameEntry( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				World world = new TestWorld();
+				ShipWorld shipWorld = buildShip( world );
+				byte[] data = ShipWorldPersistence.writeNewestVersion( shipWorld );
+				
+				// two copies of the same ship should share one copy of the bytes
+				ShipEncodingCache.Entry entry = ShipEncodingCache.encode( ShipWorldPersistence.readAnyVersion( world, data ) );
+				ShipEncodingCache.Entry otherEntry = ShipEncodingCache.encode( ShipWorldPersistence.readAnyVersion( world, data ) );
+				assertSame( entry, otherEntry );
+				assertSame( entry, ShipEncodingCache.intern( data ) );
+				assertArrayEquals( data, entry.getData() );
+				
+				// changing the ship changes the entry
+				ShipWorld changedShipWorld = ShipWorldPersistence.readAnyVersion( world, data );
+				Coords coords = changedShipWorld.coords().iterator().next();
+				int numChanges = changedShipWorld.getNumChanges();
+				int blockId = changedShipWorld.getBlockId( coords );
+				int meta = changedShipWorld.getBlockMetadata( coords );
+				assertTrue( changedShipWorld.applyBlockChange( coords, blockId, ( meta + 1 ) & 0xf ) );
+				assertEquals( numChanges + 1, changedShipWorld.getNumChanges() );
+				ShipEncodingCache.Entry changedEntry = ShipEncodingCache.encode( changedShipWorld );
+				assertNotSame( entry, changedEntry );
+				assertFalse( entry.getHash().equals( changedEntry.getHash() ) );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void olderVersionsAreNotNewest( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				ShipWorld shipWorld = buildShip( new TestWorld() );
+				assertTrue( ShipWorldPersistence.isNewestVersion( ShipWorldPersistence.writeNewestVersion( shipWorld ) ) );
+				assertFalse( ShipWorldPersistence.isNewestVersion( new byte[0] ) );
+				
+				ByteArrayOutputStream buf = new ByteArrayOutputStream();
+				ShipWorldPersistence.V1.write( shipWorld, buf );
+				assertFalse( ShipWorldPersistence.isNewestVersion( buf.toByteArray() ) );
+			}
+		}.run();
+	}
+	
+	private ShipWorld buildShip( World world )
+	throws Exception
+	{
+		BlocksStorage storage = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+		return new ShipWorld( world, storage, new BlockMap<TileEntity>(), new BlockMap<EntityHanging>(), 0 );
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.item.EntityItem;
+import net.minecraft.entity.item.EntityXPOrb;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.util.Vec3;
+import net.minecraft.world.World;
+
+import org.junit.Test;
+
+public class TestShipEntityIndex
+{
+	@Test
+	public void itemOnBlock( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				World world = new TestWorld();
+				ShipTransform transform = new ShipTransform( 100.3, 64.2, 200.7, 90, 0.5, 0, 0.5 );
+				
+				// drop an item on top of block (2,0,3)
+				Vec3 pos = Vec3.createVectorHelper( 2.5, 1.1, 3.5 );
+				transform.blocksToWorld( pos );
+				EntityItem item = new EntityItem( world, pos.xCoord, pos.yCoord, pos.zCoord, new ItemStack( Item.coal ) );
+				List<Entity> entities = new ArrayList<Entity>();
+				entities.add( item );
+				ShipEntityIndex index = new ShipEntityIndex();
+				index.update( entities, transform );
+				
+				// a hopper at (2,0,3) should see it
+				assertEquals( 1, query( index, EntityItem.class, AxisAlignedBB.getBoundingBox( 2, 1, 3, 3, 2, 4 ), null ).size() );
+				
+				// but not a hopper somewhere else
+				assertEquals( 0, query( index, EntityItem.class, AxisAlignedBB.getBoundingBox( 3, 1, 2, 4, 2, 3 ), null ).size() );
+				
+				// and not if we're looking for something else
+				assertEquals( 0, query( index, EntityXPOrb.class, AxisAlignedBB.getBoundingBox( 2, 1, 3, 3, 2, 4 ), null ).size() );
+				assertEquals( 0, query( index, Entity.class, AxisAlignedBB.getBoundingBox( 2, 1, 3, 3, 2, 4 ), item ).size() );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void sameAsScanning( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				World world = new TestWorld();
+				ShipTransform transform = new ShipTransform( 100.3, 64.2, 200.7, 37, 0.5, 0, 0.5 );
+				
+				// scatter some entities around the ship
+				Random rand = new Random( 12345 );
+				List<Entity> entities = new ArrayList<Entity>();
+				for( int i=0; i<500; i++ )
+				{
+					double x = 100 + ( rand.nextDouble() - 0.5 )*40;
+					double y = 64 + rand.nextDouble()*10;
+					double z = 200 + ( rand.nextDouble() - 0.5 )*40;
+					if( rand.nextBoolean() )
+					{
+						entities.add( new EntityItem( world, x, y, z, new ItemStack( Item.coal ) ) );
+					}
+					else
+					{
+						entities.add( new EntityXPOrb( world, x, y, z, 1 ) );
+					}
+				}
+				ShipEntityIndex index = new ShipEntityIndex();
+				index.update( entities, transform );
+				assertEquals( entities.size(), index.getNumEntities() );
+				
+				// the index should find the same entities as checking every one
+				for( int i=0; i<1000; i++ )
+				{
+					double x = ( rand.nextDouble() - 0.5 )*40;
+					double y = rand.nextDouble()*10;
+					double z = ( rand.nextDouble() - 0.5 )*40;
+					double size = rand.nextDouble()*6;
+					AxisAlignedBB box = AxisAlignedBB.getBoundingBox( x, y, z, x + size, y + size, z + size );
+					Class<?> type = rand.nextBoolean() ? EntityItem.class : Entity.class;
+					
+					Set<Entity> expected = new HashSet<Entity>();
+					for( Entity entity : entities )
+					{
+						if( type.isInstance( entity ) && getBlocksBox( entity, transform ).intersectsWith( box ) )
+						{
+							expected.add( entity );
+						}
+					}
+					List<Entity> observed = query( index, type, box, null );
+					assertEquals( expected.size(), observed.size() );
+					assertTrue( expected.containsAll( observed ) );
+				}
+			}
+		}.run();
+	}
+	
+	private List<Entity> query( ShipEntityIndex index, Class<?> type, AxisAlignedBB box, Entity excludedEntity )
+	{
+		List<Entity> entities = new ArrayList<Entity>();
+		index.getEntities( entities, type, box, excludedEntity, null );
+		return entities;
+	}
+	
+	private AxisAlignedBB getBlocksBox( Entity entity, ShipTransform transform )
+	{
+		AxisAlignedBB box = AxisAlignedBB.getBoundingBox( 0, 0, 0, 0, 0, 0 );
+		for( int i=0; i<4; i++ )
+		{
+			Vec3 corner = Vec3.createVectorHelper(
+				( i & 1 ) == 0 ? entity.boundingBox.minX : entity.boundingBox.maxX,
+				entity.boundingBox.minY,
+				( i & 2 ) == 0 ? entity.boundingBox.minZ : entity.boundingBox.maxZ
+			);
+			transform.worldToBlocks( corner );
+			if( i == 0 )
+			{
+				box.setBounds( corner.xCoord, corner.yCoord, corner.zCoord, corner.xCoord, corner.yCoord, corner.zCoord );
+			}
+			box.minX = Math.min( box.minX, corner.xCoord );
+			box.minZ = Math.min( box.minZ, corner.zCoord );
+			box.maxX = Math.max( box.maxX, corner.xCoord );
+			box.maxZ = Math.max( box.maxZ, corner.zCoord );
+		}
+		box.maxY = box.minY + entity.boundingBox.maxY - entity.boundingBox.minY;
+		return box;
+	}
+}
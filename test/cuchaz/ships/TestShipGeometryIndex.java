@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.persistence.BlockStoragePersistence;
+
+public class TestShipGeometryIndex
+{
+	private static final int NumQueries = 200;
+	
+	@Test
+	public void shipA( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				testShip( TestDisplacementComponents.ShipA );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void shipB( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				testShip( TestDisplacementComponents.ShipB );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void bigShip( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				testShip( TestShipLag.BigShip );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void concurrentQueries( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				// the client and the integrated server can query the same index at the same time
+				final BlockSet blocks = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip ).coords();
+				final ShipGeometryIndex index = new ShipGeometryIndex( blocks );
+				ExecutorService pool = Executors.newFixedThreadPool( 4 );
+				try
+				{
+					List<Future<Void>> futures = new ArrayList<Future<Void>>();
+					for( int i=0; i<4; i++ )
+					{
+						final long seed = i;
+						futures.add( pool.submit( new Callable<Void>( )
+						{
+							@Override
+							public Void call( )
+							{
+								Random rand = new Random( seed );
+								for( int j=0; j<NumQueries*5; j++ )
+								{
+									checkBoxQuery( blocks, index, rand );
+								}
+								return null;
+							}
+						} ) );
+					}
+					for( Future<Void> future : futures )
+					{
+						future.get();
+					}
+				}
+				finally
+				{
+					pool.shutdown();
+				}
+			}
+		}.run();
+	}
+	
+	private void testShip( String encodedBlocks )
+	throws Exception
+	{
+		BlockSet blocks = BlockStoragePersistence.readAnyVersion( encodedBlocks ).coords();
+		ShipGeometryIndex index = new ShipGeometryIndex( blocks );
+		assertEquals( blocks.size(), index.getNumBlocks() );
+		
+		// the index should have every block exactly once
+		BlockSet indexedBlocks = new BlockSet();
+		for( int i=0; i<index.getNumBlocks(); i++ )
+		{
+			indexedBlocks.add( index.getBlock( new Coords(), i ) );
+		}
+		assertEquals( blocks, indexedBlocks );
+		
+		Random rand = new Random( 12345 );
+		for( int i=0; i<NumQueries; i++ )
+		{
+			checkBoxQuery( blocks, index, rand );
+			checkMarkBoxQuery( blocks, index, rand );
+			checkSegmentQuery( blocks, index, rand );
+		}
+	}
+	
+	private void checkBoxQuery( BlockSet blocks, ShipGeometryIndex index, Random rand )
+	{
+		int[] box = getRandomBox( blocks, rand );
+		
+		BlockSet expected = new BlockSet();
+		for( Coords coords : blocks )
+		{
+			if( isInBox( coords, box ) )
+			{
+				expected.add( coords );
+			}
+		}
+		
+		CoordsBuffer buffer = new CoordsBuffer();
+		index.boxQuery( buffer, box[0], box[1], box[2], box[3], box[4], box[5] );
+		assertEquals( expected.size(), buffer.size() );
+		assertEquals( expected, buffer.toBlockSet() );
+		assertEquals( !expected.isEmpty(), index.boxIntersects( box[0], box[1], box[2], box[3], box[4], box[5] ) );
+	}
+	
+	private void checkMarkBoxQuery( BlockSet blocks, ShipGeometryIndex index, Random rand )
+	{
+		// mark two overlapping boxes, the second query should only count the new blocks
+		int[] box1 = getRandomBox( blocks, rand );
+		int[] box2 = getRandomBox( blocks, rand );
+		
+		BlockSet expected1 = new BlockSet();
+		BlockSet expected2 = new BlockSet();
+		for( Coords coords : blocks )
+		{
+			if( isInBox( coords, box1 ) )
+			{
+				expected1.add( coords );
+			}
+			else if( isInBox( coords, box2 ) )
+			{
+				expected2.add( coords );
+			}
+		}
+		
+		boolean[] marks = new boolean[index.getNumBlocks()];
+		assertEquals( expected1.size(), index.markBoxQuery( marks, box1[0], box1[1], box1[2], box1[3], box1[4], box1[5] ) );
+		assertEquals( expected2.size(), index.markBoxQuery( marks, box2[0], box2[1], box2[2], box2[3], box2[4], box2[5] ) );
+		
+		BlockSet marked = new BlockSet();
+		for( int i=0; i<marks.length; i++ )
+		{
+			if( marks[i] )
+			{
+				marked.add( index.getBlock( new Coords(), i ) );
+			}
+		}
+		expected1.addAll( expected2 );
+		assertEquals( expected1, marked );
+	}
+	
+	private void checkSegmentQuery( BlockSet blocks, ShipGeometryIndex index, Random rand )
+	{
+		int[] bounds = getBounds( blocks );
+		double fromX = bounds[0] - 2 + rand.nextDouble()*( bounds[3] - bounds[0] + 5 );
+		double fromY = bounds[1] - 2 + rand.nextDouble()*( bounds[4] - bounds[1] + 5 );
+		double fromZ = bounds[2] - 2 + rand.nextDouble()*( bounds[5] - bounds[2] + 5 );
+		double toX = bounds[0] - 2 + rand.nextDouble()*( bounds[3] - bounds[0] + 5 );
+		double toY = bounds[1] - 2 + rand.nextDouble()*( bounds[4] - bounds[1] + 5 );
+		double toZ = bounds[2] - 2 + rand.nextDouble()*( bounds[5] - bounds[2] + 5 );
+		final double Epsilon = 1e-6;
+		
+		// check every block against the segment
+		BlockSet expected = new BlockSet();
+		for( Coords coords : blocks )
+		{
+			if( segmentTouchesBlock( fromX, fromY, fromZ, toX, toY, toZ, coords, Epsilon ) )
+			{
+				expected.add( coords );
+			}
+		}
+		
+		CoordsBuffer buffer = new CoordsBuffer();
+		index.segmentQuery( buffer, fromX, fromY, fromZ, toX, toY, toZ, Epsilon );
+		assertEquals( expected.size(), buffer.size() );
+		assertEquals( expected, buffer.toBlockSet() );
+	}
+	
+	private int[] getRandomBox( BlockSet blocks, Random rand )
+	{
+		// pick boxes that hang off the edges of the ship sometimes
+		int[] bounds = getBounds( blocks );
+		int x1 = bounds[0] - 2 + rand.nextInt( bounds[3] - bounds[0] + 5 );
+		int y1 = bounds[1] - 2 + rand.nextInt( bounds[4] - bounds[1] + 5 );
+		int z1 = bounds[2] - 2 + rand.nextInt( bounds[5] - bounds[2] + 5 );
+		int x2 = bounds[0] - 2 + rand.nextInt( bounds[3] - bounds[0] + 5 );
+		int y2 = bounds[1] - 2 + rand.nextInt( bounds[4] - bounds[1] + 5 );
+		int z2 = bounds[2] - 2 + rand.nextInt( bounds[5] - bounds[2] + 5 );
+		return new int[] {
+			Math.min( x1, x2 ), Math.min( y1, y2 ), Math.min( z1, z2 ),
+			Math.max( x1, x2 ), Math.max( y1, y2 ), Math.max( z1, z2 )
+		};
+	}
+	
+	private boolean isInBox( Coords coords, int[] box )
+	{
+		return coords.x >= box[0] && coords.x <= box[3]
+			&& coords.y >= box[1] && coords.y <= box[4]
+			&& coords.z >= box[2] && coords.z <= box[5];
+	}
+	
+	private int[] getBounds( BlockSet blocks )
+	{
+		int[] bounds = {
+			Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+			Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE
+		};
+		for( Coords coords : blocks )
+		{
+			bounds[0] = Math.min( bounds[0], coords.x );
+			bounds[1] = Math.min( bounds[1], coords.y );
+			bounds[2] = Math.min( bounds[2], coords.z );
+			bounds[3] = Math.max( bounds[3], coords.x );
+			bounds[4] = Math.max( bounds[4], coords.y );
+			bounds[5] = Math.max( bounds[5], coords.z );
+		}
+		return bounds;
+	}
+	
+	private boolean segmentTouchesBlock( double fromX, double fromY, double fromZ, double toX, double toY, double toZ, Coords coords, double epsilon )
+	{
+		// clip the segment against each slab of the grown block in turn
+		double[] from = { fromX, fromY, fromZ };
+		double[] delta = { toX - fromX, toY - fromY, toZ - fromZ };
+		double[] min = { coords.x - epsilon, coords.y - epsilon, coords.z - epsilon };
+		double[] max = { coords.x + 1 + epsilon, coords.y + 1 + epsilon, coords.z + 1 + epsilon };
+		double tmin = 0;
+		double tmax = 1;
+		for( int axis=0; axis<3; axis++ )
+		{
+			if( delta[axis] == 0 )
+			{
+				if( from[axis] < min[axis] || from[axis] > max[axis] )
+				{
+					return false;
+				}
+				continue;
+			}
+			double t1 = ( min[axis] - from[axis] )/delta[axis];
+			double t2 = ( max[axis] - from[axis] )/delta[axis];
+			tmin = Math.max( tmin, Math.min( t1, t2 ) );
+			tmax = Math.min( tmax, Math.max( t1, t2 ) );
+		}
+		return tmin <= tmax;
+	}
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import net.minecraft.block.Block;
+import net.minecraft.world.World;
+
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.Coords;
+
+public class TestShipLaunchQueue
+{
+	// NOTE: don't notify neighbors or clients when changing blocks
+	private static final int SetBlockFlags = 2;
+	
+	@Test
+	public void staleSnapshot( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				World world = new TestWorld();
+				Coords shipBlock = buildShip( world );
+				ShipLauncher launcher = new ShipLauncher( world, shipBlock );
+				assertTrue( launcher.isLaunchable() );
+				assertFalse( launcher.isStale() );
+				
+				// changing a block makes the snapshot stale
+				world.setBlock( shipBlock.x, shipBlock.y - 1, shipBlock.z, Block.planks.blockID, 1, SetBlockFlags );
+				assertTrue( launcher.isStale() );
+				world.setBlock( shipBlock.x, shipBlock.y - 1, shipBlock.z, Block.planks.blockID, 0, SetBlockFlags );
+				assertFalse( launcher.isStale() );
+				
+				// so does adding a block
+				world.setBlock( shipBlock.x + 2, shipBlock.y - 1, shipBlock.z, Block.planks.blockID, 0, SetBlockFlags );
+				assertTrue( launcher.isStale() );
+				world.setBlockToAir( shipBlock.x + 2, shipBlock.y - 1, shipBlock.z );
+				assertFalse( launcher.isStale() );
+				
+				// and removing one
+				world.setBlockToAir( shipBlock.x + 1, shipBlock.y - 1, shipBlock.z + 1 );
+				assertTrue( launcher.isStale() );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void staleLaunchIsCancelled( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				World world = new TestWorld();
+				Coords shipBlock = buildShip( world );
+				assertTrue( ShipLaunchQueue.submit( new ShipLauncher( world, shipBlock, false ) ) );
+				
+				// add a block while the ship is being analyzed
+				world.setBlock( shipBlock.x + 2, shipBlock.y - 1, shipBlock.z, Block.planks.blockID, 0, SetBlockFlags );
+				waitForLaunches();
+				
+				// the ship should still be in the world
+				assertEquals( Ships.m_blockShip.blockID, world.getBlockId( shipBlock.x, shipBlock.y, shipBlock.z ) );
+				assertEquals( Block.planks.blockID, world.getBlockId( shipBlock.x, shipBlock.y - 1, shipBlock.z ) );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void retryAfterCancel( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				World world = new TestWorld();
+				Coords shipBlock = buildShip( world );
+				
+				// only one launch per ship at a time
+				assertTrue( ShipLaunchQueue.submit( new ShipLauncher( world, shipBlock, false ) ) );
+				assertFalse( ShipLaunchQueue.submit( new ShipLauncher( world, shipBlock, false ) ) );
+				assertEquals( 1, ShipLaunchQueue.getNumPendingLaunches() );
+				
+				// after the launch is cancelled, the player can try again
+				world.setBlock( shipBlock.x, shipBlock.y - 1, shipBlock.z, Block.planks.blockID, 1, SetBlockFlags );
+				waitForLaunches();
+				world.setBlock( shipBlock.x, shipBlock.y - 1, shipBlock.z, Block.planks.blockID, 0, SetBlockFlags );
+				ShipLauncher launcher = new ShipLauncher( world, shipBlock, false );
+				assertTrue( ShipLaunchQueue.submit( launcher ) );
+				assertEquals( 1, ShipLaunchQueue.getNumPendingLaunches() );
+				
+				// NOTE: the test world can't actually spawn ships, so drop the launch instead of finishing it
+				ShipLaunchQueue.onWorldUnloaded( world );
+				assertEquals( 0, ShipLaunchQueue.getNumPendingLaunches() );
+				assertFalse( launcher.isStale() );
+			}
+		}.run();
+	}
+	
+	private Coords buildShip( World world )
+	{
+		// a tiny raft up in the air, so the search doesn't find the floor
+		Coords shipBlock = new Coords( 8, TestWorld.FloorY + 20, 8 );
+		world.setBlock( shipBlock.x, shipBlock.y, shipBlock.z, Ships.m_blockShip.blockID, ShipType.Tiny.getMeta(), SetBlockFlags );
+		for( int x=-1; x<=1; x++ )
+		{
+			for( int z=-1; z<=1; z++ )
+			{
+				world.setBlock( shipBlock.x + x, shipBlock.y - 1, shipBlock.z + z, Block.planks.blockID, 0, SetBlockFlags );
+			}
+		}
+		return shipBlock;
+	}
+	
+	private void waitForLaunches( )
+	throws InterruptedException
+	{
+		// the analysis runs on the worker threads, so poll the queue like the server tick does
+		for( int i=0; i<1000 && ShipLaunchQueue.getNumPendingLaunches() > 0; i++ )
+		{
+			Thread.sleep( 10 );
+			ShipLaunchQueue.update();
+		}
+		assertEquals( 0, ShipLaunchQueue.getNumPendingLaunches() );
+	}
+}
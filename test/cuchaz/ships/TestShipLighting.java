@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.minecraft.block.Block;
+
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.persistence.BlockStoragePersistence;
+
+public class TestShipLighting
+{
+	@Test
+	public void torchInABox( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				// a hollow stone box with a torch on the floor
+				BlocksStorage storage = new BlocksStorage();
+				for( int x=0; x<=6; x++ )
+				{
+					for( int y=0; y<=6; y++ )
+					{
+						for( int z=0; z<=6; z++ )
+						{
+							if( x == 0 || x == 6 || y == 0 || y == 6 || z == 0 || z == 6 )
+							{
+								storage.setBlock( new Coords( x, y, z ), Block.stone.blockID, 0 );
+							}
+						}
+					}
+				}
+				storage.setBlock( new Coords( 3, 1, 3 ), Block.torchWood.blockID, 5 );
+				ShipLighting lighting = new ShipLighting( storage );
+				
+				// the torch lights up the inside
+				assertEquals( 14, lighting.getBlockLight( 3, 1, 3 ) );
+				assertEquals( 13, lighting.getBlockLight( 3, 2, 3 ) );
+				assertEquals( 10, lighting.getBlockLight( 1, 1, 1 ) );
+				assertEquals( 0, lighting.getBlockLight( 3, 7, 3 ) );
+				
+				// but the sky doesn't
+				assertEquals( 0, lighting.getSkyLight( 3, 2, 3 ) );
+				assertEquals( 15, lighting.getSkyLight( 3, 7, 3 ) );
+				assertEquals( 15, lighting.getSkyLight( -1, 3, 3 ) );
+				
+				// under the box, sky light only comes in from the sides
+				assertEquals( 11, lighting.getSkyLight( 3, -1, 3 ) );
+				
+				// far away from the ship, it's just sky
+				assertEquals( 15, lighting.getSkyLight( 100, 100, 100 ) );
+				assertEquals( 0, lighting.getBlockLight( 100, 100, 100 ) );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void sameAsRelighting( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BlocksStorage storage = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+				
+				// put furnaces all over the ship
+				Random rand = new Random( 12345 );
+				List<Coords> furnaces = new ArrayList<Coords>( storage.coords() );
+				furnaces.remove( new Coords( 0, 0, 0 ) );
+				Collections.shuffle( furnaces, rand );
+				furnaces = new ArrayList<Coords>( furnaces.subList( 0, 20 ) );
+				for( Coords coords : furnaces )
+				{
+					storage.setBlock( coords, Block.furnaceIdle.blockID, 2 );
+				}
+				ShipLighting lighting = new ShipLighting( storage );
+				
+				// light some furnaces, then put some out
+				for( int i=0; i<furnaces.size(); i++ )
+				{
+					changeBlock( storage, lighting, furnaces.get( i ), Block.furnaceBurning.blockID );
+				}
+				assertSameLight( new ShipLighting( storage ), lighting, storage );
+				for( int i=0; i<furnaces.size(); i+=2 )
+				{
+					changeBlock( storage, lighting, furnaces.get( i ), Block.furnaceIdle.blockID );
+				}
+				assertSameLight( new ShipLighting( storage ), lighting, storage );
+				
+				// changing the shadows works too
+				BlockSet changedBlocks = changeBlock( storage, lighting, furnaces.get( 1 ), Block.glass.blockID );
+				assertFalse( changedBlocks.isEmpty() );
+				assertSameLight( new ShipLighting( storage ), lighting, storage );
+			}
+		}.run();
+	}
+	
+	private BlockSet changeBlock( BlocksStorage storage, ShipLighting lighting, Coords coords, int newBlockId )
+	{
+		int oldBlockId = storage.getBlockId( coords );
+		storage.setBlock( coords, newBlockId, 2 );
+		BlockSet changedBlocks = lighting.onBlockChanged( coords.x, coords.y, coords.z, oldBlockId, newBlockId );
+		assertTrue( changedBlocks.contains( coords ) || Block.lightValue[oldBlockId] == Block.lightValue[newBlockId] );
+		return changedBlocks;
+	}
+	
+	private void assertSameLight( ShipLighting expected, ShipLighting observed, BlocksStorage storage )
+	{
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int minZ = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		int maxZ = Integer.MIN_VALUE;
+		for( Coords coords : storage.coords() )
+		{
+			minX = Math.min( minX, coords.x );
+			minY = Math.min( minY, coords.y );
+			minZ = Math.min( minZ, coords.z );
+			maxX = Math.max( maxX, coords.x );
+			maxY = Math.max( maxY, coords.y );
+			maxZ = Math.max( maxZ, coords.z );
+		}
+		for( int x=minX-2; x<=maxX+2; x++ )
+		{
+			for( int y=minY-2; y<=maxY+2; y++ )
+			{
+				for( int z=minZ-2; z<=maxZ+2; z++ )
+				{
+					assertEquals( expected.getSkyLight( x, y, z ), observed.getSkyLight( x, y, z ) );
+					assertEquals( expected.getBlockLight( x, y, z ), observed.getBlockLight( x, y, z ) );
+				}
+			}
+		}
+	}
+}
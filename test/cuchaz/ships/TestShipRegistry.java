@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import net.minecraft.util.AxisAlignedBB;
+
+import org.junit.Test;
+
+public class TestShipRegistry
+{
+	@Test
+	public void lookups( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				ShipRegistry registry = new ShipRegistry();
+				List<EntityShip> ships = makeShips( registry, new Random( 12345 ) );
+				assertEquals( ships.size(), registry.getNumShips() );
+				
+				for( EntityShip ship : ships )
+				{
+					assertSame( ship, registry.getShip( ship.entityId ) );
+					assertSame( ship, registry.getShip( ship.getPersistentID() ) );
+				}
+				
+				// removed ships and dead ships can't be found anymore
+				EntityShip removedShip = ships.remove( 0 );
+				registry.remove( removedShip );
+				assertNull( registry.getShip( removedShip.entityId ) );
+				assertNull( registry.getShip( removedShip.getPersistentID() ) );
+				
+				EntityShip deadShip = ships.remove( 0 );
+				deadShip.isDead = true;
+				assertNull( registry.getShip( deadShip.getPersistentID() ) );
+				assertNull( registry.getShip( deadShip.entityId ) );
+				
+				assertEquals( ships.size(), registry.getNumShips() );
+				assertEquals( new HashSet<EntityShip>( ships ), new HashSet<EntityShip>( registry.getShips() ) );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void boxQueries( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				ShipRegistry registry = new ShipRegistry();
+				Random rand = new Random( 12345 );
+				List<EntityShip> ships = makeShips( registry, rand );
+				
+				for( int i=0; i<20; i++ )
+				{
+					// move the ships around a bit, sometimes across chunk boundaries
+					for( EntityShip ship : ships )
+					{
+						ship.boundingBox.offset( rand.nextDouble()*20 - 10, 0, rand.nextDouble()*20 - 10 );
+						registry.update( ship );
+					}
+					
+					// the registry should find exactly the same ships as checking every ship
+					for( int j=0; j<20; j++ )
+					{
+						double x = rand.nextDouble()*200 - 100;
+						double z = rand.nextDouble()*200 - 100;
+						double size = rand.nextDouble()*( j < 10 ? 10 : 100 );
+						AxisAlignedBB box = AxisAlignedBB.getBoundingBox( x, 60, z, x + size, 70, z + size );
+						
+						List<EntityShip> expectedShips = new ArrayList<EntityShip>();
+						for( EntityShip ship : ships )
+						{
+							if( ship.boundingBox.intersectsWith( box ) )
+							{
+								expectedShips.add( ship );
+							}
+						}
+						List<EntityShip> observedShips = registry.findShipsInBox( box );
+						assertEquals( expectedShips.size(), observedShips.size() );
+						assertEquals( new HashSet<EntityShip>( expectedShips ), new HashSet<EntityShip>( observedShips ) );
+					}
+				}
+			}
+		}.run();
+	}
+	
+	private List<EntityShip> makeShips( ShipRegistry registry, Random rand )
+	{
+		List<EntityShip> ships = new ArrayList<EntityShip>();
+		for( int i=0; i<50; i++ )
+		{
+			EntityShip ship = new EntityShip( null );
+			double x = rand.nextDouble()*200 - 100;
+			double z = rand.nextDouble()*200 - 100;
+			double sizeX = 1 + rand.nextDouble()*40;
+			double sizeZ = 1 + rand.nextDouble()*40;
+			ship.boundingBox.setBounds( x, 62, z, x + sizeX, 68, z + sizeZ );
+			registry.add( ship );
+			ships.add( ship );
+		}
+		return ships;
+	}
+}
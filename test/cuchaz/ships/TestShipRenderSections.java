@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.minecraft.block.Block;
+
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.BlockSet;
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.persistence.BlockStoragePersistence;
+import cuchaz.ships.render.ShipRenderSections;
+import cuchaz.ships.render.ShipTessellator;
+
+public class TestShipRenderSections
+{
+	private static class RecordingTessellator implements ShipTessellator
+	{
+		public ShipRenderSections.Section section;
+		public BlockSet renderedBlocks;
+		public BlockSet failsafeBlocks;
+		public List<ShipRenderSections.Section> sections;
+		public int badBlockId;
+		
+		public RecordingTessellator( )
+		{
+			section = null;
+			renderedBlocks = new BlockSet();
+			failsafeBlocks = new BlockSet();
+			sections = new ArrayList<ShipRenderSections.Section>();
+			badBlockId = -1;
+		}
+		
+		@Override
+		public void startSection( ShipRenderSections.Section section )
+		{
+			assertNull( this.section );
+			this.section = section;
+			sections.add( section );
+		}
+		
+		@Override
+		public void renderBlock( Block block, Coords coords )
+		{
+			checkBlock( coords );
+			if( block.blockID == badBlockId )
+			{
+				throw new RuntimeException( "bad block!" );
+			}
+			assertTrue( renderedBlocks.add( new Coords( coords ) ) );
+		}
+		
+		@Override
+		public void renderBlockFailsafe( Block block, Coords coords )
+		{
+			checkBlock( coords );
+			assertTrue( failsafeBlocks.add( new Coords( coords ) ) );
+		}
+		
+		@Override
+		public void endSection( )
+		{
+			assertTrue( section != null );
+			section = null;
+		}
+		
+		private void checkBlock( Coords coords )
+		{
+			// blocks should only be rendered inside their own section
+			assertTrue( section != null );
+			assertEquals( section.coords, ShipRenderSections.getSectionCoords( new Coords( 0, 0, 0 ), coords.x, coords.y, coords.z ) );
+		}
+	}
+	
+	@Test
+	public void buildAllSections( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BlocksStorage storage = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+				ShipRenderSections sections = new ShipRenderSections( storage.coords() );
+				assertTrue( sections.getNumSections() > 1 );
+				assertEquals( sections.getNumSections(), sections.getNumDirtySections() );
+				
+				// every block should get rendered exactly once
+				RecordingTessellator tessellator = new RecordingTessellator();
+				Set<Integer> blacklistedBlocks = new TreeSet<Integer>();
+				for( ShipRenderSections.Section section : sections.sections() )
+				{
+					assertTrue( section.blocks.size() <= ShipRenderSections.SectionSize*ShipRenderSections.SectionSize*ShipRenderSections.SectionSize );
+					sections.buildSection( section, storage, tessellator, blacklistedBlocks );
+					assertFalse( section.isDirty );
+				}
+				assertEquals( sections.getNumSections(), tessellator.sections.size() );
+				assertEquals( storage.coords(), tessellator.renderedBlocks );
+				assertEquals( 0, tessellator.failsafeBlocks.size() );
+				assertEquals( 0, sections.getNumDirtySections() );
+				assertTrue( blacklistedBlocks.isEmpty() );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void dirtySections( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BlocksStorage storage = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+				ShipRenderSections sections = new ShipRenderSections( storage.coords() );
+				RecordingTessellator tessellator = new RecordingTessellator();
+				Set<Integer> blacklistedBlocks = new TreeSet<Integer>();
+				for( ShipRenderSections.Section section : sections.sections() )
+				{
+					sections.buildSection( section, storage, tessellator, blacklistedBlocks );
+				}
+				
+				// a block in the middle of a section only dirties its own section
+				Coords middleBlock = null;
+				Coords borderBlock = null;
+				for( Coords coords : storage.coords() )
+				{
+					int x = coords.x & 15;
+					int y = coords.y & 15;
+					int z = coords.z & 15;
+					boolean isInMiddle = x > 0 && x < 15 && y > 0 && y < 15 && z > 0 && z < 15;
+					if( isInMiddle && middleBlock == null )
+					{
+						middleBlock = coords;
+					}
+					else if( x == 15 && sections.getSection( new Coords( coords.x + 1, coords.y, coords.z ) ) != null && borderBlock == null )
+					{
+						borderBlock = coords;
+					}
+				}
+				assertTrue( middleBlock != null );
+				assertTrue( borderBlock != null );
+				
+				sections.markDirty( middleBlock );
+				assertEquals( 1, sections.getNumDirtySections() );
+				assertTrue( sections.getSection( middleBlock ).isDirty );
+				
+				// only the dirty section gets rebuilt
+				tessellator = new RecordingTessellator();
+				for( ShipRenderSections.Section section : sections.sections() )
+				{
+					if( section.isDirty )
+					{
+						sections.buildSection( section, storage, tessellator, blacklistedBlocks );
+					}
+				}
+				assertEquals( 1, tessellator.sections.size() );
+				assertSame( sections.getSection( middleBlock ), tessellator.sections.get( 0 ) );
+				assertEquals( tessellator.sections.get( 0 ).blocks.toBlockSet(), tessellator.renderedBlocks );
+				assertEquals( 0, sections.getNumDirtySections() );
+				
+				// a block on a section border dirties the neighbor too
+				sections.markDirty( borderBlock );
+				assertTrue( sections.getNumDirtySections() >= 2 );
+				assertTrue( sections.getSection( borderBlock ).isDirty );
+				assertTrue( sections.getSection( new Coords( borderBlock.x + 1, borderBlock.y, borderBlock.z ) ).isDirty );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void blacklistedBlocks( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BlocksStorage storage = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+				ShipRenderSections sections = new ShipRenderSections( storage.coords() );
+				
+				// pick a block type to crash the renderer
+				RecordingTessellator tessellator = new RecordingTessellator();
+				tessellator.badBlockId = storage.getBlock( storage.coords().first() ).id;
+				BlockSet badBlocks = new BlockSet();
+				for( Coords coords : storage.coords() )
+				{
+					if( storage.getBlock( coords ).id == tessellator.badBlockId )
+					{
+						badBlocks.add( coords );
+					}
+				}
+				
+				Set<Integer> blacklistedBlocks = new TreeSet<Integer>();
+				for( ShipRenderSections.Section section : sections.sections() )
+				{
+					sections.buildSection( section, storage, tessellator, blacklistedBlocks );
+				}
+				assertTrue( blacklistedBlocks.contains( tessellator.badBlockId ) );
+				
+				// after the first crash, the rest of the bad blocks should use the failsafe renderer
+				assertEquals( badBlocks.size() - 1, tessellator.failsafeBlocks.size() );
+				assertEquals( storage.coords().size() - badBlocks.size(), tessellator.renderedBlocks.size() );
+				for( Coords coords : tessellator.failsafeBlocks )
+				{
+					assertTrue( badBlocks.contains( coords ) );
+				}
+			}
+		}.run();
+	}
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.minecraft.util.Vec3;
+
+import org.junit.Test;
+
+public class TestShipTransform
+{
+	private static final int NumPoses = 100;
+	private static final int NumPoints = 100;
+	
+	@Test
+	public void sameAsEntityShip( )
+	{
+		Random rand = new Random( 12345 );
+		for( int i=0; i<NumPoses; i++ )
+		{
+			Pose pose = new Pose( rand );
+			ShipTransform transform = pose.getTransform();
+			for( int j=0; j<NumPoints; j++ )
+			{
+				double x = getRandom( rand, 1000 );
+				double y = getRandom( rand, 256 );
+				double z = getRandom( rand, 1000 );
+				
+				// the snapshot should get exactly the same answers as the old per-call trig
+				assertEquals( pose.worldToShipX( x, z ), transform.worldToShipX( x, z ), 0 );
+				assertEquals( pose.worldToShipY( y ), transform.worldToShipY( y ), 0 );
+				assertEquals( pose.worldToShipZ( x, z ), transform.worldToShipZ( x, z ), 0 );
+				assertEquals( pose.shipToWorldX( x, z ), transform.shipToWorldX( x, z ), 0 );
+				assertEquals( pose.shipToWorldY( y ), transform.shipToWorldY( y ), 0 );
+				assertEquals( pose.shipToWorldZ( x, z ), transform.shipToWorldZ( x, z ), 0 );
+				assertEquals( x - pose.shipBlockX, transform.shipToBlocksX( x ), 0 );
+				assertEquals( x + pose.shipBlockX, transform.blocksToShipX( x ), 0 );
+				
+				Vec3 v = Vec3.createVectorHelper( x, y, z );
+				transform.worldToShipDirection( v );
+				assertEquals( x*pose.getCos() - z*pose.getSin(), v.xCoord, 0 );
+				assertEquals( x*pose.getSin() + z*pose.getCos(), v.zCoord, 0 );
+				v = Vec3.createVectorHelper( x, y, z );
+				transform.shipToWorldDirection( v );
+				assertEquals( x*pose.getCos() + z*pose.getSin(), v.xCoord, 0 );
+				assertEquals( -x*pose.getSin() + z*pose.getCos(), v.zCoord, 0 );
+			}
+		}
+	}
+	
+	@Test
+	public void batchConversion( )
+	{
+		Random rand = new Random( 12345 );
+		for( int i=0; i<NumPoses; i++ )
+		{
+			Pose pose = new Pose( rand );
+			ShipTransform transform = pose.getTransform();
+			
+			// leave some padding at the start to check the offset
+			double[] points = new double[3 + NumPoints*3];
+			for( int j=0; j<points.length; j++ )
+			{
+				points[j] = getRandom( rand, 1000 );
+			}
+			double[] worldPoints = points.clone();
+			
+			transform.worldToBlocks( points, 3, NumPoints );
+			assertEquals( worldPoints[0], points[0], 0 );
+			for( int j=0; j<NumPoints; j++ )
+			{
+				Vec3 v = Vec3.createVectorHelper( worldPoints[3 + j*3], worldPoints[3 + j*3 + 1], worldPoints[3 + j*3 + 2] );
+				transform.worldToShip( v );
+				transform.shipToBlocks( v );
+				assertEquals( v.xCoord, points[3 + j*3], 0 );
+				assertEquals( v.yCoord, points[3 + j*3 + 1], 0 );
+				assertEquals( v.zCoord, points[3 + j*3 + 2], 0 );
+			}
+			
+			// and back again
+			transform.blocksToWorld( points, 3, NumPoints );
+			for( int j=3; j<points.length; j++ )
+			{
+				assertEquals( worldPoints[j], points[j], 1e-9 );
+			}
+		}
+	}
+	
+	@Test
+	public void matches( )
+	{
+		ShipTransform transform = new ShipTransform( 1, 2, 3, 45, 4, 5, 6 );
+		assertTrue( transform.matches( 1, 2, 3, 45, 4, 5, 6 ) );
+		assertFalse( transform.matches( 1, 2, 3, 46, 4, 5, 6 ) );
+		assertFalse( transform.matches( 1, 2, 3.5, 45, 4, 5, 6 ) );
+		assertFalse( transform.matches( 1, 2, 3, 45, 4, 5, 7 ) );
+	}
+	
+	private static class Pose
+	{
+		// the same math EntityShip did before it had a transform snapshot
+		
+		public double posX;
+		public double posY;
+		public double posZ;
+		public float rotationYaw;
+		public double shipBlockX;
+		public double shipBlockY;
+		public double shipBlockZ;
+		
+		public Pose( Random rand )
+		{
+			posX = getRandom( rand, 1000 );
+			posY = getRandom( rand, 256 );
+			posZ = getRandom( rand, 1000 );
+			rotationYaw = (float)getRandom( rand, 720 );
+			shipBlockX = getRandom( rand, 20 );
+			shipBlockY = getRandom( rand, 20 );
+			shipBlockZ = getRandom( rand, 20 );
+		}
+		
+		public ShipTransform getTransform( )
+		{
+			return new ShipTransform( posX, posY, posZ, rotationYaw, shipBlockX, shipBlockY, shipBlockZ );
+		}
+		
+		public double getCos( )
+		{
+			return Math.cos( Math.toRadians( rotationYaw ) );
+		}
+		
+		public double getSin( )
+		{
+			return Math.sin( Math.toRadians( rotationYaw ) );
+		}
+		
+		public double worldToShipX( double x, double z )
+		{
+			double yawRad = Math.toRadians( rotationYaw );
+			double cos = Math.cos( yawRad );
+			double sin = Math.sin( yawRad );
+			return ( x - posX )*cos - ( z - posZ )*sin;
+		}
+		
+		public double worldToShipY( double y )
+		{
+			return y - posY;
+		}
+		
+		public double worldToShipZ( double x, double z )
+		{
+			double yawRad = Math.toRadians( rotationYaw );
+			double cos = Math.cos( yawRad );
+			double sin = Math.sin( yawRad );
+			return ( x - posX )*sin + ( z - posZ )*cos;
+		}
+		
+		public double shipToWorldX( double x, double z )
+		{
+			double yawRad = Math.toRadians( rotationYaw );
+			double cos = Math.cos( yawRad );
+			double sin = Math.sin( yawRad );
+			return x*cos + z*sin + posX;
+		}
+		
+		public double shipToWorldY( double y )
+		{
+			return y + posY;
+		}
+		
+		public double shipToWorldZ( double x, double z )
+		{
+			double yawRad = Math.toRadians( rotationYaw );
+			double cos = Math.cos( yawRad );
+			double sin = Math.sin( yawRad );
+			return -x*sin + z*cos + posZ;
+		}
+	}
+	
+	private static double getRandom( Random rand, double range )
+	{
+		return ( rand.nextDouble()*2 - 1 )*range;
+	}
+}
@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.EntityHanging;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.tileentity.TileEntityChest;
+import net.minecraft.tileentity.TileEntityFurnace;
+import net.minecraft.tileentity.TileEntitySign;
+import net.minecraft.world.World;
+
+import org.junit.Test;
+
+import cpw.mods.fml.common.registry.GameRegistry;
+import cuchaz.modsShared.blocks.BlockMap;
+import cuchaz.modsShared.blocks.Coords;
+import cuchaz.ships.persistence.BlockStoragePersistence;
+import cuchaz.ships.persistence.ShipWorldPersistence;
+
+public class TestShipWorldPersistence
+{
+	@Test
+	public void newestVersionRoundTrip( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				World world = new TestWorld();
+				ShipWorld shipWorld = buildShip( world );
+				
+				byte[] data = ShipWorldPersistence.writeNewestVersion( shipWorld );
+				ShipWorld readShipWorld = ShipWorldPersistence.readAnyVersion( world, data );
+				assertSameShip( shipWorld, readShipWorld );
+				assertArrayEquals( data, ShipWorldPersistence.writeNewestVersion( readShipWorld ) );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void codecMatchesStreams( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				World world = new TestWorld();
+				ShipWorld shipWorld = buildShip( world );
+				
+				// the codec should write exactly what the streams wrote
+				ByteArrayOutputStream buf = new ByteArrayOutputStream();
+				ShipWorldPersistence.writeNewestVersion( shipWorld, buf );
+				byte[] data = ShipWorldPersistence.writeNewestVersion( shipWorld );
+				assertArrayEquals( buf.toByteArray(), data );
+				
+				// and the compressed and string encodings should read back the same ship
+				ShipWorld readShipWorld = ShipWorldPersistence.readAnyVersion( world, ShipWorldPersistence.writeNewestVersion( shipWorld, true ), true );
+				assertSameShip( shipWorld, readShipWorld );
+				assertArrayEquals( data, ShipWorldPersistence.writeNewestVersion( readShipWorld ) );
+				readShipWorld = ShipWorldPersistence.readAnyVersion( world, ShipWorldPersistence.writeNewestVersionToString( shipWorld ) );
+				assertSameShip( shipWorld, readShipWorld );
+				assertArrayEquals( data, ShipWorldPersistence.writeNewestVersion( readShipWorld ) );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void projectorRoundTrip( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				// NOTE: the mod registers tile entities at load time, which doesn't happen in tests
+				GameRegistry.registerTileEntity( TileEntityProjector.class, "projector" );
+				
+				World world = new TestWorld();
+				ShipWorld projectedShipWorld = new ShipWorld( world, BlockStoragePersistence.readAnyVersion( TestDisplacementComponents.ShipA ), new BlockMap<TileEntity>(), new BlockMap<EntityHanging>(), 0 );
+				
+				// put a projector on the ship. saving the ship saves the projected ship too, right in the middle of the outer save
+				BlocksStorage storage = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+				BlockMap<TileEntity> tileEntities = new BlockMap<TileEntity>();
+				addFurnaces( storage, tileEntities );
+				Coords projectorCoords = new Coords( 100, 0, 6 );
+				TileEntityProjector projector = new TileEntityProjector();
+				addTileEntity( storage, tileEntities, projectorCoords, Ships.m_blockProjector.blockID, projector );
+				world.setBlock( projectorCoords.x, projectorCoords.y, projectorCoords.z, Ships.m_blockProjector.blockID, 0, 2 );
+				projector.worldObj = world;
+				projector.setShipWorld( projectedShipWorld );
+				ShipWorld shipWorld = new ShipWorld( world, storage, tileEntities, new BlockMap<EntityHanging>(), 0 );
+				byte[] data = ShipWorldPersistence.writeNewestVersion( shipWorld );
+				
+				// the nested save shouldn't change what the outer save wrote
+				ByteArrayOutputStream buf = new ByteArrayOutputStream();
+				ShipWorldPersistence.writeNewestVersion( shipWorld, buf );
+				assertArrayEquals( buf.toByteArray(), data );
+				
+				// the projector should come back with the same projected ship
+				ShipWorld readShipWorld = ShipWorldPersistence.readAnyVersion( world, data );
+				assertEquals( shipWorld.coords(), readShipWorld.coords() );
+				assertEquals( shipWorld.tileEntityCoords(), readShipWorld.tileEntityCoords() );
+				NBTTagCompound nbt = new NBTTagCompound();
+				readShipWorld.getBlockTileEntity( projectorCoords ).writeToNBT( nbt );
+				ShipWorld readProjectedShipWorld = ShipWorldPersistence.readAnyVersion( world, nbt.getByteArray( "shipWorld" ) );
+				assertSameShip( projectedShipWorld, readProjectedShipWorld );
+				assertArrayEquals( data, ShipWorldPersistence.writeNewestVersion( readShipWorld ) );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void olderVersionsRoundTrip( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				World world = new TestWorld();
+				ShipWorld shipWorld = buildShip( world );
+				byte[] expected = ShipWorldPersistence.writeNewestVersion( shipWorld );
+				
+				// the fixture doesn't use anything the old versions can't save, so they should all upgrade to the same bytes
+				for( ShipWorldPersistence persistence : ShipWorldPersistence.values() )
+				{
+					ByteArrayOutputStream buf = new ByteArrayOutputStream();
+					persistence.write( shipWorld, buf );
+					ShipWorld readShipWorld = ShipWorldPersistence.readAnyVersion( world, buf.toByteArray() );
+					assertSameShip( shipWorld, readShipWorld );
+					assertArrayEquals( expected, ShipWorldPersistence.writeNewestVersion( readShipWorld ) );
+					
+					System.out.println( String.format( "%s: %d bytes, %d bytes compressed",
+						persistence.name(), buf.size(), ShipWorldPersistence.writeNewestVersion( readShipWorld, true ).length
+					) );
+				}
+			}
+		}.run();
+	}
+	
+	@Test
+	public void tileEntitiesLoadLazily( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				World world = new TestWorld();
+				BlocksStorage storage = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+				BlockMap<TileEntity> tileEntities = new BlockMap<TileEntity>();
+				addFurnaces( storage, tileEntities );
+				
+				// add some tile entities that don't need updates
+				Coords chestCoords = new Coords( 100, 0, 2 );
+				TileEntityChest chest = new TileEntityChest();
+				chest.setInventorySlotContents( 0, new ItemStack( Block.cobblestone, 32 ) );
+				addTileEntity( storage, tileEntities, chestCoords, Block.chest.blockID, chest );
+				Coords signCoords = new Coords( 100, 0, 4 );
+				TileEntitySign sign = new TileEntitySign();
+				sign.signText[0] = "Ahoy";
+				addTileEntity( storage, tileEntities, signCoords, Block.signPost.blockID, sign );
+				ShipWorld shipWorld = new ShipWorld( world, storage, tileEntities, new BlockMap<EntityHanging>(), 0 );
+				byte[] data = ShipWorldPersistence.writeNewestVersion( shipWorld );
+				
+				// the furnaces update, so they get loaded right away. the chest and the sign wait
+				ShipWorld readShipWorld = ShipWorldPersistence.readAnyVersion( world, data );
+				assertEquals( shipWorld.getNumTileEntities(), readShipWorld.getNumTileEntities() );
+				assertEquals( shipWorld.tileEntityCoords(), readShipWorld.tileEntityCoords() );
+				for( Coords coords : readShipWorld.tileEntityCoords() )
+				{
+					boolean isFurnace = readShipWorld.getBlockId( coords ) == Block.furnaceIdle.blockID;
+					assertEquals( isFurnace, readShipWorld.isTileEntityLoaded( coords ) );
+				}
+				
+				// saving doesn't load anything
+				assertArrayEquals( data, ShipWorldPersistence.writeNewestVersion( readShipWorld ) );
+				assertFalse( readShipWorld.isTileEntityLoaded( chestCoords ) );
+				
+				// but touching a tile entity does
+				TileEntityChest readChest = (TileEntityChest)readShipWorld.getBlockTileEntity( chestCoords );
+				assertTrue( readShipWorld.isTileEntityLoaded( chestCoords ) );
+				assertEquals( 32, readChest.getStackInSlot( 0 ).stackSize );
+				assertTrue( readChest.worldObj == readShipWorld );
+				assertFalse( readShipWorld.isTileEntityLoaded( signCoords ) );
+				assertEquals( "Ahoy", ( (TileEntitySign)readShipWorld.getBlockTileEntity( signCoords ) ).signText[0] );
+				assertArrayEquals( data, ShipWorldPersistence.writeNewestVersion( readShipWorld ) );
+			}
+		}.run();
+	}
+	
+	private ShipWorld buildShip( World world )
+	throws Exception
+	{
+		BlocksStorage storage = BlockStoragePersistence.readAnyVersion( TestShipLag.BigShip );
+		BlockMap<TileEntity> tileEntities = new BlockMap<TileEntity>();
+		addFurnaces( storage, tileEntities );
+		return new ShipWorld( world, storage, tileEntities, new BlockMap<EntityHanging>(), 0 );
+	}
+	
+	private void addFurnaces( BlocksStorage storage, BlockMap<TileEntity> tileEntities )
+	{
+		// put a few furnaces around the ship, including one in a section all by itself
+		List<Coords> shipCoords = new ArrayList<Coords>( storage.coords() );
+		for( int i=0; i<shipCoords.size(); i+=shipCoords.size()/8 )
+		{
+			addFurnace( storage, tileEntities, shipCoords.get( i ), i );
+		}
+		addFurnace( storage, tileEntities, new Coords( 100, 0, 0 ), 64 );
+	}
+	
+	private void addFurnace( BlocksStorage storage, BlockMap<TileEntity> tileEntities, Coords coords, int numItems )
+	{
+		storage.setBlock( coords, Block.furnaceIdle.blockID, 2 );
+		
+		TileEntityFurnace furnace = new TileEntityFurnace();
+		furnace.xCoord = coords.x;
+		furnace.yCoord = coords.y;
+		furnace.zCoord = coords.z;
+		furnace.setInventorySlotContents( 0, new ItemStack( Block.oreIron, 1 + numItems % 64 ) );
+		furnace.setInventorySlotContents( 1, new ItemStack( Item.coal, 8 ) );
+		tileEntities.put( new Coords( coords ), furnace );
+	}
+	
+	private void addTileEntity( BlocksStorage storage, BlockMap<TileEntity> tileEntities, Coords coords, int blockId, TileEntity tileEntity )
+	{
+		storage.setBlock( coords, blockId, 0 );
+		tileEntity.xCoord = coords.x;
+		tileEntity.yCoord = coords.y;
+		tileEntity.zCoord = coords.z;
+		tileEntities.put( coords, tileEntity );
+	}
+	
+	private void assertSameShip( ShipWorld expected, ShipWorld observed )
+	{
+		assertEquals( expected.coords(), observed.coords() );
+		for( Coords coords : expected.coords() )
+		{
+			assertEquals( expected.getBlockId( coords ), observed.getBlockId( coords ) );
+			assertEquals( expected.getBlockMetadata( coords.x, coords.y, coords.z ), observed.getBlockMetadata( coords.x, coords.y, coords.z ) );
+		}
+		assertEquals( expected.tileEntities().keySet(), observed.tileEntities().keySet() );
+		for( Coords coords : expected.tileEntities().keySet() )
+		{
+			TileEntityFurnace expectedFurnace = (TileEntityFurnace)expected.tileEntities().get( coords );
+			TileEntityFurnace observedFurnace = (TileEntityFurnace)observed.tileEntities().get( coords );
+			assertEquals( expectedFurnace.getStackInSlot( 0 ).stackSize, observedFurnace.getStackInSlot( 0 ).stackSize );
+			assertEquals( expectedFurnace.getStackInSlot( 1 ).stackSize, observedFurnace.getStackInSlot( 1 ).stackSize );
+		}
+		assertEquals( expected.getBiomeId(), observed.getBiomeId() );
+	}
+}
@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.EntityHanging;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.tileentity.TileEntityChest;
+import net.minecraft.tileentity.TileEntityFurnace;
+import net.minecraft.tileentity.TileEntityHopper;
+import net.minecraft.world.World;
+
+import org.junit.Test;
+
+import cuchaz.modsShared.blocks.BlockMap;
+import cuchaz.modsShared.blocks.Coords;
+
+public class TestTileEntityScheduler
+{
+	private static final int TicksPerHour = 72000;
+	private static final int TopUpTick = 30000;
+	
+	@Test
+	public void sameSmelting( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				World world = new TestWorld();
+				ShipWorld expected = buildFurnaces( world );
+				ShipWorld observed = buildFurnaces( world );
+				
+				// run both for an hour. once the old way, once with the scheduler
+				for( int tick=0; tick<TicksPerHour; tick++ )
+				{
+					if( tick == TopUpTick )
+					{
+						topUp( expected );
+						topUp( observed );
+					}
+					
+					for( TileEntity tileEntity : expected.tileEntities().values() )
+					{
+						tileEntity.updateEntity();
+					}
+					observed.getTileEntityScheduler().update();
+				}
+				
+				// the furnaces should have done exactly the same things
+				assertEquals( expected.tileEntities().size(), observed.tileEntities().size() );
+				for( Map.Entry<Coords,TileEntity> entry : expected.tileEntities().entrySet() )
+				{
+					Coords coords = entry.getKey();
+					TileEntityFurnace expectedFurnace = (TileEntityFurnace)entry.getValue();
+					TileEntityFurnace observedFurnace = (TileEntityFurnace)observed.tileEntities().get( coords );
+					assertEquals( expected.getBlockId( coords ), observed.getBlockId( coords ) );
+					assertEquals( expected.getBlockMetadata( coords.x, coords.y, coords.z ), observed.getBlockMetadata( coords.x, coords.y, coords.z ) );
+					assertEquals( expectedFurnace.furnaceBurnTime, observedFurnace.furnaceBurnTime );
+					assertEquals( expectedFurnace.furnaceCookTime, observedFurnace.furnaceCookTime );
+					for( int i=0; i<expectedFurnace.getSizeInventory(); i++ )
+					{
+						assertSameStack( expectedFurnace.getStackInSlot( i ), observedFurnace.getStackInSlot( i ) );
+					}
+				}
+				
+				// and by now, all the furnaces are done
+				assertEquals( 0, observed.getTileEntityScheduler().getNumAwake() );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void idleFurnacesSleep( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				ShipWorld shipWorld = buildFurnaces( new TestWorld() );
+				TileEntityScheduler scheduler = shipWorld.getTileEntityScheduler();
+				assertEquals( 6, scheduler.getNumAwake() );
+				
+				// the empty furnace and the furnace with the full output go to sleep right away
+				// so does the furnace with nothing to burn
+				scheduler.update();
+				assertEquals( 3, scheduler.getNumAwake() );
+				
+				// adding fuel wakes it up
+				topUp( shipWorld );
+				assertEquals( 4, scheduler.getNumAwake() );
+				scheduler.update();
+				assertEquals( 4, scheduler.getNumAwake() );
+			}
+		}.run();
+	}
+	
+	@Test
+	public void emptyHoppersSleep( )
+	throws Exception
+	{
+		new MinecraftRunner( )
+		{
+			@Override
+			public void onRun( )
+			throws Exception
+			{
+				BlocksStorage storage = new BlocksStorage();
+				BlockMap<TileEntity> tileEntities = new BlockMap<TileEntity>();
+				
+				// an empty hopper under a solid block
+				addHopper( storage, tileEntities, 0, null );
+				storage.setBlock( new Coords( 0, 1, 0 ), Block.planks.blockID, 0 );
+				
+				// an empty hopper under an empty chest
+				addHopper( storage, tileEntities, 1, null );
+				Coords chestCoords = new Coords( 3, 1, 0 );
+				storage.setBlock( chestCoords, Block.chest.blockID, 2 );
+				TileEntityChest chest = new TileEntityChest();
+				chest.xCoord = chestCoords.x;
+				chest.yCoord = chestCoords.y;
+				chest.zCoord = chestCoords.z;
+				tileEntities.put( chestCoords, chest );
+				
+				// an empty hopper under open air, where items could land on it
+				addHopper( storage, tileEntities, 2, null );
+				
+				// a hopper with something to push
+				addHopper( storage, tileEntities, 3, new ItemStack( Block.cobblestone, 5 ) );
+				
+				ShipWorld shipWorld = new ShipWorld( new TestWorld(), storage, tileEntities, new BlockMap<EntityHanging>(), 0 );
+				TileEntityScheduler scheduler = shipWorld.getTileEntityScheduler();
+				assertEquals( 5, scheduler.getNumAwake() );
+				
+				// the hoppers with nothing to pull go to sleep right away
+				// the chest never sleeps, since the scheduler doesn't know what chests do
+				scheduler.update();
+				assertEquals( 3, scheduler.getNumAwake() );
+				
+				// filling the chest wakes up the hopper under it, and the hopper pulls from it
+				chest.setInventorySlotContents( 0, new ItemStack( Item.coal, 2 ) );
+				chest.onInventoryChanged();
+				assertEquals( 4, scheduler.getNumAwake() );
+				scheduler.update();
+				TileEntityHopper hopper = (TileEntityHopper)shipWorld.getBlockTileEntity( 3, 0, 0 );
+				assertSameStack( new ItemStack( Item.coal, 1 ), hopper.getStackInSlot( 0 ) );
+				assertEquals( 4, scheduler.getNumAwake() );
+			}
+		}.run();
+	}
+	
+	private ShipWorld buildFurnaces( World world )
+	{
+		BlocksStorage storage = new BlocksStorage();
+		BlockMap<TileEntity> tileEntities = new BlockMap<TileEntity>();
+		
+		// an empty furnace
+		addFurnace( storage, tileEntities, 0, null, null, null );
+		
+		// lots of ore, and just enough coal
+		addFurnace( storage, tileEntities, 1, new ItemStack( Block.oreIron, 64 ), new ItemStack( Item.coal, 8 ), null );
+		
+		// not enough coal
+		addFurnace( storage, tileEntities, 2, new ItemStack( Block.sand, 20 ), new ItemStack( Item.coal, 1 ), null );
+		
+		// the output is full
+		addFurnace( storage, tileEntities, 3, new ItemStack( Block.sand, 20 ), new ItemStack( Item.coal, 4 ), new ItemStack( Block.glass, 64 ) );
+		
+		// no fuel until later
+		addFurnace( storage, tileEntities, 4, new ItemStack( Item.porkRaw, 10 ), null, null );
+		
+		// more fuel than we need
+		addFurnace( storage, tileEntities, 5, new ItemStack( Block.cobblestone, 5 ), new ItemStack( Block.planks, 64 ), null );
+		
+		return new ShipWorld( world, storage, tileEntities, new BlockMap<EntityHanging>(), 0 );
+	}
+	
+	private void addFurnace( BlocksStorage storage, BlockMap<TileEntity> tileEntities, int x, ItemStack input, ItemStack fuel, ItemStack output )
+	{
+		// space the furnaces out so they aren't neighbors
+		Coords coords = new Coords( x*2, 0, 0 );
+		storage.setBlock( coords, Block.furnaceIdle.blockID, 2 );
+		
+		TileEntityFurnace furnace = new TileEntityFurnace();
+		furnace.xCoord = coords.x;
+		furnace.yCoord = coords.y;
+		furnace.zCoord = coords.z;
+		furnace.setInventorySlotContents( 0, input );
+		furnace.setInventorySlotContents( 1, fuel );
+		furnace.setInventorySlotContents( 2, output );
+		tileEntities.put( coords, furnace );
+	}
+	
+	private void addHopper( BlocksStorage storage, BlockMap<TileEntity> tileEntities, int x, ItemStack contents )
+	{
+		// space the hoppers out so they aren't neighbors, and point them down at nothing
+		Coords coords = new Coords( x*3, 0, 0 );
+		storage.setBlock( coords, Block.hopperBlock.blockID, 0 );
+		
+		TileEntityHopper hopper = new TileEntityHopper();
+		hopper.xCoord = coords.x;
+		hopper.yCoord = coords.y;
+		hopper.zCoord = coords.z;
+		hopper.setInventorySlotContents( 0, contents );
+		tileEntities.put( coords, hopper );
+	}
+	
+	private void topUp( ShipWorld shipWorld )
+	{
+		// put some coal in the pork furnace, the way a hopper would
+		TileEntityFurnace furnace = (TileEntityFurnace)shipWorld.getBlockTileEntity( 8, 0, 0 );
+		furnace.setInventorySlotContents( 1, new ItemStack( Item.coal, 2 ) );
+		furnace.onInventoryChanged();
+	}
+	
+	private void assertSameStack( ItemStack expected, ItemStack observed )
+	{
+		if( expected == null )
+		{
+			assertTrue( observed == null );
+			return;
+		}
+		assertTrue( observed != null );
+		assertEquals( expected.itemID, observed.itemID );
+		assertEquals( expected.getItemDamage(), observed.getItemDamage() );
+		assertEquals( expected.stackSize, observed.stackSize );
+	}
+}
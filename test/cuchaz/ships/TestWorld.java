@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2014 jeff.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ * 
+ * Contributors:
+ *     jeff - initial API and implementation
+ ******************************************************************************/
+package cuchaz.ships;
+
+import java.util.List;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EnumCreatureType;
+import net.minecraft.profiler.Profiler;
+import net.minecraft.util.IProgressUpdate;
+import net.minecraft.util.LongHashMap;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.ChunkPosition;
+import net.minecraft.world.EnumGameType;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldSettings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.storage.SaveHandlerMP;
+
+public class TestWorld extends World
+{
+	// just enough of a world to build ship worlds and entities in tests
+	// the world is flat: stone below the floor, and air above it
+	
+	public static final int FloorY = 60;
+	
+	private static class FlatChunkProvider implements IChunkProvider
+	{
+		private World m_world;
+		private LongHashMap m_chunks;
+		
+		public FlatChunkProvider( World world )
+		{
+			m_world = world;
+			m_chunks = new LongHashMap();
+		}
+		
+		@Override
+		public boolean chunkExists( int chunkX, int chunkZ )
+		{
+			return true;
+		}
+		
+		@Override
+		public Chunk provideChunk( int chunkX, int chunkZ )
+		{
+			// NOTE: keep the chunks around, so looking up blocks doesn't allocate
+			long key = ChunkCoordIntPair.chunkXZ2Int( chunkX, chunkZ );
+			Chunk chunk = (Chunk)m_chunks.getValueByKey( key );
+			if( chunk == null )
+			{
+				chunk = loadChunk( chunkX, chunkZ );
+				m_chunks.add( key, chunk );
+			}
+			return chunk;
+		}
+		
+		@Override
+		public Chunk loadChunk( int chunkX, int chunkZ )
+		{
+			// blocks are indexed by x << 11 | z << 7 | y
+			byte[] blocks = new byte[16*16*128];
+			for( int x=0; x<16; x++ )
+			{
+				for( int z=0; z<16; z++ )
+				{
+					for( int y=0; y<FloorY; y++ )
+					{
+						blocks[x << 11 | z << 7 | y] = (byte)Block.stone.blockID;
+					}
+				}
+			}
+			return new Chunk( m_world, blocks, chunkX, chunkZ );
+		}
+		
+		@Override
+		public void populate( IChunkProvider provider, int chunkX, int chunkZ )
+		{
+			// nothing to do
+		}
+		
+		@Override
+		public boolean saveChunks( boolean saveAll, IProgressUpdate progress )
+		{
+			return true;
+		}
+		
+		@Override
+		public boolean unloadQueuedChunks( )
+		{
+			return false;
+		}
+		
+		@Override
+		public boolean canSave( )
+		{
+			return false;
+		}
+		
+		@Override
+		public String makeString( )
+		{
+			return "FlatChunkProvider";
+		}
+		
+		@Override
+		@SuppressWarnings( "rawtypes" )
+		public List getPossibleCreatures( EnumCreatureType type, int x, int y, int z )
+		{
+			return null;
+		}
+		
+		@Override
+		public ChunkPosition findClosestStructure( World world, String name, int x, int y, int z )
+		{
+			return null;
+		}
+		
+		@Override
+		public int getLoadedChunkCount( )
+		{
+			return m_chunks.getNumHashElements();
+		}
+		
+		@Override
+		public void recreateStructures( int chunkX, int chunkZ )
+		{
+			// nothing to do
+		}
+		
+		@Override
+		public void saveExtraData( )
+		{
+			// nothing to do
+		}
+	}
+	
+	public TestWorld( )
+	{
+		super(
+			new SaveHandlerMP(),
+			"Test",
+			new WorldSettings( 0, EnumGameType.SURVIVAL, false, false, WorldType.DEFAULT ),
+			null,
+			new Profiler(),
+			null
+		);
+	}
+	
+	@Override
+	protected IChunkProvider createChunkProvider( )
+	{
+		return new FlatChunkProvider( this );
+	}
+	
+	@Override
+	public Entity getEntityByID( int id )
+	{
+		return null;
+	}
+}